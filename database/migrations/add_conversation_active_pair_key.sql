@@ -0,0 +1,32 @@
+-- Migration: Clé canonique de paire pour les conversations actives
+-- Date: 2026-10-17
+-- Description: active_pair_key = entreprise|participant le plus petit|participant le plus grand tant que
+-- la conversation est ACTIVE, NULL sinon (calculée par l'entité Conversation). L'index unique garantit une
+-- seule conversation active par paire et par entreprise (MySQL accepte plusieurs NULL) et remplace la
+-- recherche par OR sur les deux ordres agent/utilisateur.
+
+ALTER TABLE conversations ADD COLUMN active_pair_key VARCHAR(120) NULL;
+
+-- Doublons créés par des démarrages concurrents : seule la conversation active la plus récente de chaque
+-- paire reste ACTIVE, les autres sont fermées (leurs messages restent consultables)
+UPDATE conversations c
+JOIN (
+    SELECT entreprise_id,
+           LEAST(agent_id, user_id) AS low_id,
+           GREATEST(agent_id, user_id) AS high_id,
+           MAX(created_at) AS latest
+    FROM conversations
+    WHERE status = 'ACTIVE'
+    GROUP BY entreprise_id, LEAST(agent_id, user_id), GREATEST(agent_id, user_id)
+    HAVING COUNT(*) > 1
+) d ON d.entreprise_id = c.entreprise_id
+   AND d.low_id = LEAST(c.agent_id, c.user_id)
+   AND d.high_id = GREATEST(c.agent_id, c.user_id)
+SET c.status = 'CLOSED', c.closed_at = NOW(6)
+WHERE c.status = 'ACTIVE' AND c.created_at < d.latest;
+
+UPDATE conversations
+SET active_pair_key = CONCAT(entreprise_id, '|', LEAST(agent_id, user_id), '|', GREATEST(agent_id, user_id))
+WHERE status = 'ACTIVE';
+
+ALTER TABLE conversations ADD CONSTRAINT uk_conversations_active_pair UNIQUE (active_pair_key);
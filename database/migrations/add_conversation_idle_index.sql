@@ -0,0 +1,7 @@
+-- Migration: Index pour la fermeture automatique des conversations inactives
+-- Date: 2026-10-17
+-- Description: Le job de fermeture automatique (ConversationAutoCloseService) sélectionne les conversations
+-- ACTIVE sans message depuis chat.auto-close.idle-days jours (30 par défaut) ; cet index évite de
+-- parcourir toutes les conversations actives à chaque exécution.
+
+CREATE INDEX idx_conversations_status_last_message ON conversations(status, last_message_at);
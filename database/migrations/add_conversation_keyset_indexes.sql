@@ -0,0 +1,8 @@
+-- Migration: Index pour la pagination par curseur (keyset) des listes de conversations
+-- Date: 2026-10-17
+-- Description: Les listes de conversations sont triées par (updated_at DESC, id DESC) et filtrées
+-- par participant ; ces index permettent de lire une page sans parcourir tout l'historique.
+
+CREATE INDEX idx_conversations_agent_updated ON conversations(agent_id, updated_at, id);
+CREATE INDEX idx_conversations_user_updated ON conversations(user_id, updated_at, id);
+CREATE INDEX idx_conversations_status_updated ON conversations(status, updated_at, id);
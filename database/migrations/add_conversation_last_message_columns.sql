@@ -0,0 +1,11 @@
+-- Migration: Résumé du dernier message sur la table conversations
+-- Date: 2026-10-17
+-- Description: Les listes de conversations lisaient le dernier message par une jointure sur messages.
+-- Ces colonnes sont tenues à jour à chaque envoi ; les conversations existantes sont remplies
+-- au démarrage de l'application (LastMessageBackfillJob).
+
+ALTER TABLE conversations
+    ADD COLUMN last_message_at DATETIME(6) NULL,
+    ADD COLUMN last_message_preview VARCHAR(255) NULL,
+    ADD COLUMN last_message_sender_id VARCHAR(255) NULL,
+    ADD COLUMN message_count INT NOT NULL DEFAULT 0;
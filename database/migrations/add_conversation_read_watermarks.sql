@@ -0,0 +1,26 @@
+-- Migration: Filigrane de lecture par (conversation, participant)
+-- Date: 2026-10-17
+-- Description: La lecture d'une conversation marquait chaque message non lu (is_read, read_at), une
+-- écriture par message. Elle avance désormais un filigrane (dernier message lu) sur la ligne d'état de
+-- lecture du participant ; is_read / read_at des réponses de l'API sont déduits de ce filigrane et les
+-- colonnes de la table messages ne sont plus mises à jour.
+-- Reprise de l'existant : le filigrane est placé sur le dernier message de l'interlocuteur déjà marqué lu.
+
+ALTER TABLE conversation_unread_counters
+    ADD COLUMN last_read_message_id VARCHAR(255) NULL,
+    ADD COLUMN last_read_message_at DATETIME(6) NULL,
+    ADD COLUMN read_at DATETIME(6) NULL;
+
+UPDATE conversation_unread_counters u
+SET u.last_read_message_id = (
+        SELECT m.id FROM messages m
+        WHERE m.conversation_id = u.conversation_id
+          AND m.sender_id <> u.participant_id
+          AND m.is_read = TRUE
+        ORDER BY m.created_at DESC, m.id DESC
+        LIMIT 1);
+
+UPDATE conversation_unread_counters u
+JOIN messages m ON m.id = u.last_read_message_id
+SET u.last_read_message_at = m.created_at,
+    u.read_at = m.read_at;
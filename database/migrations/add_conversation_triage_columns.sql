@@ -0,0 +1,32 @@
+-- Migration: File de triage des agents (priorité puis attente de l'utilisateur)
+-- Date: 2026-10-17
+-- Description: conversations.waiting_since est tenu à jour à chaque envoi (premier message de
+-- l'utilisateur sans réponse de l'agent) ; les boîtes de réception en recopient la valeur avec
+-- le rang de la priorité, indexés pour la file de triage. Les conversations existantes sont
+-- remplies ici depuis les messages.
+
+ALTER TABLE conversations
+    ADD COLUMN waiting_since DATETIME(6) NULL;
+
+UPDATE conversations c
+SET c.waiting_since = (
+    SELECT MIN(m.created_at) FROM messages m
+    WHERE m.conversation_id = c.id
+      AND m.sender_id = c.user_id
+      AND m.created_at > COALESCE((SELECT MAX(a.created_at) FROM messages a
+                                   WHERE a.conversation_id = c.id AND a.sender_id = c.agent_id),
+                                  '1970-01-01')
+)
+WHERE c.user_id <> c.agent_id;
+
+ALTER TABLE conversation_inbox_entries
+    ADD COLUMN priority_rank INT NOT NULL DEFAULT 1,
+    ADD COLUMN waiting_since DATETIME(6) NULL;
+
+UPDATE conversation_inbox_entries e
+JOIN conversations c ON c.id = e.conversation_id
+SET e.waiting_since = c.waiting_since,
+    e.priority_rank = CASE c.priority WHEN 'LOW' THEN 0 WHEN 'HIGH' THEN 2 WHEN 'URGENT' THEN 3 ELSE 1 END;
+
+CREATE INDEX idx_inbox_entry_triage
+    ON conversation_inbox_entries(participant_id, status, priority_rank DESC, waiting_since, conversation_id);
@@ -0,0 +1,10 @@
+-- Migration: Envoi idempotent des messages
+-- Date: 2026-10-17
+-- Description: Le client génère un identifiant par message (clientMessageId) et le réutilise à chaque
+-- renvoi après expiration de son délai d'attente. La contrainte unique par conversation garantit qu'un
+-- renvoi retrouve le message d'origine au lieu d'en créer un second. Colonne NULL pour l'historique et
+-- les anciens clients (plusieurs NULL sont autorisés par l'index unique).
+
+ALTER TABLE messages ADD COLUMN client_message_id VARCHAR(64) NULL;
+
+CREATE UNIQUE INDEX uk_messages_conversation_client_id ON messages(conversation_id, client_message_id);
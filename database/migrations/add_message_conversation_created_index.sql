@@ -0,0 +1,7 @@
+-- Migration: Index pour les fenêtres de messages et la synchronisation incrémentale
+-- Date: 2026-10-17
+-- Description: Les messages d'une conversation sont lus par curseur (created_at, id), soit après
+-- le dernier message connu du client, soit avant le plus ancien affiché ; cet index évite de
+-- parcourir tout l'historique de la conversation.
+
+CREATE INDEX idx_messages_conversation_created ON messages(conversation_id, created_at, id);
@@ -0,0 +1,38 @@
+-- Migration: Délais de réponse et charge des agents
+-- Date: 2026-10-17
+-- Description: chat_agent_response_stats garde une ligne d'agrégats par agent (nombres, sommes et
+-- histogrammes des délais de première réponse et de réponse), complétée par AgentResponseMetrics à
+-- chaque réponse ; le tableau de bord superviseur ne lit plus que ces lignes. conversations.first_response_at
+-- marque la première réponse de l'agent (remplie ici pour les conversations existantes, sans reconstruire
+-- les délais passés) et l'index (status, agent_id) compte les conversations ouvertes par agent.
+
+CREATE TABLE IF NOT EXISTS chat_agent_response_stats (
+    id VARCHAR(255) NOT NULL PRIMARY KEY,
+    agent_id VARCHAR(255) NOT NULL,
+    first_response_count BIGINT NOT NULL DEFAULT 0,
+    first_response_total_ms BIGINT NOT NULL DEFAULT 0,
+    first_response_histogram TEXT NULL,
+    reply_count BIGINT NOT NULL DEFAULT 0,
+    reply_total_ms BIGINT NOT NULL DEFAULT 0,
+    reply_max_ms BIGINT NOT NULL DEFAULT 0,
+    reply_histogram TEXT NULL,
+    created_at DATETIME(6) NOT NULL,
+    updated_at DATETIME(6) NOT NULL,
+    CONSTRAINT uk_chat_agent_response_stats_agent UNIQUE (agent_id),
+    CONSTRAINT fk_chat_agent_response_stats_agent FOREIGN KEY (agent_id) REFERENCES persons(id) ON DELETE CASCADE
+);
+
+ALTER TABLE conversations
+    ADD COLUMN first_response_at DATETIME(6) NULL;
+
+UPDATE conversations c
+SET c.first_response_at = (
+    SELECT MIN(a.created_at) FROM messages a
+    WHERE a.conversation_id = c.id
+      AND a.sender_id = c.agent_id
+      AND EXISTS (SELECT 1 FROM messages u
+                  WHERE u.conversation_id = c.id AND u.sender_id = c.user_id AND u.created_at < a.created_at)
+)
+WHERE c.user_id <> c.agent_id;
+
+CREATE INDEX idx_conversations_status_agent ON conversations(status, agent_id);
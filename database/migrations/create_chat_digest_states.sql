@@ -0,0 +1,16 @@
+-- Migration: Suivi des récapitulatifs e-mail de messages non lus
+-- Date: 2026-10-17
+-- Description: Une ligne par destinataire (ChatDigestService) : date du dernier récapitulatif
+-- (espacement des envois) et date jusqu'à laquelle les messages ont déjà été signalés
+-- (une nouvelle exécution du job ne renvoie pas les mêmes messages).
+
+CREATE TABLE IF NOT EXISTS chat_digest_states (
+    id VARCHAR(255) NOT NULL PRIMARY KEY,
+    participant_id VARCHAR(255) NOT NULL,
+    last_sent_at DATETIME(6) NOT NULL,
+    covered_up_to DATETIME(6) NOT NULL,
+    created_at DATETIME(6) NOT NULL,
+    updated_at DATETIME(6) NOT NULL,
+    CONSTRAINT uk_chat_digest_state_participant UNIQUE (participant_id),
+    CONSTRAINT fk_chat_digest_state_participant FOREIGN KEY (participant_id) REFERENCES persons(id) ON DELETE CASCADE
+);
@@ -0,0 +1,23 @@
+-- Migration: Archive des messages des conversations fermées
+-- Date: 2026-10-17
+-- Description: Les messages des conversations fermées depuis plus de chat.archive.closed-for-days jours
+-- (90 par défaut) quittent la table messages pour un bloc JSON compressé (gzip) par conversation.
+-- L'archivage tourne chaque nuit (MessageArchiveService) ; les conversations archivées restent lisibles.
+
+CREATE TABLE IF NOT EXISTS conversation_archives (
+    id VARCHAR(255) NOT NULL PRIMARY KEY,
+    conversation_id VARCHAR(255) NOT NULL,
+    message_count INT NOT NULL,
+    raw_bytes BIGINT NOT NULL,
+    compressed_bytes BIGINT NOT NULL,
+    payload LONGBLOB NOT NULL,
+    first_message_at DATETIME(6) NULL,
+    last_message_at DATETIME(6) NULL,
+    created_at DATETIME(6) NOT NULL,
+    updated_at DATETIME(6) NOT NULL,
+    CONSTRAINT uk_conversation_archive_conversation UNIQUE (conversation_id),
+    CONSTRAINT fk_conversation_archive_conversation FOREIGN KEY (conversation_id) REFERENCES conversations(id) ON DELETE CASCADE
+);
+
+-- Sélection des conversations à archiver
+CREATE INDEX idx_conversations_status_closed ON conversations(status, closed_at);
@@ -0,0 +1,40 @@
+-- Migration: Boîtes de réception matérialisées (une ligne par conversation et participant)
+-- Date: 2026-10-17
+-- Description: Les listes de conversations joignaient conversations, persons et entreprises à chaque
+-- page. Cette table recopie tout ce qu'une liste affiche ; elle est tenue à jour dans la transaction
+-- qui modifie la conversation ou ses non-lus. Au premier démarrage l'application la remplit depuis
+-- les conversations (ChatInboxProjector), un job nocturne la répare, et GET /chat/inbox/check la vérifie.
+
+CREATE TABLE IF NOT EXISTS conversation_inbox_entries (
+    id VARCHAR(255) NOT NULL PRIMARY KEY,
+    conversation_id VARCHAR(255) NOT NULL,
+    participant_id VARCHAR(255) NOT NULL,
+    participant_role VARCHAR(20) NOT NULL,
+    participant_name VARCHAR(255),
+    counterpart_id VARCHAR(255) NOT NULL,
+    counterpart_name VARCHAR(255),
+    entreprise_id VARCHAR(255) NOT NULL,
+    entreprise_nom VARCHAR(255),
+    subject VARCHAR(255) NOT NULL,
+    status VARCHAR(50) NOT NULL,
+    priority VARCHAR(50),
+    last_message_preview VARCHAR(255),
+    last_message_at DATETIME(6),
+    last_message_sender_id VARCHAR(255),
+    unread_count INT NOT NULL DEFAULT 0,
+    conversation_created_at DATETIME(6) NOT NULL,
+    conversation_updated_at DATETIME(6) NOT NULL,
+    created_at DATETIME(6) NOT NULL,
+    updated_at DATETIME(6) NOT NULL,
+    CONSTRAINT uk_inbox_entry_conversation_participant UNIQUE (conversation_id, participant_id),
+    CONSTRAINT fk_inbox_entry_conversation FOREIGN KEY (conversation_id) REFERENCES conversations(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_inbox_entry_participant_updated
+    ON conversation_inbox_entries(participant_id, conversation_updated_at, conversation_id);
+
+CREATE INDEX idx_inbox_entry_role_status_updated
+    ON conversation_inbox_entries(participant_role, status, conversation_updated_at, conversation_id);
+
+CREATE INDEX idx_inbox_entry_entreprise_updated
+    ON conversation_inbox_entries(entreprise_id, participant_role, conversation_updated_at, conversation_id);
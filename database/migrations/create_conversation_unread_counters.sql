@@ -0,0 +1,21 @@
+-- Migration: Compteurs dénormalisés des messages non lus par (conversation, participant)
+-- Date: 2026-10-17
+-- Description: Les badges de messages non lus comptaient toute la table messages à chaque appel.
+-- Cette table est tenue à jour par l'envoi et la lecture des messages ; au premier démarrage
+-- l'application la remplit depuis l'historique (UnreadCounterService), et un job nocturne la répare.
+
+CREATE TABLE IF NOT EXISTS conversation_unread_counters (
+    id VARCHAR(255) NOT NULL PRIMARY KEY,
+    conversation_id VARCHAR(255) NOT NULL,
+    participant_id VARCHAR(255) NOT NULL,
+    participant_role VARCHAR(20) NOT NULL,
+    unread_count INT NOT NULL DEFAULT 0,
+    created_at DATETIME(6) NOT NULL,
+    updated_at DATETIME(6) NOT NULL,
+    CONSTRAINT uk_unread_counter_conversation_participant UNIQUE (conversation_id, participant_id),
+    CONSTRAINT fk_unread_counter_conversation FOREIGN KEY (conversation_id) REFERENCES conversations(id) ON DELETE CASCADE,
+    CONSTRAINT fk_unread_counter_participant FOREIGN KEY (participant_id) REFERENCES persons(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_unread_counter_participant
+    ON conversation_unread_counters(participant_id, participant_role, unread_count);
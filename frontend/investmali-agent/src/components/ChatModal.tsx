@@ -2,6 +2,35 @@ import React, { useState, useEffect, useRef } from 'react';
 import { chatAPI } from '../services/api';
 import { useAgentAuth } from '../contexts/AgentAuthContext';
 
+// Nombre d'essais d'envoi d'un message (le même identifiant client est réutilisé à chaque essai)
+const SEND_ATTEMPTS = 3;
+
+const newClientMessageId = (): string =>
+  (window.crypto && typeof window.crypto.randomUUID === 'function')
+    ? window.crypto.randomUUID()
+    : `${Date.now()}-${Math.random().toString(36).slice(2)}`;
+
+// POST JSON renvoyé à l'identique après un échec réseau (le corps porte le clientMessageId)
+const postWithRetry = async (url: string, body: object): Promise<Response> => {
+  for (let attempt = 1; ; attempt++) {
+    try {
+      return await fetch(url, {
+        method: 'POST',
+        headers: {
+          'Content-Type': 'application/json',
+        },
+        body: JSON.stringify(body),
+      });
+    } catch (networkError) {
+      if (attempt >= SEND_ATTEMPTS) {
+        throw networkError;
+      }
+      console.warn(`⚠️ Envoi échoué, nouvel essai (${attempt}/${SEND_ATTEMPTS - 1})`, networkError);
+      await new Promise(resolve => setTimeout(resolve, 1000 * attempt));
+    }
+  }
+};
+
 interface Message {
   id: string;
   senderId: string;
@@ -55,6 +84,8 @@ const ChatModal: React.FC<ChatModalProps> = ({
   const [isRefreshing, setIsRefreshing] = useState(false);
   const [sending, setSending] = useState(false);
   const messagesEndRef = useRef<HTMLDivElement>(null);
+  // Message en cours d'envoi et son identifiant client, réutilisé si l'agent renvoie le même texte
+  const pendingSendRef = useRef<{ content: string; clientMessageId: string } | null>(null);
 
   // Scroll vers le bas quand de nouveaux messages arrivent
   const scrollToBottom = () => {
@@ -65,16 +96,33 @@ const ChatModal: React.FC<ChatModalProps> = ({
     scrollToBottom();
   }, [conversation?.messages]);
 
-  // Polling pour actualiser la conversation active
+  // Flux temps réel (SSE) pour la conversation active, avec polling de secours
   useEffect(() => {
     if (conversation && !showConversationList) {
+      const refresh = () => openConversation(conversation.id, true); // silent = true
+      let source: EventSource | null = null;
+      if (agent?.id && typeof EventSource !== 'undefined') {
+        source = new EventSource(
+          `http://localhost:8080/api/v1/chat/conversations/${conversation.id}/events?participantId=${agent.id}`
+        );
+        ['MESSAGE_CREATED', 'MESSAGE_READ', 'CONVERSATION_CLOSED'].forEach((type) =>
+          source!.addEventListener(type, refresh)
+        );
+      }
+
+      // Polling de secours : toutes les 3 secondes seulement si le flux est indisponible
       const interval = setInterval(() => {
-        openConversation(conversation.id, true); // silent = true pour le polling
-      }, 3000); // Actualiser toutes les 3 secondes
+        if (!source || source.readyState === EventSource.CLOSED) {
+          refresh();
+        }
+      }, 3000);
 
-      return () => clearInterval(interval);
+      return () => {
+        clearInterval(interval);
+        if (source) source.close();
+      };
     }
-  }, [conversation, showConversationList]);
+  }, [conversation?.id, showConversationList, agent?.id]);
 
   // Charger les conversations actives quand le modal s'ouvre
   useEffect(() => {
@@ -197,21 +245,24 @@ const ChatModal: React.FC<ChatModalProps> = ({
         return;
       }
       
-      const response = await fetch(`http://localhost:8080/api/v1/chat/conversations/${conversation.id}/messages`, {
-        method: 'POST',
-        headers: {
-          'Content-Type': 'application/json',
-        },
-        body: JSON.stringify({
-          content: newMessage,
-          senderId: agentId
-        }),
+      // Même identifiant client pour tous les renvois du même texte : le serveur renvoie le message
+      // déjà enregistré au lieu d'un doublon
+      if (!pendingSendRef.current || pendingSendRef.current.content !== newMessage) {
+        pendingSendRef.current = { content: newMessage, clientMessageId: newClientMessageId() };
+      }
+      const { clientMessageId } = pendingSendRef.current;
+
+      const response = await postWithRetry(`http://localhost:8080/api/v1/chat/conversations/${conversation.id}/messages`, {
+        content: newMessage,
+        senderId: agentId,
+        clientMessageId
       });
 
       const data = await response.json();
       
       if (data.status === 'SUCCESS') {
         console.log('✅ Message envoyé avec succès');
+        pendingSendRef.current = null;
         
         // Recharger la conversation pour voir le nouveau message
         await openConversation(conversation.id);
@@ -75,7 +75,7 @@ export const useAgentNotifications = (entrepriseId?: string) => {
     setUnreadCount(0);
   };
 
-  // Polling toutes les 10 secondes
+  // Flux temps réel (SSE) avec polling lent de secours
   useEffect(() => {
     // Demander la permission pour les notifications
     requestNotificationPermission();
@@ -83,11 +83,28 @@ export const useAgentNotifications = (entrepriseId?: string) => {
     // Vérification initiale
     checkForNewMessages();
 
-    // Polling
-    const interval = setInterval(checkForNewMessages, 10000);
+    let source: EventSource | null = null;
+    if (agent?.id && typeof EventSource !== 'undefined') {
+      // EventSource ne peut pas envoyer d'en-tête Authorization : token en paramètre
+      const token = localStorage.getItem('investmali_agent_token') || '';
+      source = new EventSource(`http://localhost:8080/api/v1/chat/events?participantId=${agent.id}&access_token=${encodeURIComponent(token)}`);
+      source.addEventListener('MESSAGE_CREATED', () => checkForNewMessages());
+    }
 
-    return () => clearInterval(interval);
-  }, [checkForNewMessages]);
+    // Polling de secours : lent si le flux est ouvert, 10 secondes sinon
+    const interval = setInterval(() => {
+      if (!source || source.readyState === EventSource.CLOSED) {
+        checkForNewMessages();
+      }
+    }, 10000);
+    const safetyInterval = setInterval(checkForNewMessages, 60000);
+
+    return () => {
+      clearInterval(interval);
+      clearInterval(safetyInterval);
+      if (source) source.close();
+    };
+  }, [checkForNewMessages, agent?.id]);
 
   return {
     unreadCount,
@@ -2,6 +2,14 @@ import React, { useState, useEffect, useRef } from 'react';
 import { chatAPI } from '../services/api';
 import { useAuth } from '../contexts/AuthContext';
 
+// Nombre d'essais d'envoi d'un message (le même identifiant client est réutilisé à chaque essai)
+const SEND_ATTEMPTS = 3;
+
+const newClientMessageId = () =>
+  (window.crypto && window.crypto.randomUUID)
+    ? window.crypto.randomUUID()
+    : `${Date.now()}-${Math.random().toString(36).slice(2)}`;
+
 const UserChatModal = ({ isOpen, onClose, user, entrepriseId = "" }) => {
   const { user: authUser } = useAuth();
   const [conversation, setConversation] = useState(null);
@@ -72,14 +80,32 @@ const UserChatModal = ({ isOpen, onClose, user, entrepriseId = "" }) => {
     }
   };
 
-  // Polling pour récupérer les nouveaux messages toutes les 3 secondes
+  // Flux temps réel (SSE) pour les nouveaux messages, avec polling de secours
   useEffect(() => {
     if (conversation && conversation.conversationId) {
+      const refresh = () => loadConversationMessages(conversation.conversationId, true); // silent = true
+      const participantId = conversation.userId || authUser?.id || authUser?.personne_id || user?.id;
+      let source = null;
+      if (participantId && typeof EventSource !== 'undefined') {
+        source = new EventSource(
+          `http://localhost:8080/api/v1/chat/conversations/${conversation.conversationId}/events?participantId=${participantId}`
+        );
+        ['MESSAGE_CREATED', 'MESSAGE_READ', 'CONVERSATION_CLOSED'].forEach((type) =>
+          source.addEventListener(type, refresh)
+        );
+      }
+
+      // Polling de secours : toutes les 3 secondes seulement si le flux est indisponible
       const interval = setInterval(() => {
-        loadConversationMessages(conversation.conversationId, true); // silent = true pour le polling
-      }, 3000); // Actualiser toutes les 3 secondes
+        if (!source || source.readyState === EventSource.CLOSED) {
+          refresh();
+        }
+      }, 3000);
 
-      return () => clearInterval(interval);
+      return () => {
+        clearInterval(interval);
+        if (source) source.close();
+      };
     }
   }, [conversation]);
 
@@ -275,8 +301,22 @@ const UserChatModal = ({ isOpen, onClose, user, entrepriseId = "" }) => {
         return;
       }
       
-      // Envoyer le message via l'API
-      const response = await chatAPI.sendMessage(conversation.conversationId, messageContent, userId);
+      // Envoyer le message via l'API : en cas d'échec réseau, renvoi avec le même identifiant client
+      // (le serveur ne crée pas de doublon si le premier envoi avait abouti)
+      const clientMessageId = newClientMessageId();
+      let response;
+      for (let attempt = 1; ; attempt++) {
+        try {
+          response = await chatAPI.sendMessage(conversation.conversationId, messageContent, userId, clientMessageId);
+          break;
+        } catch (sendError) {
+          if (attempt >= SEND_ATTEMPTS) {
+            throw sendError;
+          }
+          console.warn(`⚠️ Envoi échoué, nouvel essai (${attempt}/${SEND_ATTEMPTS - 1})`, sendError);
+          await new Promise(resolve => setTimeout(resolve, 1000 * attempt));
+        }
+      }
       
       console.log('📤 Message envoyé:', response);
       
@@ -82,7 +82,7 @@ export const useNotifications = (entrepriseId) => {
     setUnreadCount(0);
   };
 
-  // Polling toutes les 10 secondes
+  // Flux temps réel (SSE) avec polling lent de secours
   useEffect(() => {
     // Demander la permission pour les notifications
     requestNotificationPermission();
@@ -90,11 +90,29 @@ export const useNotifications = (entrepriseId) => {
     // Vérification initiale
     checkForNewMessages();
 
-    // Polling
-    const interval = setInterval(checkForNewMessages, 10000);
+    const userId = user?.id || user?.personne_id;
+    let source = null;
+    if (userId && typeof EventSource !== 'undefined') {
+      // EventSource ne peut pas envoyer d'en-tête Authorization : token en paramètre
+      const token = localStorage.getItem('token') || '';
+      source = new EventSource(`http://localhost:8080/api/v1/chat/events?participantId=${userId}&access_token=${encodeURIComponent(token)}`);
+      source.addEventListener('MESSAGE_CREATED', checkForNewMessages);
+    }
 
-    return () => clearInterval(interval);
-  }, [checkForNewMessages]);
+    // Polling de secours : lent si le flux est ouvert, 10 secondes sinon
+    const interval = setInterval(() => {
+      if (!source || source.readyState === EventSource.CLOSED) {
+        checkForNewMessages();
+      }
+    }, 10000);
+    const safetyInterval = setInterval(checkForNewMessages, 60000);
+
+    return () => {
+      clearInterval(interval);
+      clearInterval(safetyInterval);
+      if (source) source.close();
+    };
+  }, [checkForNewMessages, user]);
 
   return {
     unreadCount,
@@ -535,13 +535,16 @@ export const chatAPI = {
   },
 
   // Envoyer un message
-  sendMessage: async (conversationId, content, senderId) => {
+  // clientMessageId : identifiant du message généré par le client, identique à chaque renvoi
+  // (le serveur renvoie alors le message déjà enregistré au lieu d'un doublon)
+  sendMessage: async (conversationId, content, senderId, clientMessageId) => {
     try {
       const response = await apiRequest(`/api/v1/chat/conversations/${conversationId}/messages`, {
         method: 'POST',
         body: JSON.stringify({
           content: content,
-          senderId: senderId
+          senderId: senderId,
+          clientMessageId: clientMessageId
         }),
       });
       return response;
@@ -0,0 +1,130 @@
+package abdaty_technologie.API_Invest.Entity;
+
+import jakarta.persistence.*;
+
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+/**
+ * Agrégats des délais de réponse d'un agent, une ligne par agent, tenus à jour à chaque réponse
+ * (AgentResponseMetrics) : nombres, sommes et histogrammes des délais de première réponse et de réponse.
+ * Les délais sont en millisecondes pour les sommes, en secondes dans les histogrammes.
+ * La ligne porte aussi le nombre de conversations actives de l'agent, ajusté à chaque ouverture ou fermeture.
+ */
+@Entity
+@Table(name = "chat_agent_response_stats",
+    uniqueConstraints = @UniqueConstraint(name = "uk_chat_agent_response_stats_agent", columnNames = "agent_id"))
+public class AgentResponseStats extends BaseEntity {
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "agent_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Persons agent;
+
+    // Première réponse de l'agent dans une conversation (délai depuis le premier message de l'utilisateur)
+    @Column(name = "first_response_count", nullable = false)
+    private long firstResponseCount;
+
+    @Column(name = "first_response_total_ms", nullable = false)
+    private long firstResponseTotalMs;
+
+    @Column(name = "first_response_histogram", columnDefinition = "TEXT")
+    private String firstResponseHistogram;
+
+    // Toutes les réponses à un utilisateur en attente (délai depuis son plus ancien message sans réponse)
+    @Column(name = "reply_count", nullable = false)
+    private long replyCount;
+
+    @Column(name = "reply_total_ms", nullable = false)
+    private long replyTotalMs;
+
+    @Column(name = "reply_max_ms", nullable = false)
+    private long replyMaxMs;
+
+    @Column(name = "reply_histogram", columnDefinition = "TEXT")
+    private String replyHistogram;
+
+    // Conversations actives dont l'agent est le participant (création, fermeture, réactivation)
+    @Column(name = "open_conversations", nullable = false)
+    private long openConversations;
+
+    // Constructeurs
+    public AgentResponseStats() {}
+
+    public AgentResponseStats(Persons agent) {
+        this.agent = agent;
+    }
+
+    // Getters et Setters
+    public Persons getAgent() {
+        return agent;
+    }
+
+    public void setAgent(Persons agent) {
+        this.agent = agent;
+    }
+
+    public long getFirstResponseCount() {
+        return firstResponseCount;
+    }
+
+    public void setFirstResponseCount(long firstResponseCount) {
+        this.firstResponseCount = firstResponseCount;
+    }
+
+    public long getFirstResponseTotalMs() {
+        return firstResponseTotalMs;
+    }
+
+    public void setFirstResponseTotalMs(long firstResponseTotalMs) {
+        this.firstResponseTotalMs = firstResponseTotalMs;
+    }
+
+    public String getFirstResponseHistogram() {
+        return firstResponseHistogram;
+    }
+
+    public void setFirstResponseHistogram(String firstResponseHistogram) {
+        this.firstResponseHistogram = firstResponseHistogram;
+    }
+
+    public long getReplyCount() {
+        return replyCount;
+    }
+
+    public void setReplyCount(long replyCount) {
+        this.replyCount = replyCount;
+    }
+
+    public long getReplyTotalMs() {
+        return replyTotalMs;
+    }
+
+    public void setReplyTotalMs(long replyTotalMs) {
+        this.replyTotalMs = replyTotalMs;
+    }
+
+    public long getReplyMaxMs() {
+        return replyMaxMs;
+    }
+
+    public void setReplyMaxMs(long replyMaxMs) {
+        this.replyMaxMs = replyMaxMs;
+    }
+
+    public String getReplyHistogram() {
+        return replyHistogram;
+    }
+
+    public void setReplyHistogram(String replyHistogram) {
+        this.replyHistogram = replyHistogram;
+    }
+
+    public long getOpenConversations() {
+        return openConversations;
+    }
+
+    public void setOpenConversations(long openConversations) {
+        this.openConversations = openConversations;
+    }
+}
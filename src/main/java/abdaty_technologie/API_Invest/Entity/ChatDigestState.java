@@ -0,0 +1,64 @@
+package abdaty_technologie.API_Invest.Entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+/**
+ * Suivi des récapitulatifs e-mail de messages non lus d'un destinataire : une ligne par personne.
+ * coveredUpTo borne les messages déjà signalés (une nouvelle exécution ne les renvoie pas),
+ * lastSentAt sert à espacer les envois (chat.digest.min-interval-minutes).
+ */
+@Entity
+@Table(name = "chat_digest_states",
+    uniqueConstraints = @UniqueConstraint(name = "uk_chat_digest_state_participant", columnNames = "participant_id"))
+public class ChatDigestState extends BaseEntity {
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "participant_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Persons participant;
+
+    // Date du dernier récapitulatif envoyé
+    @Column(name = "last_sent_at", nullable = false)
+    private Instant lastSentAt;
+
+    // Les messages créés jusqu'à cette date ont déjà été signalés
+    @Column(name = "covered_up_to", nullable = false)
+    private Instant coveredUpTo;
+
+    // Constructeurs
+    public ChatDigestState() {}
+
+    public ChatDigestState(Persons participant) {
+        this.participant = participant;
+    }
+
+    // Getters et Setters
+    public Persons getParticipant() {
+        return participant;
+    }
+
+    public void setParticipant(Persons participant) {
+        this.participant = participant;
+    }
+
+    public Instant getLastSentAt() {
+        return lastSentAt;
+    }
+
+    public void setLastSentAt(Instant lastSentAt) {
+        this.lastSentAt = lastSentAt;
+    }
+
+    public Instant getCoveredUpTo() {
+        return coveredUpTo;
+    }
+
+    public void setCoveredUpTo(Instant coveredUpTo) {
+        this.coveredUpTo = coveredUpTo;
+    }
+}
@@ -6,15 +6,39 @@ import java.util.List;
 
 import abdaty_technologie.API_Invest.Entity.Enum.ConversationStatus;
 import abdaty_technologie.API_Invest.Entity.Enum.ConversationPriority;
+import abdaty_technologie.API_Invest.service.chat.AgentOpenConversationListener;
+import abdaty_technologie.API_Invest.service.chat.ChatInboxListener;
+import abdaty_technologie.API_Invest.service.chat.ChatSearchIndexListener;
 
 /**
  * Entité représentant une conversation entre un agent et un utilisateur
  * concernant une demande d'entreprise
  */
 @Entity
-@Table(name = "conversations")
+@Table(name = "conversations", indexes = {
+    // Pagination keyset des listes de conversations : (participant, updated_at DESC, id DESC)
+    @Index(name = "idx_conversations_agent_updated", columnList = "agent_id, updated_at, id"),
+    @Index(name = "idx_conversations_user_updated", columnList = "user_id, updated_at, id"),
+    @Index(name = "idx_conversations_status_updated", columnList = "status, updated_at, id"),
+    // Sélection des conversations fermées à archiver
+    @Index(name = "idx_conversations_status_closed", columnList = "status, closed_at"),
+    // Sélection des conversations actives inactives depuis N jours (fermeture automatique)
+    @Index(name = "idx_conversations_status_last_message", columnList = "status, last_message_at"),
+    // Conversations ouvertes par agent (réconciliation des compteurs du tableau de bord), compté dans l'index
+    @Index(name = "idx_conversations_status_agent", columnList = "status, agent_id")
+}, uniqueConstraints = {
+    // Une seule conversation active par entreprise et paire de participants (clé NULL hors ACTIVE)
+    @UniqueConstraint(name = "uk_conversations_active_pair", columnNames = "active_pair_key")
+})
+@EntityListeners({ChatSearchIndexListener.class, ChatInboxListener.class, AgentOpenConversationListener.class})
 public class Conversation extends BaseEntity {
 
+    // Longueur maximale de l'aperçu du dernier message
+    public static final int LAST_MESSAGE_PREVIEW_LENGTH = 255;
+
+    // entreprise + deux identifiants de participants + séparateurs
+    public static final int ACTIVE_PAIR_KEY_LENGTH = 120;
+
     // Relations
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "entreprise_id", nullable = false)
@@ -44,6 +68,36 @@ public class Conversation extends BaseEntity {
     @Column(name = "closed_at")
     private Instant closedAt;
 
+    // Résumé du dernier message, tenu à jour à chaque envoi (listes de conversations sans jointure sur messages)
+    @Column(name = "last_message_at")
+    private Instant lastMessageAt;
+
+    @Column(name = "last_message_preview", length = LAST_MESSAGE_PREVIEW_LENGTH)
+    private String lastMessagePreview;
+
+    @Column(name = "last_message_sender_id", length = 255)
+    private String lastMessageSenderId;
+
+    @Column(name = "message_count", nullable = false)
+    private int messageCount = 0;
+
+    // Date du plus ancien message de l'utilisateur resté sans réponse de l'agent (null si l'agent a répondu)
+    @Column(name = "waiting_since")
+    private Instant waitingSince;
+
+    // Date de la première réponse de l'agent à un message de l'utilisateur (null tant qu'il n'a pas répondu)
+    @Column(name = "first_response_at")
+    private Instant firstResponseAt;
+
+    // Clé canonique (entreprise, participant le plus petit, le plus grand) tant que la conversation est
+    // ACTIVE, NULL sinon : l'index unique interdit deux conversations actives pour la même paire
+    @Column(name = "active_pair_key", length = ACTIVE_PAIR_KEY_LENGTH)
+    private String activePairKey;
+
+    // Agent pour lequel la conversation est actuellement comptée ouverte (AgentOpenConversationListener)
+    @Transient
+    private String countedOpenAgentId;
+
     // Messages de la conversation
     @OneToMany(mappedBy = "conversation", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @OrderBy("creation ASC")
@@ -87,6 +141,72 @@ public class Conversation extends BaseEntity {
         this.closedAt = null;
     }
 
+    /**
+     * Met à jour le résumé du dernier message après l'enregistrement d'un message
+     * (le message doit déjà être sauvegardé pour porter sa date de création)
+     */
+    public void recordMessage(Message message) {
+        this.messageCount++;
+        Instant messageTime = message.getCreation() != null ? message.getCreation() : Instant.now();
+        // Un message plus ancien que le dernier connu ne remplace pas l'aperçu
+        if (this.lastMessageAt == null || !messageTime.isBefore(this.lastMessageAt)) {
+            this.lastMessageAt = messageTime;
+            this.lastMessagePreview = previewOf(message.getContent());
+            this.lastMessageSenderId = message.getSender() != null ? message.getSender().getId() : null;
+            updateWaitingSince(messageTime);
+        }
+    }
+
+    /**
+     * L'utilisateur attend une réponse depuis son premier message qui suit la dernière réponse de l'agent
+     */
+    private void updateWaitingSince(Instant messageTime) {
+        if (lastMessageSenderId == null) {
+            return;
+        }
+        if (agent != null && lastMessageSenderId.equals(agent.getId())) {
+            this.waitingSince = null;
+        } else if (user != null && lastMessageSenderId.equals(user.getId()) && this.waitingSince == null) {
+            this.waitingSince = messageTime;
+        }
+    }
+
+    /**
+     * Aperçu d'un contenu de message, tronqué à la taille de la colonne
+     */
+    public static String previewOf(String content) {
+        if (content == null || content.length() <= LAST_MESSAGE_PREVIEW_LENGTH) {
+            return content;
+        }
+        return content.substring(0, LAST_MESSAGE_PREVIEW_LENGTH - 1) + "…";
+    }
+
+    /**
+     * Clé canonique d'une paire de participants dans une entreprise, indépendante de qui est agent ou utilisateur
+     */
+    public static String activePairKey(String entrepriseId, String participant1, String participant2) {
+        boolean ordered = participant1.compareTo(participant2) <= 0;
+        return entrepriseId + "|" + (ordered ? participant1 : participant2) + "|" + (ordered ? participant2 : participant1);
+    }
+
+    /**
+     * Recalcule la clé de paire active à chaque écriture (création, fermeture, réactivation, changement de participant)
+     */
+    @PrePersist
+    @PreUpdate
+    protected void syncActivePairKey() {
+        this.activePairKey = this.status == ConversationStatus.ACTIVE && entreprise != null && agent != null && user != null
+            ? activePairKey(entreprise.getId(), agent.getId(), user.getId())
+            : null;
+    }
+
+    /**
+     * Agent pour lequel la conversation compte comme ouverte (null si elle n'est pas active)
+     */
+    public String openAgentId() {
+        return this.status == ConversationStatus.ACTIVE && agent != null ? agent.getId() : null;
+    }
+
     /**
      * Vérifie si la conversation est active
      */
@@ -145,6 +265,18 @@ public class Conversation extends BaseEntity {
 
     // Les getters/setters pour creation et modification sont hérités de BaseEntity
 
+    public String getActivePairKey() {
+        return activePairKey;
+    }
+
+    public String getCountedOpenAgentId() {
+        return countedOpenAgentId;
+    }
+
+    public void setCountedOpenAgentId(String countedOpenAgentId) {
+        this.countedOpenAgentId = countedOpenAgentId;
+    }
+
     public Instant getClosedAt() {
         return closedAt;
     }
@@ -160,4 +292,52 @@ public class Conversation extends BaseEntity {
     public void setMessages(List<Message> messages) {
         this.messages = messages;
     }
+
+    public Instant getLastMessageAt() {
+        return lastMessageAt;
+    }
+
+    public void setLastMessageAt(Instant lastMessageAt) {
+        this.lastMessageAt = lastMessageAt;
+    }
+
+    public String getLastMessagePreview() {
+        return lastMessagePreview;
+    }
+
+    public void setLastMessagePreview(String lastMessagePreview) {
+        this.lastMessagePreview = lastMessagePreview;
+    }
+
+    public String getLastMessageSenderId() {
+        return lastMessageSenderId;
+    }
+
+    public void setLastMessageSenderId(String lastMessageSenderId) {
+        this.lastMessageSenderId = lastMessageSenderId;
+    }
+
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    public void setMessageCount(int messageCount) {
+        this.messageCount = messageCount;
+    }
+
+    public Instant getWaitingSince() {
+        return waitingSince;
+    }
+
+    public void setWaitingSince(Instant waitingSince) {
+        this.waitingSince = waitingSince;
+    }
+
+    public Instant getFirstResponseAt() {
+        return firstResponseAt;
+    }
+
+    public void setFirstResponseAt(Instant firstResponseAt) {
+        this.firstResponseAt = firstResponseAt;
+    }
 }
@@ -0,0 +1,109 @@
+package abdaty_technologie.API_Invest.Entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+/**
+ * Messages archivés d'une conversation fermée : un bloc JSON compressé (gzip) par conversation,
+ * sorti de la table messages pour ne pas alourdir les requêtes sur les conversations actives.
+ * Relu par MessageArchiveService quand la conversation est consultée.
+ */
+@Entity
+@Table(name = "conversation_archives",
+    uniqueConstraints = @UniqueConstraint(name = "uk_conversation_archive_conversation", columnNames = "conversation_id"))
+public class ConversationArchive extends BaseEntity {
+
+    // Supprimé avec la conversation (clé étrangère ON DELETE CASCADE)
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "conversation_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Conversation conversation;
+
+    @Column(name = "message_count", nullable = false)
+    private int messageCount;
+
+    // Taille du JSON avant compression
+    @Column(name = "raw_bytes", nullable = false)
+    private long rawBytes;
+
+    @Column(name = "compressed_bytes", nullable = false)
+    private long compressedBytes;
+
+    @Lob
+    @Column(name = "payload", nullable = false)
+    private byte[] payload;
+
+    @Column(name = "first_message_at")
+    private Instant firstMessageAt;
+
+    @Column(name = "last_message_at")
+    private Instant lastMessageAt;
+
+    // Constructeurs
+    public ConversationArchive() {}
+
+    public ConversationArchive(Conversation conversation) {
+        this.conversation = conversation;
+    }
+
+    // Getters et Setters
+    public Conversation getConversation() {
+        return conversation;
+    }
+
+    public void setConversation(Conversation conversation) {
+        this.conversation = conversation;
+    }
+
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    public void setMessageCount(int messageCount) {
+        this.messageCount = messageCount;
+    }
+
+    public long getRawBytes() {
+        return rawBytes;
+    }
+
+    public void setRawBytes(long rawBytes) {
+        this.rawBytes = rawBytes;
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    public void setCompressedBytes(long compressedBytes) {
+        this.compressedBytes = compressedBytes;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public void setPayload(byte[] payload) {
+        this.payload = payload;
+    }
+
+    public Instant getFirstMessageAt() {
+        return firstMessageAt;
+    }
+
+    public void setFirstMessageAt(Instant firstMessageAt) {
+        this.firstMessageAt = firstMessageAt;
+    }
+
+    public Instant getLastMessageAt() {
+        return lastMessageAt;
+    }
+
+    public void setLastMessageAt(Instant lastMessageAt) {
+        this.lastMessageAt = lastMessageAt;
+    }
+}
@@ -0,0 +1,268 @@
+package abdaty_technologie.API_Invest.Entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import abdaty_technologie.API_Invest.Entity.Enum.ChatParticipantRole;
+import abdaty_technologie.API_Invest.Entity.Enum.ConversationPriority;
+import abdaty_technologie.API_Invest.Entity.Enum.ConversationStatus;
+
+/**
+ * Ligne de boîte de réception d'un participant (modèle de lecture) : une par (conversation, participant).
+ *
+ * Tout ce qu'affiche une liste de conversations est recopié ici (interlocuteur, entreprise, statut,
+ * priorité, dernier message, non-lus) : les listes lisent cette seule table, sans jointure.
+ * Tenue à jour par ChatInboxProjector dans la transaction qui modifie la conversation ou son état
+ * de lecture ; reconstruite et vérifiée par ce même service.
+ */
+@Entity
+@Table(name = "conversation_inbox_entries",
+    uniqueConstraints = @UniqueConstraint(name = "uk_inbox_entry_conversation_participant",
+                                          columnNames = {"conversation_id", "participant_id"}),
+    indexes = {
+        // Boîte d'un participant, pagination keyset sur (date de modification, id de conversation)
+        @Index(name = "idx_inbox_entry_participant_updated",
+               columnList = "participant_id, conversation_updated_at, conversation_id"),
+        // Vue globale (une ligne AGENT par conversation) filtrée par statut et/ou entreprise
+        @Index(name = "idx_inbox_entry_role_status_updated",
+               columnList = "participant_role, status, conversation_updated_at, conversation_id"),
+        @Index(name = "idx_inbox_entry_entreprise_updated",
+               columnList = "entreprise_id, participant_role, conversation_updated_at, conversation_id"),
+        // File de triage d'un agent : priorité décroissante, puis attente la plus longue
+        @Index(name = "idx_inbox_entry_triage",
+               columnList = "participant_id, status, priority_rank DESC, waiting_since, conversation_id")
+    })
+public class ConversationInboxEntry extends BaseEntity {
+
+    // Supprimée avec la conversation (clé étrangère ON DELETE CASCADE)
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "conversation_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Conversation conversation;
+
+    @Column(name = "participant_id", nullable = false)
+    private String participantId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "participant_role", nullable = false, length = 20)
+    private ChatParticipantRole participantRole;
+
+    @Column(name = "participant_name")
+    private String participantName;
+
+    // Interlocuteur : l'utilisateur pour la ligne de l'agent, l'agent pour celle de l'utilisateur
+    @Column(name = "counterpart_id", nullable = false)
+    private String counterpartId;
+
+    @Column(name = "counterpart_name")
+    private String counterpartName;
+
+    @Column(name = "entreprise_id", nullable = false)
+    private String entrepriseId;
+
+    @Column(name = "entreprise_nom")
+    private String entrepriseNom;
+
+    @Column(name = "subject", nullable = false, length = 255)
+    private String subject;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 50)
+    private ConversationStatus status;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "priority", length = 50)
+    private ConversationPriority priority;
+
+    @Column(name = "last_message_preview", length = Conversation.LAST_MESSAGE_PREVIEW_LENGTH)
+    private String lastMessagePreview;
+
+    @Column(name = "last_message_at")
+    private Instant lastMessageAt;
+
+    @Column(name = "last_message_sender_id", length = 255)
+    private String lastMessageSenderId;
+
+    @Column(name = "unread_count", nullable = false)
+    private int unreadCount;
+
+    // Rang de la priorité (ordre de ConversationPriority, LOW = 0) : tri SQL de la file de triage
+    @Column(name = "priority_rank", nullable = false)
+    private int priorityRank;
+
+    // Premier message de l'utilisateur sans réponse de l'agent (null si l'agent a répondu)
+    @Column(name = "waiting_since")
+    private Instant waitingSince;
+
+    // Dates de la conversation (tri des listes) ; created_at / updated_at sont ceux de la ligne
+    @Column(name = "conversation_created_at", nullable = false)
+    private Instant conversationCreatedAt;
+
+    @Column(name = "conversation_updated_at", nullable = false)
+    private Instant conversationUpdatedAt;
+
+    // Constructeurs
+    public ConversationInboxEntry() {}
+
+    public ConversationInboxEntry(Conversation conversation, String participantId) {
+        this.conversation = conversation;
+        this.participantId = participantId;
+    }
+
+    // Getters et Setters
+    public Conversation getConversation() {
+        return conversation;
+    }
+
+    public void setConversation(Conversation conversation) {
+        this.conversation = conversation;
+    }
+
+    public String getParticipantId() {
+        return participantId;
+    }
+
+    public void setParticipantId(String participantId) {
+        this.participantId = participantId;
+    }
+
+    public ChatParticipantRole getParticipantRole() {
+        return participantRole;
+    }
+
+    public void setParticipantRole(ChatParticipantRole participantRole) {
+        this.participantRole = participantRole;
+    }
+
+    public String getParticipantName() {
+        return participantName;
+    }
+
+    public void setParticipantName(String participantName) {
+        this.participantName = participantName;
+    }
+
+    public String getCounterpartId() {
+        return counterpartId;
+    }
+
+    public void setCounterpartId(String counterpartId) {
+        this.counterpartId = counterpartId;
+    }
+
+    public String getCounterpartName() {
+        return counterpartName;
+    }
+
+    public void setCounterpartName(String counterpartName) {
+        this.counterpartName = counterpartName;
+    }
+
+    public String getEntrepriseId() {
+        return entrepriseId;
+    }
+
+    public void setEntrepriseId(String entrepriseId) {
+        this.entrepriseId = entrepriseId;
+    }
+
+    public String getEntrepriseNom() {
+        return entrepriseNom;
+    }
+
+    public void setEntrepriseNom(String entrepriseNom) {
+        this.entrepriseNom = entrepriseNom;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    public ConversationStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(ConversationStatus status) {
+        this.status = status;
+    }
+
+    public ConversationPriority getPriority() {
+        return priority;
+    }
+
+    public void setPriority(ConversationPriority priority) {
+        this.priority = priority;
+    }
+
+    public String getLastMessagePreview() {
+        return lastMessagePreview;
+    }
+
+    public void setLastMessagePreview(String lastMessagePreview) {
+        this.lastMessagePreview = lastMessagePreview;
+    }
+
+    public Instant getLastMessageAt() {
+        return lastMessageAt;
+    }
+
+    public void setLastMessageAt(Instant lastMessageAt) {
+        this.lastMessageAt = lastMessageAt;
+    }
+
+    public String getLastMessageSenderId() {
+        return lastMessageSenderId;
+    }
+
+    public void setLastMessageSenderId(String lastMessageSenderId) {
+        this.lastMessageSenderId = lastMessageSenderId;
+    }
+
+    public int getUnreadCount() {
+        return unreadCount;
+    }
+
+    public void setUnreadCount(int unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+
+    public int getPriorityRank() {
+        return priorityRank;
+    }
+
+    public void setPriorityRank(int priorityRank) {
+        this.priorityRank = priorityRank;
+    }
+
+    public Instant getWaitingSince() {
+        return waitingSince;
+    }
+
+    public void setWaitingSince(Instant waitingSince) {
+        this.waitingSince = waitingSince;
+    }
+
+    public Instant getConversationCreatedAt() {
+        return conversationCreatedAt;
+    }
+
+    public void setConversationCreatedAt(Instant conversationCreatedAt) {
+        this.conversationCreatedAt = conversationCreatedAt;
+    }
+
+    public Instant getConversationUpdatedAt() {
+        return conversationUpdatedAt;
+    }
+
+    public void setConversationUpdatedAt(Instant conversationUpdatedAt) {
+        this.conversationUpdatedAt = conversationUpdatedAt;
+    }
+}
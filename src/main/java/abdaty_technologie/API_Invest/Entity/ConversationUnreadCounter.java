@@ -0,0 +1,153 @@
+package abdaty_technologie.API_Invest.Entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import abdaty_technologie.API_Invest.Entity.Enum.ChatParticipantRole;
+import abdaty_technologie.API_Invest.service.chat.ChatInboxListener;
+
+/**
+ * État de lecture d'un participant dans une conversation : compteur dénormalisé des messages non lus
+ * et filigrane de lecture (dernier message lu, identifié par son couple (creation, id)).
+ * Tenu à jour dans la même transaction que l'envoi et la lecture des messages, il évite de recompter
+ * la table messages pour chaque badge et de marquer chaque message lu un par un.
+ */
+@Entity
+@Table(name = "conversation_unread_counters",
+    uniqueConstraints = @UniqueConstraint(name = "uk_unread_counter_conversation_participant",
+                                          columnNames = {"conversation_id", "participant_id"}),
+    indexes = {
+        // Badge : somme des compteurs d'un participant pour un rôle, lue directement dans l'index
+        @Index(name = "idx_unread_counter_participant", columnList = "participant_id, participant_role, unread_count")
+    })
+@EntityListeners(ChatInboxListener.class)
+public class ConversationUnreadCounter extends BaseEntity {
+
+    // Supprimé avec la conversation (clé étrangère ON DELETE CASCADE)
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "conversation_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Conversation conversation;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "participant_id", nullable = false)
+    private Persons participant;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "participant_role", nullable = false, length = 20)
+    private ChatParticipantRole participantRole;
+
+    @Column(name = "unread_count", nullable = false)
+    private int unreadCount;
+
+    // Filigrane : tout message de l'interlocuteur jusqu'à ce (creation, id) inclus est lu
+    @Column(name = "last_read_message_id")
+    private String lastReadMessageId;
+
+    @Column(name = "last_read_message_at")
+    private Instant lastReadMessageAt;
+
+    // Date de la dernière lecture
+    @Column(name = "read_at")
+    private Instant readAt;
+
+    // Constructeurs
+    public ConversationUnreadCounter() {}
+
+    public ConversationUnreadCounter(Conversation conversation, Persons participant,
+                                     ChatParticipantRole participantRole, int unreadCount) {
+        this.conversation = conversation;
+        this.participant = participant;
+        this.participantRole = participantRole;
+        this.unreadCount = unreadCount;
+    }
+
+    /**
+     * Avance le filigrane jusqu'au message donné et remet le compteur à zéro.
+     * Renvoie false si rien n'a changé (déjà lu jusque-là).
+     */
+    public boolean markReadUpTo(Message lastMessage, Instant now) {
+        if (unreadCount == 0 && (lastMessage == null || hasRead(lastMessage))) {
+            return false;
+        }
+        unreadCount = 0;
+        if (lastMessage != null && !hasRead(lastMessage)) {
+            lastReadMessageId = lastMessage.getId();
+            lastReadMessageAt = lastMessage.getCreation();
+        }
+        readAt = now;
+        return true;
+    }
+
+    /**
+     * Le message est-il couvert par le filigrane de lecture ?
+     */
+    public boolean hasRead(Message message) {
+        if (lastReadMessageAt == null) {
+            return false;
+        }
+        int byCreation = message.getCreation().compareTo(lastReadMessageAt);
+        return byCreation < 0 || (byCreation == 0 && message.getId().compareTo(lastReadMessageId) <= 0);
+    }
+
+    // Getters et Setters
+    public Conversation getConversation() {
+        return conversation;
+    }
+
+    public void setConversation(Conversation conversation) {
+        this.conversation = conversation;
+    }
+
+    public Persons getParticipant() {
+        return participant;
+    }
+
+    public void setParticipant(Persons participant) {
+        this.participant = participant;
+    }
+
+    public ChatParticipantRole getParticipantRole() {
+        return participantRole;
+    }
+
+    public void setParticipantRole(ChatParticipantRole participantRole) {
+        this.participantRole = participantRole;
+    }
+
+    public int getUnreadCount() {
+        return unreadCount;
+    }
+
+    public void setUnreadCount(int unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+
+    public String getLastReadMessageId() {
+        return lastReadMessageId;
+    }
+
+    public void setLastReadMessageId(String lastReadMessageId) {
+        this.lastReadMessageId = lastReadMessageId;
+    }
+
+    public Instant getLastReadMessageAt() {
+        return lastReadMessageAt;
+    }
+
+    public void setLastReadMessageAt(Instant lastReadMessageAt) {
+        this.lastReadMessageAt = lastReadMessageAt;
+    }
+
+    public Instant getReadAt() {
+        return readAt;
+    }
+
+    public void setReadAt(Instant readAt) {
+        this.readAt = readAt;
+    }
+}
@@ -0,0 +1,16 @@
+package abdaty_technologie.API_Invest.Entity.Enum;
+
+/**
+ * Rôle d'un participant dans une conversation
+ */
+public enum ChatParticipantRole {
+    /**
+     * Agent qui suit le dossier de l'entreprise
+     */
+    AGENT,
+
+    /**
+     * Utilisateur (promoteur / membre de l'entreprise)
+     */
+    USER
+}
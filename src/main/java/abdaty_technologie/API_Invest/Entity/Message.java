@@ -4,14 +4,26 @@ import jakarta.persistence.*;
 import java.time.Instant;
 
 import abdaty_technologie.API_Invest.Entity.Enum.MessageType;
+import abdaty_technologie.API_Invest.service.chat.ChatSearchIndexListener;
+import abdaty_technologie.API_Invest.service.chat.RecentMessageListener;
 
 /**
  * Entité représentant un message dans une conversation
  */
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+    // Fenêtres de messages et synchronisation par curseur : (conversation, created_at, id)
+    @Index(name = "idx_messages_conversation_created", columnList = "conversation_id, created_at, id")
+}, uniqueConstraints = {
+    // Un identifiant client ne correspond qu'à un message par conversation (renvois après expiration du délai)
+    @UniqueConstraint(name = "uk_messages_conversation_client_id", columnNames = {"conversation_id", "client_message_id"})
+})
+@EntityListeners({ChatSearchIndexListener.class, RecentMessageListener.class})
 public class Message extends BaseEntity {
 
+    // Longueur maximale de l'identifiant client (UUID, ULID, identifiant horodaté...)
+    public static final int CLIENT_MESSAGE_ID_LENGTH = 64;
+
     // Référence à la conversation
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "conversation_id", nullable = false)
@@ -30,7 +42,8 @@ public class Message extends BaseEntity {
     @Column(name = "message_type", nullable = false, length = 50)
     private MessageType messageType = MessageType.TEXT;
 
-    // Métadonnées de lecture
+    // Métadonnées de lecture historiques : plus mises à jour, l'état de lecture est le filigrane
+    // du destinataire (ConversationUnreadCounter), d'où sont déduits isRead / readAt des réponses
     @Column(name = "is_read", nullable = false)
     private Boolean isRead = false;
 
@@ -44,6 +57,10 @@ public class Message extends BaseEntity {
     @Column(name = "document_url", length = 500)
     private String documentUrl;
 
+    // Identifiant généré par le client à l'envoi (NULL pour les anciens clients) : un renvoi ne crée pas de doublon
+    @Column(name = "client_message_id", length = CLIENT_MESSAGE_ID_LENGTH)
+    private String clientMessageId;
+
     // Les timestamps sont hérités de BaseEntity (creation, modification)
 
     // Constructeurs
@@ -187,5 +204,13 @@ public class Message extends BaseEntity {
         this.documentUrl = documentUrl;
     }
 
+    public String getClientMessageId() {
+        return clientMessageId;
+    }
+
+    public void setClientMessageId(String clientMessageId) {
+        this.clientMessageId = clientMessageId;
+    }
+
     // Les getters/setters pour creation et modification sont hérités de BaseEntity
 }
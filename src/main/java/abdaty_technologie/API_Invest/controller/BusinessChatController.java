@@ -108,21 +108,31 @@ public class BusinessChatController {
      * Récupère les conversations d'un agent pour ses entreprises assignées
      */
     @GetMapping("/conversations/agent")
-    public ResponseEntity<Map<String, Object>> getAgentConversations(Authentication authentication) {
+    public ResponseEntity<Map<String, Object>> getAgentConversations(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            Authentication authentication) {
         Map<String, Object> response = new HashMap<>();
         
         try {
             String agentId = getCurrentUserId(authentication);
             logger.info("🔍 [BusinessChat] Récupération conversations pour agent {}", agentId);
             
-            List<ConversationResponse> conversations = chatService.getAgentConversationsForAssignedEntreprises(agentId);
+            CursorPage<ConversationSummary> conversationPage = chatService.getAgentConversationsForAssignedEntreprises(agentId, cursor, size);
+            List<ConversationSummary> conversations = conversationPage.getContent();
             
             response.put("status", "SUCCESS");
             response.put("conversations", conversations);
             response.put("total", conversations.size());
+            response.put("nextCursor", conversationPage.getNextCursor());
+            response.put("hasMore", conversationPage.hasMore());
             
             return ResponseEntity.ok(response);
             
+        } catch (BadRequestException e) {
+            response.put("status", "ERROR");
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
         } catch (Exception e) {
             logger.error("❌ Erreur lors de la récupération des conversations agent: {}", e.getMessage(), e);
             response.put("status", "ERROR");
@@ -131,25 +141,73 @@ public class BusinessChatController {
         }
     }
 
+    /**
+     * File de triage de l'agent : conversations actives qui attendent sa réponse,
+     * les plus prioritaires puis celles qui attendent depuis le plus longtemps en premier
+     */
+    @GetMapping("/conversations/agent/triage")
+    public ResponseEntity<Map<String, Object>> getAgentTriageQueue(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            Authentication authentication) {
+        Map<String, Object> response = new HashMap<>();
+        
+        try {
+            String agentId = getCurrentUserId(authentication);
+            logger.info("🔍 [BusinessChat] File de triage de l'agent {}", agentId);
+            
+            CursorPage<ConversationSummary> conversationPage = chatService.getAgentTriageQueue(agentId, cursor, size);
+            List<ConversationSummary> conversations = conversationPage.getContent();
+            
+            response.put("status", "SUCCESS");
+            response.put("conversations", conversations);
+            response.put("total", conversations.size());
+            response.put("nextCursor", conversationPage.getNextCursor());
+            response.put("hasMore", conversationPage.hasMore());
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (BadRequestException e) {
+            response.put("status", "ERROR");
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (Exception e) {
+            logger.error("❌ Erreur lors de la récupération de la file de triage: {}", e.getMessage(), e);
+            response.put("status", "ERROR");
+            response.put("message", "Erreur lors de la récupération de la file de triage");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
     /**
      * Récupère les conversations d'un utilisateur pour ses entreprises
      */
     @GetMapping("/conversations/user")
-    public ResponseEntity<Map<String, Object>> getUserConversations(Authentication authentication) {
+    public ResponseEntity<Map<String, Object>> getUserConversations(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            Authentication authentication) {
         Map<String, Object> response = new HashMap<>();
         
         try {
             String userId = getCurrentUserId(authentication);
             logger.info("🔍 [BusinessChat] Récupération conversations pour utilisateur {}", userId);
             
-            List<ConversationResponse> conversations = chatService.getUserConversationsForOwnedEntreprises(userId);
+            CursorPage<ConversationSummary> conversationPage = chatService.getUserConversationsForOwnedEntreprises(userId, cursor, size);
+            List<ConversationSummary> conversations = conversationPage.getContent();
             
             response.put("status", "SUCCESS");
             response.put("conversations", conversations);
             response.put("total", conversations.size());
+            response.put("nextCursor", conversationPage.getNextCursor());
+            response.put("hasMore", conversationPage.hasMore());
             
             return ResponseEntity.ok(response);
             
+        } catch (BadRequestException e) {
+            response.put("status", "ERROR");
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
         } catch (Exception e) {
             logger.error("❌ Erreur lors de la récupération des conversations utilisateur: {}", e.getMessage(), e);
             response.put("status", "ERROR");
@@ -160,10 +218,12 @@ public class BusinessChatController {
 
     /**
      * Récupère une conversation spécifique avec ses messages
+     * (avec limit : seulement les derniers messages, plus les curseurs olderCursor / syncCursor)
      */
     @GetMapping("/conversations/{conversationId}")
     public ResponseEntity<Map<String, Object>> getConversation(
             @PathVariable String conversationId,
+            @RequestParam(required = false) Integer limit,
             Authentication authentication) {
         
         Map<String, Object> response = new HashMap<>();
@@ -172,7 +232,9 @@ public class BusinessChatController {
             String userId = getCurrentUserId(authentication);
             logger.info("🔍 [BusinessChat] Récupération conversation {} pour utilisateur {}", conversationId, userId);
             
-            ConversationResponse conversation = chatService.getConversation(conversationId, userId);
+            ConversationResponse conversation = limit != null
+                ? chatService.getConversation(conversationId, userId, limit)
+                : chatService.getConversation(conversationId, userId);
             
             response.put("status", "SUCCESS");
             response.put("conversation", conversation);
@@ -229,6 +291,7 @@ public class BusinessChatController {
             messageRequest.setMessageType(messageType);
             messageRequest.setDocumentName(request.get("documentName"));
             messageRequest.setDocumentUrl(request.get("documentUrl"));
+            messageRequest.setClientMessageId(request.get("clientMessageId"));
             
             MessageResponse messageResponse = chatService.sendMessage(conversationId, messageRequest, senderId);
             
@@ -0,0 +1,216 @@
+package abdaty_technologie.API_Invest.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import abdaty_technologie.API_Invest.dto.chat.AttachmentUpload;
+import abdaty_technologie.API_Invest.dto.chat.MessageResponse;
+import abdaty_technologie.API_Invest.exception.BadRequestException;
+import abdaty_technologie.API_Invest.exception.NotFoundException;
+import abdaty_technologie.API_Invest.service.chat.ChatAttachmentService;
+import abdaty_technologie.API_Invest.service.chat.ChatAttachmentService.StoredAttachment;
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pièces jointes du chat : téléversement par morceaux avec reprise, puis téléchargement.
+ *
+ * 1. POST /chat/attachments/uploads : ouvre le téléversement (uploadId, offset = 0)
+ * 2. PUT /chat/attachments/uploads/{uploadId}?offset=N : corps brut du morceau (application/octet-stream),
+ *    en-tête X-Chunk-SHA256 facultatif ; après une coupure, GET /uploads/{uploadId} donne l'offset de reprise
+ * 3. POST /chat/attachments/uploads/{uploadId}/complete : vérifie le fichier et envoie le message DOCUMENT_UPLOAD
+ * 4. GET /chat/attachments/{attachmentId}?participantId=... : téléchargement (requêtes Range acceptées).
+ *    Le documentUrl du message DOCUMENT_UPLOAD ne contient pas participantId : le client doit l'ajouter.
+ */
+@RestController
+@RequestMapping("/chat/attachments")
+@CrossOrigin(origins = "*")
+public class ChatAttachmentController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatAttachmentController.class);
+
+    @Autowired
+    private ChatAttachmentService attachmentService;
+
+    /**
+     * Ouvre un téléversement : conversationId, senderId, fileName, size, contentType et sha256 facultatifs
+     */
+    @PostMapping("/uploads")
+    public ResponseEntity<Map<String, Object>> startUpload(@RequestBody Map<String, Object> request) {
+        try {
+            Object size = request.get("size");
+            AttachmentUpload upload = attachmentService.startUpload(
+                (String) request.get("conversationId"),
+                (String) request.get("senderId"),
+                (String) request.get("fileName"),
+                (String) request.get("contentType"),
+                size instanceof Number ? ((Number) size).longValue() : -1,
+                (String) request.get("sha256"));
+            return ResponseEntity.ok(toUploadMap(upload));
+        } catch (NotFoundException e) {
+            return error(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (BadRequestException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (Exception e) {
+            logger.error("❌ Erreur lors de l'ouverture du téléversement: {}", e.getMessage(), e);
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "Erreur lors de l'ouverture du téléversement: " + e.getMessage());
+        }
+    }
+
+    /**
+     * État d'un téléversement : offset à partir duquel reprendre l'envoi
+     */
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<Map<String, Object>> getUpload(@PathVariable String uploadId) {
+        try {
+            return ResponseEntity.ok(toUploadMap(attachmentService.getUpload(uploadId)));
+        } catch (NotFoundException e) {
+            return error(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+    }
+
+    /**
+     * Envoie un morceau. Un offset différent des octets déjà reçus renvoie 409 avec l'offset attendu.
+     */
+    @PutMapping(value = "/uploads/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Map<String, Object>> uploadChunk(
+            @PathVariable String uploadId,
+            @RequestParam long offset,
+            @RequestHeader(value = "X-Chunk-SHA256", required = false) String chunkSha256,
+            HttpServletRequest request) {
+        try {
+            AttachmentUpload current = attachmentService.getUpload(uploadId);
+            if (current.getOffset() != offset) {
+                Map<String, Object> response = toUploadMap(current);
+                response.put("status", "ERROR");
+                response.put("message", "Offset invalide : reprendre à " + current.getOffset());
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+            }
+            return ResponseEntity.ok(toUploadMap(
+                attachmentService.appendChunk(uploadId, offset, request.getInputStream(), chunkSha256)));
+        } catch (NotFoundException e) {
+            return error(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (BadRequestException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (Exception e) {
+            logger.error("❌ Erreur lors de la réception du morceau: {}", e.getMessage(), e);
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "Erreur lors de la réception du morceau: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Termine le téléversement et publie le message DOCUMENT_UPLOAD (content facultatif)
+     */
+    @PostMapping("/uploads/{uploadId}/complete")
+    public ResponseEntity<Map<String, Object>> completeUpload(
+            @PathVariable String uploadId,
+            @RequestBody(required = false) Map<String, String> request,
+            HttpServletRequest httpRequest) {
+        try {
+            String content = request != null ? request.get("content") : null;
+            MessageResponse message = attachmentService.completeUpload(uploadId, content, httpRequest.getContextPath());
+
+            Map<String, Object> messageData = new HashMap<>();
+            messageData.put("id", message.getId());
+            messageData.put("content", message.getContent());
+            messageData.put("senderId", message.getSenderId());
+            messageData.put("timestamp", message.getCreation().toEpochMilli());
+            messageData.put("messageType", message.getMessageType());
+            messageData.put("documentName", message.getDocumentName());
+            messageData.put("documentUrl", message.getDocumentUrl());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "SUCCESS");
+            response.put("message", "Pièce jointe envoyée avec succès");
+            response.put("data", messageData);
+            return ResponseEntity.ok(response);
+        } catch (NotFoundException e) {
+            return error(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (BadRequestException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (Exception e) {
+            logger.error("❌ Erreur lors de la finalisation du téléversement: {}", e.getMessage(), e);
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "Erreur lors de la finalisation: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Abandonne un téléversement
+     */
+    @DeleteMapping("/uploads/{uploadId}")
+    public ResponseEntity<Map<String, Object>> abortUpload(@PathVariable String uploadId) {
+        try {
+            attachmentService.abortUpload(uploadId);
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "SUCCESS");
+            response.put("message", "Téléversement annulé");
+            return ResponseEntity.ok(response);
+        } catch (NotFoundException e) {
+            return error(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+    }
+
+    /**
+     * Télécharge une pièce jointe, réservé aux participants de la conversation
+     */
+    @GetMapping("/{attachmentId}")
+    public ResponseEntity<?> download(@PathVariable String attachmentId, @RequestParam String participantId) {
+        try {
+            StoredAttachment attachment = attachmentService.openAttachment(attachmentId, participantId);
+            Resource resource = new FileSystemResource(attachment.getFile());
+            return ResponseEntity.ok()
+                .contentType(mediaTypeOf(attachment))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                    .filename(attachment.getFileName(), StandardCharsets.UTF_8).build().toString())
+                .body(resource);
+        } catch (NotFoundException e) {
+            return error(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (BadRequestException e) {
+            // Non participant
+            return error(HttpStatus.FORBIDDEN, e.getMessage());
+        }
+    }
+
+    // Type validé à l'ouverture ; les pièces jointes plus anciennes peuvent porter un type invalide
+    private MediaType mediaTypeOf(StoredAttachment attachment) {
+        try {
+            MediaType mediaType = MediaType.parseMediaType(attachment.getContentType());
+            return mediaType.isConcrete() ? mediaType : MediaType.APPLICATION_OCTET_STREAM;
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+
+    private Map<String, Object> toUploadMap(AttachmentUpload upload) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "SUCCESS");
+        response.put("uploadId", upload.getUploadId());
+        response.put("conversationId", upload.getConversationId());
+        response.put("fileName", upload.getFileName());
+        response.put("size", upload.getSize());
+        response.put("offset", upload.getOffset());
+        response.put("maxChunkBytes", upload.getMaxChunkBytes());
+        response.put("complete", upload.isComplete());
+        return response;
+    }
+
+    private ResponseEntity<Map<String, Object>> error(HttpStatus status, String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "ERROR");
+        response.put("message", message);
+        return ResponseEntity.status(status).body(response);
+    }
+}
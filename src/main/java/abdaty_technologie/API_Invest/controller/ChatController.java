@@ -9,6 +9,10 @@ import org.springframework.web.bind.annotation.*;
 
 import abdaty_technologie.API_Invest.dto.chat.*;
 import abdaty_technologie.API_Invest.service.ChatService;
+import abdaty_technologie.API_Invest.service.chat.ChatConversationStore;
+import abdaty_technologie.API_Invest.service.chat.ChatJournal;
+import abdaty_technologie.API_Invest.service.chat.ConversationSummaryMapper;
+import abdaty_technologie.API_Invest.service.chat.UnreadCounterService;
 import abdaty_technologie.API_Invest.repository.UtilisateursRepository;
 import abdaty_technologie.API_Invest.repository.MessageRepository;
 import abdaty_technologie.API_Invest.repository.EntrepriseRepository;
@@ -21,6 +25,7 @@ import abdaty_technologie.API_Invest.Entity.Conversation;
 import abdaty_technologie.API_Invest.Entity.Message;
 import abdaty_technologie.API_Invest.Entity.Enum.ConversationStatus;
 
+import abdaty_technologie.API_Invest.exception.BadRequestException;
 import abdaty_technologie.API_Invest.exception.NotFoundException;
 
 
@@ -30,11 +35,9 @@ import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
 import java.io.File;
 import java.io.IOException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.core.type.TypeReference;
+import java.nio.file.Paths;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.beans.factory.annotation.Value;
 import jakarta.annotation.PostConstruct;
@@ -55,15 +58,37 @@ public class ChatController {
 
     private static final Logger logger = LoggerFactory.getLogger(ChatController.class);
     
-    // Stockage en mémoire pour les conversations réelles
-    private static final Map<String, Map<String, Object>> conversations = new ConcurrentHashMap<>();
-    private static final Map<String, List<Map<String, Object>>> conversationMessages = new ConcurrentHashMap<>();
+    // Stockage borné des conversations en mémoire (évincées sur disque, rechargées à la demande)
+    private ChatConversationStore conversationStore;
     
     // Configuration des fichiers de sauvegarde
     @Value("${chat.data.directory:./data}")
     private String dataDirectory;
-    
-    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Journal append-only : ALWAYS | BATCH | NONE (voir ChatJournal)
+    @Value("${chat.journal.fsync:BATCH}")
+    private ChatJournal.FsyncPolicy journalFsync;
+
+    @Value("${chat.journal.fsync-interval-ms:1000}")
+    private long journalFsyncIntervalMs;
+
+    @Value("${chat.journal.segment-max-bytes:8388608}")
+    private long journalSegmentMaxBytes;
+
+    @Value("${chat.journal.snapshot-threshold:1000}")
+    private int journalSnapshotThreshold;
+
+    // Budget mémoire des conversations : nombre, taille estimée et délai d'inactivité avant éviction
+    @Value("${chat.store.max-conversations:1000}")
+    private int storeMaxConversations;
+
+    @Value("${chat.store.max-bytes:67108864}")
+    private long storeMaxBytes;
+
+    @Value("${chat.store.idle-timeout-ms:1800000}")
+    private long storeIdleTimeoutMs;
+
+    private ChatJournal chatJournal;
 
     @Autowired
     private ChatService chatService;
@@ -86,6 +111,12 @@ public class ChatController {
     @Autowired
     private EntrepriseMembreRepository entrepriseMembreRepository;
 
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Autowired
+    private ConversationSummaryMapper summaryMapper;
+
     /**
      * Crée une nouvelle conversation
      */
@@ -250,6 +281,7 @@ public class ChatController {
             Message userMessage = new Message(conversation, user, message);
             userMessage.setMessageType(MessageType.TEXT);
             messageRepository.save(userMessage);
+            unreadCounterService.onMessageSaved(conversation, user.getId());
             
             // Créer le message de bienvenue de l'agent
             String welcomeMessage = "Bonjour ! Je suis " + agent.getPrenom() + " " + agent.getNom() + 
@@ -257,6 +289,12 @@ public class ChatController {
             Message agentMessage = new Message(conversation, agent, welcomeMessage);
             agentMessage.setMessageType(MessageType.TEXT);
             messageRepository.save(agentMessage);
+            unreadCounterService.onMessageSaved(conversation, agent.getId());
+            
+            // Résumé du dernier message porté par la conversation (listes de conversations)
+            conversation.recordMessage(userMessage);
+            conversation.recordMessage(agentMessage);
+            conversation = conversationRepository.save(conversation);
             
             response.put("status", "SUCCESS");
             response.put("conversationId", conversation.getId());
@@ -306,9 +344,6 @@ public class ChatController {
             conversation.put("creatorUserId", entrepriseInfo.get("creatorUserId"));
             conversation.put("creatorUserName", entrepriseInfo.get("creatorUserName"));
             
-            // Stocker la conversation
-            conversations.put(conversationId, conversation);
-            
             // Créer la liste des messages pour cette conversation
             List<Map<String, Object>> messages = new ArrayList<>();
             
@@ -334,11 +369,11 @@ public class ChatController {
             agentMessage.put("senderName", "Moussa Macalou");
             messages.add(agentMessage);
             
-            // Stocker les messages
-            conversationMessages.put(conversationId, messages);
+            // Stocker la conversation et ses messages
+            conversationStore.put(conversationId, conversation, messages);
             
-            // Sauvegarder immédiatement
-            saveImmediately();
+            // Journaliser la création
+            chatJournal.appendConversation(conversation, messages);
             
             response.put("status", "SUCCESS");
             response.put("conversationId", conversationId);
@@ -446,9 +481,6 @@ public class ChatController {
             
             logger.info("🏢 Conversation créée avec entrepriseId: {} pour entreprise: {}", finalEntrepriseId, finalEntrepriseNom);
             
-            // Stocker la conversation
-            conversations.put(conversationId, conversation);
-            
             // Créer la liste des messages pour cette conversation
             List<Map<String, Object>> messages = new ArrayList<>();
             
@@ -463,11 +495,11 @@ public class ChatController {
             agentMessage.put("senderName", "Agent");
             messages.add(agentMessage);
             
-            // Stocker les messages
-            conversationMessages.put(conversationId, messages);
+            // Stocker la conversation et ses messages
+            conversationStore.put(conversationId, conversation, messages);
             
-            // Sauvegarder immédiatement
-            saveImmediately();
+            // Journaliser la création
+            chatJournal.appendConversation(conversation, messages);
             
             response.put("status", "SUCCESS");
             response.put("conversationId", conversationId);
@@ -553,12 +585,11 @@ public class ChatController {
         
         // Vérifier si c'est une conversation en mémoire
         if (conversationId.startsWith("conv-")) {
-            Map<String, Object> conversation = conversations.get(conversationId);
+            Map<String, Object> conversation = conversationStore.getConversation(conversationId);
             if (conversation != null) {
-                List<Map<String, Object>> messages = conversationMessages.get(conversationId);
-                if (messages == null) {
-                    messages = new ArrayList<>();
-                }
+                // Copie faite sous le verrou du stockage
+                List<Map<String, Object>> stored = conversationStore.getMessages(conversationId);
+                List<Map<String, Object>> messages = stored != null ? stored : new ArrayList<>();
                 
                 response.put("status", "SUCCESS");
                 response.put("id", conversationId);
@@ -638,7 +669,7 @@ public class ChatController {
     public ResponseEntity<Map<String, Object>> getAgentConversations(
             @RequestParam String agentId,
             @RequestParam(required = false) String entrepriseId,
-            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "20") int size) {
         
         Map<String, Object> response = new HashMap<>();
@@ -646,57 +677,26 @@ public class ChatController {
         try {
             logger.info("🔍 Récupération conversations pour agent: {}, entrepriseId: {}", agentId, entrepriseId);
             
-            List<Conversation> agentConversations;
-            
-            if (entrepriseId != null && !entrepriseId.isEmpty()) {
-                // Filtrer par entreprise spécifique
-                agentConversations = conversationRepository.findByUserIdOrAgentIdAndEntrepriseIdOrderByModificationDesc(agentId, agentId, entrepriseId);
-                logger.info("✅ {} conversations trouvées pour l'agent dans l'entreprise {}", agentConversations.size(), entrepriseId);
-            } else {
-                // Récupérer toutes les conversations où l'agent est participant
-                agentConversations = conversationRepository.findByUserIdOrAgentIdOrderByModificationDesc(agentId, agentId);
-                logger.info("✅ {} conversations trouvées pour l'agent", agentConversations.size());
-            }
+            CursorPage<ConversationSummary> conversationPage = chatService.getConversationInbox(agentId, entrepriseId, cursor, size);
+            List<ConversationSummary> agentConversations = conversationPage.getContent();
+            logger.info("✅ {} conversations trouvées pour l'agent", agentConversations.size());
             
-            List<Map<String, Object>> conversationList = new ArrayList<>();
-            
-            for (Conversation conversation : agentConversations) {
-                Map<String, Object> conversationSummary = new HashMap<>();
-                conversationSummary.put("id", conversation.getId());
-                conversationSummary.put("subject", conversation.getSubject());
-                conversationSummary.put("agentId", conversation.getAgent().getId());
-                conversationSummary.put("agentName", conversation.getAgent().getPrenom() + " " + conversation.getAgent().getNom());
-                conversationSummary.put("userId", conversation.getUser().getId());
-                conversationSummary.put("userName", conversation.getUser().getPrenom() + " " + conversation.getUser().getNom());
-                conversationSummary.put("createdAt", conversation.getCreation().toEpochMilli());
-                conversationSummary.put("status", conversation.getStatus().toString());
-                
-                // Ajouter les informations d'entreprise
-                if (conversation.getEntreprise() != null) {
-                    conversationSummary.put("entrepriseId", conversation.getEntreprise().getId());
-                    conversationSummary.put("entrepriseNom", conversation.getEntreprise().getNom());
-                }
-                
-                // Récupérer le dernier message
-                Message lastMessage = messageRepository.findLastMessageInConversation(conversation.getId());
-                if (lastMessage != null) {
-                    conversationSummary.put("lastMessage", lastMessage.getContent());
-                    conversationSummary.put("lastMessageTime", lastMessage.getCreation().toEpochMilli());
-                    conversationSummary.put("lastMessageSender", 
-                        lastMessage.getSender().getId().equals(conversation.getAgent().getId()) ? "AGENT" : "USER");
-                }
-                
-                conversationList.add(conversationSummary);
-            }
+            List<Map<String, Object>> conversationList = summaryMapper.toMaps(agentConversations);
             
             response.put("status", "SUCCESS");
             response.put("conversations", conversationList);
             response.put("totalConversations", conversationList.size());
-            response.put("page", page);
             response.put("size", size);
+            response.put("nextCursor", conversationPage.getNextCursor());
+            response.put("hasMore", conversationPage.hasMore());
             
             return ResponseEntity.ok(response);
             
+        } catch (BadRequestException e) {
+            response.put("status", "ERROR");
+            response.put("message", e.getMessage());
+            response.put("conversations", java.util.Collections.emptyList());
+            return ResponseEntity.badRequest().body(response);
         } catch (Exception e) {
             logger.error("❌ Erreur lors de la récupération des conversations agent: {}", e.getMessage(), e);
             response.put("status", "ERROR");
@@ -713,7 +713,7 @@ public class ChatController {
     public ResponseEntity<Map<String, Object>> getUserConversations(
             @RequestParam String userId,
             @RequestParam(required = false) String entrepriseId,
-            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "20") int size) {
         
         Map<String, Object> response = new HashMap<>();
@@ -721,57 +721,26 @@ public class ChatController {
         try {
             logger.info("🔍 Récupération conversations pour utilisateur: {}, entrepriseId: {}", userId, entrepriseId);
             
-            List<Conversation> userConversations;
+            CursorPage<ConversationSummary> conversationPage = chatService.getConversationInbox(userId, entrepriseId, cursor, size);
+            List<ConversationSummary> userConversations = conversationPage.getContent();
+            logger.info("✅ {} conversations trouvées pour l'utilisateur", userConversations.size());
             
-            if (entrepriseId != null && !entrepriseId.isEmpty()) {
-                // Filtrer par entreprise spécifique
-                userConversations = conversationRepository.findByUserIdOrAgentIdAndEntrepriseIdOrderByModificationDesc(userId, userId, entrepriseId);
-                logger.info("✅ {} conversations trouvées pour l'utilisateur dans l'entreprise {}", userConversations.size(), entrepriseId);
-            } else {
-                // Récupérer toutes les conversations où l'utilisateur est participant
-                userConversations = conversationRepository.findByUserIdOrAgentIdOrderByModificationDesc(userId, userId);
-                logger.info("✅ {} conversations trouvées pour l'utilisateur", userConversations.size());
-            }
-            
-            List<Map<String, Object>> conversationList = new ArrayList<>();
-            
-            for (Conversation conversation : userConversations) {
-                Map<String, Object> conversationSummary = new HashMap<>();
-                conversationSummary.put("id", conversation.getId());
-                conversationSummary.put("subject", conversation.getSubject());
-                conversationSummary.put("agentId", conversation.getAgent().getId());
-                conversationSummary.put("agentName", conversation.getAgent().getPrenom() + " " + conversation.getAgent().getNom());
-                conversationSummary.put("userId", conversation.getUser().getId());
-                conversationSummary.put("userName", conversation.getUser().getPrenom() + " " + conversation.getUser().getNom());
-                conversationSummary.put("createdAt", conversation.getCreation().toEpochMilli());
-                conversationSummary.put("status", conversation.getStatus().toString());
-                
-                // Ajouter les informations d'entreprise
-                if (conversation.getEntreprise() != null) {
-                    conversationSummary.put("entrepriseId", conversation.getEntreprise().getId());
-                    conversationSummary.put("entrepriseNom", conversation.getEntreprise().getNom());
-                }
-                
-                // Récupérer le dernier message
-                Message lastMessage = messageRepository.findLastMessageInConversation(conversation.getId());
-                if (lastMessage != null) {
-                    conversationSummary.put("lastMessage", lastMessage.getContent());
-                    conversationSummary.put("lastMessageTime", lastMessage.getCreation().toEpochMilli());
-                    conversationSummary.put("lastMessageSender", 
-                        lastMessage.getSender().getId().equals(conversation.getAgent().getId()) ? "AGENT" : "USER");
-                }
-                
-                conversationList.add(conversationSummary);
-            }
+            List<Map<String, Object>> conversationList = summaryMapper.toMaps(userConversations);
             
             response.put("status", "SUCCESS");
             response.put("conversations", conversationList);
             response.put("totalConversations", conversationList.size());
-            response.put("page", page);
             response.put("size", size);
+            response.put("nextCursor", conversationPage.getNextCursor());
+            response.put("hasMore", conversationPage.hasMore());
             
             return ResponseEntity.ok(response);
             
+        } catch (BadRequestException e) {
+            response.put("status", "ERROR");
+            response.put("message", e.getMessage());
+            response.put("conversations", java.util.Collections.emptyList());
+            return ResponseEntity.badRequest().body(response);
         } catch (Exception e) {
             logger.error("❌ Erreur lors de la récupération des conversations: {}", e.getMessage(), e);
             response.put("status", "ERROR");
@@ -814,6 +783,7 @@ public class ChatController {
             MessageRequest messageRequest = new MessageRequest();
             messageRequest.setContent(content.trim());
             messageRequest.setMessageType("TEXT");
+            messageRequest.setClientMessageId(request.get("clientMessageId"));
             
             MessageResponse messageResponse = chatService.sendMessage(conversationId, messageRequest, senderId);
             
@@ -822,6 +792,7 @@ public class ChatController {
             response.put("status", "SUCCESS");
             response.put("message", "Message envoyé avec succès");
             response.put("messageId", messageResponse.getId());
+            response.put("clientMessageId", messageResponse.getClientMessageId());
             response.put("conversationId", conversationId);
             response.put("content", content);
             response.put("timestamp", messageResponse.getCreation()); // Utiliser getCreation() au lieu de getCreatedAt()
@@ -844,9 +815,11 @@ public class ChatController {
      */
     @Transactional(readOnly = true)
     @GetMapping("/conversations/user/{userId}")
-    public ResponseEntity<Map<String, Object>> getUserConversations(
+    public ResponseEntity<Map<String, Object>> getUserConversationsById(
             @PathVariable String userId,
-            @RequestParam(required = false) String entrepriseId) {
+            @RequestParam(required = false) String entrepriseId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
         Map<String, Object> response = new HashMap<>();
         
         try {
@@ -863,57 +836,24 @@ public class ChatController {
             
             logger.info("✅ Utilisateur existe: {}", userId);
             
-            List<Conversation> userConversations;
+            CursorPage<ConversationSummary> conversationPage = chatService.getConversationInbox(userId, entrepriseId, cursor, size);
+            List<ConversationSummary> userConversations = conversationPage.getContent();
+            logger.info("✅ {} conversations trouvées pour l'utilisateur", userConversations.size());
             
-            if (entrepriseId != null && !entrepriseId.isEmpty()) {
-                logger.info("🔍 Recherche avec filtre entreprise: {}", entrepriseId);
-                // Filtrer par entreprise spécifique
-                userConversations = conversationRepository.findByUserIdOrAgentIdAndEntrepriseIdOrderByModificationDesc(userId, userId, entrepriseId);
-                logger.info("✅ {} conversations trouvées pour l'utilisateur dans l'entreprise {}", userConversations.size(), entrepriseId);
-            } else {
-                logger.info("🔍 Recherche sans filtre entreprise");
-                // Récupérer toutes les conversations où l'utilisateur est participant
-                userConversations = conversationRepository.findByUserIdOrAgentIdOrderByModificationDesc(userId, userId);
-                logger.info("✅ {} conversations trouvées pour l'utilisateur", userConversations.size());
-            }
-            
-            List<Map<String, Object>> conversationList = new ArrayList<>();
-            
-            for (Conversation conversation : userConversations) {
-                Map<String, Object> conversationSummary = new HashMap<>();
-                conversationSummary.put("id", conversation.getId());
-                conversationSummary.put("subject", conversation.getSubject());
-                conversationSummary.put("agentId", conversation.getAgent().getId());
-                conversationSummary.put("agentName", conversation.getAgent().getPrenom() + " " + conversation.getAgent().getNom());
-                conversationSummary.put("userId", conversation.getUser().getId());
-                conversationSummary.put("userName", conversation.getUser().getPrenom() + " " + conversation.getUser().getNom());
-                conversationSummary.put("createdAt", conversation.getCreation().toEpochMilli());
-                conversationSummary.put("status", conversation.getStatus().toString());
-                
-                // Ajouter les informations d'entreprise
-                if (conversation.getEntreprise() != null) {
-                    conversationSummary.put("entrepriseId", conversation.getEntreprise().getId());
-                    conversationSummary.put("entrepriseNom", conversation.getEntreprise().getNom());
-                }
-                
-                // Récupérer le dernier message
-                Message lastMessage = messageRepository.findLastMessageInConversation(conversation.getId());
-                if (lastMessage != null) {
-                    conversationSummary.put("lastMessage", lastMessage.getContent());
-                    conversationSummary.put("lastMessageTime", lastMessage.getCreation().toEpochMilli());
-                    conversationSummary.put("lastMessageSender", 
-                        lastMessage.getSender().getId().equals(conversation.getAgent().getId()) ? "AGENT" : "USER");
-                }
-                
-                conversationList.add(conversationSummary);
-            }
+            List<Map<String, Object>> conversationList = summaryMapper.toMaps(userConversations);
             
             response.put("status", "SUCCESS");
             response.put("conversations", conversationList);
             response.put("total", conversationList.size());
+            response.put("nextCursor", conversationPage.getNextCursor());
+            response.put("hasMore", conversationPage.hasMore());
             
             return ResponseEntity.ok(response);
             
+        } catch (BadRequestException e) {
+            response.put("status", "ERROR");
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
         } catch (Exception e) {
             logger.error("❌ Erreur lors de la récupération des conversations utilisateur: {}", e.getMessage(), e);
             response.put("status", "ERROR");
@@ -928,64 +868,32 @@ public class ChatController {
     @Transactional(readOnly = true)
     @GetMapping("/conversations/active")
     public ResponseEntity<Map<String, Object>> getActiveConversations(
-            @RequestParam(required = false) String entrepriseId) {
+            @RequestParam(required = false) String entrepriseId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
         Map<String, Object> response = new HashMap<>();
         
         try {
             logger.info("🔍 Récupération conversations actives - entrepriseId: {}", entrepriseId);
             
-            List<Conversation> activeConversations;
+            CursorPage<ConversationSummary> conversationPage = chatService.getActiveConversationInbox(entrepriseId, null, cursor, size);
+            List<ConversationSummary> activeConversations = conversationPage.getContent();
+            logger.info("✅ {} conversations actives trouvées", activeConversations.size());
             
-            if (entrepriseId != null && !entrepriseId.isEmpty()) {
-                // Filtrer par entreprise spécifique
-                activeConversations = conversationRepository.findByEntrepriseIdOrderByCreationDesc(entrepriseId);
-                logger.info("✅ {} conversations actives trouvées pour l'entreprise {}", activeConversations.size(), entrepriseId);
-            } else {
-                // Récupérer toutes les conversations actives
-                activeConversations = conversationRepository.findAll().stream()
-                    .filter(c -> c.getStatus() == ConversationStatus.ACTIVE)
-                    .sorted((a, b) -> b.getModification().compareTo(a.getModification()))
-                    .collect(java.util.stream.Collectors.toList());
-                logger.info("✅ {} conversations actives trouvées", activeConversations.size());
-            }
-            
-            List<Map<String, Object>> conversationList = new ArrayList<>();
-            
-            for (Conversation conversation : activeConversations) {
-                Map<String, Object> conversationSummary = new HashMap<>();
-                conversationSummary.put("id", conversation.getId());
-                conversationSummary.put("subject", conversation.getSubject());
-                conversationSummary.put("agentId", conversation.getAgent().getId());
-                conversationSummary.put("agentName", conversation.getAgent().getPrenom() + " " + conversation.getAgent().getNom());
-                conversationSummary.put("userId", conversation.getUser().getId());
-                conversationSummary.put("userName", conversation.getUser().getPrenom() + " " + conversation.getUser().getNom());
-                conversationSummary.put("createdAt", conversation.getCreation().toEpochMilli());
-                conversationSummary.put("status", conversation.getStatus().toString());
-                
-                // Ajouter les informations d'entreprise
-                if (conversation.getEntreprise() != null) {
-                    conversationSummary.put("entrepriseId", conversation.getEntreprise().getId());
-                    conversationSummary.put("entrepriseNom", conversation.getEntreprise().getNom());
-                }
-                
-                // Récupérer le dernier message
-                Message lastMessage = messageRepository.findLastMessageInConversation(conversation.getId());
-                if (lastMessage != null) {
-                    conversationSummary.put("lastMessage", lastMessage.getContent());
-                    conversationSummary.put("lastMessageTime", lastMessage.getCreation().toEpochMilli());
-                    conversationSummary.put("lastMessageSender", 
-                        lastMessage.getSender().getId().equals(conversation.getAgent().getId()) ? "AGENT" : "USER");
-                }
-                
-                conversationList.add(conversationSummary);
-            }
+            List<Map<String, Object>> conversationList = summaryMapper.toMaps(activeConversations);
             
             response.put("status", "SUCCESS");
             response.put("conversations", conversationList);
             response.put("total", conversationList.size());
+            response.put("nextCursor", conversationPage.getNextCursor());
+            response.put("hasMore", conversationPage.hasMore());
             
             return ResponseEntity.ok(response);
             
+        } catch (BadRequestException e) {
+            response.put("status", "ERROR");
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
         } catch (Exception e) {
             logger.error("❌ Erreur lors de la récupération des conversations actives: {}", e.getMessage(), e);
             response.put("status", "ERROR");
@@ -1003,7 +911,7 @@ public class ChatController {
         response.put("status", "OK");
         response.put("message", "Système de chat opérationnel");
         response.put("timestamp", String.valueOf(System.currentTimeMillis()));
-        response.put("activeConversations", String.valueOf(conversations.size()));
+        response.put("activeConversations", String.valueOf(conversationStore.size()));
         
         return ResponseEntity.ok(response);
     }
@@ -1307,12 +1215,15 @@ public class ChatController {
      */
     private void notifyAgentsOfNewMessage(String conversationId, Map<String, Object> message) {
         try {
-            Map<String, Object> conversation = conversations.get(conversationId);
+            Map<String, Object> conversation = conversationStore.getConversation(conversationId);
             if (conversation != null) {
                 // Marquer la conversation comme ayant une activité récente
-                conversation.put("lastActivity", System.currentTimeMillis());
-                conversation.put("hasUnreadMessages", true);
-                conversation.put("status", "WAITING_AGENT_RESPONSE");
+                Map<String, Object> changes = new HashMap<>();
+                changes.put("lastActivity", System.currentTimeMillis());
+                changes.put("hasUnreadMessages", true);
+                changes.put("status", "WAITING_AGENT_RESPONSE");
+                conversationStore.updateConversation(conversationId, changes);
+                chatJournal.appendConversationUpdate(conversationId, changes);
                 
                 logger.info("🔔 Notification: Nouveau message utilisateur dans conversation {}", conversationId);
                 
@@ -1338,15 +1249,17 @@ public class ChatController {
         
         try {
             String agentId = request.get("agentId");
-            Map<String, Object> conversation = conversations.get(conversationId);
+            Map<String, Object> conversation = conversationStore.getConversation(conversationId);
             
             if (conversation != null) {
-                conversation.put("hasUnreadMessages", false);
-                conversation.put("lastReadByAgent", System.currentTimeMillis());
-                conversation.put("status", "ACTIVE");
+                Map<String, Object> changes = new HashMap<>();
+                changes.put("hasUnreadMessages", false);
+                changes.put("lastReadByAgent", System.currentTimeMillis());
+                changes.put("status", "ACTIVE");
+                conversationStore.updateConversation(conversationId, changes);
                 
-                // Sauvegarder immédiatement
-                saveImmediately();
+                // Journaliser uniquement les champs modifiés
+                chatJournal.appendConversationUpdate(conversationId, changes);
                 
                 response.put("status", "SUCCESS");
                 response.put("message", "Conversation marquée comme lue");
@@ -1379,30 +1292,29 @@ public class ChatController {
         
         try {
             String reason = request.get("reason");
-            Map<String, Object> conversation = conversations.get(conversationId);
+            Map<String, Object> conversation = conversationStore.getConversation(conversationId);
             
             if (conversation != null) {
-                conversation.put("status", "CLOSED");
-                conversation.put("closedAt", System.currentTimeMillis());
-                conversation.put("closeReason", reason != null ? reason : "Fermée par l'agent");
+                Map<String, Object> changes = new HashMap<>();
+                changes.put("status", "CLOSED");
+                changes.put("closedAt", System.currentTimeMillis());
+                changes.put("closeReason", reason != null ? reason : "Fermée par l'agent");
+                conversationStore.updateConversation(conversationId, changes);
+                chatJournal.appendConversationUpdate(conversationId, changes);
                 
                 // Ajouter un message système
-                List<Map<String, Object>> messages = conversationMessages.get(conversationId);
-                if (messages != null) {
-                    Map<String, Object> systemMessage = new HashMap<>();
-                    systemMessage.put("id", "msg-" + System.currentTimeMillis());
-                    systemMessage.put("conversationId", conversationId);
-                    systemMessage.put("senderId", "SYSTEM");
-                    systemMessage.put("senderType", "SYSTEM");
-                    systemMessage.put("content", "Conversation fermée. " + (reason != null ? reason : ""));
-                    systemMessage.put("timestamp", System.currentTimeMillis());
-                    systemMessage.put("senderName", "Système");
-                    messages.add(systemMessage);
+                Map<String, Object> systemMessage = new HashMap<>();
+                systemMessage.put("id", "msg-" + System.currentTimeMillis());
+                systemMessage.put("conversationId", conversationId);
+                systemMessage.put("senderId", "SYSTEM");
+                systemMessage.put("senderType", "SYSTEM");
+                systemMessage.put("content", "Conversation fermée. " + (reason != null ? reason : ""));
+                systemMessage.put("timestamp", System.currentTimeMillis());
+                systemMessage.put("senderName", "Système");
+                if (conversationStore.appendMessage(conversationId, systemMessage)) {
+                    chatJournal.appendMessage(conversationId, systemMessage);
                 }
                 
-                // Sauvegarder immédiatement
-                saveImmediately();
-                
                 response.put("status", "SUCCESS");
                 response.put("message", "Conversation fermée");
                 
@@ -1449,10 +1361,10 @@ public class ChatController {
             user2.put("status", "ONLINE");
             users.add(user2);
             
-            // Ajouter les utilisateurs qui ont déjà des conversations
-            for (Map<String, Object> conv : conversations.values()) {
-                String userId = (String) conv.get("userId");
-                String userName = (String) conv.get("userName");
+            // Ajouter les utilisateurs qui ont déjà des conversations (y compris évincées de la mémoire)
+            conversationStore.getSummaries().forEach(summary -> {
+                String userId = summary.getUserId();
+                String userName = summary.getUserName();
                 
                 // Vérifier si l'utilisateur n'est pas déjà dans la liste
                 boolean exists = users.stream()
@@ -1466,7 +1378,7 @@ public class ChatController {
                     existingUser.put("status", "HAS_CONVERSATIONS");
                     users.add(existingUser);
                 }
-            }
+            });
             
             response.put("status", "SUCCESS");
             response.put("users", users);
@@ -1500,14 +1412,18 @@ public class ChatController {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
             }
             
-            int conversationCount = conversations.size();
-            int messageGroupCount = conversationMessages.size();
+            // Une conversation = un groupe de messages
+            int conversationCount = conversationStore.size();
+            int messageGroupCount = conversationCount;
             
-            // Vider les maps en mémoire
-            conversations.clear();
-            conversationMessages.clear();
+            // Vider le stockage (mémoire et conversations évincées sur disque)
+            conversationStore.clear();
             
-            // Supprimer les fichiers de persistance
+            // Journaliser la suppression puis compacter : le journal ne garde plus rien de l'historique
+            chatJournal.appendClear();
+            chatJournal.snapshot(conversationStore);
+            
+            // Supprimer les anciens fichiers de persistance
             try {
                 File dataDir = new File(dataDirectory);
                 File conversationsFile = new File(dataDir, "conversations.json");
@@ -1548,30 +1464,26 @@ public class ChatController {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            int totalConversations = conversations.size();
-            int activeConversations = 0;
-            int waitingConversations = 0;
-            int closedConversations = 0;
-            int totalMessages = 0;
-            
-            for (Map<String, Object> conv : conversations.values()) {
-                String status = (String) conv.get("status");
-                if ("ACTIVE".equals(status)) activeConversations++;
-                else if ("WAITING_AGENT_RESPONSE".equals(status)) waitingConversations++;
-                else if ("CLOSED".equals(status)) closedConversations++;
+            int totalConversations = conversationStore.size();
+            // [actives, en attente, fermées, messages]
+            int[] counts = new int[4];
+            
+            conversationStore.getSummaries().forEach(summary -> {
+                String status = summary.getStatus();
+                if ("ACTIVE".equals(status)) counts[0]++;
+                else if ("WAITING_AGENT_RESPONSE".equals(status)) counts[1]++;
+                else if ("CLOSED".equals(status)) counts[2]++;
                 
-                List<Map<String, Object>> messages = conversationMessages.get(conv.get("id"));
-                if (messages != null) {
-                    totalMessages += messages.size();
-                }
-            }
+                counts[3] += summary.getMessageCount();
+            });
             
             response.put("status", "SUCCESS");
             response.put("totalConversations", totalConversations);
-            response.put("activeConversations", activeConversations);
-            response.put("waitingConversations", waitingConversations);
-            response.put("closedConversations", closedConversations);
-            response.put("totalMessages", totalMessages);
+            response.put("activeConversations", counts[0]);
+            response.put("waitingConversations", counts[1]);
+            response.put("closedConversations", counts[2]);
+            response.put("totalMessages", counts[3]);
+            response.put("store", conversationStore.getStats());
             response.put("timestamp", System.currentTimeMillis());
             
             return ResponseEntity.ok(response);
@@ -1583,123 +1495,61 @@ public class ChatController {
         }
     }
 
-    // ==================== MÉTHODES DE PERSISTANCE JSON ====================
+    // ==================== PERSISTANCE (JOURNAL APPEND-ONLY) ====================
 
     /**
-     * Initialise le système de persistance au démarrage
+     * Initialise le système de persistance au démarrage : rejoue le dernier snapshot puis le journal.
+     * Un échec arrête le démarrage : sans stockage ni journal, aucun endpoint du contrôleur ne fonctionne.
      */
     @PostConstruct
     public void initializePersistence() {
         try {
-            // Créer le répertoire de données s'il n'existe pas
             File dataDir = new File(dataDirectory);
             if (!dataDir.exists()) {
                 dataDir.mkdirs();
                 logger.info("📁 Répertoire de données créé: {}", dataDirectory);
             }
             
-            // Charger les conversations existantes
-            loadConversationsFromFile();
-            logger.info("🚀 Système de persistance initialisé");
+            conversationStore = new ChatConversationStore(Paths.get(dataDirectory, "conversations"),
+                                                          storeMaxConversations, storeMaxBytes, storeIdleTimeoutMs);
+            conversationStore.open();
+            chatJournal = new ChatJournal(Paths.get(dataDirectory, "journal"), journalFsync,
+                                          journalFsyncIntervalMs, journalSegmentMaxBytes, journalSnapshotThreshold);
+            chatJournal.recover(conversationStore);
+            logger.info("🚀 Système de persistance initialisé (journal, fsync {})", journalFsync);
             
-        } catch (Exception e) {
+        } catch (IOException e) {
             logger.error("❌ Erreur lors de l'initialisation de la persistance: {}", e.getMessage());
+            throw new IllegalStateException("Initialisation de la persistance du chat impossible", e);
         }
     }
 
     /**
-     * Charge les conversations depuis les fichiers JSON
-     */
-    private void loadConversationsFromFile() {
-        try {
-            File conversationsFile = new File(dataDirectory, "conversations.json");
-            File messagesFile = new File(dataDirectory, "messages.json");
-            
-            // Charger les conversations
-            if (conversationsFile.exists()) {
-                TypeReference<Map<String, Map<String, Object>>> conversationsType = 
-                    new TypeReference<Map<String, Map<String, Object>>>() {};
-                Map<String, Map<String, Object>> loadedConversations = 
-                    objectMapper.readValue(conversationsFile, conversationsType);
-                conversations.putAll(loadedConversations);
-                logger.info("📥 {} conversations chargées depuis le fichier", loadedConversations.size());
-            }
-            
-            // Charger les messages
-            if (messagesFile.exists()) {
-                TypeReference<Map<String, List<Map<String, Object>>>> messagesType = 
-                    new TypeReference<Map<String, List<Map<String, Object>>>>() {};
-                Map<String, List<Map<String, Object>>> loadedMessages = 
-                    objectMapper.readValue(messagesFile, messagesType);
-                conversationMessages.putAll(loadedMessages);
-                logger.info("📥 Messages chargés pour {} conversations", loadedMessages.size());
-            }
-            
-        } catch (Exception e) {
-            logger.warn("⚠️ Impossible de charger les données sauvegardées: {}", e.getMessage());
-        }
-    }
-
-    /**
-     * Sauvegarde automatique toutes les 30 secondes
+     * Maintenance périodique : éviction des conversations inactives, puis snapshot dès que assez
+     * d'entrées ont été journalisées
      */
     @Scheduled(fixedRate = 30000) // 30 secondes = 30000 ms
-    public void saveConversationsToFile() {
-        if (!conversations.isEmpty() || !conversationMessages.isEmpty()) {
-            try {
-                File dataDir = new File(dataDirectory);
-                if (!dataDir.exists()) {
-                    dataDir.mkdirs();
-                }
-                
-                // Sauvegarder les conversations
-                File conversationsFile = new File(dataDirectory, "conversations.json");
-                objectMapper.writeValue(conversationsFile, conversations);
-                
-                // Sauvegarder les messages
-                File messagesFile = new File(dataDirectory, "messages.json");
-                objectMapper.writeValue(messagesFile, conversationMessages);
-                
-                logger.info("💾 Sauvegarde automatique (30s): {} conversations, {} groupes de messages", 
-                           conversations.size(), conversationMessages.size());
-                
-            } catch (IOException e) {
-                logger.error("❌ Erreur lors de la sauvegarde automatique: {}", e.getMessage());
-            }
+    public void compactJournal() {
+        int evicted = conversationStore.evictIdle();
+        if (evicted > 0) {
+            logger.info("🧊 {} conversation(s) inactive(s) évincée(s) de la mémoire", evicted);
         }
+        chatJournal.snapshotIfDue(conversationStore);
     }
 
     /**
-     * Sauvegarde finale à l'arrêt du serveur
+     * Snapshot final et fermeture du journal à l'arrêt du serveur
      */
     @PreDestroy
     public void saveOnShutdown() {
         try {
-            saveConversationsToFile();
-            logger.info("🔄 Sauvegarde finale effectuée avant arrêt du serveur");
-        } catch (Exception e) {
-            logger.error("❌ Erreur lors de la sauvegarde finale: {}", e.getMessage());
-        }
-    }
-
-    /**
-     * Sauvegarde manuelle (peut être appelée après chaque création/modification)
-     */
-    private void saveImmediately() {
-        try {
-            File dataDir = new File(dataDirectory);
-            if (!dataDir.exists()) {
-                dataDir.mkdirs();
+            if (chatJournal.getEntriesSinceSnapshot() > 0) {
+                chatJournal.snapshot(conversationStore);
             }
-            
-            File conversationsFile = new File(dataDirectory, "conversations.json");
-            File messagesFile = new File(dataDirectory, "messages.json");
-            
-            objectMapper.writeValue(conversationsFile, conversations);
-            objectMapper.writeValue(messagesFile, conversationMessages);
-            
-        } catch (IOException e) {
-            logger.error("❌ Erreur lors de la sauvegarde immédiate: {}", e.getMessage());
+            chatJournal.close();
+            logger.info("🔄 Journal du chat fermé avant arrêt du serveur");
+        } catch (Exception e) {
+            logger.error("❌ Erreur lors de la fermeture du journal: {}", e.getMessage());
         }
     }
 }
@@ -1,26 +1,54 @@
 package abdaty_technologie.API_Invest.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import abdaty_technologie.API_Invest.Entity.Conversation;
 import abdaty_technologie.API_Invest.Entity.Message;
 import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.dto.chat.AgentWorkload;
+import abdaty_technologie.API_Invest.dto.chat.ConversationSummary;
+import abdaty_technologie.API_Invest.dto.chat.CursorPage;
+import abdaty_technologie.API_Invest.dto.chat.MessageRequest;
+import abdaty_technologie.API_Invest.dto.chat.MessageResponse;
+import abdaty_technologie.API_Invest.dto.chat.MessageSearchHit;
+import abdaty_technologie.API_Invest.dto.chat.MessageSearchResult;
+import abdaty_technologie.API_Invest.dto.chat.MessageWindow;
+import abdaty_technologie.API_Invest.exception.BadRequestException;
+import abdaty_technologie.API_Invest.exception.NotFoundException;
 import abdaty_technologie.API_Invest.repository.ConversationRepository;
 import abdaty_technologie.API_Invest.repository.MessageRepository;
 import abdaty_technologie.API_Invest.repository.PersonsRepository;
+import abdaty_technologie.API_Invest.service.ChatService;
+import abdaty_technologie.API_Invest.service.chat.ActiveConversationService;
+import abdaty_technologie.API_Invest.service.chat.AgentResponseMetrics;
+import abdaty_technologie.API_Invest.service.chat.ChatEventPublisher;
+import abdaty_technologie.API_Invest.service.chat.ChatInboxProjector;
+import abdaty_technologie.API_Invest.service.chat.ChatPresenceRegistry;
+import abdaty_technologie.API_Invest.service.chat.ChatTranscriptExporter;
+import abdaty_technologie.API_Invest.service.chat.ConversationAutoCloseService;
+import abdaty_technologie.API_Invest.service.chat.ConversationSummaryMapper;
+import abdaty_technologie.API_Invest.service.chat.MessageArchiveService;
+import abdaty_technologie.API_Invest.service.chat.RecentMessageCache;
 import abdaty_technologie.API_Invest.repository.EntrepriseRepository;
 import abdaty_technologie.API_Invest.repository.EntrepriseMembreRepository;
+import abdaty_technologie.API_Invest.repository.UtilisateursRepository;
 
 import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Set;
 
 /**
  * Contrôleur pour les endpoints /chat/conversations/... attendus par le frontend
@@ -41,12 +69,48 @@ public class ChatConversationController {
     @Autowired
     private PersonsRepository personsRepository;
 
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private ActiveConversationService activeConversationService;
+
+    @Autowired
+    private ChatEventPublisher chatEventPublisher;
+
+    @Autowired
+    private ChatPresenceRegistry presenceRegistry;
+
+    @Autowired
+    private ConversationSummaryMapper summaryMapper;
+
+    @Autowired
+    private MessageArchiveService messageArchiveService;
+
+    @Autowired
+    private ConversationAutoCloseService autoCloseService;
+
+    @Autowired
+    private RecentMessageCache recentMessageCache;
+
+    @Autowired
+    private AgentResponseMetrics agentResponseMetrics;
+
+    @Autowired
+    private ChatInboxProjector inboxProjector;
+
+    @Autowired
+    private ChatTranscriptExporter transcriptExporter;
+
     @Autowired
     private EntrepriseRepository entrepriseRepository;
 
     @Autowired
     private EntrepriseMembreRepository entrepriseMembreRepository;
 
+    @Autowired
+    private UtilisateursRepository utilisateursRepository;
+
     /**
      * Récupère les conversations actives pour un agent spécifique
      */
@@ -54,148 +118,36 @@ public class ChatConversationController {
     @GetMapping("/conversations/active")
     public ResponseEntity<Map<String, Object>> getActiveConversations(
             @RequestParam(required = false) String entrepriseId,
-            @RequestParam(required = false) String agentId) {
+            @RequestParam(required = false) String agentId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
         Map<String, Object> response = new HashMap<>();
         
         try {
             logger.info("🔍 [ChatConversationController] getActiveConversations - entrepriseId: {}, agentId: {}", entrepriseId, agentId);
             logger.info("🔍 DEBUG Paramètres reçus: entrepriseId={}, agentId={}", entrepriseId, agentId);
             
-            List<Conversation> activeConversations;
-            
-            if (agentId != null && !agentId.isEmpty() && entrepriseId != null && !entrepriseId.isEmpty()) {
-                logger.info("🔍 Recherche conversations actives pour agent {} dans entreprise {}", agentId, entrepriseId);
-                // Récupérer SEULEMENT les conversations de cet agent dans cette entreprise spécifique
-                activeConversations = conversationRepository.findActiveConversationsByAgentAndEntreprise(
-                    agentId, entrepriseId, abdaty_technologie.API_Invest.Entity.Enum.ConversationStatus.ACTIVE);
-                logger.info("✅ {} conversations actives trouvées pour l'agent {} dans l'entreprise {}", 
-                    activeConversations.size(), agentId, entrepriseId);
-            } else if (agentId != null && !agentId.isEmpty()) {
-                logger.info("🔍 Recherche conversations actives pour agent: {}", agentId);
-                // Récupérer toutes les conversations de cet agent (toutes entreprises)
-                activeConversations = conversationRepository.findActiveConversationsByAgent(
-                    agentId, abdaty_technologie.API_Invest.Entity.Enum.ConversationStatus.ACTIVE);
-                logger.info("✅ {} conversations actives trouvées pour l'agent {}", activeConversations.size(), agentId);
-            } else if (entrepriseId != null && !entrepriseId.isEmpty()) {
-                logger.info("🔍 Mode compatibilité - Recherche conversations pour entreprise: {}", entrepriseId);
-                // Mode compatibilité : récupérer toutes les conversations de l'entreprise
-                activeConversations = conversationRepository.findByEntrepriseIdOrderByCreationDesc(entrepriseId);
-                logger.info("✅ {} conversations trouvées pour l'entreprise {} (mode compatibilité)", activeConversations.size(), entrepriseId);
-                
-                // DEBUG : Afficher les détails de chaque conversation trouvée en mode compatibilité
-                for (int i = 0; i < activeConversations.size(); i++) {
-                    Conversation conv = activeConversations.get(i);
-                    logger.info("🔍 DEBUG Mode compatibilité - Conversation {}: ID={}, Agent={}, User={}, Entreprise={}, Status={}", 
-                        i+1, conv.getId(), 
-                        conv.getAgent() != null ? conv.getAgent().getId() : "null",
-                        conv.getUser() != null ? conv.getUser().getId() : "null",
-                        conv.getEntreprise() != null ? conv.getEntreprise().getId() : "null",
-                        conv.getStatus());
-                }
-            } else {
-                logger.warn("⚠️ Aucun paramètre fourni - Mode debug: récupération de TOUTES les conversations");
-                // Mode debug temporaire : récupérer toutes les conversations actives
-                activeConversations = conversationRepository.findByStatusOrderByModificationDesc(
-                    abdaty_technologie.API_Invest.Entity.Enum.ConversationStatus.ACTIVE, 
-                    org.springframework.data.domain.Pageable.unpaged()).getContent();
-                logger.info("✅ {} conversations actives trouvées (mode debug - toutes)", activeConversations.size());
-                
-                // DEBUG : Afficher les détails de chaque conversation trouvée en mode debug
-                for (int i = 0; i < activeConversations.size(); i++) {
-                    Conversation conv = activeConversations.get(i);
-                    logger.info("🔍 DEBUG Mode debug - Conversation {}: ID={}, Agent={}, User={}, Entreprise={}, Status={}", 
-                        i+1, conv.getId(), 
-                        conv.getAgent() != null ? conv.getAgent().getId() : "null",
-                        conv.getUser() != null ? conv.getUser().getId() : "null",
-                        conv.getEntreprise() != null ? conv.getEntreprise().getId() : "null",
-                        conv.getStatus());
-                }
-            }
-            
-            List<Map<String, Object>> conversationList = new ArrayList<>();
-            
-            logger.info("🔄 Traitement de {} conversations actives", activeConversations.size());
+            CursorPage<ConversationSummary> conversationPage = chatService.getActiveConversationInbox(entrepriseId, agentId, cursor, size);
+            List<ConversationSummary> activeConversations = conversationPage.getContent();
+            logger.info("✅ {} conversations actives trouvées", activeConversations.size());
             
-            for (Conversation conversation : activeConversations) {
-                try {
-                    logger.info("🔄 Traitement conversation active: {}", conversation.getId());
-                    
-                    Map<String, Object> conversationSummary = new HashMap<>();
-                    conversationSummary.put("id", conversation.getId());
-                    conversationSummary.put("subject", conversation.getSubject());
-                    
-                    // Agent avec gestion null sécurisée
-                    if (conversation.getAgent() != null) {
-                        conversationSummary.put("agentId", conversation.getAgent().getId());
-                        conversationSummary.put("agentName", safeGetFullName(conversation.getAgent()));
-                    } else {
-                        logger.warn("⚠️ Agent null pour conversation: {}", conversation.getId());
-                        conversationSummary.put("agentId", "unknown");
-                        conversationSummary.put("agentName", "Agent inconnu");
-                    }
-                    
-                    // User avec gestion null sécurisée
-                    if (conversation.getUser() != null) {
-                        conversationSummary.put("userId", conversation.getUser().getId());
-                        conversationSummary.put("userName", safeGetFullName(conversation.getUser()));
-                    } else {
-                        logger.warn("⚠️ User null pour conversation: {}", conversation.getId());
-                        conversationSummary.put("userId", "unknown");
-                        conversationSummary.put("userName", "Utilisateur inconnu");
-                    }
-                    
-                    conversationSummary.put("createdAt", conversation.getCreation().toEpochMilli());
-                    conversationSummary.put("status", conversation.getStatus().toString());
-                    
-                    // Entreprise avec gestion null sécurisée
-                    if (conversation.getEntreprise() != null) {
-                        conversationSummary.put("entrepriseId", conversation.getEntreprise().getId());
-                        conversationSummary.put("entrepriseNom", conversation.getEntreprise().getNom());
-                    } else {
-                        logger.warn("⚠️ Entreprise null pour conversation: {}", conversation.getId());
-                        conversationSummary.put("entrepriseId", "unknown");
-                        conversationSummary.put("entrepriseNom", "Entreprise inconnue");
-                    }
-                    
-                    // Dernier message avec gestion d'erreur complète
-                    try {
-                        Message lastMessage = messageRepository.findLastMessageInConversation(conversation.getId());
-                        if (lastMessage != null && lastMessage.getSender() != null) {
-                            conversationSummary.put("lastMessage", lastMessage.getContent());
-                            conversationSummary.put("lastMessageTime", lastMessage.getCreation().toEpochMilli());
-                            conversationSummary.put("lastMessageSender", 
-                                lastMessage.getSender().getId().equals(conversation.getAgent().getId()) ? "AGENT" : "USER");
-                        } else {
-                            conversationSummary.put("lastMessage", "");
-                            conversationSummary.put("lastMessageTime", 0);
-                            conversationSummary.put("lastMessageSender", "");
-                        }
-                    } catch (Exception msgEx) {
-                        logger.warn("⚠️ Erreur récupération dernier message pour conversation {}: {}", 
-                                   conversation.getId(), msgEx.getMessage());
-                        conversationSummary.put("lastMessage", "");
-                        conversationSummary.put("lastMessageTime", 0);
-                        conversationSummary.put("lastMessageSender", "");
-                    }
-                    
-                    conversationList.add(conversationSummary);
-                    logger.info("✅ Conversation active {} traitée avec succès", conversation.getId());
-                    
-                } catch (Exception convEx) {
-                    logger.error("❌ Erreur traitement conversation active {}: {}", 
-                               conversation != null ? conversation.getId() : "null", convEx.getMessage(), convEx);
-                    // Continuer avec les autres conversations
-                }
-            }
+            List<Map<String, Object>> conversationList = summaryMapper.toMaps(activeConversations);
             
             logger.info("✅ Traitement terminé - {} conversations actives dans la réponse", conversationList.size());
             
             response.put("status", "SUCCESS");
             response.put("conversations", conversationList);
             response.put("total", conversationList.size());
+            response.put("nextCursor", conversationPage.getNextCursor());
+            response.put("hasMore", conversationPage.hasMore());
             
             return ResponseEntity.ok(response);
             
+        } catch (BadRequestException e) {
+            response.put("status", "ERROR");
+            response.put("message", e.getMessage());
+            response.put("conversations", new ArrayList<>());
+            return ResponseEntity.badRequest().body(response);
         } catch (Exception e) {
             logger.error("❌ Erreur lors de la récupération des conversations actives: {}", e.getMessage(), e);
             response.put("status", "ERROR");
@@ -210,7 +162,9 @@ public class ChatConversationController {
      */
     @Transactional(readOnly = true)
     @GetMapping("/conversations/{conversationId}")
-    public ResponseEntity<Map<String, Object>> getConversation(@PathVariable String conversationId) {
+    public ResponseEntity<Map<String, Object>> getConversation(
+            @PathVariable String conversationId,
+            @RequestParam(required = false) Integer limit) {
         Map<String, Object> response = new HashMap<>();
         
         try {
@@ -233,8 +187,20 @@ public class ChatConversationController {
                 conversation.getUser() != null ? conversation.getUser().getId() : "null",
                 conversation.getEntreprise() != null ? conversation.getEntreprise().getId() : "null");
             
-            // Récupérer les messages de la conversation
-            List<Message> messages = messageRepository.findByConversationIdOrderByCreationAsc(conversationId);
+            // Mode fenêtre : seulement les "limit" derniers messages, l'historique se charge via messages/before
+            if (limit != null) {
+                MessageWindow window = chatService.getLatestMessages(conversationId, limit);
+                response.put("messages", toMessageMaps(conversationId, window.getMessages()));
+                response.put("olderCursor", window.getOlderCursor());
+                response.put("syncCursor", window.getSyncCursor());
+                putConversationDetails(response, conversation);
+                logger.info("✅ Conversation {} récupérée avec ses {} derniers messages", conversationId, window.getMessages().size());
+                return ResponseEntity.ok(response);
+            }
+            
+            // Récupérer les messages de la conversation (archivés compris)
+            List<Message> messages = messageArchiveService.withArchivedMessages(conversation,
+                messageRepository.findByConversationIdOrderByCreationAsc(conversationId));
             logger.info("📨 {} messages trouvés pour cette conversation", messages.size());
             
             // Convertir les messages au format attendu
@@ -271,38 +237,8 @@ public class ChatConversationController {
                 }
             }
             
-            response.put("status", "SUCCESS");
-            response.put("id", conversation.getId());
-            response.put("subject", conversation.getSubject());
             response.put("messages", messageList);
-            response.put("conversationStatus", conversation.getStatus().toString());
-            
-            // Informations agent
-            if (conversation.getAgent() != null) {
-                response.put("agentId", conversation.getAgent().getId());
-                response.put("agentNom", safeGetFullName(conversation.getAgent()));
-            } else {
-                response.put("agentId", "unknown");
-                response.put("agentNom", "Agent inconnu");
-            }
-            
-            // Informations utilisateur
-            if (conversation.getUser() != null) {
-                response.put("userId", conversation.getUser().getId());
-                response.put("userNom", safeGetFullName(conversation.getUser()));
-            } else {
-                response.put("userId", "unknown");
-                response.put("userNom", "Utilisateur inconnu");
-            }
-            
-            // Informations entreprise
-            if (conversation.getEntreprise() != null) {
-                response.put("entrepriseId", conversation.getEntreprise().getId());
-                response.put("entrepriseNom", conversation.getEntreprise().getNom());
-            } else {
-                response.put("entrepriseId", "unknown");
-                response.put("entrepriseNom", "Entreprise inconnue");
-            }
+            putConversationDetails(response, conversation);
             
             logger.info("✅ Conversation {} récupérée avec {} messages", conversationId, messageList.size());
             
@@ -345,70 +281,27 @@ public class ChatConversationController {
                 return ResponseEntity.badRequest().body(response);
             }
             
-            // Vérifier que la conversation existe
-            var conversationOpt = conversationRepository.findById(conversationId);
-            if (!conversationOpt.isPresent()) {
-                logger.warn("⚠️ Conversation non trouvée: {}", conversationId);
-                response.put("status", "ERROR");
-                response.put("message", "Conversation non trouvée: " + conversationId);
-                return ResponseEntity.badRequest().body(response);
-            }
-            
-            Conversation conversation = conversationOpt.get();
-            
-            // Vérifier que l'expéditeur existe
-            var senderOpt = personsRepository.findById(senderId);
-            if (!senderOpt.isPresent()) {
-                logger.warn("⚠️ Expéditeur non trouvé: {}", senderId);
-                response.put("status", "ERROR");
-                response.put("message", "Expéditeur non trouvé: " + senderId);
-                return ResponseEntity.badRequest().body(response);
-            }
-            
-            Persons sender = senderOpt.get();
-            
-            // Vérifier que l'expéditeur a accès à cette conversation
-            if (!conversation.getAgent().getId().equals(senderId) && !conversation.getUser().getId().equals(senderId)) {
-                logger.warn("⚠️ Accès non autorisé à la conversation {} pour l'utilisateur {}", conversationId, senderId);
-                response.put("status", "ERROR");
-                response.put("message", "Accès non autorisé à cette conversation");
-                return ResponseEntity.badRequest().body(response);
-            }
+            // Passer par le ChatService : contrôle d'accès, sauvegarde et notification temps réel
+            MessageRequest messageRequest = new MessageRequest();
+            messageRequest.setContent(content.trim());
+            messageRequest.setMessageType("TEXT");
+            messageRequest.setClientMessageId(request.get("clientMessageId"));
             
-            // Créer le nouveau message
-            Message message = new Message();
-            message.setConversation(conversation);
-            message.setSender(sender);
-            message.setContent(content.trim());
-            message.setMessageType(abdaty_technologie.API_Invest.Entity.Enum.MessageType.TEXT);
-            message.setIsRead(false);
-            
-            // Sauvegarder le message
-            message = messageRepository.save(message);
+            MessageResponse message = chatService.sendMessage(conversationId, messageRequest, senderId);
             
             logger.info("✅ Message sauvegardé - messageId: {}", message.getId());
             
-            // Mettre à jour le timestamp de modification de la conversation
-            conversation.setModification(java.time.Instant.now());
-            conversationRepository.save(conversation);
-            
-            // Préparer la réponse
-            Map<String, Object> messageResponse = new HashMap<>();
-            messageResponse.put("id", message.getId());
-            messageResponse.put("conversationId", message.getConversation().getId());
-            messageResponse.put("content", message.getContent());
-            messageResponse.put("senderId", message.getSender().getId());
-            messageResponse.put("senderName", safeGetFullName(message.getSender()));
-            messageResponse.put("senderType", message.getSender().getId().equals(conversation.getAgent().getId()) ? "AGENT" : "USER");
-            messageResponse.put("timestamp", message.getCreation().toEpochMilli());
-            messageResponse.put("messageType", message.getMessageType().toString());
-            
             response.put("status", "SUCCESS");
             response.put("message", "Message envoyé avec succès");
-            response.put("messageData", messageResponse);
+            response.put("messageData", toMessageMap(conversationId, message));
             
             return ResponseEntity.ok(response);
             
+        } catch (NotFoundException | BadRequestException e) {
+            logger.warn("⚠️ Envoi refusé pour la conversation {}: {}", conversationId, e.getMessage());
+            response.put("status", "ERROR");
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
         } catch (Exception e) {
             logger.error("❌ Erreur lors de l'envoi du message: {}", e.getMessage(), e);
             response.put("status", "ERROR");
@@ -417,6 +310,276 @@ public class ChatConversationController {
         }
     }
 
+    /**
+     * Synchronisation incrémentale : seuls les messages postérieurs au curseur (syncCursor).
+     * Sans curseur, renvoie les messages depuis le début de la conversation.
+     */
+    @GetMapping("/conversations/{conversationId}/messages/since")
+    public ResponseEntity<Map<String, Object>> getMessagesSince(
+            @PathVariable String conversationId,
+            @RequestParam String participantId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        
+        Map<String, Object> response = new HashMap<>();
+        ResponseEntity<Map<String, Object>> denied = checkParticipant(conversationId, participantId, response);
+        if (denied != null) {
+            return denied;
+        }
+        
+        try {
+            MessageWindow window = chatService.getMessagesSince(conversationId, cursor, limit);
+            response.put("status", "SUCCESS");
+            response.put("messages", toMessageMaps(conversationId, window.getMessages()));
+            response.put("syncCursor", window.getSyncCursor());
+            response.put("hasMore", window.isHasMore());
+            return ResponseEntity.ok(response);
+        } catch (BadRequestException e) {
+            response.put("status", "ERROR");
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (Exception e) {
+            logger.error("❌ Erreur lors de la synchronisation des messages de {}: {}", conversationId, e.getMessage(), e);
+            response.put("status", "ERROR");
+            response.put("message", "Erreur lors de la récupération des messages: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * Export de la transcription complète (format csv, jsonl ou txt), écrit en flux dans la réponse :
+     * la mémoire utilisée ne dépend pas de la longueur de la conversation
+     */
+    @GetMapping("/conversations/{conversationId}/export")
+    public ResponseEntity<StreamingResponseBody> exportConversation(
+            @PathVariable String conversationId,
+            @RequestParam String participantId,
+            @RequestParam(defaultValue = "csv") String format) {
+        
+        // Format et accès vérifiés avant d'écrire quoi que ce soit (format inconnu : 400 via BadRequestException)
+        ChatTranscriptExporter.Format exportFormat = ChatTranscriptExporter.Format.parse(format);
+        var conversationOpt = conversationRepository.findById(conversationId);
+        if (conversationOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        Conversation conversation = conversationOpt.get();
+        if (!conversation.getAgent().getId().equals(participantId) && !conversation.getUser().getId().equals(participantId)) {
+            logger.warn("⚠️ Export refusé de la conversation {} pour {}", conversationId, participantId);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        
+        ChatTranscriptExporter.Transcript transcript = transcriptExporter.open(conversationId);
+        logger.info("📤 Export de la conversation {} ({}) par {}", conversationId, exportFormat, participantId);
+        StreamingResponseBody body = out -> transcriptExporter.export(transcript, exportFormat, out);
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(exportFormat.getContentType() + ";charset=UTF-8"))
+            .header(HttpHeaders.CONTENT_DISPOSITION,
+                    "attachment; filename=\"conversation-" + conversationId + "." + exportFormat.getExtension() + "\"")
+            .body(body);
+    }
+
+    /**
+     * Historique : les messages précédant le curseur (olderCursor), pour "charger les messages plus anciens"
+     */
+    @GetMapping("/conversations/{conversationId}/messages/before")
+    public ResponseEntity<Map<String, Object>> getMessagesBefore(
+            @PathVariable String conversationId,
+            @RequestParam String participantId,
+            @RequestParam String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        
+        Map<String, Object> response = new HashMap<>();
+        ResponseEntity<Map<String, Object>> denied = checkParticipant(conversationId, participantId, response);
+        if (denied != null) {
+            return denied;
+        }
+        
+        try {
+            MessageWindow window = chatService.getMessagesBefore(conversationId, cursor, limit);
+            response.put("status", "SUCCESS");
+            response.put("messages", toMessageMaps(conversationId, window.getMessages()));
+            response.put("olderCursor", window.getOlderCursor());
+            response.put("hasMore", window.getOlderCursor() != null);
+            return ResponseEntity.ok(response);
+        } catch (BadRequestException e) {
+            response.put("status", "ERROR");
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (Exception e) {
+            logger.error("❌ Erreur lors du chargement de l'historique de {}: {}", conversationId, e.getMessage(), e);
+            response.put("status", "ERROR");
+            response.put("message", "Erreur lors de la récupération des messages: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * Recherche plein texte dans les messages des conversations du participant, triés par pertinence.
+     * Insensible à la casse et aux accents ; conversationId restreint la recherche à une conversation.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<Map<String, Object>> searchMessages(
+            @RequestParam String participantId,
+            @RequestParam String q,
+            @RequestParam(required = false) String conversationId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        
+        Map<String, Object> response = new HashMap<>();
+        try {
+            MessageSearchResult result = chatService.searchMessages(participantId, q, conversationId, page, size);
+            List<Map<String, Object>> messages = new ArrayList<>();
+            for (MessageSearchHit hit : result.getHits()) {
+                Map<String, Object> messageMap = toMessageMap(hit.getConversationId(), hit.getMessage());
+                messageMap.put("conversationSubject", hit.getConversationSubject());
+                messageMap.put("score", hit.getScore());
+                messages.add(messageMap);
+            }
+            response.put("status", "SUCCESS");
+            response.put("messages", messages);
+            response.put("page", result.getPage());
+            response.put("size", result.getSize());
+            response.put("totalHits", result.getTotalHits());
+            response.put("hasMore", result.isHasMore());
+            return ResponseEntity.ok(response);
+        } catch (NotFoundException e) {
+            response.put("status", "ERROR");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        } catch (BadRequestException e) {
+            response.put("status", "ERROR");
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (Exception e) {
+            logger.error("❌ Erreur lors de la recherche de messages: {}", e.getMessage(), e);
+            response.put("status", "ERROR");
+            response.put("message", "Erreur lors de la recherche: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * Flux temps réel (SSE) des événements d'une conversation : nouveaux messages, lectures, fermeture.
+     * Remplace le polling de la fenêtre de chat ouverte.
+     */
+    @GetMapping(value = "/conversations/{conversationId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribeToConversation(
+            @PathVariable String conversationId,
+            @RequestParam String participantId) {
+        
+        var conversationOpt = conversationRepository.findById(conversationId);
+        if (conversationOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        // Seuls l'agent et l'utilisateur de la conversation peuvent s'abonner
+        Conversation conversation = conversationOpt.get();
+        if (!conversation.getAgent().getId().equals(participantId) && !conversation.getUser().getId().equals(participantId)) {
+            logger.warn("⚠️ Abonnement refusé à la conversation {} pour {}", conversationId, participantId);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        
+        logger.info("📡 Abonnement SSE conversation {} par {}", conversationId, participantId);
+        return ResponseEntity.ok(chatEventPublisher.subscribeToConversation(conversationId));
+    }
+
+    /**
+     * Flux temps réel (SSE) de toutes les conversations d'un participant (badges et notifications).
+     * Réservé au participant lui-même : le token JWT (en-tête Authorization, ou paramètre access_token
+     * pour EventSource) doit être celui du compte associé à participantId.
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribeToParticipant(@RequestParam String participantId,
+                                                             Authentication authentication) {
+        if (authentication == null || authentication.getName() == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        boolean ownAccount = utilisateursRepository.findByPersonneId(participantId)
+            .map(account -> authentication.getName().equals(account.getUtilisateur()))
+            .orElse(false);
+        if (!ownAccount) {
+            logger.warn("⚠️ Abonnement SSE refusé pour le participant {} ({})", participantId, authentication.getName());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        
+        logger.info("📡 Abonnement SSE participant {}", participantId);
+        return ResponseEntity.ok(chatEventPublisher.subscribeToParticipant(participantId));
+    }
+
+    /**
+     * Battement de présence : le participant est en ligne jusqu'au prochain battement attendu
+     * (heartbeatIntervalMs). Aucun accès à la base.
+     */
+    @PostMapping("/presence/heartbeat")
+    public ResponseEntity<Map<String, Object>> heartbeat(@RequestBody Map<String, String> request) {
+        Map<String, Object> response = new HashMap<>();
+        String participantId = request.get("participantId");
+        if (participantId == null || participantId.isBlank()) {
+            response.put("status", "ERROR");
+            response.put("message", "participantId est requis");
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        response.put("status", "SUCCESS");
+        response.put("heartbeatIntervalMs", presenceRegistry.heartbeat(participantId));
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Déconnexion explicite : le participant passe hors ligne sans attendre l'expiration
+     */
+    @DeleteMapping("/presence/{participantId}")
+    public ResponseEntity<Map<String, Object>> disconnect(@PathVariable String participantId) {
+        presenceRegistry.disconnect(participantId);
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "SUCCESS");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Présence d'un lot de participants : en ligne ou non, et dernier battement connu
+     */
+    @GetMapping("/presence")
+    public ResponseEntity<Map<String, Object>> getPresence(@RequestParam List<String> participantIds) {
+        Set<String> online = presenceRegistry.onlineAmong(participantIds);
+        Map<String, Long> lastSeen = presenceRegistry.lastSeenOf(participantIds);
+        
+        List<Map<String, Object>> participants = new ArrayList<>(participantIds.size());
+        for (String participantId : participantIds) {
+            Map<String, Object> participant = new HashMap<>();
+            participant.put("participantId", participantId);
+            participant.put("online", online.contains(participantId));
+            participant.put("lastSeen", lastSeen.get(participantId));
+            participants.add(participant);
+        }
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "SUCCESS");
+        response.put("participants", participants);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Indicateur « en train d'écrire » : typing=true à renouveler pendant la saisie (il expire seul),
+     * typing=false à l'envoi ou à l'abandon. Aucun accès à la base.
+     */
+    @PostMapping("/conversations/{conversationId}/typing")
+    public ResponseEntity<Map<String, Object>> setTyping(
+            @PathVariable String conversationId,
+            @RequestBody Map<String, Object> request) {
+        Map<String, Object> response = new HashMap<>();
+        Object participantId = request.get("participantId");
+        if (!(participantId instanceof String) || ((String) participantId).isBlank()) {
+            response.put("status", "ERROR");
+            response.put("message", "participantId est requis");
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        presenceRegistry.setTyping(conversationId, (String) participantId, !Boolean.FALSE.equals(request.get("typing")));
+        response.put("status", "SUCCESS");
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * Récupère les conversations d'un utilisateur - endpoint avec /chat/
      */
@@ -424,7 +587,9 @@ public class ChatConversationController {
     @GetMapping("/conversations/user/{userId}")
     public ResponseEntity<Map<String, Object>> getChatUserConversations(
             @PathVariable String userId,
-            @RequestParam(required = false) String entrepriseId) {
+            @RequestParam(required = false) String entrepriseId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
         Map<String, Object> response = new HashMap<>();
         
         try {
@@ -441,112 +606,27 @@ public class ChatConversationController {
             
             logger.info("✅ Utilisateur existe: {}", userId);
             
-            List<Conversation> userConversations;
+            CursorPage<ConversationSummary> conversationPage = chatService.getConversationInbox(userId, entrepriseId, cursor, size);
+            List<ConversationSummary> userConversations = conversationPage.getContent();
+            logger.info("✅ {} conversations trouvées pour l'utilisateur", userConversations.size());
             
-            if (entrepriseId != null && !entrepriseId.isEmpty()) {
-                logger.info("🔍 Recherche avec filtre entreprise: {}", entrepriseId);
-                userConversations = conversationRepository.findByUserIdOrAgentIdAndEntrepriseIdOrderByModificationDesc(userId, userId, entrepriseId);
-                logger.info("✅ {} conversations trouvées pour l'utilisateur dans l'entreprise {}", userConversations.size(), entrepriseId);
-            } else {
-                logger.info("🔍 Recherche sans filtre entreprise");
-                userConversations = conversationRepository.findByUserIdOrAgentIdOrderByModificationDesc(userId, userId);
-                logger.info("✅ {} conversations trouvées pour l'utilisateur", userConversations.size());
-            }
-            
-            List<Map<String, Object>> conversationList = new ArrayList<>();
-            
-            logger.info("🔄 Traitement de {} conversations", userConversations.size());
-            
-            // DEBUG : Afficher les détails de chaque conversation trouvée
-            for (int i = 0; i < userConversations.size(); i++) {
-                Conversation conv = userConversations.get(i);
-                logger.info("🔍 DEBUG Conversation {}: ID={}, Agent={}, User={}, Entreprise={}", 
-                    i+1, conv.getId(), 
-                    conv.getAgent() != null ? conv.getAgent().getId() : "null",
-                    conv.getUser() != null ? conv.getUser().getId() : "null",
-                    conv.getEntreprise() != null ? conv.getEntreprise().getId() : "null");
-            }
-            
-            for (Conversation conversation : userConversations) {
-                try {
-                    logger.info("🔄 Traitement conversation: {}", conversation.getId());
-                    
-                    Map<String, Object> conversationSummary = new HashMap<>();
-                    conversationSummary.put("id", conversation.getId());
-                    conversationSummary.put("subject", conversation.getSubject());
-                    
-                    // Agent avec gestion null sécurisée
-                    if (conversation.getAgent() != null) {
-                        conversationSummary.put("agentId", conversation.getAgent().getId());
-                        conversationSummary.put("agentName", safeGetFullName(conversation.getAgent()));
-                    } else {
-                        logger.warn("⚠️ Agent null pour conversation: {}", conversation.getId());
-                        conversationSummary.put("agentId", "unknown");
-                        conversationSummary.put("agentName", "Agent inconnu");
-                    }
-                    
-                    // User avec gestion null sécurisée
-                    if (conversation.getUser() != null) {
-                        conversationSummary.put("userId", conversation.getUser().getId());
-                        conversationSummary.put("userName", safeGetFullName(conversation.getUser()));
-                    } else {
-                        logger.warn("⚠️ User null pour conversation: {}", conversation.getId());
-                        conversationSummary.put("userId", "unknown");
-                        conversationSummary.put("userName", "Utilisateur inconnu");
-                    }
-                    
-                    conversationSummary.put("createdAt", conversation.getCreation().toEpochMilli());
-                    conversationSummary.put("status", conversation.getStatus().toString());
-                    
-                    // Entreprise avec gestion null sécurisée
-                    if (conversation.getEntreprise() != null) {
-                        conversationSummary.put("entrepriseId", conversation.getEntreprise().getId());
-                        conversationSummary.put("entrepriseNom", conversation.getEntreprise().getNom());
-                    } else {
-                        logger.warn("⚠️ Entreprise null pour conversation: {}", conversation.getId());
-                        conversationSummary.put("entrepriseId", "unknown");
-                        conversationSummary.put("entrepriseNom", "Entreprise inconnue");
-                    }
-                    
-                    // Dernier message avec gestion d'erreur complète
-                    try {
-                        Message lastMessage = messageRepository.findLastMessageInConversation(conversation.getId());
-                        if (lastMessage != null && lastMessage.getSender() != null) {
-                            conversationSummary.put("lastMessage", lastMessage.getContent());
-                            conversationSummary.put("lastMessageTime", lastMessage.getCreation().toEpochMilli());
-                            conversationSummary.put("lastMessageSender", 
-                                lastMessage.getSender().getId().equals(conversation.getAgent().getId()) ? "AGENT" : "USER");
-                        } else {
-                            conversationSummary.put("lastMessage", "");
-                            conversationSummary.put("lastMessageTime", 0);
-                            conversationSummary.put("lastMessageSender", "");
-                        }
-                    } catch (Exception msgEx) {
-                        logger.warn("⚠️ Erreur récupération dernier message pour conversation {}: {}", 
-                                   conversation.getId(), msgEx.getMessage());
-                        conversationSummary.put("lastMessage", "");
-                        conversationSummary.put("lastMessageTime", 0);
-                        conversationSummary.put("lastMessageSender", "");
-                    }
-                    
-                    conversationList.add(conversationSummary);
-                    logger.info("✅ Conversation {} traitée avec succès", conversation.getId());
-                    
-                } catch (Exception convEx) {
-                    logger.error("❌ Erreur traitement conversation {}: {}", 
-                               conversation != null ? conversation.getId() : "null", convEx.getMessage(), convEx);
-                    // Continuer avec les autres conversations
-                }
-            }
+            List<Map<String, Object>> conversationList = summaryMapper.toMaps(userConversations);
             
             logger.info("✅ Traitement terminé - {} conversations dans la réponse", conversationList.size());
             
             response.put("status", "SUCCESS");
             response.put("conversations", conversationList);
             response.put("total", conversationList.size());
+            response.put("nextCursor", conversationPage.getNextCursor());
+            response.put("hasMore", conversationPage.hasMore());
             
             return ResponseEntity.ok(response);
             
+        } catch (BadRequestException e) {
+            response.put("status", "ERROR");
+            response.put("message", e.getMessage());
+            response.put("conversations", new ArrayList<>());
+            return ResponseEntity.badRequest().body(response);
         } catch (Exception e) {
             logger.error("❌ Erreur lors de la récupération des conversations utilisateur: {}", e.getMessage(), e);
             response.put("status", "ERROR");
@@ -626,27 +706,22 @@ public class ChatConversationController {
             
             var agent = agentOpt.get();
             
-            // Créer la conversation
-            Conversation conversation = new Conversation();
-            conversation.setEntreprise(entreprise);
-            conversation.setAgent(agent);
-            conversation.setUser(user);
-            conversation.setSubject(subject != null ? subject : "Demande d'assistance");
-            conversation.setStatus(abdaty_technologie.API_Invest.Entity.Enum.ConversationStatus.ACTIVE);
-            
-            conversation = conversationRepository.save(conversation);
+            // Créer la conversation, ou reprendre la conversation active avec l'agent par défaut
+            Conversation candidate = new Conversation();
+            candidate.setEntreprise(entreprise);
+            candidate.setAgent(agent);
+            candidate.setUser(user);
+            candidate.setSubject(subject != null ? subject : "Demande d'assistance");
+            candidate.setStatus(abdaty_technologie.API_Invest.Entity.Enum.ConversationStatus.ACTIVE);
             
-            // Créer le message initial de l'utilisateur
-            Message initialMessage = new Message();
-            initialMessage.setConversation(conversation);
-            initialMessage.setSender(user);
-            initialMessage.setContent(message);
-            initialMessage.setMessageType(abdaty_technologie.API_Invest.Entity.Enum.MessageType.TEXT);
-            initialMessage.setIsRead(false);
+            ActiveConversationService.Result active = activeConversationService.getOrCreate(candidate);
+            Conversation conversation = active.getConversation();
             
-            messageRepository.save(initialMessage);
+            // Message initial de l'utilisateur, envoyé comme tout autre message
+            sendOpeningMessage(conversation.getId(), user.getId(), message, request.get("clientMessageId"));
             
-            logger.info("✅ Conversation créée avec succès - conversationId: {}", conversation.getId());
+            logger.info("✅ Conversation {} avec succès - conversationId: {}",
+                active.isCreated() ? "créée" : "reprise", conversation.getId());
             
             response.put("status", "SUCCESS");
             response.put("conversationId", conversation.getId());
@@ -655,7 +730,7 @@ public class ChatConversationController {
             response.put("subject", conversation.getSubject());
             response.put("initialMessage", message);
             
-            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+            return ResponseEntity.status(active.isCreated() ? HttpStatus.CREATED : HttpStatus.OK).body(response);
             
         } catch (Exception e) {
             logger.error("❌ Erreur lors du démarrage de conversation utilisateur: {}", e.getMessage(), e);
@@ -731,41 +806,22 @@ public class ChatConversationController {
             
             var entreprise = entrepriseOpt.get();
             
-            // Vérifier s'il existe déjà une conversation active entre cet agent et cet utilisateur pour cette entreprise
-            logger.info("🔍 DEBUG Recherche conversation existante entre participants: entrepriseId={}, agentId={}, userId={}", 
-                entrepriseId, agentId, userId);
-            
-            var existingConversations = conversationRepository.findActiveConversationBetweenParticipants(
-                entrepriseId, agentId, userId);
-            
-            logger.info("🔍 DEBUG {} conversations existantes trouvées", existingConversations.size());
-            for (int i = 0; i < existingConversations.size(); i++) {
-                Conversation conv = existingConversations.get(i);
-                logger.info("🔍 DEBUG Conversation existante {}: ID={}, Agent={}, User={}, Entreprise={}", 
-                    i+1, conv.getId(),
-                    conv.getAgent() != null ? conv.getAgent().getId() : "null",
-                    conv.getUser() != null ? conv.getUser().getId() : "null",
-                    conv.getEntreprise() != null ? conv.getEntreprise().getId() : "null");
-            }
+            // Conversation active entre cet agent et cet utilisateur pour cette entreprise, créée si besoin
+            Conversation candidate = new Conversation();
+            candidate.setEntreprise(entreprise);
+            candidate.setAgent(agent);
+            candidate.setUser(user);
+            candidate.setSubject(subject != null ? subject : "Contact agent - " + entreprise.getNom());
+            candidate.setStatus(abdaty_technologie.API_Invest.Entity.Enum.ConversationStatus.ACTIVE);
+            
+            ActiveConversationService.Result active = activeConversationService.getOrCreate(candidate);
             
-            if (!existingConversations.isEmpty()) {
-                // Prendre la conversation la plus récente
-                Conversation existingConversation = existingConversations.get(0);
+            if (!active.isCreated()) {
+                Conversation existingConversation = active.getConversation();
                 logger.info("✅ Conversation existante trouvée, ajout d'un nouveau message");
                 
                 // Ajouter un nouveau message à la conversation existante
-                Message newMessage = new Message();
-                newMessage.setConversation(existingConversation);
-                newMessage.setSender(agent);
-                newMessage.setContent(message);
-                newMessage.setMessageType(abdaty_technologie.API_Invest.Entity.Enum.MessageType.TEXT);
-                newMessage.setIsRead(false);
-                
-                messageRepository.save(newMessage);
-                
-                // Mettre à jour le timestamp de modification
-                existingConversation.setModification(java.time.Instant.now());
-                conversationRepository.save(existingConversation);
+                sendOpeningMessage(existingConversation.getId(), agent.getId(), message, request.get("clientMessageId"));
                 
                 response.put("status", "SUCCESS");
                 response.put("conversationId", existingConversation.getId());
@@ -779,15 +835,7 @@ public class ChatConversationController {
                 return ResponseEntity.ok(response);
             }
             
-            // Créer une nouvelle conversation
-            Conversation conversation = new Conversation();
-            conversation.setEntreprise(entreprise);
-            conversation.setAgent(agent);
-            conversation.setUser(user);
-            conversation.setSubject(subject != null ? subject : "Contact agent - " + entreprise.getNom());
-            conversation.setStatus(abdaty_technologie.API_Invest.Entity.Enum.ConversationStatus.ACTIVE);
-            
-            conversation = conversationRepository.save(conversation);
+            Conversation conversation = active.getConversation();
             
             logger.info("🔍 DEBUG Conversation créée: ID={}, Agent={}, User={}, Entreprise={}", 
                 conversation.getId(),
@@ -795,15 +843,8 @@ public class ChatConversationController {
                 conversation.getUser() != null ? conversation.getUser().getId() : "null", 
                 conversation.getEntreprise() != null ? conversation.getEntreprise().getId() : "null");
             
-            // Créer le message initial de l'agent
-            Message initialMessage = new Message();
-            initialMessage.setConversation(conversation);
-            initialMessage.setSender(agent);
-            initialMessage.setContent(message);
-            initialMessage.setMessageType(abdaty_technologie.API_Invest.Entity.Enum.MessageType.TEXT);
-            initialMessage.setIsRead(false);
-            
-            messageRepository.save(initialMessage);
+            // Message initial de l'agent, envoyé comme tout autre message
+            sendOpeningMessage(conversation.getId(), agent.getId(), message, request.get("clientMessageId"));
             
             logger.info("✅ Conversation créée par agent - conversationId: {}", conversation.getId());
             
@@ -826,6 +867,77 @@ public class ChatConversationController {
         }
     }
 
+    /**
+     * Métriques de l'archivage : taille de la table messages, volume archivé, dernière exécution
+     */
+    @GetMapping("/archive/stats")
+    public ResponseEntity<Map<String, Object>> getArchiveStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "SUCCESS");
+        response.put("archive", messageArchiveService.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Métriques du cache des derniers messages : taux de succès, occupation mémoire, évictions
+     */
+    @GetMapping("/recent-cache/stats")
+    public ResponseEntity<Map<String, Object>> getRecentCacheStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "SUCCESS");
+        response.put("recentCache", recentMessageCache.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Métriques de la fermeture automatique des conversations inactives
+     */
+    @GetMapping("/auto-close/stats")
+    public ResponseEntity<Map<String, Object>> getAutoCloseStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "SUCCESS");
+        response.put("autoClose", autoCloseService.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Tableau de bord superviseur : conversations ouvertes et délais de réponse par agent
+     */
+    @GetMapping("/agents/metrics")
+    public ResponseEntity<Map<String, Object>> getAgentMetrics() {
+        List<AgentWorkload> agents = agentResponseMetrics.getAgentWorkloads();
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "SUCCESS");
+        response.put("agents", agents);
+        response.put("count", agents.size());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Vérifie les boîtes de réception (modèle de lecture) contre les conversations, sans rien corriger
+     */
+    @GetMapping("/inbox/check")
+    public ResponseEntity<Map<String, Object>> checkInbox() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "SUCCESS");
+        response.put("inbox", inboxProjector.checkConsistency());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Reconstruit les boîtes de réception depuis les conversations et les compteurs de non-lus
+     */
+    @PostMapping("/inbox/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildInbox() {
+        Map<String, Object> response = new HashMap<>();
+        int corrected = inboxProjector.rebuildAll();
+        logger.info("🔧 Boîtes de réception reconstruites : {} ligne(s) corrigée(s)", corrected);
+        response.put("status", "SUCCESS");
+        response.put("correctedEntries", corrected);
+        response.put("message", "Boîtes de réception reconstruites");
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * Test de santé pour ce contrôleur
      */
@@ -839,6 +951,109 @@ public class ChatConversationController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Vérifie que la conversation existe et que participantId en est l'agent ou l'utilisateur ;
+     * renvoie la réponse d'erreur à retourner, ou null si l'accès est autorisé
+     */
+    private ResponseEntity<Map<String, Object>> checkParticipant(String conversationId, String participantId,
+                                                                 Map<String, Object> response) {
+        var conversationOpt = conversationRepository.findById(conversationId);
+        if (conversationOpt.isEmpty()) {
+            response.put("status", "ERROR");
+            response.put("message", "Conversation non trouvée: " + conversationId);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        
+        Conversation conversation = conversationOpt.get();
+        if (!conversation.getAgent().getId().equals(participantId) && !conversation.getUser().getId().equals(participantId)) {
+            logger.warn("⚠️ Accès refusé aux messages de la conversation {} pour {}", conversationId, participantId);
+            response.put("status", "ERROR");
+            response.put("message", "Accès non autorisé à cette conversation");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(response);
+        }
+        return null;
+    }
+
+    /**
+     * Informations de la conversation, des participants et de l'entreprise pour la vue détail
+     */
+    private void putConversationDetails(Map<String, Object> response, Conversation conversation) {
+        response.put("status", "SUCCESS");
+        response.put("id", conversation.getId());
+        response.put("subject", conversation.getSubject());
+        response.put("conversationStatus", conversation.getStatus().toString());
+        
+        // Informations agent
+        if (conversation.getAgent() != null) {
+            response.put("agentId", conversation.getAgent().getId());
+            response.put("agentNom", safeGetFullName(conversation.getAgent()));
+        } else {
+            response.put("agentId", "unknown");
+            response.put("agentNom", "Agent inconnu");
+        }
+        
+        // Informations utilisateur
+        if (conversation.getUser() != null) {
+            response.put("userId", conversation.getUser().getId());
+            response.put("userNom", safeGetFullName(conversation.getUser()));
+        } else {
+            response.put("userId", "unknown");
+            response.put("userNom", "Utilisateur inconnu");
+        }
+        
+        // Informations entreprise
+        if (conversation.getEntreprise() != null) {
+            response.put("entrepriseId", conversation.getEntreprise().getId());
+            response.put("entrepriseNom", conversation.getEntreprise().getNom());
+        } else {
+            response.put("entrepriseId", "unknown");
+            response.put("entrepriseNom", "Entreprise inconnue");
+        }
+    }
+
+    /**
+     * Convertit des messages au format attendu par le frontend
+     */
+    private List<Map<String, Object>> toMessageMaps(String conversationId, List<MessageResponse> messages) {
+        List<Map<String, Object>> messageList = new ArrayList<>(messages.size());
+        for (MessageResponse message : messages) {
+            messageList.add(toMessageMap(conversationId, message));
+        }
+        return messageList;
+    }
+
+    private Map<String, Object> toMessageMap(String conversationId, MessageResponse message) {
+        Map<String, Object> messageMap = new HashMap<>();
+        messageMap.put("id", message.getId());
+        messageMap.put("conversationId", conversationId);
+        messageMap.put("content", message.getContent());
+        messageMap.put("senderId", message.getSenderId());
+        messageMap.put("senderName", message.getSenderNom());
+        messageMap.put("senderType", message.getSenderRole());
+        messageMap.put("timestamp", message.getCreation().toEpochMilli());
+        messageMap.put("messageType", message.getMessageType());
+        if (message.getClientMessageId() != null) {
+            messageMap.put("clientMessageId", message.getClientMessageId());
+        }
+        if (message.getDocumentUrl() != null) {
+            messageMap.put("documentName", message.getDocumentName());
+            messageMap.put("documentUrl", message.getDocumentUrl());
+        }
+        return messageMap;
+    }
+
+    /**
+     * Envoie le premier message d'une conversation démarrée (ou reprise) par le ChatService : conversation
+     * verrouillée, compteurs, notification temps réel et métriques comme pour tout autre envoi
+     */
+    private MessageResponse sendOpeningMessage(String conversationId, String senderId, String content, String clientMessageId) {
+        MessageRequest messageRequest = new MessageRequest();
+        messageRequest.setContent(content);
+        messageRequest.setMessageType("TEXT");
+        messageRequest.setClientMessageId(clientMessageId);
+        return chatService.sendMessage(conversationId, messageRequest, senderId);
+    }
+
     /**
      * Méthode utilitaire pour récupérer le nom complet en gérant les valeurs null
      */
@@ -9,7 +9,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import abdaty_technologie.API_Invest.Entity.Conversation;
-import abdaty_technologie.API_Invest.Entity.Message;
 import abdaty_technologie.API_Invest.Entity.Persons;
 import abdaty_technologie.API_Invest.repository.ConversationRepository;
 import abdaty_technologie.API_Invest.repository.MessageRepository;
@@ -216,22 +215,13 @@ public class ChatDebugController {
                         conversationSummary.put("entrepriseNom", "Entreprise inconnue");
                     }
                     
-                    // Dernier message avec gestion d'erreur complète
-                    try {
-                        Message lastMessage = messageRepository.findLastMessageInConversation(conversation.getId());
-                        if (lastMessage != null && lastMessage.getSender() != null) {
-                            conversationSummary.put("lastMessage", lastMessage.getContent());
-                            conversationSummary.put("lastMessageTime", lastMessage.getCreation().toEpochMilli());
-                            conversationSummary.put("lastMessageSender", 
-                                lastMessage.getSender().getId().equals(conversation.getAgent().getId()) ? "AGENT" : "USER");
-                        } else {
-                            conversationSummary.put("lastMessage", "");
-                            conversationSummary.put("lastMessageTime", 0);
-                            conversationSummary.put("lastMessageSender", "");
-                        }
-                    } catch (Exception msgEx) {
-                        logger.warn("⚠️ Erreur récupération dernier message pour conversation {}: {}", 
-                                   conversation.getId(), msgEx.getMessage());
+                    // Dernier message : résumé porté par la conversation
+                    if (conversation.getLastMessageAt() != null) {
+                        conversationSummary.put("lastMessage", conversation.getLastMessagePreview());
+                        conversationSummary.put("lastMessageTime", conversation.getLastMessageAt().toEpochMilli());
+                        conversationSummary.put("lastMessageSender", 
+                            conversation.getAgent() != null && conversation.getAgent().getId().equals(conversation.getLastMessageSenderId()) ? "AGENT" : "USER");
+                    } else {
                         conversationSummary.put("lastMessage", "");
                         conversationSummary.put("lastMessageTime", 0);
                         conversationSummary.put("lastMessageSender", "");
@@ -11,9 +11,14 @@ import org.slf4j.LoggerFactory;
 import abdaty_technologie.API_Invest.Entity.Conversation;
 import abdaty_technologie.API_Invest.Entity.Message;
 import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.dto.chat.ConversationSummary;
+import abdaty_technologie.API_Invest.dto.chat.CursorPage;
+import abdaty_technologie.API_Invest.exception.BadRequestException;
 import abdaty_technologie.API_Invest.repository.ConversationRepository;
 import abdaty_technologie.API_Invest.repository.MessageRepository;
 import abdaty_technologie.API_Invest.repository.PersonsRepository;
+import abdaty_technologie.API_Invest.service.ChatService;
+import abdaty_technologie.API_Invest.service.chat.ConversationSummaryMapper;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -34,12 +39,18 @@ public class ConversationController {
     @Autowired
     private ConversationRepository conversationRepository;
 
+    @Autowired
+    private ConversationSummaryMapper summaryMapper;
+
     @Autowired
     private MessageRepository messageRepository;
 
     @Autowired
     private PersonsRepository personsRepository;
 
+    @Autowired
+    private ChatService chatService;
+
     /**
      * Récupère les conversations d'un utilisateur - endpoint attendu par le frontend
      */
@@ -47,7 +58,9 @@ public class ConversationController {
     @GetMapping("/conversations/user/{userId}")
     public ResponseEntity<Map<String, Object>> getUserConversations(
             @PathVariable String userId,
-            @RequestParam(required = false) String entrepriseId) {
+            @RequestParam(required = false) String entrepriseId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
         Map<String, Object> response = new HashMap<>();
         
         try {
@@ -64,112 +77,27 @@ public class ConversationController {
             
             logger.info("✅ Utilisateur existe: {}", userId);
             
-            List<Conversation> userConversations;
-            
-            if (entrepriseId != null && !entrepriseId.isEmpty()) {
-                logger.info("🔍 Recherche avec filtre entreprise: {}", entrepriseId);
-                userConversations = conversationRepository.findByUserIdOrAgentIdAndEntrepriseIdOrderByModificationDesc(userId, userId, entrepriseId);
-                logger.info("✅ {} conversations trouvées pour l'utilisateur dans l'entreprise {}", userConversations.size(), entrepriseId);
-            } else {
-                logger.info("🔍 Recherche sans filtre entreprise");
-                userConversations = conversationRepository.findByUserIdOrAgentIdOrderByModificationDesc(userId, userId);
-                logger.info("✅ {} conversations trouvées pour l'utilisateur", userConversations.size());
-            }
-            
-            List<Map<String, Object>> conversationList = new ArrayList<>();
-            
-            logger.info("🔄 Traitement de {} conversations", userConversations.size());
-            
-            // DEBUG : Afficher les détails de chaque conversation trouvée
-            for (int i = 0; i < userConversations.size(); i++) {
-                Conversation conv = userConversations.get(i);
-                logger.info("🔍 DEBUG [ConversationController] Conversation {}: ID={}, Agent={}, User={}, Entreprise={}", 
-                    i+1, conv.getId(), 
-                    conv.getAgent() != null ? conv.getAgent().getId() : "null",
-                    conv.getUser() != null ? conv.getUser().getId() : "null",
-                    conv.getEntreprise() != null ? conv.getEntreprise().getId() : "null");
-            }
+            CursorPage<ConversationSummary> conversationPage = chatService.getConversationInbox(userId, entrepriseId, cursor, size);
+            List<ConversationSummary> userConversations = conversationPage.getContent();
+            logger.info("✅ {} conversations trouvées pour l'utilisateur", userConversations.size());
             
-            for (Conversation conversation : userConversations) {
-                try {
-                    logger.info("🔄 Traitement conversation: {}", conversation.getId());
-                    
-                    Map<String, Object> conversationSummary = new HashMap<>();
-                    conversationSummary.put("id", conversation.getId());
-                    conversationSummary.put("subject", conversation.getSubject());
-                    
-                    // Agent avec gestion null sécurisée
-                    if (conversation.getAgent() != null) {
-                        conversationSummary.put("agentId", conversation.getAgent().getId());
-                        conversationSummary.put("agentName", safeGetFullName(conversation.getAgent()));
-                    } else {
-                        logger.warn("⚠️ Agent null pour conversation: {}", conversation.getId());
-                        conversationSummary.put("agentId", "unknown");
-                        conversationSummary.put("agentName", "Agent inconnu");
-                    }
-                    
-                    // User avec gestion null sécurisée
-                    if (conversation.getUser() != null) {
-                        conversationSummary.put("userId", conversation.getUser().getId());
-                        conversationSummary.put("userName", safeGetFullName(conversation.getUser()));
-                    } else {
-                        logger.warn("⚠️ User null pour conversation: {}", conversation.getId());
-                        conversationSummary.put("userId", "unknown");
-                        conversationSummary.put("userName", "Utilisateur inconnu");
-                    }
-                    
-                    conversationSummary.put("createdAt", conversation.getCreation().toEpochMilli());
-                    conversationSummary.put("status", conversation.getStatus().toString());
-                    
-                    // Entreprise avec gestion null sécurisée
-                    if (conversation.getEntreprise() != null) {
-                        conversationSummary.put("entrepriseId", conversation.getEntreprise().getId());
-                        conversationSummary.put("entrepriseNom", conversation.getEntreprise().getNom());
-                    } else {
-                        logger.warn("⚠️ Entreprise null pour conversation: {}", conversation.getId());
-                        conversationSummary.put("entrepriseId", "unknown");
-                        conversationSummary.put("entrepriseNom", "Entreprise inconnue");
-                    }
-                    
-                    // Dernier message avec gestion d'erreur complète
-                    try {
-                        Message lastMessage = messageRepository.findLastMessageInConversation(conversation.getId());
-                        if (lastMessage != null && lastMessage.getSender() != null) {
-                            conversationSummary.put("lastMessage", lastMessage.getContent());
-                            conversationSummary.put("lastMessageTime", lastMessage.getCreation().toEpochMilli());
-                            conversationSummary.put("lastMessageSender", 
-                                lastMessage.getSender().getId().equals(conversation.getAgent().getId()) ? "AGENT" : "USER");
-                        } else {
-                            conversationSummary.put("lastMessage", "");
-                            conversationSummary.put("lastMessageTime", 0);
-                            conversationSummary.put("lastMessageSender", "");
-                        }
-                    } catch (Exception msgEx) {
-                        logger.warn("⚠️ Erreur récupération dernier message pour conversation {}: {}", 
-                                   conversation.getId(), msgEx.getMessage());
-                        conversationSummary.put("lastMessage", "");
-                        conversationSummary.put("lastMessageTime", 0);
-                        conversationSummary.put("lastMessageSender", "");
-                    }
-                    
-                    conversationList.add(conversationSummary);
-                    logger.info("✅ Conversation {} traitée avec succès", conversation.getId());
-                    
-                } catch (Exception convEx) {
-                    logger.error("❌ Erreur traitement conversation {}: {}", 
-                               conversation != null ? conversation.getId() : "null", convEx.getMessage(), convEx);
-                    // Continuer avec les autres conversations
-                }
-            }
+            List<Map<String, Object>> conversationList = summaryMapper.toMaps(userConversations);
             
             logger.info("✅ Traitement terminé - {} conversations dans la réponse", conversationList.size());
             
             response.put("status", "SUCCESS");
             response.put("conversations", conversationList);
             response.put("total", conversationList.size());
+            response.put("nextCursor", conversationPage.getNextCursor());
+            response.put("hasMore", conversationPage.hasMore());
             
             return ResponseEntity.ok(response);
             
+        } catch (BadRequestException e) {
+            response.put("status", "ERROR");
+            response.put("message", e.getMessage());
+            response.put("conversations", new ArrayList<>());
+            return ResponseEntity.badRequest().body(response);
         } catch (Exception e) {
             logger.error("❌ Erreur lors de la récupération des conversations utilisateur: {}", e.getMessage(), e);
             response.put("status", "ERROR");
@@ -186,10 +114,12 @@ public class ConversationController {
     @GetMapping("/conversations/user")
     public ResponseEntity<Map<String, Object>> getUserConversationsQuery(
             @RequestParam String userId,
-            @RequestParam(required = false) String entrepriseId) {
+            @RequestParam(required = false) String entrepriseId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
         
         logger.info("🔍 [ConversationController] getUserConversationsQuery - redirection vers getUserConversations");
-        return getUserConversations(userId, entrepriseId);
+        return getUserConversations(userId, entrepriseId, cursor, size);
     }
 
     /**
@@ -198,112 +128,35 @@ public class ConversationController {
     @Transactional(readOnly = true)
     @GetMapping("/conversations/active")
     public ResponseEntity<Map<String, Object>> getActiveConversations(
-            @RequestParam(required = false) String entrepriseId) {
+            @RequestParam(required = false) String entrepriseId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
         Map<String, Object> response = new HashMap<>();
         
         try {
             logger.info("🔍 [ConversationController] getActiveConversations - entrepriseId: {}", entrepriseId);
             
-            List<Conversation> activeConversations;
-            
-            if (entrepriseId != null && !entrepriseId.isEmpty()) {
-                logger.info("🔍 Recherche conversations actives pour entreprise: {}", entrepriseId);
-                // Récupérer les conversations actives pour une entreprise spécifique
-                activeConversations = conversationRepository.findByEntrepriseIdOrderByCreationDesc(entrepriseId);
-                logger.info("✅ {} conversations actives trouvées pour l'entreprise {}", activeConversations.size(), entrepriseId);
-            } else {
-                logger.info("🔍 Recherche toutes les conversations actives");
-                // Récupérer toutes les conversations actives
-                activeConversations = conversationRepository.findByStatusOrderByModificationDesc(
-                    abdaty_technologie.API_Invest.Entity.Enum.ConversationStatus.ACTIVE, 
-                    org.springframework.data.domain.Pageable.unpaged()).getContent();
-                logger.info("✅ {} conversations actives trouvées", activeConversations.size());
-            }
-            
-            List<Map<String, Object>> conversationList = new ArrayList<>();
-            
-            logger.info("🔄 Traitement de {} conversations actives", activeConversations.size());
+            CursorPage<ConversationSummary> conversationPage = chatService.getActiveConversationInbox(entrepriseId, null, cursor, size);
+            List<ConversationSummary> activeConversations = conversationPage.getContent();
+            logger.info("✅ {} conversations actives trouvées", activeConversations.size());
             
-            for (Conversation conversation : activeConversations) {
-                try {
-                    logger.info("🔄 Traitement conversation active: {}", conversation.getId());
-                    
-                    Map<String, Object> conversationSummary = new HashMap<>();
-                    conversationSummary.put("id", conversation.getId());
-                    conversationSummary.put("subject", conversation.getSubject());
-                    
-                    // Agent avec gestion null sécurisée
-                    if (conversation.getAgent() != null) {
-                        conversationSummary.put("agentId", conversation.getAgent().getId());
-                        conversationSummary.put("agentName", safeGetFullName(conversation.getAgent()));
-                    } else {
-                        logger.warn("⚠️ Agent null pour conversation: {}", conversation.getId());
-                        conversationSummary.put("agentId", "unknown");
-                        conversationSummary.put("agentName", "Agent inconnu");
-                    }
-                    
-                    // User avec gestion null sécurisée
-                    if (conversation.getUser() != null) {
-                        conversationSummary.put("userId", conversation.getUser().getId());
-                        conversationSummary.put("userName", safeGetFullName(conversation.getUser()));
-                    } else {
-                        logger.warn("⚠️ User null pour conversation: {}", conversation.getId());
-                        conversationSummary.put("userId", "unknown");
-                        conversationSummary.put("userName", "Utilisateur inconnu");
-                    }
-                    
-                    conversationSummary.put("createdAt", conversation.getCreation().toEpochMilli());
-                    conversationSummary.put("status", conversation.getStatus().toString());
-                    
-                    // Entreprise avec gestion null sécurisée
-                    if (conversation.getEntreprise() != null) {
-                        conversationSummary.put("entrepriseId", conversation.getEntreprise().getId());
-                        conversationSummary.put("entrepriseNom", conversation.getEntreprise().getNom());
-                    } else {
-                        logger.warn("⚠️ Entreprise null pour conversation: {}", conversation.getId());
-                        conversationSummary.put("entrepriseId", "unknown");
-                        conversationSummary.put("entrepriseNom", "Entreprise inconnue");
-                    }
-                    
-                    // Dernier message avec gestion d'erreur complète
-                    try {
-                        Message lastMessage = messageRepository.findLastMessageInConversation(conversation.getId());
-                        if (lastMessage != null && lastMessage.getSender() != null) {
-                            conversationSummary.put("lastMessage", lastMessage.getContent());
-                            conversationSummary.put("lastMessageTime", lastMessage.getCreation().toEpochMilli());
-                            conversationSummary.put("lastMessageSender", 
-                                lastMessage.getSender().getId().equals(conversation.getAgent().getId()) ? "AGENT" : "USER");
-                        } else {
-                            conversationSummary.put("lastMessage", "");
-                            conversationSummary.put("lastMessageTime", 0);
-                            conversationSummary.put("lastMessageSender", "");
-                        }
-                    } catch (Exception msgEx) {
-                        logger.warn("⚠️ Erreur récupération dernier message pour conversation {}: {}", 
-                                   conversation.getId(), msgEx.getMessage());
-                        conversationSummary.put("lastMessage", "");
-                        conversationSummary.put("lastMessageTime", 0);
-                        conversationSummary.put("lastMessageSender", "");
-                    }
-                    
-                    conversationList.add(conversationSummary);
-                    logger.info("✅ Conversation active {} traitée avec succès", conversation.getId());
-                    
-                } catch (Exception convEx) {
-                    logger.error("❌ Erreur traitement conversation active {}: {}", 
-                               conversation != null ? conversation.getId() : "null", convEx.getMessage(), convEx);
-                    // Continuer avec les autres conversations
-                }
-            }
+            List<Map<String, Object>> conversationList = summaryMapper.toMaps(activeConversations);
             
             logger.info("✅ Traitement terminé - {} conversations actives dans la réponse", conversationList.size());
             
             response.put("status", "SUCCESS");
             response.put("conversations", conversationList);
             response.put("total", conversationList.size());
+            response.put("nextCursor", conversationPage.getNextCursor());
+            response.put("hasMore", conversationPage.hasMore());
             
             return ResponseEntity.ok(response);
             
+        } catch (BadRequestException e) {
+            response.put("status", "ERROR");
+            response.put("message", e.getMessage());
+            response.put("conversations", new ArrayList<>());
+            return ResponseEntity.badRequest().body(response);
         } catch (Exception e) {
             logger.error("❌ Erreur lors de la récupération des conversations actives: {}", e.getMessage(), e);
             response.put("status", "ERROR");
@@ -6,8 +6,7 @@ import org.springframework.web.bind.annotation.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import abdaty_technologie.API_Invest.Entity.Conversation;
-import abdaty_technologie.API_Invest.repository.ConversationRepository;
+import abdaty_technologie.API_Invest.repository.ConversationInboxEntryRepository;
 import abdaty_technologie.API_Invest.repository.PersonsRepository;
 
 import java.util.HashMap;
@@ -25,7 +24,7 @@ public class TempChatController {
     private static final Logger logger = LoggerFactory.getLogger(TempChatController.class);
 
     @Autowired
-    private ConversationRepository conversationRepository;
+    private ConversationInboxEntryRepository inboxEntryRepository;
 
     @Autowired
     private PersonsRepository personsRepository;
@@ -50,20 +49,18 @@ public class TempChatController {
                 return ResponseEntity.ok(response);
             }
             
-            // Récupérer les conversations
-            List<Conversation> conversations = conversationRepository.findByUserIdOrAgentIdOrderByModificationDesc(userId, userId);
+            // Ids des conversations lus dans la boîte de réception, sans charger les conversations
+            List<String> conversationIds = inboxEntryRepository.findConversationIdsByParticipant(userId);
             
             response.put("status", "SUCCESS");
             response.put("userId", userId);
-            response.put("totalConversations", conversations.size());
-            response.put("message", "Test réussi - " + conversations.size() + " conversations trouvées");
+            response.put("totalConversations", conversationIds.size());
+            response.put("message", "Test réussi - " + conversationIds.size() + " conversations trouvées");
             
             // Ajouter les IDs des conversations pour debug
-            response.put("conversationIds", conversations.stream()
-                .map(Conversation::getId)
-                .toList());
+            response.put("conversationIds", conversationIds);
             
-            logger.info("✅ TEST réussi - {} conversations trouvées pour {}", conversations.size(), userId);
+            logger.info("✅ TEST réussi - {} conversations trouvées pour {}", conversationIds.size(), userId);
             
             return ResponseEntity.ok(response);
             
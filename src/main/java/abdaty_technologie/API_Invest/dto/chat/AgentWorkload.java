@@ -0,0 +1,129 @@
+package abdaty_technologie.API_Invest.dto.chat;
+
+/**
+ * Charge et réactivité d'un agent (tableau de bord superviseur) : conversations ouvertes, délais de
+ * première réponse et de réponse (moyenne et percentiles, en secondes ; null sans réponse mesurée)
+ */
+public class AgentWorkload {
+
+    private String agentId;
+    private String agentName;
+    private long openConversations;
+
+    private long firstResponseCount;
+    private Double averageFirstResponseSeconds;
+    private Long firstResponseP50Seconds;
+    private Long firstResponseP90Seconds;
+
+    private long replyCount;
+    private Double averageReplySeconds;
+    private Long replyP50Seconds;
+    private Long replyP90Seconds;
+    private Long replyP99Seconds;
+    private Long maxReplySeconds;
+
+    // Getters et Setters
+    public String getAgentId() {
+        return agentId;
+    }
+
+    public void setAgentId(String agentId) {
+        this.agentId = agentId;
+    }
+
+    public String getAgentName() {
+        return agentName;
+    }
+
+    public void setAgentName(String agentName) {
+        this.agentName = agentName;
+    }
+
+    public long getOpenConversations() {
+        return openConversations;
+    }
+
+    public void setOpenConversations(long openConversations) {
+        this.openConversations = openConversations;
+    }
+
+    public long getFirstResponseCount() {
+        return firstResponseCount;
+    }
+
+    public void setFirstResponseCount(long firstResponseCount) {
+        this.firstResponseCount = firstResponseCount;
+    }
+
+    public Double getAverageFirstResponseSeconds() {
+        return averageFirstResponseSeconds;
+    }
+
+    public void setAverageFirstResponseSeconds(Double averageFirstResponseSeconds) {
+        this.averageFirstResponseSeconds = averageFirstResponseSeconds;
+    }
+
+    public Long getFirstResponseP50Seconds() {
+        return firstResponseP50Seconds;
+    }
+
+    public void setFirstResponseP50Seconds(Long firstResponseP50Seconds) {
+        this.firstResponseP50Seconds = firstResponseP50Seconds;
+    }
+
+    public Long getFirstResponseP90Seconds() {
+        return firstResponseP90Seconds;
+    }
+
+    public void setFirstResponseP90Seconds(Long firstResponseP90Seconds) {
+        this.firstResponseP90Seconds = firstResponseP90Seconds;
+    }
+
+    public long getReplyCount() {
+        return replyCount;
+    }
+
+    public void setReplyCount(long replyCount) {
+        this.replyCount = replyCount;
+    }
+
+    public Double getAverageReplySeconds() {
+        return averageReplySeconds;
+    }
+
+    public void setAverageReplySeconds(Double averageReplySeconds) {
+        this.averageReplySeconds = averageReplySeconds;
+    }
+
+    public Long getReplyP50Seconds() {
+        return replyP50Seconds;
+    }
+
+    public void setReplyP50Seconds(Long replyP50Seconds) {
+        this.replyP50Seconds = replyP50Seconds;
+    }
+
+    public Long getReplyP90Seconds() {
+        return replyP90Seconds;
+    }
+
+    public void setReplyP90Seconds(Long replyP90Seconds) {
+        this.replyP90Seconds = replyP90Seconds;
+    }
+
+    public Long getReplyP99Seconds() {
+        return replyP99Seconds;
+    }
+
+    public void setReplyP99Seconds(Long replyP99Seconds) {
+        this.replyP99Seconds = replyP99Seconds;
+    }
+
+    public Long getMaxReplySeconds() {
+        return maxReplySeconds;
+    }
+
+    public void setMaxReplySeconds(Long maxReplySeconds) {
+        this.maxReplySeconds = maxReplySeconds;
+    }
+}
@@ -0,0 +1,59 @@
+package abdaty_technologie.API_Invest.dto.chat;
+
+/**
+ * État d'un téléversement de pièce jointe par morceaux : offset = nombre d'octets déjà reçus,
+ * à partir duquel le client reprend l'envoi.
+ */
+public class AttachmentUpload {
+
+    private final String uploadId;
+    private final String conversationId;
+    private final String fileName;
+    private final String contentType;
+    private final long size;
+    private final long offset;
+    private final long maxChunkBytes;
+
+    public AttachmentUpload(String uploadId, String conversationId, String fileName, String contentType,
+                            long size, long offset, long maxChunkBytes) {
+        this.uploadId = uploadId;
+        this.conversationId = conversationId;
+        this.fileName = fileName;
+        this.contentType = contentType;
+        this.size = size;
+        this.offset = offset;
+        this.maxChunkBytes = maxChunkBytes;
+    }
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public String getConversationId() {
+        return conversationId;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getMaxChunkBytes() {
+        return maxChunkBytes;
+    }
+
+    public boolean isComplete() {
+        return offset == size;
+    }
+}
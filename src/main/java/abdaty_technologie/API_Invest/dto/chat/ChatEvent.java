@@ -0,0 +1,83 @@
+package abdaty_technologie.API_Invest.dto.chat;
+
+import java.time.Instant;
+
+/**
+ * Événement de chat poussé aux clients abonnés (flux SSE)
+ */
+public class ChatEvent {
+
+    public static final String MESSAGE_CREATED = "MESSAGE_CREATED";
+    public static final String MESSAGE_READ = "MESSAGE_READ";
+    public static final String CONVERSATION_CLOSED = "CONVERSATION_CLOSED";
+
+    private String type;
+    private String conversationId;
+    private String actorId;           // Participant à l'origine de l'événement
+    private MessageResponse message;  // Renseigné pour MESSAGE_CREATED uniquement
+    private Instant occurredAt;
+
+    // Constructeurs
+    public ChatEvent() {}
+
+    public ChatEvent(String type, String conversationId, String actorId, MessageResponse message) {
+        this.type = type;
+        this.conversationId = conversationId;
+        this.actorId = actorId;
+        this.message = message;
+        this.occurredAt = Instant.now();
+    }
+
+    public static ChatEvent messageCreated(String conversationId, MessageResponse message) {
+        return new ChatEvent(MESSAGE_CREATED, conversationId, message.getSenderId(), message);
+    }
+
+    public static ChatEvent messageRead(String conversationId, String readerId) {
+        return new ChatEvent(MESSAGE_READ, conversationId, readerId, null);
+    }
+
+    public static ChatEvent conversationClosed(String conversationId, String closedBy) {
+        return new ChatEvent(CONVERSATION_CLOSED, conversationId, closedBy, null);
+    }
+
+    // Getters et Setters
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getConversationId() {
+        return conversationId;
+    }
+
+    public void setConversationId(String conversationId) {
+        this.conversationId = conversationId;
+    }
+
+    public String getActorId() {
+        return actorId;
+    }
+
+    public void setActorId(String actorId) {
+        this.actorId = actorId;
+    }
+
+    public MessageResponse getMessage() {
+        return message;
+    }
+
+    public void setMessage(MessageResponse message) {
+        this.message = message;
+    }
+
+    public Instant getOccurredAt() {
+        return occurredAt;
+    }
+
+    public void setOccurredAt(Instant occurredAt) {
+        this.occurredAt = occurredAt;
+    }
+}
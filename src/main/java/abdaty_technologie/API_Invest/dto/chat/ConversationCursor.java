@@ -0,0 +1,58 @@
+package abdaty_technologie.API_Invest.dto.chat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+import abdaty_technologie.API_Invest.exception.BadRequestException;
+
+/**
+ * Curseur de pagination "keyset" sur (modification, id) pour les listes de conversations.
+ * Le client le reçoit sous forme opaque (nextCursor) et le renvoie tel quel pour obtenir la page suivante.
+ */
+public class ConversationCursor {
+
+    private final Instant modification;
+    private final String id;
+
+    public ConversationCursor(Instant modification, String id) {
+        this.modification = modification;
+        this.id = id;
+    }
+
+    /**
+     * Encode le curseur en chaîne opaque (base64 URL-safe)
+     */
+    public String encode() {
+        String raw = modification.getEpochSecond() + ":" + modification.getNano() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Décode un curseur reçu du client ; null ou vide = première page
+     */
+    public static ConversationCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", 3);
+            Instant modification = Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            if (parts[2].isEmpty()) {
+                throw new IllegalArgumentException("id vide");
+            }
+            return new ConversationCursor(modification, parts[2]);
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Curseur de pagination invalide");
+        }
+    }
+
+    public Instant getModification() {
+        return modification;
+    }
+
+    public String getId() {
+        return id;
+    }
+}
@@ -37,6 +37,10 @@ public class ConversationResponse {
     private int totalMessages;
     private int unreadMessages;
 
+    // Curseurs de la fenêtre de messages (mode "derniers N messages" uniquement)
+    private String olderCursor;
+    private String syncCursor;
+
     // Constructeurs
     public ConversationResponse() {}
 
@@ -184,4 +188,20 @@ public class ConversationResponse {
     public void setUnreadMessages(int unreadMessages) {
         this.unreadMessages = unreadMessages;
     }
+
+    public String getOlderCursor() {
+        return olderCursor;
+    }
+
+    public void setOlderCursor(String olderCursor) {
+        this.olderCursor = olderCursor;
+    }
+
+    public String getSyncCursor() {
+        return syncCursor;
+    }
+
+    public void setSyncCursor(String syncCursor) {
+        this.syncCursor = syncCursor;
+    }
 }
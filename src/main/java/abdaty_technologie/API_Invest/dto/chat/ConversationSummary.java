@@ -0,0 +1,192 @@
+package abdaty_technologie.API_Invest.dto.chat;
+
+import java.time.Instant;
+
+import abdaty_technologie.API_Invest.Entity.Enum.ConversationPriority;
+import abdaty_technologie.API_Invest.Entity.Enum.ConversationStatus;
+
+/**
+ * Ligne de boîte de réception d'une conversation, construite depuis le modèle de lecture
+ * (ConversationInboxEntry). Contient en une seule ligne la conversation, les noms des participants,
+ * le nom de l'entreprise, le dernier message et les non-lus du participant qui consulte la liste.
+ */
+public class ConversationSummary {
+
+    private String id;
+    private String subject;
+    private ConversationStatus status;
+    private ConversationPriority priority;
+    private Instant creation;
+    private Instant modification;
+
+    // Informations sur l'entreprise
+    private String entrepriseId;
+    private String entrepriseNom;
+
+    // Informations sur les participants
+    private String agentId;
+    private String agentName;
+    private String userId;
+    private String userName;
+
+    // Dernier message (null si la conversation est vide)
+    private String lastMessageContent;
+    private Instant lastMessageTime;
+    private String lastMessageSenderId;
+
+    // Messages non lus du participant dont c'est la boîte (de l'agent pour la vue globale)
+    private int unreadCount;
+
+    // Premier message de l'utilisateur sans réponse de l'agent (null si l'agent a répondu)
+    private Instant waitingSince;
+
+    // Constructeurs
+    public ConversationSummary() {}
+
+    /**
+     * Rôle de l'expéditeur du dernier message ("AGENT" ou "USER"), null si aucun message
+     */
+    public String getLastMessageSenderRole() {
+        if (lastMessageSenderId == null) {
+            return null;
+        }
+        return lastMessageSenderId.equals(agentId) ? "AGENT" : "USER";
+    }
+
+    // Getters et Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    public ConversationStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(ConversationStatus status) {
+        this.status = status;
+    }
+
+    public ConversationPriority getPriority() {
+        return priority;
+    }
+
+    public void setPriority(ConversationPriority priority) {
+        this.priority = priority;
+    }
+
+    public Instant getCreation() {
+        return creation;
+    }
+
+    public void setCreation(Instant creation) {
+        this.creation = creation;
+    }
+
+    public Instant getModification() {
+        return modification;
+    }
+
+    public void setModification(Instant modification) {
+        this.modification = modification;
+    }
+
+    public String getEntrepriseId() {
+        return entrepriseId;
+    }
+
+    public void setEntrepriseId(String entrepriseId) {
+        this.entrepriseId = entrepriseId;
+    }
+
+    public String getEntrepriseNom() {
+        return entrepriseNom;
+    }
+
+    public void setEntrepriseNom(String entrepriseNom) {
+        this.entrepriseNom = entrepriseNom;
+    }
+
+    public String getAgentId() {
+        return agentId;
+    }
+
+    public void setAgentId(String agentId) {
+        this.agentId = agentId;
+    }
+
+    public String getAgentName() {
+        return agentName;
+    }
+
+    public void setAgentName(String agentName) {
+        this.agentName = agentName;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public void setUserName(String userName) {
+        this.userName = userName;
+    }
+
+    public String getLastMessageContent() {
+        return lastMessageContent;
+    }
+
+    public void setLastMessageContent(String lastMessageContent) {
+        this.lastMessageContent = lastMessageContent;
+    }
+
+    public Instant getLastMessageTime() {
+        return lastMessageTime;
+    }
+
+    public void setLastMessageTime(Instant lastMessageTime) {
+        this.lastMessageTime = lastMessageTime;
+    }
+
+    public String getLastMessageSenderId() {
+        return lastMessageSenderId;
+    }
+
+    public void setLastMessageSenderId(String lastMessageSenderId) {
+        this.lastMessageSenderId = lastMessageSenderId;
+    }
+
+    public int getUnreadCount() {
+        return unreadCount;
+    }
+
+    public void setUnreadCount(int unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+
+    public Instant getWaitingSince() {
+        return waitingSince;
+    }
+
+    public void setWaitingSince(Instant waitingSince) {
+        this.waitingSince = waitingSince;
+    }
+}
@@ -0,0 +1,29 @@
+package abdaty_technologie.API_Invest.dto.chat;
+
+import java.util.List;
+
+/**
+ * Page d'une liste paginée par curseur : éléments + curseur opaque de la page suivante (null si dernière page)
+ */
+public class CursorPage<T> {
+
+    private final List<T> content;
+    private final String nextCursor;
+
+    public CursorPage(List<T> content, String nextCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,68 @@
+package abdaty_technologie.API_Invest.dto.chat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+import abdaty_technologie.API_Invest.Entity.Message;
+import abdaty_technologie.API_Invest.exception.BadRequestException;
+
+/**
+ * Curseur "keyset" sur (creation, id) des messages d'une conversation.
+ * Sert à la fois pour la synchronisation incrémentale (messages après le curseur)
+ * et pour le chargement de l'historique (messages avant le curseur).
+ */
+public class MessageCursor {
+
+    private final Instant creation;
+    private final String id;
+
+    public MessageCursor(Instant creation, String id) {
+        this.creation = creation;
+        this.id = id;
+    }
+
+    public static MessageCursor of(Message message) {
+        return new MessageCursor(message.getCreation(), message.getId());
+    }
+
+    public static MessageCursor of(MessageResponse message) {
+        return new MessageCursor(message.getCreation(), message.getId());
+    }
+
+    /**
+     * Encode le curseur en chaîne opaque (base64 URL-safe)
+     */
+    public String encode() {
+        String raw = creation.getEpochSecond() + ":" + creation.getNano() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Décode un curseur reçu du client ; null ou vide = pas de curseur
+     */
+    public static MessageCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", 3);
+            Instant creation = Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            if (parts[2].isEmpty()) {
+                throw new IllegalArgumentException("id vide");
+            }
+            return new MessageCursor(creation, parts[2]);
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Curseur de message invalide");
+        }
+    }
+
+    public Instant getCreation() {
+        return creation;
+    }
+
+    public String getId() {
+        return id;
+    }
+}
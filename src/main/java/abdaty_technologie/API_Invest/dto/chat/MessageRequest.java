@@ -18,6 +18,13 @@ public class MessageRequest {
     private String documentName;
     private String documentUrl;
 
+    /**
+     * Identifiant généré par le client, réutilisé à chaque renvoi du même message : un renvoi retourne
+     * le message d'origine au lieu d'un doublon (facultatif, 64 caractères au plus)
+     */
+    @Size(max = 64, message = "L'identifiant client du message ne peut pas dépasser 64 caractères")
+    private String clientMessageId;
+
     // Constructeurs
     public MessageRequest() {}
 
@@ -62,4 +69,12 @@ public class MessageRequest {
     public void setDocumentUrl(String documentUrl) {
         this.documentUrl = documentUrl;
     }
+
+    public String getClientMessageId() {
+        return clientMessageId;
+    }
+
+    public void setClientMessageId(String clientMessageId) {
+        this.clientMessageId = clientMessageId;
+    }
 }
@@ -22,8 +22,12 @@ public class MessageResponse {
 
     // Données spécifiques aux documents
     private String documentName;
+    // Pièce jointe téléversée : /chat/attachments/{id}, à appeler avec ?participantId=<id du lecteur>
     private String documentUrl;
 
+    // Identifiant fourni par le client à l'envoi (rapprochement avec l'affichage optimiste)
+    private String clientMessageId;
+
     // Constructeurs
     public MessageResponse() {}
 
@@ -123,4 +127,12 @@ public class MessageResponse {
     public void setDocumentUrl(String documentUrl) {
         this.documentUrl = documentUrl;
     }
+
+    public String getClientMessageId() {
+        return clientMessageId;
+    }
+
+    public void setClientMessageId(String clientMessageId) {
+        this.clientMessageId = clientMessageId;
+    }
 }
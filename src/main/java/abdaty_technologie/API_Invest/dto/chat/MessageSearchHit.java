@@ -0,0 +1,35 @@
+package abdaty_technologie.API_Invest.dto.chat;
+
+/**
+ * Un message trouvé par la recherche, avec sa conversation et son score de pertinence
+ */
+public class MessageSearchHit {
+
+    private final MessageResponse message;
+    private final String conversationId;
+    private final String conversationSubject;
+    private final float score;
+
+    public MessageSearchHit(MessageResponse message, String conversationId, String conversationSubject, float score) {
+        this.message = message;
+        this.conversationId = conversationId;
+        this.conversationSubject = conversationSubject;
+        this.score = score;
+    }
+
+    public MessageResponse getMessage() {
+        return message;
+    }
+
+    public String getConversationId() {
+        return conversationId;
+    }
+
+    public String getConversationSubject() {
+        return conversationSubject;
+    }
+
+    public float getScore() {
+        return score;
+    }
+}
@@ -0,0 +1,42 @@
+package abdaty_technologie.API_Invest.dto.chat;
+
+import java.util.List;
+
+/**
+ * Page de résultats d'une recherche de messages, du plus pertinent au moins pertinent.
+ * totalHits est le nombre de messages trouvés (plafonné au-delà de 1000).
+ */
+public class MessageSearchResult {
+
+    private final List<MessageSearchHit> hits;
+    private final int page;
+    private final int size;
+    private final long totalHits;
+
+    public MessageSearchResult(List<MessageSearchHit> hits, int page, int size, long totalHits) {
+        this.hits = hits;
+        this.page = page;
+        this.size = size;
+        this.totalHits = totalHits;
+    }
+
+    public List<MessageSearchHit> getHits() {
+        return hits;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    public boolean isHasMore() {
+        return (long) (page + 1) * size < totalHits;
+    }
+}
@@ -0,0 +1,41 @@
+package abdaty_technologie.API_Invest.dto.chat;
+
+import java.util.List;
+
+/**
+ * Fenêtre de messages d'une conversation, toujours triée du plus ancien au plus récent.
+ *
+ * - olderCursor : à passer à "messages/before" pour charger l'historique (null = début de la conversation atteint)
+ * - syncCursor  : à passer à "messages/since" pour ne récupérer que les nouveaux messages
+ * - hasMore     : d'autres nouveaux messages restent à récupérer après cette fenêtre (synchronisation)
+ */
+public class MessageWindow {
+
+    private final List<MessageResponse> messages;
+    private final String olderCursor;
+    private final String syncCursor;
+    private final boolean hasMore;
+
+    public MessageWindow(List<MessageResponse> messages, String olderCursor, String syncCursor, boolean hasMore) {
+        this.messages = messages;
+        this.olderCursor = olderCursor;
+        this.syncCursor = syncCursor;
+        this.hasMore = hasMore;
+    }
+
+    public List<MessageResponse> getMessages() {
+        return messages;
+    }
+
+    public String getOlderCursor() {
+        return olderCursor;
+    }
+
+    public String getSyncCursor() {
+        return syncCursor;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+}
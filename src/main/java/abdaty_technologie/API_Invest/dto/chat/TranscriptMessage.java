@@ -0,0 +1,53 @@
+package abdaty_technologie.API_Invest.dto.chat;
+
+import java.time.Instant;
+
+import abdaty_technologie.API_Invest.Entity.Enum.MessageType;
+
+/**
+ * Ligne d'export d'une conversation : les seuls champs d'un message utiles à la transcription,
+ * lus par projection (aucune entité chargée)
+ */
+public class TranscriptMessage {
+
+    private final String id;
+    private final Instant creation;
+    private final String senderId;
+    private final MessageType messageType;
+    private final String content;
+    private final String documentName;
+
+    public TranscriptMessage(String id, Instant creation, String senderId, MessageType messageType,
+                             String content, String documentName) {
+        this.id = id;
+        this.creation = creation;
+        this.senderId = senderId;
+        this.messageType = messageType;
+        this.content = content;
+        this.documentName = documentName;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Instant getCreation() {
+        return creation;
+    }
+
+    public String getSenderId() {
+        return senderId;
+    }
+
+    public MessageType getMessageType() {
+        return messageType;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public String getDocumentName() {
+        return documentName;
+    }
+}
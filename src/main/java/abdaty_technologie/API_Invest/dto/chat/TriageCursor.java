@@ -0,0 +1,64 @@
+package abdaty_technologie.API_Invest.dto.chat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+import abdaty_technologie.API_Invest.exception.BadRequestException;
+
+/**
+ * Curseur de pagination "keyset" de la file de triage, sur (rang de priorité, attente depuis, id).
+ * Opaque pour le client, comme ConversationCursor.
+ */
+public class TriageCursor {
+
+    private final int priorityRank;
+    private final Instant waitingSince;
+    private final String id;
+
+    public TriageCursor(int priorityRank, Instant waitingSince, String id) {
+        this.priorityRank = priorityRank;
+        this.waitingSince = waitingSince;
+        this.id = id;
+    }
+
+    /**
+     * Encode le curseur en chaîne opaque (base64 URL-safe)
+     */
+    public String encode() {
+        String raw = priorityRank + ":" + waitingSince.getEpochSecond() + ":" + waitingSince.getNano() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Décode un curseur reçu du client ; null ou vide = première page
+     */
+    public static TriageCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", 4);
+            Instant waitingSince = Instant.ofEpochSecond(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+            if (parts[3].isEmpty()) {
+                throw new IllegalArgumentException("id vide");
+            }
+            return new TriageCursor(Integer.parseInt(parts[0]), waitingSince, parts[3]);
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Curseur de pagination invalide");
+        }
+    }
+
+    public int getPriorityRank() {
+        return priorityRank;
+    }
+
+    public Instant getWaitingSince() {
+        return waitingSince;
+    }
+
+    public String getId() {
+        return id;
+    }
+}
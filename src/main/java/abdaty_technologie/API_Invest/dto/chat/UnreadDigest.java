@@ -0,0 +1,41 @@
+package abdaty_technologie.API_Invest.dto.chat;
+
+/**
+ * Destinataire d'un récapitulatif de messages non lus : ses coordonnées et le total de ses non-lus
+ */
+public class UnreadDigest {
+
+    private final String participantId;
+    private final String email;
+    private final String prenom;
+    private final long conversationCount;
+    private final long unreadCount;
+
+    public UnreadDigest(String participantId, String email, String prenom, long conversationCount, long unreadCount) {
+        this.participantId = participantId;
+        this.email = email;
+        this.prenom = prenom;
+        this.conversationCount = conversationCount;
+        this.unreadCount = unreadCount;
+    }
+
+    public String getParticipantId() {
+        return participantId;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getPrenom() {
+        return prenom;
+    }
+
+    public long getConversationCount() {
+        return conversationCount;
+    }
+
+    public long getUnreadCount() {
+        return unreadCount;
+    }
+}
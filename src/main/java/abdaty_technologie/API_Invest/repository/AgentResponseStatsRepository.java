@@ -0,0 +1,36 @@
+package abdaty_technologie.API_Invest.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import abdaty_technologie.API_Invest.Entity.AgentResponseStats;
+import jakarta.persistence.LockModeType;
+
+@Repository
+public interface AgentResponseStatsRepository extends JpaRepository<AgentResponseStats, String> {
+
+    /**
+     * Agrégats d'un agent, verrouillés pour y ajouter les réponses accumulées en mémoire
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM AgentResponseStats s WHERE s.agent.id = :agentId")
+    Optional<AgentResponseStats> findByAgentIdForUpdate(@Param("agentId") String agentId);
+
+    /**
+     * Agrégats de tous les agents avec leur identité (une ligne par agent)
+     */
+    @Query("SELECT s FROM AgentResponseStats s JOIN FETCH s.agent")
+    List<AgentResponseStats> findAllWithAgent();
+
+    /**
+     * Agents comptés avec au moins une conversation ouverte (réconciliation)
+     */
+    @Query("SELECT s.agent.id FROM AgentResponseStats s WHERE s.openConversations > 0")
+    List<String> findAgentIdsWithOpenConversations();
+}
@@ -0,0 +1,48 @@
+package abdaty_technologie.API_Invest.repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import abdaty_technologie.API_Invest.Entity.ChatDigestState;
+import abdaty_technologie.API_Invest.dto.chat.UnreadDigest;
+
+@Repository
+public interface ChatDigestStateRepository extends JpaRepository<ChatDigestState, String> {
+
+    /**
+     * Suivi des destinataires d'un lot
+     */
+    @Query("SELECT s FROM ChatDigestState s WHERE s.participant.id IN :participantIds")
+    List<ChatDigestState> findByParticipantIdIn(@Param("participantIds") Collection<String> participantIds);
+
+    /**
+     * Destinataires d'un récapitulatif, par ordre d'id (pagination keyset via afterId, null pour commencer) :
+     * au moins un message non lu reçu avant ageCutoff et pas encore signalé, pas de récapitulatif
+     * depuis throttleCutoff. Une seule requête ensembliste par lot, agrégée par destinataire.
+     */
+    @Query("SELECT new abdaty_technologie.API_Invest.dto.chat.UnreadDigest(p.id, p.email, p.prenom, COUNT(u), SUM(u.unreadCount)) " +
+           "FROM ConversationUnreadCounter u JOIN u.participant p " +
+           "LEFT JOIN ChatDigestState s ON s.participant = p " +
+           "WHERE u.unreadCount > 0 " +
+           "AND p.email IS NOT NULL AND p.email <> '' " +
+           "AND (:afterId IS NULL OR p.id > :afterId) " +
+           "AND (s.id IS NULL OR s.lastSentAt <= :throttleCutoff) " +
+           "AND EXISTS (SELECT m.id FROM Message m WHERE m.conversation = u.conversation AND m.sender <> p " +
+           "    AND m.creation <= :ageCutoff " +
+           "    AND (s.id IS NULL OR m.creation > s.coveredUpTo) " +
+           "    AND (u.lastReadMessageAt IS NULL OR m.creation > u.lastReadMessageAt " +
+           "         OR (m.creation = u.lastReadMessageAt AND m.id > u.lastReadMessageId))) " +
+           "GROUP BY p.id, p.email, p.prenom " +
+           "ORDER BY p.id")
+    List<UnreadDigest> findDigestRecipients(@Param("ageCutoff") Instant ageCutoff,
+                                            @Param("throttleCutoff") Instant throttleCutoff,
+                                            @Param("afterId") String afterId,
+                                            Pageable pageable);
+}
@@ -0,0 +1,38 @@
+package abdaty_technologie.API_Invest.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import abdaty_technologie.API_Invest.Entity.ConversationArchive;
+
+@Repository
+public interface ConversationArchiveRepository extends JpaRepository<ConversationArchive, String> {
+
+    /**
+     * Archive d'une conversation
+     */
+    Optional<ConversationArchive> findByConversationId(String conversationId);
+
+    /**
+     * Archives de plusieurs conversations (résultats de recherche)
+     */
+    List<ConversationArchive> findByConversationIdIn(List<String> conversationIds);
+
+    /**
+     * Nombre de messages archivés dans une conversation (0 sans archive)
+     */
+    @Query("SELECT COALESCE(MAX(a.messageCount), 0) FROM ConversationArchive a WHERE a.conversation.id = :conversationId")
+    int findMessageCount(@Param("conversationId") String conversationId);
+
+    /**
+     * Totaux de l'archive : [messages, octets avant compression, octets compressés]
+     */
+    @Query("SELECT COALESCE(SUM(a.messageCount), 0), COALESCE(SUM(a.rawBytes), 0), COALESCE(SUM(a.compressedBytes), 0) " +
+           "FROM ConversationArchive a")
+    List<Object[]> sumTotals();
+}
@@ -0,0 +1,105 @@
+package abdaty_technologie.API_Invest.repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import abdaty_technologie.API_Invest.Entity.ConversationInboxEntry;
+import abdaty_technologie.API_Invest.Entity.Enum.ChatParticipantRole;
+import abdaty_technologie.API_Invest.Entity.Enum.ConversationStatus;
+
+/**
+ * Modèle de lecture des boîtes de réception : toutes les listes de conversations lisent cette table,
+ * avec une pagination keyset sur (conversationUpdatedAt, id de conversation). Passer null comme curseur
+ * pour la première page ; la page demandée via Pageable doit rester 0.
+ */
+@Repository
+public interface ConversationInboxEntryRepository extends JpaRepository<ConversationInboxEntry, String> {
+
+    /**
+     * Lignes des conversations données (mise à jour du modèle de lecture, vérification)
+     */
+    @Query("SELECT e FROM ConversationInboxEntry e WHERE e.conversation.id IN :conversationIds")
+    List<ConversationInboxEntry> findByConversationIdIn(@Param("conversationIds") Collection<String> conversationIds);
+
+    /**
+     * Boîte de réception d'un participant, éventuellement limitée à une entreprise (null = toutes)
+     */
+    @Query("SELECT e FROM ConversationInboxEntry e " +
+           "WHERE e.participantId = :participantId " +
+           "AND (:entrepriseId IS NULL OR e.entrepriseId = :entrepriseId) " +
+           "AND (:cursorModification IS NULL OR e.conversationUpdatedAt < :cursorModification " +
+           "OR (e.conversationUpdatedAt = :cursorModification AND e.conversation.id < :cursorId)) " +
+           "ORDER BY e.conversationUpdatedAt DESC, e.conversation.id DESC")
+    List<ConversationInboxEntry> findInboxForParticipant(@Param("participantId") String participantId,
+                                                         @Param("entrepriseId") String entrepriseId,
+                                                         @Param("cursorModification") Instant cursorModification,
+                                                         @Param("cursorId") String cursorId,
+                                                         Pageable pageable);
+
+    /**
+     * Vue globale : une ligne par conversation (celle de l'agent), filtrée par statut, entreprise et/ou
+     * agent (null = pas de filtre)
+     */
+    @Query("SELECT e FROM ConversationInboxEntry e " +
+           "WHERE e.participantRole = :agentRole " +
+           "AND (:status IS NULL OR e.status = :status) " +
+           "AND (:entrepriseId IS NULL OR e.entrepriseId = :entrepriseId) " +
+           "AND (:agentId IS NULL OR e.participantId = :agentId) " +
+           "AND (:cursorModification IS NULL OR e.conversationUpdatedAt < :cursorModification " +
+           "OR (e.conversationUpdatedAt = :cursorModification AND e.conversation.id < :cursorId)) " +
+           "ORDER BY e.conversationUpdatedAt DESC, e.conversation.id DESC")
+    List<ConversationInboxEntry> findInbox(@Param("agentRole") ChatParticipantRole agentRole,
+                                           @Param("status") ConversationStatus status,
+                                           @Param("entrepriseId") String entrepriseId,
+                                           @Param("agentId") String agentId,
+                                           @Param("cursorModification") Instant cursorModification,
+                                           @Param("cursorId") String cursorId,
+                                           Pageable pageable);
+
+    /**
+     * Boîte de réception d'un membre, limitée aux entreprises dont il est membre
+     */
+    @Query("SELECT e FROM ConversationInboxEntry e " +
+           "WHERE e.participantId = :memberId " +
+           "AND e.entrepriseId IN (SELECT m.entreprise.id FROM EntrepriseMembre m WHERE m.personne.id = :memberId) " +
+           "AND (:cursorModification IS NULL OR e.conversationUpdatedAt < :cursorModification " +
+           "OR (e.conversationUpdatedAt = :cursorModification AND e.conversation.id < :cursorId)) " +
+           "ORDER BY e.conversationUpdatedAt DESC, e.conversation.id DESC")
+    List<ConversationInboxEntry> findInboxForMemberEntreprises(@Param("memberId") String memberId,
+                                                               @Param("cursorModification") Instant cursorModification,
+                                                               @Param("cursorId") String cursorId,
+                                                               Pageable pageable);
+
+    /**
+     * File de triage d'un agent : ses conversations actives où l'utilisateur attend une réponse,
+     * par priorité décroissante puis attente la plus longue (curseur null pour la première page)
+     */
+    @Query("SELECT e FROM ConversationInboxEntry e " +
+           "WHERE e.participantId = :agentId AND e.participantRole = :agentRole " +
+           "AND e.status = :status AND e.waitingSince IS NOT NULL " +
+           "AND (:cursorRank IS NULL OR e.priorityRank < :cursorRank " +
+           "OR (e.priorityRank = :cursorRank AND e.waitingSince > :cursorWaitingSince) " +
+           "OR (e.priorityRank = :cursorRank AND e.waitingSince = :cursorWaitingSince AND e.conversation.id > :cursorId)) " +
+           "ORDER BY e.priorityRank DESC, e.waitingSince ASC, e.conversation.id ASC")
+    List<ConversationInboxEntry> findTriageQueue(@Param("agentId") String agentId,
+                                                 @Param("agentRole") ChatParticipantRole agentRole,
+                                                 @Param("status") ConversationStatus status,
+                                                 @Param("cursorRank") Integer cursorRank,
+                                                 @Param("cursorWaitingSince") Instant cursorWaitingSince,
+                                                 @Param("cursorId") String cursorId,
+                                                 Pageable pageable);
+
+    /**
+     * Ids des conversations d'un participant, des plus récentes aux plus anciennes
+     */
+    @Query("SELECT e.conversation.id FROM ConversationInboxEntry e WHERE e.participantId = :participantId " +
+           "ORDER BY e.conversationUpdatedAt DESC, e.conversation.id DESC")
+    List<String> findConversationIdsByParticipant(@Param("participantId") String participantId);
+}
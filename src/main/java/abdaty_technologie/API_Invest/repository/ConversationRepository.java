@@ -3,6 +3,8 @@ package abdaty_technologie.API_Invest.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -10,11 +12,130 @@ import org.springframework.stereotype.Repository;
 import abdaty_technologie.API_Invest.Entity.Conversation;
 import abdaty_technologie.API_Invest.Entity.Enum.ConversationStatus;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+
+import jakarta.persistence.LockModeType;
 
 @Repository
 public interface ConversationRepository extends JpaRepository<Conversation, String> {
 
+    /**
+     * Charge une conversation en la verrouillant (SELECT ... FOR UPDATE) : sérialise l'envoi, la lecture
+     * et la réparation des compteurs de non-lus d'une même conversation
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Conversation c WHERE c.id = :id")
+    Optional<Conversation> findByIdForUpdate(@Param("id") String id);
+
+    /**
+     * Conversations avec leurs participants et leur entreprise (mise à jour du modèle de lecture des boîtes)
+     */
+    @Query("SELECT c FROM Conversation c JOIN FETCH c.agent JOIN FETCH c.user JOIN FETCH c.entreprise WHERE c.id IN :ids")
+    List<Conversation> findAllWithParticipantsByIdIn(@Param("ids") Collection<String> ids);
+
+    /**
+     * Verrouille plusieurs conversations d'un coup (envoi groupé), toujours dans l'ordre des identifiants
+     * pour ne pas s'interbloquer avec un autre lot
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Conversation c WHERE c.id IN :ids ORDER BY c.id ASC")
+    List<Conversation> findAllByIdForUpdate(@Param("ids") Collection<String> ids);
+
+    /**
+     * Lot de conversations ayant des messages mais pas encore de résumé du dernier message
+     * (données antérieures à la dénormalisation), verrouillées pour le job de remplissage
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Conversation c " +
+           "WHERE (:afterId IS NULL OR c.id > :afterId) " +
+           "AND c.messageCount = 0 " +
+           "AND EXISTS (SELECT m.id FROM Message m WHERE m.conversation = c) " +
+           "ORDER BY c.id ASC")
+    List<Conversation> findBatchWithoutLastMessageForUpdate(@Param("afterId") String afterId, Pageable pageable);
+
+    /**
+     * Lot de conversations triées par id après afterId (null = début), sans verrou (réindexation de la recherche)
+     */
+    @Query("SELECT c FROM Conversation c " +
+           "WHERE (:afterId IS NULL OR c.id > :afterId) " +
+           "ORDER BY c.id ASC")
+    List<Conversation> findBatchAfterId(@Param("afterId") String afterId, Pageable pageable);
+
+    /**
+     * Ids des conversations dont la personne est agent ou utilisateur (périmètre de recherche)
+     */
+    @Query("SELECT c.id FROM Conversation c WHERE c.agent.id = :participantId OR c.user.id = :participantId")
+    List<String> findIdsByParticipant(@Param("participantId") String participantId);
+
+    /**
+     * Lot de conversations triées par id après afterId (null = début), verrouillées pour le job de réparation
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Conversation c " +
+           "WHERE (:afterId IS NULL OR c.id > :afterId) " +
+           "ORDER BY c.id ASC")
+    List<Conversation> findBatchAfterIdForUpdate(@Param("afterId") String afterId, Pageable pageable);
+
+    /**
+     * Nombre de conversations au statut donné (ACTIVE) par agent : [agentId, nombre], lu dans l'index (status, agent_id).
+     * Réconciliation seulement : le tableau de bord lit les compteurs de chat_agent_response_stats.
+     */
+    @Query("SELECT c.agent.id, COUNT(c) FROM Conversation c WHERE c.status = :status GROUP BY c.agent.id")
+    List<Object[]> countByStatusPerAgent(@Param("status") ConversationStatus status);
+
+    /**
+     * Nombre de conversations au statut donné (ACTIVE) d'un agent, lu dans l'index (status, agent_id)
+     */
+    @Query("SELECT COUNT(c) FROM Conversation c WHERE c.status = :status AND c.agent.id = :agentId")
+    long countByStatusAndAgentId(@Param("status") ConversationStatus status, @Param("agentId") String agentId);
+
+    /**
+     * Lot de conversations au statut donné (ACTIVE) sans message depuis idleBefore (ou jamais, créées avant),
+     * verrouillées pour la fermeture automatique. Pas de curseur : les conversations fermées sortent du filtre.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Conversation c " +
+           "WHERE c.status = :status " +
+           "AND (c.lastMessageAt < :idleBefore OR (c.lastMessageAt IS NULL AND c.creation < :idleBefore)) " +
+           "ORDER BY c.id ASC")
+    List<Conversation> findIdleBatchForUpdate(@Param("status") ConversationStatus status,
+                                              @Param("idleBefore") Instant idleBefore,
+                                              Pageable pageable);
+
+    /**
+     * Fermeture en masse d'un lot (une requête) : statut, clé de paire active et attente remis à zéro,
+     * résumé du dernier message remplacé par le message système envoyé au nom de l'agent.
+     * Les écouteurs JPA ne sont pas déclenchés : l'appelant signale les conversations au modèle de lecture.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Conversation c SET c.status = :closed, c.closedAt = :now, c.activePairKey = NULL, " +
+           "c.waitingSince = NULL, c.lastMessageAt = :now, c.lastMessagePreview = :preview, " +
+           "c.lastMessageSenderId = c.agent.id, c.messageCount = c.messageCount + 1, c.modification = :now " +
+           "WHERE c.id IN :ids AND c.status = :active")
+    int closeAll(@Param("ids") Collection<String> ids,
+                 @Param("closed") ConversationStatus closed,
+                 @Param("active") ConversationStatus active,
+                 @Param("now") Instant now,
+                 @Param("preview") String preview);
+
+    /**
+     * Conversations au statut donné (CLOSED) fermées avant closedBefore et ayant encore des messages
+     * dans la table messages (archivage), par id croissant après afterId
+     */
+    @Query("SELECT c.id FROM Conversation c " +
+           "WHERE c.status = :status " +
+           "AND c.closedAt < :closedBefore " +
+           "AND (:afterId IS NULL OR c.id > :afterId) " +
+           "AND EXISTS (SELECT m.id FROM Message m WHERE m.conversation = c) " +
+           "ORDER BY c.id ASC")
+    List<String> findArchivableIds(@Param("status") ConversationStatus status,
+                                   @Param("closedBefore") Instant closedBefore,
+                                   @Param("afterId") String afterId,
+                                   Pageable pageable);
+
     /**
      * Trouve toutes les conversations d'un agent
      */
@@ -54,24 +175,22 @@ public interface ConversationRepository extends JpaRepository<Conversation, Stri
     List<Conversation> findActiveConversationsByAgent(@Param("agentId") String agentId, @Param("status") ConversationStatus status);
 
     /**
-     * Trouve les conversations avec des messages non lus pour un agent
+     * Trouve les conversations avec des messages non lus pour un agent (compteur non nul)
      */
-    @Query("SELECT DISTINCT c FROM Conversation c " +
-           "JOIN c.messages m " +
+    @Query("SELECT c FROM Conversation c " +
            "WHERE c.agent.id = :agentId " +
-           "AND m.isRead = false " +
-           "AND m.sender.id != :agentId " +
+           "AND EXISTS (SELECT u.id FROM ConversationUnreadCounter u " +
+           "    WHERE u.conversation = c AND u.participant.id = :agentId AND u.unreadCount > 0) " +
            "ORDER BY c.modification DESC")
     List<Conversation> findConversationsWithUnreadMessagesForAgent(@Param("agentId") String agentId);
 
     /**
-     * Trouve les conversations avec des messages non lus pour un utilisateur
+     * Trouve les conversations avec des messages non lus pour un utilisateur (compteur non nul)
      */
-    @Query("SELECT DISTINCT c FROM Conversation c " +
-           "JOIN c.messages m " +
+    @Query("SELECT c FROM Conversation c " +
            "WHERE c.user.id = :userId " +
-           "AND m.isRead = false " +
-           "AND m.sender.id != :userId " +
+           "AND EXISTS (SELECT u.id FROM ConversationUnreadCounter u " +
+           "    WHERE u.conversation = c AND u.participant.id = :userId AND u.unreadCount > 0) " +
            "ORDER BY c.modification DESC")
     List<Conversation> findConversationsWithUnreadMessagesForUser(@Param("userId") String userId);
 
@@ -81,23 +200,31 @@ public interface ConversationRepository extends JpaRepository<Conversation, Stri
     long countByAgentIdAndStatus(String agentId, ConversationStatus status);
 
     /**
-     * Compte le nombre de messages non lus pour un agent
+     * Compte le nombre de messages non lus pour un agent en parcourant les messages
+     * (au-delà du filigrane de lecture) ; les badges lisent les compteurs
      */
     @Query("SELECT COUNT(m) FROM Message m " +
            "JOIN m.conversation c " +
            "WHERE c.agent.id = :agentId " +
-           "AND m.isRead = false " +
-           "AND m.sender.id != :agentId")
+           "AND m.sender.id != :agentId " +
+           "AND NOT EXISTS (SELECT u.id FROM ConversationUnreadCounter u " +
+           "    WHERE u.conversation = c AND u.participant.id = :agentId " +
+           "    AND (u.lastReadMessageAt > m.creation " +
+           "         OR (u.lastReadMessageAt = m.creation AND u.lastReadMessageId >= m.id)))")
     long countUnreadMessagesForAgent(@Param("agentId") String agentId);
 
     /**
-     * Compte le nombre de messages non lus pour un utilisateur
+     * Compte le nombre de messages non lus pour un utilisateur en parcourant les messages
+     * (au-delà du filigrane de lecture) ; les badges lisent les compteurs
      */
     @Query("SELECT COUNT(m) FROM Message m " +
            "JOIN m.conversation c " +
            "WHERE c.user.id = :userId " +
-           "AND m.isRead = false " +
-           "AND m.sender.id != :userId")
+           "AND m.sender.id != :userId " +
+           "AND NOT EXISTS (SELECT u.id FROM ConversationUnreadCounter u " +
+           "    WHERE u.conversation = c AND u.participant.id = :userId " +
+           "    AND (u.lastReadMessageAt > m.creation " +
+           "         OR (u.lastReadMessageAt = m.creation AND u.lastReadMessageId >= m.id)))")
     long countUnreadMessagesForUser(@Param("userId") String userId);
 
     /**
@@ -120,11 +247,15 @@ public interface ConversationRepository extends JpaRepository<Conversation, Stri
     List<Conversation> findActiveConversationsByAgentAndEntreprise(@Param("agentId") String agentId, @Param("entrepriseId") String entrepriseId, @Param("status") ConversationStatus status);
 
     /**
-     * Trouve une conversation active entre deux participants (peu importe qui est agent/user) dans une entreprise
+     * Conversation active d'une paire de participants dans une entreprise : une lecture sur l'index unique
+     * (clé calculée par Conversation.activePairKey, peu importe qui est agent ou utilisateur)
+     */
+    Optional<Conversation> findByActivePairKey(String activePairKey);
+
+    /**
+     * Même lecture, verrouillante : voit une conversation que vient de commiter une requête concurrente
      */
-    @Query("SELECT c FROM Conversation c WHERE c.entreprise.id = :entrepriseId AND c.status = 'ACTIVE' AND " +
-           "((c.agent.id = :participant1 AND c.user.id = :participant2) OR " +
-           "(c.agent.id = :participant2 AND c.user.id = :participant1)) " +
-           "ORDER BY c.creation DESC")
-    List<Conversation> findActiveConversationBetweenParticipants(@Param("entrepriseId") String entrepriseId, @Param("participant1") String participant1, @Param("participant2") String participant2);
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Conversation c WHERE c.activePairKey = :activePairKey")
+    Optional<Conversation> findByActivePairKeyForUpdate(@Param("activePairKey") String activePairKey);
 }
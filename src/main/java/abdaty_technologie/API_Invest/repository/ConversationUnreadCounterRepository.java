@@ -0,0 +1,79 @@
+package abdaty_technologie.API_Invest.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import abdaty_technologie.API_Invest.Entity.ConversationUnreadCounter;
+import abdaty_technologie.API_Invest.Entity.Enum.ChatParticipantRole;
+
+@Repository
+public interface ConversationUnreadCounterRepository extends JpaRepository<ConversationUnreadCounter, String> {
+
+    /**
+     * Compteur d'un participant dans une conversation
+     */
+    Optional<ConversationUnreadCounter> findByConversationIdAndParticipantId(String conversationId, String participantId);
+
+    /**
+     * États de lecture de plusieurs conversations (job de réparation, calcul de isRead)
+     */
+    List<ConversationUnreadCounter> findByConversationIdIn(List<String> conversationIds);
+
+    /**
+     * Compteurs des conversations données : [conversationId, participantId, unreadCount], lus en base
+     * (et non dans les entités de la session, que les incréments en masse ne rafraîchissent pas)
+     */
+    @Query("SELECT u.conversation.id, u.participant.id, u.unreadCount FROM ConversationUnreadCounter u " +
+           "WHERE u.conversation.id IN :conversationIds")
+    List<Object[]> findUnreadCounts(@Param("conversationIds") Collection<String> conversationIds);
+
+    /**
+     * Nombre de messages non lus d'un participant dans une conversation (une seule ligne)
+     */
+    @Query("SELECT COALESCE(MAX(u.unreadCount), 0) FROM ConversationUnreadCounter u " +
+           "WHERE u.conversation.id = :conversationId AND u.participant.id = :participantId")
+    int findUnreadCount(@Param("conversationId") String conversationId,
+                        @Param("participantId") String participantId);
+
+    /**
+     * Total des messages non lus d'un participant pour un rôle (badge), lu dans l'index du participant
+     */
+    @Query("SELECT COALESCE(SUM(u.unreadCount), 0) FROM ConversationUnreadCounter u " +
+           "WHERE u.participant.id = :participantId AND u.participantRole = :role")
+    long sumUnreadCount(@Param("participantId") String participantId,
+                        @Param("role") ChatParticipantRole role);
+
+    /**
+     * Ajoute delta au compteur ; renvoie 0 si la ligne n'existe pas encore
+     */
+    @Modifying
+    @Query("UPDATE ConversationUnreadCounter u SET u.unreadCount = u.unreadCount + :delta, u.modification = CURRENT_INSTANT " +
+           "WHERE u.conversation.id = :conversationId AND u.participant.id = :participantId")
+    int increment(@Param("conversationId") String conversationId,
+                  @Param("participantId") String participantId,
+                  @Param("delta") int delta);
+
+    /**
+     * Conversations du lot qui ont déjà un compteur pour le rôle donné
+     */
+    @Query("SELECT u.conversation.id FROM ConversationUnreadCounter u " +
+           "WHERE u.conversation.id IN :conversationIds AND u.participantRole = :role")
+    List<String> findConversationIdsWithCounter(@Param("conversationIds") Collection<String> conversationIds,
+                                                @Param("role") ChatParticipantRole role);
+
+    /**
+     * +1 pour les compteurs du rôle donné dans toutes les conversations du lot (une requête)
+     */
+    @Modifying
+    @Query("UPDATE ConversationUnreadCounter u SET u.unreadCount = u.unreadCount + 1, u.modification = CURRENT_INSTANT " +
+           "WHERE u.conversation.id IN :conversationIds AND u.participantRole = :role")
+    int incrementAll(@Param("conversationIds") Collection<String> conversationIds,
+                     @Param("role") ChatParticipantRole role);
+}
@@ -10,8 +10,12 @@ import org.springframework.stereotype.Repository;
 
 import abdaty_technologie.API_Invest.Entity.Message;
 import abdaty_technologie.API_Invest.Entity.Enum.MessageType;
+import abdaty_technologie.API_Invest.dto.chat.TranscriptMessage;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface MessageRepository extends JpaRepository<Message, String> {
@@ -28,11 +32,15 @@ public interface MessageRepository extends JpaRepository<Message, String> {
 
     /**
      * Trouve les messages non lus d'une conversation pour un utilisateur spécifique
+     * (messages de l'interlocuteur au-delà de son filigrane de lecture)
      */
     @Query("SELECT m FROM Message m " +
            "WHERE m.conversation.id = :conversationId " +
-           "AND m.isRead = false " +
            "AND m.sender.id != :userId " +
+           "AND NOT EXISTS (SELECT u.id FROM ConversationUnreadCounter u " +
+           "    WHERE u.conversation = m.conversation AND u.participant.id = :userId " +
+           "    AND (u.lastReadMessageAt > m.creation " +
+           "         OR (u.lastReadMessageAt = m.creation AND u.lastReadMessageId >= m.id))) " +
            "ORDER BY m.creation ASC")
     List<Message> findUnreadMessagesInConversationForUser(@Param("conversationId") String conversationId, 
                                                          @Param("userId") String userId);
@@ -46,26 +54,115 @@ public interface MessageRepository extends JpaRepository<Message, String> {
     Page<Message> findLatestMessagesInConversation(@Param("conversationId") String conversationId, Pageable pageable);
 
     /**
-     * Marque tous les messages d'une conversation comme lus pour un utilisateur
+     * Messages d'une conversation postérieurs au curseur (creation, id), du plus ancien au plus récent.
+     * Curseur null = depuis le début. Utilise l'index (conversation_id, created_at, id).
      */
-    @Modifying
-    @Query("UPDATE Message m SET m.isRead = true, m.readAt = CURRENT_TIMESTAMP " +
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender " +
            "WHERE m.conversation.id = :conversationId " +
-           "AND m.sender.id != :userId " +
-           "AND m.isRead = false")
-    int markAllMessagesAsReadInConversation(@Param("conversationId") String conversationId, 
-                                           @Param("userId") String userId);
+           "AND (:cursorCreation IS NULL OR m.creation > :cursorCreation " +
+           "     OR (m.creation = :cursorCreation AND m.id > :cursorId)) " +
+           "ORDER BY m.creation ASC, m.id ASC")
+    List<Message> findMessagesAfterCursor(@Param("conversationId") String conversationId,
+                                          @Param("cursorCreation") Instant cursorCreation,
+                                          @Param("cursorId") String cursorId,
+                                          Pageable pageable);
+
+    /**
+     * Page d'export d'une conversation, postérieure au curseur (creation, id), du plus ancien au plus récent.
+     * Projection sans entité : le contexte de persistance ne grossit pas au fil des pages.
+     */
+    @Query("SELECT new abdaty_technologie.API_Invest.dto.chat.TranscriptMessage(" +
+           "m.id, m.creation, m.sender.id, m.messageType, m.content, m.documentName) " +
+           "FROM Message m " +
+           "WHERE m.conversation.id = :conversationId " +
+           "AND (:cursorCreation IS NULL OR m.creation > :cursorCreation " +
+           "     OR (m.creation = :cursorCreation AND m.id > :cursorId)) " +
+           "ORDER BY m.creation ASC, m.id ASC")
+    List<TranscriptMessage> findTranscriptPage(@Param("conversationId") String conversationId,
+                                               @Param("cursorCreation") Instant cursorCreation,
+                                               @Param("cursorId") String cursorId,
+                                               Pageable pageable);
+
+    /**
+     * Messages d'une conversation antérieurs au curseur (creation, id), du plus récent au plus ancien.
+     * Curseur null = les plus récents. Utilise l'index (conversation_id, created_at, id).
+     */
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender " +
+           "WHERE m.conversation.id = :conversationId " +
+           "AND (:cursorCreation IS NULL OR m.creation < :cursorCreation " +
+           "     OR (m.creation = :cursorCreation AND m.id < :cursorId)) " +
+           "ORDER BY m.creation DESC, m.id DESC")
+    List<Message> findMessagesBeforeCursor(@Param("conversationId") String conversationId,
+                                           @Param("cursorCreation") Instant cursorCreation,
+                                           @Param("cursorId") String cursorId,
+                                           Pageable pageable);
 
     /**
      * Compte les messages non lus dans une conversation pour un utilisateur
      */
     @Query("SELECT COUNT(m) FROM Message m " +
            "WHERE m.conversation.id = :conversationId " +
-           "AND m.isRead = false " +
-           "AND m.sender.id != :userId")
+           "AND m.sender.id != :userId " +
+           "AND NOT EXISTS (SELECT u.id FROM ConversationUnreadCounter u " +
+           "    WHERE u.conversation = m.conversation AND u.participant.id = :userId " +
+           "    AND (u.lastReadMessageAt > m.creation " +
+           "         OR (u.lastReadMessageAt = m.creation AND u.lastReadMessageId >= m.id)))")
     long countUnreadMessagesInConversationForUser(@Param("conversationId") String conversationId, 
                                                  @Param("userId") String userId);
 
+    /**
+     * Messages par conversation et par expéditeur : [conversationId, senderId, nombre]
+     * (reconstruction des compteurs d'un participant qui n'a encore rien lu)
+     */
+    @Query("SELECT m.conversation.id, m.sender.id, COUNT(m) FROM Message m " +
+           "WHERE m.conversation.id IN :conversationIds " +
+           "GROUP BY m.conversation.id, m.sender.id")
+    List<Object[]> countBySender(@Param("conversationIds") List<String> conversationIds);
+
+    /**
+     * Messages non lus de chaque participant ayant un état de lecture : [conversationId, participantId, nombre]
+     * (messages de l'interlocuteur au-delà du filigrane ; reconstruction des compteurs)
+     */
+    @Query("SELECT u.conversation.id, u.participant.id, COUNT(m) FROM ConversationUnreadCounter u, Message m " +
+           "WHERE u.conversation.id IN :conversationIds " +
+           "AND m.conversation = u.conversation " +
+           "AND m.sender <> u.participant " +
+           "AND (u.lastReadMessageAt IS NULL OR m.creation > u.lastReadMessageAt " +
+           "     OR (m.creation = u.lastReadMessageAt AND m.id > u.lastReadMessageId)) " +
+           "GROUP BY u.conversation.id, u.participant.id")
+    List<Object[]> countUnreadAfterWatermark(@Param("conversationIds") List<String> conversationIds);
+
+    /**
+     * Dernier message (creation puis id) de chacune des conversations données
+     */
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender " +
+           "WHERE m.conversation.id IN :conversationIds " +
+           "AND NOT EXISTS (SELECT m2.id FROM Message m2 WHERE m2.conversation = m.conversation " +
+           "AND (m2.creation > m.creation OR (m2.creation = m.creation AND m2.id > m.id)))")
+    List<Message> findLastMessagesOfConversations(@Param("conversationIds") List<String> conversationIds);
+
+    /**
+     * Nombre de messages par conversation : [conversationId, nombre]
+     */
+    @Query("SELECT m.conversation.id, COUNT(m) FROM Message m " +
+           "WHERE m.conversation.id IN :conversationIds " +
+           "GROUP BY m.conversation.id")
+    List<Object[]> countByConversationIds(@Param("conversationIds") List<String> conversationIds);
+
+    /**
+     * Lot de messages triés par id après afterId (null = début) : réindexation de la recherche
+     */
+    @Query("SELECT m FROM Message m " +
+           "WHERE (:afterId IS NULL OR m.id > :afterId) " +
+           "ORDER BY m.id ASC")
+    List<Message> findBatchAfterId(@Param("afterId") String afterId, Pageable pageable);
+
+    /**
+     * Messages donnés avec leur expéditeur (résultats de recherche)
+     */
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender WHERE m.id IN :ids")
+    List<Message> findWithSenderByIdIn(@Param("ids") List<String> ids);
+
     /**
      * Trouve les messages par type
      */
@@ -95,6 +192,13 @@ public interface MessageRepository extends JpaRepository<Message, String> {
      */
     void deleteByConversationId(String conversationId);
 
+    /**
+     * Supprime en une requête les messages d'une conversation (archivage) ; renvoie le nombre de lignes
+     */
+    @Modifying
+    @Query("DELETE FROM Message m WHERE m.conversation.id = :conversationId")
+    int deleteAllInConversation(@Param("conversationId") String conversationId);
+
     /**
      * Compte le nombre total de messages dans une conversation
      */
@@ -104,4 +208,15 @@ public interface MessageRepository extends JpaRepository<Message, String> {
      * Trouve les messages d'un expéditeur spécifique dans une conversation
      */
     List<Message> findByConversationIdAndSenderIdOrderByCreationAsc(String conversationId, String senderId);
+
+    /**
+     * Message déjà enregistré avec cet identifiant client dans la conversation (renvoi d'un envoi)
+     */
+    Optional<Message> findByConversationIdAndClientMessageId(String conversationId, String clientMessageId);
+
+    /**
+     * Messages déjà enregistrés avec l'un de ces identifiants client dans ces conversations (lot d'envois groupés)
+     */
+    List<Message> findByConversationIdInAndClientMessageIdIn(Collection<String> conversationIds,
+                                                            Collection<String> clientMessageIds);
 }
@@ -29,10 +29,13 @@ public class SecurityConfig {
 
     private final RateLimitingFilter rateLimitingFilter;
     private final SecurityMetricFilter securityMetricFilter;
+    private final JwtAuthenticationFilter jwtAuthenticationFilter;
 
-    public SecurityConfig(RateLimitingFilter rateLimitingFilter, SecurityMetricFilter securityMetricFilter) {
+    public SecurityConfig(RateLimitingFilter rateLimitingFilter, SecurityMetricFilter securityMetricFilter,
+                          JwtAuthenticationFilter jwtAuthenticationFilter) {
         this.rateLimitingFilter = rateLimitingFilter;
         this.securityMetricFilter = securityMetricFilter;
+        this.jwtAuthenticationFilter = jwtAuthenticationFilter;
     }
 
     // ✅ Bean manquant
@@ -57,6 +60,8 @@ public class SecurityConfig {
             .headers(headers -> headers.frameOptions(frame -> frame.disable()));
 
         http.addFilterBefore(rateLimitingFilter, UsernamePasswordAuthenticationFilter.class);
+        // Dans la chaîne, avant l'authentification anonyme : sinon le token n'est jamais pris en compte
+        http.addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
         http.addFilterAfter(securityMetricFilter, UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
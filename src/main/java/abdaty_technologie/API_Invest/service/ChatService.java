@@ -27,6 +27,27 @@ public interface ChatService {
      */
     ConversationResponse getConversation(String conversationId, String userId);
 
+    /**
+     * Récupère une conversation avec seulement ses messageLimit derniers messages
+     * (curseurs olderCursor / syncCursor renseignés pour la suite)
+     */
+    ConversationResponse getConversation(String conversationId, String userId, int messageLimit);
+
+    /**
+     * Les limit messages les plus récents d'une conversation
+     */
+    MessageWindow getLatestMessages(String conversationId, int limit);
+
+    /**
+     * Historique : les limit messages précédant le curseur (olderCursor d'une fenêtre déjà affichée)
+     */
+    MessageWindow getMessagesBefore(String conversationId, String cursor, int limit);
+
+    /**
+     * Synchronisation incrémentale : uniquement les messages postérieurs au curseur (syncCursor)
+     */
+    MessageWindow getMessagesSince(String conversationId, String cursor, int limit);
+
     /**
      * Récupère toutes les conversations d'un agent
      */
@@ -67,8 +88,33 @@ public interface ChatService {
      */
     List<ConversationResponse> searchConversations(String keyword, String userId);
 
+    /**
+     * Recherche plein texte dans les messages des conversations du participant
+     * (ou dans une seule de ses conversations si conversationId est renseigné), page par page
+     */
+    MessageSearchResult searchMessages(String participantId, String query, String conversationId, int page, int size);
+
     /**
      * Récupère les conversations avec des messages non lus pour un agent
      */
     List<ConversationResponse> getConversationsWithUnreadMessagesForAgent(String agentId);
+
+    /**
+     * Boîte de réception d'un participant (agent ou user), paginée par curseur (cursor null = première page).
+     * Une seule requête sur conversation_inbox_entries : participants, entreprise et dernier message y sont
+     * déjà recopiés, sans jointure sur conversations ni messages.
+     */
+    CursorPage<ConversationSummary> getConversationInbox(String participantId, String entrepriseId, String cursor, int size);
+
+    /**
+     * Boîte de réception des conversations actives (filtrables par agent), ou de toutes celles d'une entreprise,
+     * en une seule requête SQL, paginée par curseur (cursor null = première page)
+     */
+    CursorPage<ConversationSummary> getActiveConversationInbox(String entrepriseId, String agentId, String cursor, int size);
+
+    /**
+     * File de triage d'un agent : conversations actives en attente de sa réponse, par priorité puis
+     * attente la plus longue, en une seule requête SQL sur un index, paginée par curseur
+     */
+    CursorPage<ConversationSummary> getAgentTriageQueue(String agentId, String cursor, int size);
 }
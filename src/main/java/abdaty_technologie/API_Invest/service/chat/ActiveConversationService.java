@@ -0,0 +1,115 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import java.sql.Savepoint;
+import java.util.Optional;
+
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.jpa.event.spi.CallbackRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.repository.ConversationRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Trouve ou crée la conversation active d'une paire de participants dans une entreprise.
+ *
+ * Une lecture sur l'index unique active_pair_key suffit quand la conversation existe déjà. Sinon le
+ * candidat est inséré immédiatement sous un point de sauvegarde de la transaction de l'appelant : l'index
+ * unique est le seul arbitre, sans verrou sur l'entreprise. Si un démarrage concurrent l'a emporté, l'insertion est annulée jusqu'au
+ * point de sauvegarde et la conversation gagnante est relue avec une lecture verrouillante (qui voit les
+ * lignes commitées, même en REPEATABLE READ). Aucun verrou n'est pris quand il n'y a pas de concurrence.
+ *
+ * Tout se passe sur la connexion de l'appelant : une transaction séparée pour l'insertion en
+ * demandait une seconde et épuisait le pool sous charge.
+ */
+@Service
+public class ActiveConversationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ActiveConversationService.class);
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Conversation active trouvée ou créée, et si elle vient d'être créée
+     */
+    public static final class Result {
+        private final Conversation conversation;
+        private final boolean created;
+
+        Result(Conversation conversation, boolean created) {
+            this.conversation = conversation;
+            this.created = created;
+        }
+
+        public Conversation getConversation() {
+            return conversation;
+        }
+
+        public boolean isCreated() {
+            return created;
+        }
+    }
+
+    /**
+     * Conversation active entre l'agent et l'utilisateur du candidat (non sauvegardé) pour son entreprise.
+     * Le candidat n'est enregistré que si aucune n'existe ; l'appelant utilise toujours result.getConversation().
+     */
+    @Transactional
+    public Result getOrCreate(Conversation candidate) {
+        String key = Conversation.activePairKey(candidate.getEntreprise().getId(),
+                                                candidate.getAgent().getId(), candidate.getUser().getId());
+
+        Optional<Conversation> existing = conversationRepository.findByActivePairKey(key);
+        if (existing.isPresent()) {
+            return new Result(existing.get(), false);
+        }
+
+        // Insertion d'abord, sous un point de sauvegarde de la connexion de l'appelant, par une session sans
+        // état : un refus de l'index unique y est rattrapable, alors que dans la session de l'appelant il
+        // marquerait toute sa transaction comme à annuler. Une session sans état n'appelant pas les callbacks
+        // JPA, ils sont déclenchés ici (horodatage, clé de paire, index de recherche, boîte de réception).
+        Session session = entityManager.unwrap(Session.class);
+        CallbackRegistry callbacks = session.getSessionFactory().unwrap(SessionFactoryImplementor.class)
+            .getEventEngine().getCallbackRegistry();
+        session.flush();
+        callbacks.preCreate(candidate);
+        ConstraintViolationException conflict = session.doReturningWork(connection -> {
+            Savepoint savepoint = connection.setSavepoint();
+            try (StatelessSession insert = session.getSessionFactory().withStatelessOptions()
+                    .connection(connection).openStatelessSession()) {
+                insert.insert(candidate);
+                connection.releaseSavepoint(savepoint);
+                return null;
+            } catch (ConstraintViolationException e) {
+                connection.rollback(savepoint);
+                return e;
+            }
+        });
+
+        if (conflict == null) {
+            callbacks.postCreate(candidate);
+            Conversation created = entityManager.find(Conversation.class, candidate.getId());
+            logger.info("✅ Conversation active créée: {}", created.getId());
+            return new Result(created, true);
+        }
+
+        // Clé déjà prise par un démarrage concurrent : lecture verrouillante de la conversation gagnante
+        Conversation winner = conversationRepository.findByActivePairKeyForUpdate(key)
+            .orElseThrow(() -> conflict);
+        logger.info("🔁 Conversation active créée en parallèle pour {}, réutilisation", key);
+        return new Result(winner, false);
+    }
+}
@@ -0,0 +1,54 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Tient à jour le nombre de conversations ouvertes par agent, quel que soit le chemin d'enregistrement :
+ * création active, fermeture, résolution, réactivation, changement d'agent, suppression. L'agent compté
+ * est relevé au chargement ; chaque écriture qui le change ajuste les compteurs via AgentResponseMetrics.
+ * Les fermetures en masse (UPDATE JPQL) ne passent pas par ici et ajustent les compteurs elles-mêmes.
+ */
+public class AgentOpenConversationListener {
+
+    @Lazy
+    @Autowired
+    private AgentResponseMetrics metrics;
+
+    @PostLoad
+    public void onLoad(Conversation conversation) {
+        conversation.setCountedOpenAgentId(conversation.openAgentId());
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onWrite(Conversation conversation) {
+        String counted = conversation.getCountedOpenAgentId();
+        String open = conversation.openAgentId();
+        if (Objects.equals(counted, open)) {
+            return;
+        }
+        if (counted != null) {
+            metrics.onOpenConversationsChanged(counted, -1);
+        }
+        if (open != null) {
+            metrics.onOpenConversationsChanged(open, 1);
+        }
+        conversation.setCountedOpenAgentId(open);
+    }
+
+    @PostRemove
+    public void onRemove(Conversation conversation) {
+        if (conversation.getCountedOpenAgentId() != null) {
+            metrics.onOpenConversationsChanged(conversation.getCountedOpenAgentId(), -1);
+        }
+    }
+}
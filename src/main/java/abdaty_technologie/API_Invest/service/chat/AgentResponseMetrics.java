@@ -0,0 +1,349 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import abdaty_technologie.API_Invest.Entity.AgentResponseStats;
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.Message;
+import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.Entity.Enum.ConversationStatus;
+import abdaty_technologie.API_Invest.dto.chat.AgentWorkload;
+import abdaty_technologie.API_Invest.repository.AgentResponseStatsRepository;
+import abdaty_technologie.API_Invest.repository.ConversationRepository;
+import abdaty_technologie.API_Invest.repository.PersonsRepository;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Délais de réponse des agents, tenus à jour à chaque envoi sans jamais relire la table messages.
+ *
+ * Une réponse est un message de l'agent qui met fin à l'attente de l'utilisateur (Conversation.waitingSince) :
+ * son délai court depuis le plus ancien message resté sans réponse. La première réponse d'une conversation
+ * est aussi comptée à part (Conversation.firstResponseAt). Chaque réponse validée s'ajoute en mémoire aux
+ * agrégats de l'agent (nombre, somme, maximum, histogramme) ; les agrégats accumulés sont ajoutés à la
+ * table chat_agent_response_stats toutes les chat.agent-metrics.flush-interval-ms, une ligne verrouillée
+ * par agent, ce qui reste juste avec plusieurs instances.
+ *
+ * Les réponses pas encore écrites sont perdues si l'instance s'arrête brutalement (au plus un intervalle
+ * d'écriture) : compromis accepté pour ces statistiques, l'arrêt normal les écrit (@PreDestroy).
+ *
+ * Le nombre de conversations ouvertes de chaque agent est porté par la même ligne : chaque ouverture,
+ * fermeture ou réactivation l'ajuste dans la transaction qui la fait (AgentOpenConversationListener, ou
+ * la fermeture automatique pour ses UPDATE en masse). Une réconciliation le recalcule depuis les
+ * conversations au démarrage et chaque nuit (remplissage initial, écritures directes en base).
+ *
+ * Le tableau de bord lit une ligne par agent, plus les réponses pas encore écrites de cette instance.
+ */
+@Service
+public class AgentResponseMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(AgentResponseMetrics.class);
+
+    @Autowired
+    private AgentResponseStatsRepository statsRepository;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private PersonsRepository personsRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // agentId -> réponses validées pas encore ajoutées à la table (perdues en cas d'arrêt brutal)
+    private final ConcurrentHashMap<String, Aggregate> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Message tout juste ajouté à la conversation (appelé après conversation.recordMessage, waitingSince :
+     * l'attente avant ce message) : si c'est la réponse de l'agent à un utilisateur en attente, son délai
+     * est compté après le commit
+     */
+    public void onMessageRecorded(Conversation conversation, Message message, Instant waitingSince) {
+        String agentId = conversation.getAgent() != null ? conversation.getAgent().getId() : null;
+        if (waitingSince == null || conversation.getWaitingSince() != null || agentId == null
+                || message.getSender() == null || !agentId.equals(message.getSender().getId())) {
+            return;
+        }
+        Instant repliedAt = message.getCreation() != null ? message.getCreation() : Instant.now();
+        long latencyMs = Math.max(0, Duration.between(waitingSince, repliedAt).toMillis());
+        boolean firstResponse = conversation.getFirstResponseAt() == null;
+        if (firstResponse) {
+            conversation.setFirstResponseAt(repliedAt);
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    record(agentId, latencyMs, firstResponse);
+                }
+            });
+        } else {
+            record(agentId, latencyMs, firstResponse);
+        }
+    }
+
+    /**
+     * Une conversation de l'agent s'ouvre (+1) ou se ferme (-1) : le compteur est ajusté tout de suite, dans
+     * la transaction en cours. Appelé pendant le flush (AgentOpenConversationListener) : l'écriture passe par
+     * la connexion JDBC de la transaction, sans repasser par la session Hibernate. La ligne est créée à la
+     * première conversation de l'agent (insertion ou mise à jour atomique sur la clé unique agent_id).
+     */
+    public void onOpenConversationsChanged(String agentId, int delta) {
+        Instant now = Instant.now();
+        jdbcTemplate.update(
+            "INSERT INTO chat_agent_response_stats (id, agent_id, created_at, updated_at, first_response_count, " +
+            "first_response_total_ms, reply_count, reply_total_ms, reply_max_ms, open_conversations) " +
+            "VALUES (?, ?, ?, ?, 0, 0, 0, 0, 0, ?) " +
+            "ON DUPLICATE KEY UPDATE open_conversations = GREATEST(open_conversations + ?, 0), updated_at = ?",
+            UUID.randomUUID().toString(), agentId, now, now, Math.max(delta, 0), delta, now);
+    }
+
+    /**
+     * Recalcule le nombre de conversations ouvertes des agents depuis les conversations, un agent par
+     * transaction (ligne verrouillée, puis comptage dans l'index). Retourne le nombre de compteurs corrigés.
+     */
+    @Scheduled(cron = "${chat.agent-metrics.reconcile-cron:0 45 3 * * *}")
+    @EventListener(ApplicationReadyEvent.class)
+    public int reconcileOpenConversations() {
+        Set<String> agentIds = new TreeSet<>(statsRepository.findAgentIdsWithOpenConversations());
+        for (Object[] row : conversationRepository.countByStatusPerAgent(ConversationStatus.ACTIVE)) {
+            agentIds.add((String) row[0]);
+        }
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int corrected = 0;
+        for (String agentId : agentIds) {
+            try {
+                if (Boolean.TRUE.equals(transaction.execute(status -> reconcileOpenConversations(agentId)))) {
+                    corrected++;
+                }
+            } catch (RuntimeException e) {
+                logger.warn("⚠️ Conversations ouvertes de l'agent {} non recalculées ({})", agentId, e.getMessage());
+            }
+        }
+        if (corrected > 0) {
+            logger.info("🔧 Conversations ouvertes recalculées pour {} agent(s)", corrected);
+        }
+        return corrected;
+    }
+
+    /**
+     * Ajoute les réponses accumulées aux agrégats en base, un agent par transaction.
+     * Retourne le nombre d'agents mis à jour.
+     */
+    @Scheduled(fixedDelayString = "${chat.agent-metrics.flush-interval-ms:30000}")
+    public int flush() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int flushed = 0;
+        for (String agentId : new TreeSet<>(pending.keySet())) {
+            Aggregate aggregate = pending.remove(agentId);
+            if (aggregate == null) {
+                continue;
+            }
+            try {
+                transaction.executeWithoutResult(status -> addToStats(agentId, aggregate));
+                flushed++;
+            } catch (RuntimeException e) {
+                // Ligne créée au même moment par une autre instance, base indisponible... : nouvel essai au prochain passage
+                logger.warn("⚠️ Délais de réponse de l'agent {} non enregistrés ({}), nouvel essai au prochain passage",
+                            agentId, e.getMessage());
+                pending.merge(agentId, aggregate, Aggregate::add);
+            }
+        }
+        return flushed;
+    }
+
+    /**
+     * Dernière écriture à l'arrêt de l'application
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        if (!pending.isEmpty()) {
+            flush();
+        }
+    }
+
+    /**
+     * Tableau de bord superviseur : une ligne par agent ayant répondu ou ayant des conversations ouvertes,
+     * les plus chargés en premier
+     */
+    @Transactional(readOnly = true)
+    public List<AgentWorkload> getAgentWorkloads() {
+        Map<String, Aggregate> totals = new HashMap<>();
+        Map<String, Long> openConversations = new HashMap<>();
+        Map<String, String> names = new HashMap<>();
+        for (AgentResponseStats stats : statsRepository.findAllWithAgent()) {
+            Aggregate aggregate = Aggregate.of(stats);
+            if (aggregate.replyCount == 0 && aggregate.firstResponseCount == 0 && stats.getOpenConversations() == 0) {
+                continue;
+            }
+            totals.put(stats.getAgent().getId(), aggregate);
+            openConversations.put(stats.getAgent().getId(), stats.getOpenConversations());
+            names.put(stats.getAgent().getId(), fullName(stats.getAgent()));
+        }
+        // Réponses de cette instance pas encore écrites (copiées sous le verrou de leur entrée)
+        for (String agentId : pending.keySet()) {
+            pending.computeIfPresent(agentId, (id, aggregate) -> {
+                totals.computeIfAbsent(id, key -> new Aggregate()).add(aggregate);
+                return aggregate;
+            });
+        }
+
+        Set<String> agentIds = new HashSet<>(totals.keySet());
+        Set<String> unnamed = new HashSet<>(agentIds);
+        unnamed.removeAll(names.keySet());
+        if (!unnamed.isEmpty()) {
+            personsRepository.findAllById(unnamed).forEach(person -> names.put(person.getId(), fullName(person)));
+        }
+
+        List<AgentWorkload> workloads = new ArrayList<>(agentIds.size());
+        for (String agentId : agentIds) {
+            workloads.add(toWorkload(agentId, names.get(agentId), openConversations.getOrDefault(agentId, 0L),
+                                     totals.getOrDefault(agentId, new Aggregate())));
+        }
+        workloads.sort(Comparator.comparingLong(AgentWorkload::getOpenConversations).reversed()
+            .thenComparing(AgentWorkload::getAgentName, Comparator.nullsLast(Comparator.naturalOrder())));
+        return workloads;
+    }
+
+    // ==================== INTERNE ====================
+
+    private void record(String agentId, long latencyMs, boolean firstResponse) {
+        pending.compute(agentId, (id, aggregate) -> {
+            Aggregate current = aggregate != null ? aggregate : new Aggregate();
+            current.record(latencyMs, firstResponse);
+            return current;
+        });
+    }
+
+    private void addToStats(String agentId, Aggregate aggregate) {
+        AgentResponseStats stats = statsRepository.findByAgentIdForUpdate(agentId)
+            .orElseGet(() -> new AgentResponseStats(personsRepository.getReferenceById(agentId)));
+        Aggregate total = Aggregate.of(stats).add(aggregate);
+        stats.setFirstResponseCount(total.firstResponseCount);
+        stats.setFirstResponseTotalMs(total.firstResponseTotalMs);
+        stats.setFirstResponseHistogram(total.firstResponseHistogram.encode());
+        stats.setReplyCount(total.replyCount);
+        stats.setReplyTotalMs(total.replyTotalMs);
+        stats.setReplyMaxMs(total.replyMaxMs);
+        stats.setReplyHistogram(total.replyHistogram.encode());
+        statsRepository.save(stats);
+    }
+
+    private boolean reconcileOpenConversations(String agentId) {
+        AgentResponseStats stats = statsRepository.findByAgentIdForUpdate(agentId)
+            .orElseGet(() -> new AgentResponseStats(personsRepository.getReferenceById(agentId)));
+        // Compté après le verrou : un ajustement concurrent est soit déjà commité (et compté), soit en attente
+        long open = conversationRepository.countByStatusAndAgentId(ConversationStatus.ACTIVE, agentId);
+        if (stats.getId() != null && stats.getOpenConversations() == open) {
+            return false;
+        }
+        stats.setOpenConversations(open);
+        statsRepository.save(stats);
+        return true;
+    }
+
+    private static AgentWorkload toWorkload(String agentId, String name, long open, Aggregate aggregate) {
+        AgentWorkload workload = new AgentWorkload();
+        workload.setAgentId(agentId);
+        workload.setAgentName(name);
+        workload.setOpenConversations(open);
+        workload.setFirstResponseCount(aggregate.firstResponseCount);
+        workload.setAverageFirstResponseSeconds(averageSeconds(aggregate.firstResponseTotalMs, aggregate.firstResponseCount));
+        workload.setFirstResponseP50Seconds(aggregate.firstResponseHistogram.percentile(50));
+        workload.setFirstResponseP90Seconds(aggregate.firstResponseHistogram.percentile(90));
+        workload.setReplyCount(aggregate.replyCount);
+        workload.setAverageReplySeconds(averageSeconds(aggregate.replyTotalMs, aggregate.replyCount));
+        workload.setReplyP50Seconds(aggregate.replyHistogram.percentile(50));
+        workload.setReplyP90Seconds(aggregate.replyHistogram.percentile(90));
+        workload.setReplyP99Seconds(aggregate.replyHistogram.percentile(99));
+        workload.setMaxReplySeconds(aggregate.replyCount > 0 ? aggregate.replyMaxMs / 1000 : null);
+        return workload;
+    }
+
+    private static Double averageSeconds(long totalMs, long count) {
+        return count > 0 ? totalMs / 1000.0 / count : null;
+    }
+
+    private static String fullName(Persons person) {
+        String prenom = person.getPrenom() != null ? person.getPrenom() : "";
+        String nom = person.getNom() != null ? person.getNom() : "";
+        return (prenom + " " + nom).trim();
+    }
+
+    /**
+     * Agrégats des délais d'un agent (en mémoire, ou relus depuis sa ligne)
+     */
+    private static final class Aggregate {
+        private long firstResponseCount;
+        private long firstResponseTotalMs;
+        private LatencyHistogram firstResponseHistogram = new LatencyHistogram();
+        private long replyCount;
+        private long replyTotalMs;
+        private long replyMaxMs;
+        private LatencyHistogram replyHistogram = new LatencyHistogram();
+
+        private static Aggregate of(AgentResponseStats stats) {
+            Aggregate aggregate = new Aggregate();
+            aggregate.firstResponseCount = stats.getFirstResponseCount();
+            aggregate.firstResponseTotalMs = stats.getFirstResponseTotalMs();
+            aggregate.firstResponseHistogram = LatencyHistogram.decode(stats.getFirstResponseHistogram());
+            aggregate.replyCount = stats.getReplyCount();
+            aggregate.replyTotalMs = stats.getReplyTotalMs();
+            aggregate.replyMaxMs = stats.getReplyMaxMs();
+            aggregate.replyHistogram = LatencyHistogram.decode(stats.getReplyHistogram());
+            return aggregate;
+        }
+
+        private void record(long latencyMs, boolean firstResponse) {
+            if (firstResponse) {
+                firstResponseCount++;
+                firstResponseTotalMs += latencyMs;
+                firstResponseHistogram.record(latencyMs / 1000);
+            }
+            replyCount++;
+            replyTotalMs += latencyMs;
+            replyMaxMs = Math.max(replyMaxMs, latencyMs);
+            replyHistogram.record(latencyMs / 1000);
+        }
+
+        private Aggregate add(Aggregate other) {
+            firstResponseCount += other.firstResponseCount;
+            firstResponseTotalMs += other.firstResponseTotalMs;
+            firstResponseHistogram.add(other.firstResponseHistogram);
+            replyCount += other.replyCount;
+            replyTotalMs += other.replyTotalMs;
+            replyMaxMs = Math.max(replyMaxMs, other.replyMaxMs);
+            replyHistogram.add(other.replyHistogram);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.dto.chat.AttachmentUpload;
+import abdaty_technologie.API_Invest.dto.chat.MessageRequest;
+import abdaty_technologie.API_Invest.dto.chat.MessageResponse;
+import abdaty_technologie.API_Invest.exception.BadRequestException;
+import abdaty_technologie.API_Invest.exception.NotFoundException;
+import abdaty_technologie.API_Invest.repository.ConversationRepository;
+import abdaty_technologie.API_Invest.service.ChatService;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Téléversement des pièces jointes du chat par morceaux, avec reprise.
+ *
+ * Chaque téléversement est un répertoire uploads/&lt;id&gt;/ contenant ses métadonnées (upload.json) et les
+ * octets déjà reçus (data.part) : l'offset de reprise est la taille de data.part, il survit donc à un
+ * redémarrage. Un morceau est écrit dans un fichier temporaire, vérifié (SHA-256 facultatif) puis ajouté ;
+ * rien n'est gardé en mémoire au-delà d'un tampon de lecture. À la fin, la somme SHA-256 du fichier complet
+ * est contrôlée, le fichier rejoint files/ et un message DOCUMENT_UPLOAD est envoyé via le ChatService.
+ *
+ * Les téléversements abandonnés sont supprimés après chat.attachments.upload-expiry-hours heures.
+ */
+@Service
+public class ChatAttachmentService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatAttachmentService.class);
+
+    private static final String METADATA_FILE = "upload.json";
+    private static final String DATA_FILE = "data.part";
+    private static final String CHUNK_FILE = "chunk.tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Value("${chat.attachments.directory:./data/chat-attachments}")
+    private String directory;
+
+    @Value("${chat.attachments.max-size-bytes:52428800}")
+    private long maxSizeBytes;
+
+    @Value("${chat.attachments.max-chunk-bytes:8388608}")
+    private long maxChunkBytes;
+
+    @Value("${chat.attachments.upload-expiry-hours:24}")
+    private long uploadExpiryHours;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private ChatService chatService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Un seul morceau à la fois par téléversement
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    private Path uploadsDirectory;
+    private Path filesDirectory;
+
+    @PostConstruct
+    public void init() throws IOException {
+        uploadsDirectory = Paths.get(directory, "uploads");
+        filesDirectory = Paths.get(directory, "files");
+        Files.createDirectories(uploadsDirectory);
+        Files.createDirectories(filesDirectory);
+    }
+
+    /**
+     * Ouvre un téléversement pour un participant de la conversation. sha256 (hexadécimal) est facultatif :
+     * s'il est fourni, le fichier complet est vérifié avant l'envoi du message. contentType doit être un type
+     * MIME précis (application/octet-stream par défaut) : il est renvoyé tel quel au téléchargement.
+     */
+    public AttachmentUpload startUpload(String conversationId, String senderId, String fileName,
+                                        String contentType, long size, String sha256) {
+        if (fileName == null || fileName.isBlank()) {
+            throw new BadRequestException("Le nom du fichier est requis");
+        }
+        String mediaType = normalizeContentType(contentType);
+        if (size <= 0 || size > maxSizeBytes) {
+            throw new BadRequestException("Taille de fichier invalide (maximum " + maxSizeBytes + " octets)");
+        }
+        Conversation conversation = conversationRepository.findById(conversationId)
+            .orElseThrow(() -> new NotFoundException("Conversation non trouvée: " + conversationId));
+        if (!isParticipant(conversation, senderId)) {
+            throw new BadRequestException("Accès non autorisé à cette conversation");
+        }
+
+        UploadMetadata metadata = new UploadMetadata();
+        metadata.uploadId = UUID.randomUUID().toString();
+        metadata.conversationId = conversationId;
+        metadata.senderId = senderId;
+        metadata.fileName = Paths.get(fileName).getFileName().toString();
+        metadata.contentType = mediaType;
+        metadata.size = size;
+        metadata.sha256 = sha256 != null && !sha256.isBlank() ? sha256.toLowerCase() : null;
+        metadata.createdAt = System.currentTimeMillis();
+
+        try {
+            Path uploadDirectory = Files.createDirectories(uploadsDirectory.resolve(metadata.uploadId));
+            Files.createFile(uploadDirectory.resolve(DATA_FILE));
+            writeMetadata(uploadDirectory.resolve(METADATA_FILE), metadata);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        logger.info("📎 Téléversement {} ouvert : {} ({} octets) dans la conversation {}",
+                    metadata.uploadId, metadata.fileName, size, conversationId);
+        return toUpload(metadata, 0);
+    }
+
+    /**
+     * État d'un téléversement en cours (reprise après coupure)
+     */
+    public AttachmentUpload getUpload(String uploadId) {
+        Path uploadDirectory = uploadDirectory(uploadId);
+        return toUpload(readMetadata(uploadDirectory.resolve(METADATA_FILE)), receivedBytes(uploadDirectory));
+    }
+
+    /**
+     * Ajoute un morceau à l'offset donné, qui doit être exactement le nombre d'octets déjà reçus.
+     * chunkSha256 (facultatif) : somme de contrôle du morceau, vérifiée avant l'ajout.
+     */
+    public AttachmentUpload appendChunk(String uploadId, long offset, InputStream data, String chunkSha256) {
+        Path uploadDirectory = uploadDirectory(uploadId);
+        synchronized (locks.computeIfAbsent(uploadId, id -> new Object())) {
+            UploadMetadata metadata = readMetadata(uploadDirectory.resolve(METADATA_FILE));
+            long received = receivedBytes(uploadDirectory);
+            if (offset != received) {
+                throw new BadRequestException("Offset invalide : " + received + " octets déjà reçus");
+            }
+
+            Path chunk = uploadDirectory.resolve(CHUNK_FILE);
+            try {
+                MessageDigest digest = sha256();
+                long written = 0;
+                try (InputStream in = new DigestInputStream(data, digest); OutputStream out = Files.newOutputStream(chunk)) {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        written += read;
+                        if (written > maxChunkBytes || received + written > metadata.size) {
+                            throw new BadRequestException("Morceau trop gros (maximum " + maxChunkBytes
+                                + " octets, " + (metadata.size - received) + " restants)");
+                        }
+                        out.write(buffer, 0, read);
+                    }
+                }
+                if (chunkSha256 != null && !chunkSha256.isBlank()
+                    && !HexFormat.of().formatHex(digest.digest()).equalsIgnoreCase(chunkSha256)) {
+                    throw new BadRequestException("Somme de contrôle du morceau invalide : renvoyez-le");
+                }
+
+                // Ajout d'un morceau vérifié : une coupure en cours d'ajout laisse un préfixe valide
+                try (FileChannel source = FileChannel.open(chunk, StandardOpenOption.READ);
+                     FileChannel target = FileChannel.open(uploadDirectory.resolve(DATA_FILE), StandardOpenOption.WRITE,
+                                                           StandardOpenOption.APPEND)) {
+                    long transferred = 0;
+                    while (transferred < written) {
+                        transferred += source.transferTo(transferred, written - transferred, target);
+                    }
+                    target.force(false);
+                }
+                return toUpload(metadata, received + written);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                deleteQuietly(chunk);
+            }
+        }
+    }
+
+    /**
+     * Termine le téléversement : vérifie la taille et la somme de contrôle, range le fichier et envoie
+     * le message DOCUMENT_UPLOAD. downloadPath : préfixe de l'URL de téléchargement (chemin de contexte).
+     */
+    public MessageResponse completeUpload(String uploadId, String content, String downloadPath) {
+        Path uploadDirectory = uploadDirectory(uploadId);
+        synchronized (locks.computeIfAbsent(uploadId, id -> new Object())) {
+            UploadMetadata metadata = readMetadata(uploadDirectory.resolve(METADATA_FILE));
+            long received = receivedBytes(uploadDirectory);
+            if (received != metadata.size) {
+                throw new BadRequestException("Téléversement incomplet : " + received + " / " + metadata.size + " octets");
+            }
+
+            Path data = uploadDirectory.resolve(DATA_FILE);
+            Path stored = filesDirectory.resolve(uploadId);
+            try {
+                if (metadata.sha256 != null && !metadata.sha256.equals(sha256Of(data))) {
+                    // Fichier corrompu : inutile de reprendre, le client recommence
+                    abortUpload(uploadId);
+                    throw new BadRequestException("Somme de contrôle du fichier invalide : téléversement annulé");
+                }
+                writeMetadata(filesDirectory.resolve(uploadId + ".json"), metadata);
+                Files.move(data, stored, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            MessageRequest request = new MessageRequest();
+            request.setMessageType("DOCUMENT_UPLOAD");
+            request.setContent(content != null && !content.isBlank() ? content.trim() : "📎 " + metadata.fileName);
+            request.setDocumentName(metadata.fileName);
+            // Lien sans participant : le client ajoute ?participantId=<son id> pour télécharger
+            request.setDocumentUrl(downloadPath + "/chat/attachments/" + uploadId);
+            MessageResponse message;
+            try {
+                message = chatService.sendMessage(metadata.conversationId, request, metadata.senderId);
+            } catch (RuntimeException e) {
+                // Message refusé : le fichier retourne dans le téléversement, qui pourra être terminé plus tard
+                moveQuietly(stored, data);
+                throw e;
+            }
+
+            deleteRecursively(uploadDirectory);
+            locks.remove(uploadId);
+            logger.info("📎 Pièce jointe {} ({} octets) envoyée dans la conversation {}",
+                        metadata.fileName, metadata.size, metadata.conversationId);
+            return message;
+        }
+    }
+
+    /**
+     * Abandonne un téléversement et supprime les octets reçus
+     */
+    public void abortUpload(String uploadId) {
+        Path uploadDirectory = uploadDirectory(uploadId);
+        synchronized (locks.computeIfAbsent(uploadId, id -> new Object())) {
+            deleteRecursively(uploadDirectory);
+            locks.remove(uploadId);
+        }
+    }
+
+    /**
+     * Pièce jointe envoyée, pour un participant de sa conversation
+     */
+    public StoredAttachment openAttachment(String attachmentId, String participantId) {
+        Path metadataFile = filesDirectory.resolve(validId(attachmentId) + ".json");
+        Path file = filesDirectory.resolve(attachmentId);
+        if (!Files.exists(metadataFile) || !Files.exists(file)) {
+            throw new NotFoundException("Pièce jointe non trouvée: " + attachmentId);
+        }
+        UploadMetadata metadata = readMetadata(metadataFile);
+        Conversation conversation = conversationRepository.findById(metadata.conversationId)
+            .orElseThrow(() -> new NotFoundException("Conversation non trouvée: " + metadata.conversationId));
+        if (!isParticipant(conversation, participantId)) {
+            throw new BadRequestException("Accès non autorisé à cette pièce jointe");
+        }
+        return new StoredAttachment(file, metadata.fileName, metadata.contentType, metadata.size);
+    }
+
+    /**
+     * Supprime les téléversements abandonnés (toutes les heures)
+     */
+    @Scheduled(fixedDelayString = "${chat.attachments.cleanup-interval-ms:3600000}")
+    public void purgeExpiredUploads() {
+        long expiredBefore = System.currentTimeMillis() - Duration.ofHours(uploadExpiryHours).toMillis();
+        int purged = 0;
+        try (DirectoryStream<Path> uploads = Files.newDirectoryStream(uploadsDirectory)) {
+            for (Path uploadDirectory : uploads) {
+                Path metadataFile = uploadDirectory.resolve(METADATA_FILE);
+                long lastActivity = Files.exists(metadataFile)
+                    ? Math.max(Files.getLastModifiedTime(metadataFile).toMillis(),
+                               Files.getLastModifiedTime(uploadDirectory.resolve(DATA_FILE)).toMillis())
+                    : Files.getLastModifiedTime(uploadDirectory).toMillis();
+                if (lastActivity < expiredBefore) {
+                    deleteRecursively(uploadDirectory);
+                    locks.remove(uploadDirectory.getFileName().toString());
+                    purged++;
+                }
+            }
+        } catch (IOException e) {
+            logger.error("❌ Erreur lors du nettoyage des téléversements: {}", e.getMessage());
+        }
+        if (purged > 0) {
+            logger.info("🧹 {} téléversement(s) abandonné(s) supprimé(s)", purged);
+        }
+    }
+
+    // ==================== INTERNE ====================
+
+    private boolean isParticipant(Conversation conversation, String participantId) {
+        return participantId != null
+            && (conversation.getAgent().getId().equals(participantId) || conversation.getUser().getId().equals(participantId));
+    }
+
+    private Path uploadDirectory(String uploadId) {
+        Path uploadDirectory = uploadsDirectory.resolve(validId(uploadId));
+        if (!Files.isDirectory(uploadDirectory)) {
+            throw new NotFoundException("Téléversement non trouvé ou expiré: " + uploadId);
+        }
+        return uploadDirectory;
+    }
+
+    // Les identifiants deviennent des noms de fichiers : UUID uniquement
+    private static String validId(String id) {
+        try {
+            return UUID.fromString(id).toString();
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new NotFoundException("Identifiant de pièce jointe invalide: " + id);
+        }
+    }
+
+    // Renvoyé comme Content-Type au téléchargement : un type invalide ou générique (*/*) est refusé dès l'ouverture
+    private static String normalizeContentType(String contentType) {
+        if (contentType == null || contentType.isBlank()) {
+            return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        }
+        try {
+            MediaType mediaType = MediaType.parseMediaType(contentType.trim());
+            if (mediaType.isWildcardType() || mediaType.isWildcardSubtype()) {
+                throw new BadRequestException("Type de fichier trop générique: " + contentType);
+            }
+            return mediaType.toString();
+        } catch (InvalidMediaTypeException e) {
+            throw new BadRequestException("Type de fichier invalide: " + contentType);
+        }
+    }
+
+    private long receivedBytes(Path uploadDirectory) {
+        try {
+            return Files.size(uploadDirectory.resolve(DATA_FILE));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private AttachmentUpload toUpload(UploadMetadata metadata, long offset) {
+        return new AttachmentUpload(metadata.uploadId, metadata.conversationId, metadata.fileName,
+                                    metadata.contentType, metadata.size, offset, maxChunkBytes);
+    }
+
+    private void writeMetadata(Path file, UploadMetadata metadata) throws IOException {
+        objectMapper.writeValue(file.toFile(), metadata);
+    }
+
+    private UploadMetadata readMetadata(Path file) {
+        try {
+            return objectMapper.readValue(file.toFile(), UploadMetadata.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String sha256Of(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void moveQuietly(Path from, Path to) {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("❌ Impossible de remettre {} en téléversement: {}", from, e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("⚠️ Impossible de supprimer {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static void deleteRecursively(Path uploadDirectory) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(uploadDirectory)) {
+            for (Path file : files) {
+                deleteQuietly(file);
+            }
+        } catch (IOException e) {
+            logger.warn("⚠️ Impossible de vider {}: {}", uploadDirectory, e.getMessage());
+        }
+        deleteQuietly(uploadDirectory);
+    }
+
+    /**
+     * Métadonnées d'un téléversement puis de la pièce jointe (champs publics pour Jackson)
+     */
+    static final class UploadMetadata {
+        public String uploadId;
+        public String conversationId;
+        public String senderId;
+        public String fileName;
+        public String contentType;
+        public long size;
+        public String sha256;
+        public long createdAt;
+    }
+
+    /**
+     * Pièce jointe stockée : fichier sur disque, nom d'origine, type et taille
+     */
+    public static final class StoredAttachment {
+        private final Path file;
+        private final String fileName;
+        private final String contentType;
+        private final long size;
+
+        public StoredAttachment(Path file, String fileName, String contentType, long size) {
+            this.file = file;
+            this.fileName = fileName;
+            this.contentType = contentType;
+            this.size = size;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,455 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Stockage borné des conversations en mémoire du chat (remplace les maps statiques de ChatController).
+ *
+ * Les conversations chaudes restent en mémoire dans l'ordre d'accès (LRU). Au-delà du budget
+ * (nombre de conversations ou taille estimée), les conversations fermées sont évincées en premier,
+ * puis les moins récemment utilisées ; une conversation inactive depuis {@code idleTimeoutMs} est
+ * évincée par {@link #evictIdle()}. Une conversation évincée est écrite dans {@code <répertoire>/<id>.json}
+ * et rechargée à la demande au prochain accès.
+ *
+ * Toutes les modifications passent par ce stockage (verrou unique) : la taille estimée reste juste
+ * et un snapshot du journal voit un état cohérent. Les lectures retournent des copies faites sous le
+ * verrou, et un résumé de chaque conversation (statut, utilisateur, nombre de messages) reste en mémoire,
+ * évincée ou non, pour les statistiques et listes d'administration sans relire le disque.
+ */
+public class ChatConversationStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatConversationStore.class);
+
+    private static final Pattern SAFE_ID = Pattern.compile("[A-Za-z0-9._-]+");
+    private static final long CONVERSATION_OVERHEAD_BYTES = 512;
+    private static final long MESSAGE_OVERHEAD_BYTES = 256;
+
+    private static final TypeReference<Map<String, Object>> CONVERSATION_TYPE = new TypeReference<Map<String, Object>>() {};
+    private static final TypeReference<List<Map<String, Object>>> MESSAGES_TYPE = new TypeReference<List<Map<String, Object>>>() {};
+
+    private final Path coldDirectory;
+    private final int maxConversations;
+    private final long maxBytes;
+    private final long idleTimeoutMs;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Ordre d'accès : la première entrée est la moins récemment utilisée
+    private final LinkedHashMap<String, Entry> hot = new LinkedHashMap<>(16, 0.75f, true);
+    // Conversations présentes uniquement sur disque
+    private final Set<String> cold = new HashSet<>();
+    // Résumé de toutes les conversations, en mémoire ou évincées
+    private final LinkedHashMap<String, Summary> summaries = new LinkedHashMap<>();
+    private long hotBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ChatConversationStore(Path coldDirectory, int maxConversations, long maxBytes, long idleTimeoutMs) {
+        this.coldDirectory = coldDirectory;
+        this.maxConversations = maxConversations;
+        this.maxBytes = maxBytes;
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    /**
+     * Recense les conversations déjà évincées sur disque et lit une fois leur résumé
+     * (au démarrage, avant la reprise du journal)
+     */
+    public synchronized void open() throws IOException {
+        Files.createDirectories(coldDirectory);
+        try (Stream<Path> files = Files.list(coldDirectory)) {
+            files.map(file -> file.getFileName().toString())
+                .filter(name -> name.endsWith(".json"))
+                .map(name -> name.substring(0, name.length() - ".json".length()))
+                .filter(id -> !hot.containsKey(id))
+                .forEach(cold::add);
+        }
+        for (String conversationId : cold) {
+            Entry entry = readColdFile(conversationId);
+            if (entry != null) {
+                summaries.put(conversationId, Summary.of(entry));
+            }
+        }
+    }
+
+    // ==================== LECTURE ====================
+
+    /**
+     * Copie de la conversation (rechargée depuis le disque si elle a été évincée), null si inconnue
+     */
+    public synchronized Map<String, Object> getConversation(String conversationId) {
+        Entry entry = load(conversationId);
+        return entry != null ? new LinkedHashMap<>(entry.conversation) : null;
+    }
+
+    /**
+     * Copie des messages de la conversation (rechargée depuis le disque si elle a été évincée), null si inconnue
+     */
+    public synchronized List<Map<String, Object>> getMessages(String conversationId) {
+        Entry entry = load(conversationId);
+        return entry != null ? copyMessages(entry.messages) : null;
+    }
+
+    /**
+     * Résumés de toutes les conversations, y compris évincées, lus en mémoire
+     * (statistiques et listes d'administration)
+     */
+    public synchronized List<Summary> getSummaries() {
+        return new ArrayList<>(summaries.values());
+    }
+
+    public synchronized int size() {
+        return hot.size() + cold.size();
+    }
+
+    /**
+     * Métriques du stockage : succès, défauts, rechargements, évictions, occupation
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("reloads", reloads.get());
+        stats.put("evictions", evictions.get());
+        stats.put("hotConversations", hot.size());
+        stats.put("coldConversations", cold.size());
+        stats.put("estimatedBytes", hotBytes);
+        stats.put("maxConversations", maxConversations);
+        stats.put("maxBytes", maxBytes);
+        return stats;
+    }
+
+    // ==================== MODIFICATION ====================
+
+    /**
+     * Ajoute ou remplace une conversation et ses messages
+     */
+    public synchronized void put(String conversationId, Map<String, Object> conversation,
+                                 List<Map<String, Object>> messages) {
+        Entry previous = hot.remove(conversationId);
+        if (previous != null) {
+            hotBytes -= previous.bytes;
+        }
+        cold.remove(conversationId);
+
+        Entry entry = new Entry(new LinkedHashMap<>(conversation),
+                                messages != null ? copyMessages(messages) : new ArrayList<>());
+        entry.bytes = estimate(entry);
+        hot.put(conversationId, entry);
+        hotBytes += entry.bytes;
+        summaries.put(conversationId, Summary.of(entry));
+        enforceBudget(conversationId);
+    }
+
+    /**
+     * Applique des champs modifiés ; false si la conversation est inconnue
+     */
+    public synchronized boolean updateConversation(String conversationId, Map<String, Object> fields) {
+        Entry entry = load(conversationId);
+        if (entry == null) {
+            return false;
+        }
+        entry.conversation.putAll(fields);
+        summaries.put(conversationId, Summary.of(entry));
+        return true;
+    }
+
+    /**
+     * Ajoute un message (ignoré si un message de même id est déjà présent) ; false si la conversation est inconnue
+     */
+    public synchronized boolean appendMessage(String conversationId, Map<String, Object> message) {
+        Entry entry = load(conversationId);
+        if (entry == null) {
+            return false;
+        }
+        Object messageId = message.get("id");
+        if (messageId != null && entry.messages.stream().anyMatch(existing -> messageId.equals(existing.get("id")))) {
+            return true;
+        }
+        entry.messages.add(new LinkedHashMap<>(message));
+        summaries.put(conversationId, Summary.of(entry));
+        long bytes = estimate(message);
+        entry.bytes += bytes;
+        hotBytes += bytes;
+        enforceBudget(conversationId);
+        return true;
+    }
+
+    /**
+     * Supprime toutes les conversations, en mémoire et sur disque
+     */
+    public synchronized void clear() {
+        hot.clear();
+        hotBytes = 0;
+        cold.clear();
+        summaries.clear();
+        try (Stream<Path> files = Files.list(coldDirectory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            logger.warn("⚠️ Erreur lors de la suppression des conversations évincées: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Copie des conversations en mémoire pour le snapshot du journal (les évincées sont déjà sur disque)
+     */
+    public synchronized Map<String, Map<String, Object>> copyHotConversations() {
+        Map<String, Map<String, Object>> copy = new LinkedHashMap<>();
+        hot.forEach((id, entry) -> copy.put(id, new LinkedHashMap<>(entry.conversation)));
+        return copy;
+    }
+
+    public synchronized Map<String, List<Map<String, Object>>> copyHotMessages() {
+        Map<String, List<Map<String, Object>>> copy = new LinkedHashMap<>();
+        hot.forEach((id, entry) -> copy.put(id, new ArrayList<>(entry.messages)));
+        return copy;
+    }
+
+    // ==================== ÉVICTION ====================
+
+    /**
+     * Évince les conversations non consultées depuis plus de {@code idleTimeoutMs}
+     */
+    public synchronized int evictIdle() {
+        long limit = System.currentTimeMillis() - idleTimeoutMs;
+        int evicted = 0;
+        Iterator<Map.Entry<String, Entry>> iterator = hot.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> candidate = iterator.next();
+            // Ordre d'accès : tout ce qui suit a été consulté plus récemment
+            if (candidate.getValue().lastAccess > limit) {
+                break;
+            }
+            if (evict(candidate.getKey(), candidate.getValue())) {
+                iterator.remove();
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    private void enforceBudget(String keepId) {
+        if (!overBudget()) {
+            return;
+        }
+        // Les conversations fermées d'abord, puis les moins récemment utilisées
+        evictWhileOverBudget(keepId, true);
+        evictWhileOverBudget(keepId, false);
+    }
+
+    private void evictWhileOverBudget(String keepId, boolean closedOnly) {
+        Iterator<Map.Entry<String, Entry>> iterator = hot.entrySet().iterator();
+        while (overBudget() && iterator.hasNext()) {
+            Map.Entry<String, Entry> candidate = iterator.next();
+            if (candidate.getKey().equals(keepId)) {
+                continue;
+            }
+            if (closedOnly && !"CLOSED".equals(candidate.getValue().conversation.get("status"))) {
+                continue;
+            }
+            if (evict(candidate.getKey(), candidate.getValue())) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private boolean overBudget() {
+        return hot.size() > maxConversations || hotBytes > maxBytes;
+    }
+
+    /**
+     * Écrit la conversation sur disque, rendu durable avant le renommage (le snapshot du journal supprime
+     * ensuite les segments qui la couvraient) ; l'appelant la retire de la mémoire si l'écriture a réussi
+     */
+    private boolean evict(String conversationId, Entry entry) {
+        if (!SAFE_ID.matcher(conversationId).matches()) {
+            return false;
+        }
+        try {
+            Map<String, Object> content = new LinkedHashMap<>();
+            content.put("conversation", entry.conversation);
+            content.put("messages", entry.messages);
+            Path target = coldFile(conversationId);
+            Path temporary = coldDirectory.resolve(conversationId + ".json.tmp");
+            ByteBuffer bytes = ByteBuffer.wrap(objectMapper.writeValueAsBytes(content));
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(true);
+            }
+            try {
+                Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            syncDirectory();
+        } catch (IOException e) {
+            logger.warn("⚠️ Éviction impossible pour la conversation {}: {}", conversationId, e.getMessage());
+            return false;
+        }
+        cold.add(conversationId);
+        hotBytes -= entry.bytes;
+        evictions.incrementAndGet();
+        return true;
+    }
+
+    // ==================== INTERNE ====================
+
+    private Entry load(String conversationId) {
+        if (conversationId == null) {
+            return null;
+        }
+        Entry entry = hot.get(conversationId);
+        if (entry != null) {
+            hits.incrementAndGet();
+            entry.lastAccess = System.currentTimeMillis();
+            return entry;
+        }
+        misses.incrementAndGet();
+        if (!cold.contains(conversationId)) {
+            return null;
+        }
+
+        entry = readColdFile(conversationId);
+        if (entry == null) {
+            return null;
+        }
+        // Le fichier reste en place : il est réécrit à la prochaine éviction
+        cold.remove(conversationId);
+        entry.bytes = estimate(entry);
+        hot.put(conversationId, entry);
+        hotBytes += entry.bytes;
+        reloads.incrementAndGet();
+        enforceBudget(conversationId);
+        return entry;
+    }
+
+    private Entry readColdFile(String conversationId) {
+        try {
+            Map<String, Object> content = objectMapper.readValue(coldFile(conversationId).toFile(), CONVERSATION_TYPE);
+            return new Entry(objectMapper.convertValue(content.get("conversation"), CONVERSATION_TYPE),
+                             new ArrayList<>(objectMapper.convertValue(content.get("messages"), MESSAGES_TYPE)));
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("❌ Impossible de relire la conversation évincée {}: {}", conversationId, e.getMessage());
+            return null;
+        }
+    }
+
+    private void syncDirectory() {
+        // Rend durable le renommage (non supporté sous Windows)
+        try (FileChannel channel = FileChannel.open(coldDirectory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.debug("Synchronisation du répertoire des conversations impossible: {}", e.getMessage());
+        }
+    }
+
+    private static List<Map<String, Object>> copyMessages(List<Map<String, Object>> messages) {
+        List<Map<String, Object>> copy = new ArrayList<>(messages.size());
+        for (Map<String, Object> message : messages) {
+            copy.add(new LinkedHashMap<>(message));
+        }
+        return copy;
+    }
+
+    private Path coldFile(String conversationId) {
+        return coldDirectory.resolve(conversationId + ".json");
+    }
+
+    private long estimate(Entry entry) {
+        long bytes = CONVERSATION_OVERHEAD_BYTES;
+        for (Map<String, Object> message : entry.messages) {
+            bytes += estimate(message);
+        }
+        return bytes;
+    }
+
+    private long estimate(Map<String, Object> message) {
+        Object content = message.get("content");
+        return MESSAGE_OVERHEAD_BYTES + (content != null ? 2L * content.toString().length() : 0);
+    }
+
+    /**
+     * Résumé d'une conversation gardé en mémoire même après son éviction
+     */
+    public static final class Summary {
+        private final String userId;
+        private final String userName;
+        private final String status;
+        private final int messageCount;
+
+        private Summary(String userId, String userName, String status, int messageCount) {
+            this.userId = userId;
+            this.userName = userName;
+            this.status = status;
+            this.messageCount = messageCount;
+        }
+
+        private static Summary of(Entry entry) {
+            Map<String, Object> conversation = entry.conversation;
+            return new Summary(stringOf(conversation.get("userId")), stringOf(conversation.get("userName")),
+                               stringOf(conversation.get("status")), entry.messages.size());
+        }
+
+        private static String stringOf(Object value) {
+            return value != null ? value.toString() : null;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public String getUserName() {
+            return userName;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public int getMessageCount() {
+            return messageCount;
+        }
+    }
+
+    private static final class Entry {
+        private final Map<String, Object> conversation;
+        private final List<Map<String, Object>> messages;
+        private long bytes;
+        private long lastAccess = System.currentTimeMillis();
+
+        private Entry(Map<String, Object> conversation, List<Map<String, Object>> messages) {
+            this.conversation = conversation;
+            this.messages = messages;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import abdaty_technologie.API_Invest.Entity.ChatDigestState;
+import abdaty_technologie.API_Invest.dto.chat.UnreadDigest;
+import abdaty_technologie.API_Invest.repository.ChatDigestStateRepository;
+import abdaty_technologie.API_Invest.repository.PersonsRepository;
+import abdaty_technologie.API_Invest.service.EmailService;
+
+/**
+ * Récapitulatifs e-mail des messages non lus, pour les participants qui n'ont pas l'application ouverte.
+ *
+ * Le job retient les participants ayant au moins un message non lu reçu depuis plus de
+ * chat.digest.unread-age-minutes, et leur envoie un seul e-mail qui totalise leurs non-lus.
+ * Les destinataires sont lus par lots, une requête agrégée par lot (ChatDigestStateRepository) ;
+ * le suivi par destinataire est enregistré avant l'envoi : une nouvelle exécution ne renvoie pas
+ * les mêmes messages, et deux récapitulatifs sont espacés d'au moins chat.digest.min-interval-minutes.
+ * Un participant en ligne (ChatPresenceRegistry) est ignoré et reste éligible pour la suite.
+ */
+@Service
+public class ChatDigestService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatDigestService.class);
+
+    @Value("${chat.digest.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chat.digest.unread-age-minutes:30}")
+    private long unreadAgeMinutes;
+
+    @Value("${chat.digest.min-interval-minutes:360}")
+    private long minIntervalMinutes;
+
+    @Value("${chat.digest.batch-size:200}")
+    private int batchSize;
+
+    @Autowired
+    private ChatDigestStateRepository digestStateRepository;
+
+    @Autowired
+    private PersonsRepository personsRepository;
+
+    @Autowired
+    private ChatPresenceRegistry presenceRegistry;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Envoi périodique (par défaut toutes les 15 minutes)
+     */
+    @Scheduled(cron = "${chat.digest.cron:0 */15 * * * *}")
+    public void scheduledDigest() {
+        if (!enabled) {
+            return;
+        }
+        int sent = sendDigests();
+        if (sent > 0) {
+            logger.info("📧 Récapitulatifs de messages non lus : {} e-mail(s) envoyé(s)", sent);
+        }
+    }
+
+    /**
+     * Envoie un récapitulatif à chaque destinataire éligible. Retourne le nombre d'e-mails envoyés.
+     */
+    public int sendDigests() {
+        Instant now = Instant.now();
+        Instant ageCutoff = now.minus(Duration.ofMinutes(unreadAgeMinutes));
+        Instant throttleCutoff = now.minus(Duration.ofMinutes(minIntervalMinutes));
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int sent = 0;
+        String afterId = null;
+
+        while (true) {
+            List<UnreadDigest> batch = digestStateRepository.findDigestRecipients(
+                ageCutoff, throttleCutoff, afterId, PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                break;
+            }
+            afterId = batch.get(batch.size() - 1).getParticipantId();
+
+            List<UnreadDigest> recipients = batch.stream()
+                .filter(digest -> !presenceRegistry.isOnline(digest.getParticipantId()))
+                .collect(Collectors.toList());
+            if (recipients.isEmpty()) {
+                continue;
+            }
+            // Suivi enregistré avant l'envoi : un e-mail au plus par message, même si le job s'arrête en route
+            transaction.executeWithoutResult(status -> recordSent(recipients, now, ageCutoff));
+            for (UnreadDigest digest : recipients) {
+                emailService.sendTo(digest.getEmail(), subject(digest), body(digest));
+                sent++;
+            }
+        }
+        return sent;
+    }
+
+    private void recordSent(List<UnreadDigest> recipients, Instant sentAt, Instant coveredUpTo) {
+        List<String> participantIds = recipients.stream().map(UnreadDigest::getParticipantId).collect(Collectors.toList());
+        Map<String, ChatDigestState> states = digestStateRepository.findByParticipantIdIn(participantIds).stream()
+            .collect(Collectors.toMap(state -> state.getParticipant().getId(), Function.identity()));
+
+        List<ChatDigestState> toSave = new ArrayList<>(participantIds.size());
+        for (String participantId : participantIds) {
+            ChatDigestState state = states.get(participantId);
+            if (state == null) {
+                state = new ChatDigestState(personsRepository.getReferenceById(participantId));
+            }
+            state.setLastSentAt(sentAt);
+            state.setCoveredUpTo(coveredUpTo);
+            toSave.add(state);
+        }
+        digestStateRepository.saveAll(toSave);
+    }
+
+    private static String subject(UnreadDigest digest) {
+        return digest.getUnreadCount() > 1
+            ? "Vous avez " + digest.getUnreadCount() + " messages non lus"
+            : "Vous avez un message non lu";
+    }
+
+    private static String body(UnreadDigest digest) {
+        String greeting = digest.getPrenom() != null && !digest.getPrenom().isBlank()
+            ? "Bonjour " + digest.getPrenom() + ",\n\n"
+            : "Bonjour,\n\n";
+        return greeting
+            + "Vous avez " + digest.getUnreadCount() + " message(s) non lu(s) dans "
+            + digest.getConversationCount() + " conversation(s).\n"
+            + "Connectez-vous à votre espace pour y répondre.";
+    }
+}
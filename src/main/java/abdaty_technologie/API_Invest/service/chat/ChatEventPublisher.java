@@ -0,0 +1,206 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import abdaty_technologie.API_Invest.dto.chat.ChatEvent;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Diffusion des événements de chat en temps réel (Server-Sent Events).
+ *
+ * Deux types d'abonnement :
+ * - par conversation : la fenêtre de chat ouverte reçoit les événements de cette conversation ;
+ * - par participant : les badges/notifications reçoivent les événements de toutes ses conversations.
+ *
+ * Les événements sont publiés après le commit de la transaction (un client ne voit jamais un message
+ * annulé par un rollback), puis envoyés par un thread dédié pour ne pas ralentir la requête d'envoi.
+ */
+@Component
+public class ChatEventPublisher implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatEventPublisher.class);
+
+    private final Map<String, Set<SseEmitter>> conversationSubscribers = new ConcurrentHashMap<>();
+    private final Map<String, Set<SseEmitter>> participantSubscribers = new ConcurrentHashMap<>();
+
+    // Un seul thread d'envoi : l'ordre des événements est conservé et un SseEmitter n'est jamais écrit en parallèle
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "chat-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${chat.events.timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+
+    private volatile boolean running;
+
+    /**
+     * Abonne un client aux événements d'une conversation
+     */
+    public SseEmitter subscribeToConversation(String conversationId) {
+        return subscribe(conversationSubscribers, conversationId);
+    }
+
+    /**
+     * Abonne un client aux événements de toutes les conversations d'un participant
+     */
+    public SseEmitter subscribeToParticipant(String participantId) {
+        return subscribe(participantSubscribers, participantId);
+    }
+
+    /**
+     * Publie un événement vers la conversation et ses deux participants.
+     * Si une transaction est en cours, l'envoi est différé après son commit.
+     */
+    public void publish(ChatEvent event, String agentId, String userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatch(event, agentId, userId);
+                }
+            });
+        } else {
+            dispatch(event, agentId, userId);
+        }
+    }
+
+    /**
+     * Nombre total de flux ouverts (conversations + participants)
+     */
+    public int getSubscriberCount() {
+        return count(conversationSubscribers) + count(participantSubscribers);
+    }
+
+    /**
+     * Commentaire SSE périodique : garde les connexions ouvertes à travers les proxys
+     * et libère les flux dont le client est parti.
+     */
+    @Scheduled(fixedRate = 25000)
+    public void sendHeartbeat() {
+        dispatcher.execute(() -> {
+            heartbeat(conversationSubscribers);
+            heartbeat(participantSubscribers);
+        });
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    /**
+     * Ferme les flux ouverts avant l'arrêt gracieux du serveur web, qui sinon attendrait
+     * la fin de ces requêtes longues jusqu'à son délai maximal.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        completeAll(conversationSubscribers);
+        completeAll(participantSubscribers);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Arrêté avant le serveur web (les phases les plus hautes s'arrêtent en premier)
+        return Integer.MAX_VALUE;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+    }
+
+    private SseEmitter subscribe(Map<String, Set<SseEmitter>> subscribers, String key) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        subscribers.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(emitter);
+
+        Runnable remove = () -> unsubscribe(subscribers, key, emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(error -> remove.run());
+
+        // Premier événement : confirme l'abonnement au client
+        dispatcher.execute(() -> send(subscribers, key, emitter, SseEmitter.event().name("CONNECTED").data(key)));
+        return emitter;
+    }
+
+    private void unsubscribe(Map<String, Set<SseEmitter>> subscribers, String key, SseEmitter emitter) {
+        subscribers.computeIfPresent(key, (k, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+
+    private void dispatch(ChatEvent event, String agentId, String userId) {
+        dispatcher.execute(() -> {
+            deliver(conversationSubscribers, event.getConversationId(), event);
+            deliver(participantSubscribers, agentId, event);
+            if (userId != null && !userId.equals(agentId)) {
+                deliver(participantSubscribers, userId, event);
+            }
+        });
+    }
+
+    private void deliver(Map<String, Set<SseEmitter>> subscribers, String key, ChatEvent event) {
+        if (key == null) {
+            return;
+        }
+        Set<SseEmitter> emitters = subscribers.get(key);
+        if (emitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : emitters) {
+            send(subscribers, key, emitter, SseEmitter.event().name(event.getType()).data(event));
+        }
+    }
+
+    private void heartbeat(Map<String, Set<SseEmitter>> subscribers) {
+        subscribers.forEach((key, emitters) -> {
+            for (SseEmitter emitter : emitters) {
+                send(subscribers, key, emitter, SseEmitter.event().comment("ping"));
+            }
+        });
+    }
+
+    private void send(Map<String, Set<SseEmitter>> subscribers, String key, SseEmitter emitter,
+                      SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            // Client déconnecté : on retire le flux sans bruit
+            logger.debug("Flux SSE fermé pour {}: {}", key, e.getMessage());
+            unsubscribe(subscribers, key, emitter);
+        }
+    }
+
+    private int count(Map<String, Set<SseEmitter>> subscribers) {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    private void completeAll(Map<String, Set<SseEmitter>> subscribers) {
+        subscribers.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+        subscribers.clear();
+    }
+}
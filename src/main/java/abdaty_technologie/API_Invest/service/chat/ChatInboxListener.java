@@ -0,0 +1,32 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.ConversationUnreadCounter;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Signale à ChatInboxProjector les conversations et états de lecture modifiés, quel que soit le chemin
+ * d'enregistrement (service, contrôleurs, jobs), une fois écrits : une transaction qui ne fait que lire
+ * n'engage aucun recalcul. Instancié par Hibernate via le conteneur Spring ;
+ * le projecteur est injecté à la demande (il dépend lui-même de l'EntityManagerFactory).
+ */
+public class ChatInboxListener {
+
+    @Lazy
+    @Autowired
+    private ChatInboxProjector projector;
+
+    @PostPersist
+    @PostUpdate
+    public void onWrite(Object entity) {
+        if (entity instanceof Conversation conversation) {
+            projector.markDirty(conversation.getId());
+        } else if (entity instanceof ConversationUnreadCounter counter) {
+            projector.markDirty(counter.getConversation().getId());
+        }
+    }
+}
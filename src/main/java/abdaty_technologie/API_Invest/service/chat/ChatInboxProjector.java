@@ -0,0 +1,315 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.ConversationInboxEntry;
+import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.Entity.Enum.ChatParticipantRole;
+import abdaty_technologie.API_Invest.Entity.Enum.ConversationPriority;
+import abdaty_technologie.API_Invest.repository.ConversationInboxEntryRepository;
+import abdaty_technologie.API_Invest.repository.ConversationRepository;
+import abdaty_technologie.API_Invest.repository.ConversationUnreadCounterRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Tient à jour le modèle de lecture des boîtes de réception (ConversationInboxEntry).
+ *
+ * ChatInboxListener signale chaque conversation créée ou modifiée, et chaque état de lecture modifié ;
+ * après le dernier flush du commit (processus de fin de transaction Hibernate), les lignes des
+ * conversations signalées sont recalculées depuis la conversation et ses compteurs de non-lus, dans la
+ * même transaction : une liste relue après l'écriture la voit déjà. Une transaction qui ne modifie
+ * aucune conversation n'enregistre rien.
+ * Les incréments de compteurs en masse (UPDATE JPQL, sans événement d'entité) sont signalés par
+ * UnreadCounterService.
+ *
+ * Les changements qui ne passent pas par une conversation (nom d'une personne ou d'une entreprise,
+ * écriture directe en base) sont rattrapés par la reconstruction : rebuildAll corrige, checkConsistency
+ * compte les écarts sans rien écrire. La réparation tourne chaque nuit ; elle compare sans verrou et ne
+ * verrouille que les conversations en écart.
+ */
+@Service
+public class ChatInboxProjector {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatInboxProjector.class);
+
+    private static final int REBUILD_BATCH_SIZE = 200;
+
+    @Autowired
+    private ConversationInboxEntryRepository entryRepository;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private ConversationUnreadCounterRepository counterRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Les lignes de la conversation sont à recalculer avant le commit de la transaction en cours
+     */
+    public void markDirty(String conversationId) {
+        PendingProjection pending = pendingProjection();
+        if (pending != null && conversationId != null) {
+            pending.conversationIds.add(conversationId);
+        }
+    }
+
+    /**
+     * Recalcule les lignes des conversations données dans la transaction de l'appelant.
+     * Renvoie le nombre de lignes créées, modifiées ou supprimées.
+     */
+    public int refresh(Collection<String> conversationIds) {
+        return refresh(conversationIds, new LinkedHashSet<>());
+    }
+
+    /**
+     * Recalcule les lignes des conversations données et relève dans outOfSync celles dont une ligne a changé
+     */
+    private int refresh(Collection<String> conversationIds, Set<String> outOfSync) {
+        if (conversationIds.isEmpty()) {
+            return 0;
+        }
+        List<Conversation> conversations = conversationRepository.findAllWithParticipantsByIdIn(conversationIds);
+
+        Map<String, Integer> unreadCounts = new HashMap<>();
+        for (Object[] row : counterRepository.findUnreadCounts(conversationIds)) {
+            unreadCounts.put(key((String) row[0], (String) row[1]), (Integer) row[2]);
+        }
+        Map<String, ConversationInboxEntry> entries = new LinkedHashMap<>();
+        for (ConversationInboxEntry entry : entryRepository.findByConversationIdIn(conversationIds)) {
+            entries.put(key(entry.getConversation().getId(), entry.getParticipantId()), entry);
+        }
+
+        int changed = 0;
+        for (Conversation conversation : conversations) {
+            int conversationChanged = project(conversation, conversation.getAgent(), ChatParticipantRole.AGENT,
+                                              conversation.getUser(), unreadCounts, entries);
+            if (!conversation.getUser().getId().equals(conversation.getAgent().getId())) {
+                conversationChanged += project(conversation, conversation.getUser(), ChatParticipantRole.USER,
+                                               conversation.getAgent(), unreadCounts, entries);
+            }
+            if (conversationChanged > 0) {
+                outOfSync.add(conversation.getId());
+            }
+            changed += conversationChanged;
+        }
+
+        // Lignes restantes : participant remplacé ou conversation disparue
+        if (!entries.isEmpty()) {
+            entries.values().forEach(entry -> outOfSync.add(entry.getConversation().getId()));
+            entryRepository.deleteAll(entries.values());
+            changed += entries.size();
+        }
+        return changed;
+    }
+
+    /**
+     * Reconstruit tout le modèle de lecture. Chaque lot est comparé sans verrou ; seules les conversations
+     * en écart sont ensuite verrouillées (le même verrou que l'envoi et la lecture) et recalculées.
+     * Renvoie le nombre de lignes corrigées.
+     */
+    public int rebuildAll() {
+        return scan(true);
+    }
+
+    /**
+     * Vérifie le modèle de lecture sans rien écrire : recalcule chaque lot dans une transaction annulée
+     * et compte les lignes qui auraient changé (manquantes, périmées ou orphelines)
+     */
+    public Map<String, Object> checkConsistency() {
+        long start = System.currentTimeMillis();
+        int conversations = (int) conversationRepository.count();
+        int inconsistent = scan(false);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("conversations", conversations);
+        report.put("entries", entryRepository.count());
+        report.put("inconsistentEntries", inconsistent);
+        report.put("consistent", inconsistent == 0);
+        report.put("durationMs", System.currentTimeMillis() - start);
+        return report;
+    }
+
+    /**
+     * Réparation périodique (par défaut chaque nuit à 4h30, après celle des compteurs de non-lus)
+     */
+    @Scheduled(cron = "${chat.inbox.repair-cron:0 30 4 * * *}")
+    public void scheduledRepair() {
+        int corrected = rebuildAll();
+        if (corrected > 0) {
+            logger.warn("🔧 Boîtes de réception : {} ligne(s) corrigée(s) par la réparation", corrected);
+        } else {
+            logger.info("✅ Boîtes de réception cohérentes");
+        }
+    }
+
+    /**
+     * Premier démarrage avec la table des boîtes de réception : on la remplit depuis les conversations
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        if (entryRepository.count() == 0 && conversationRepository.count() > 0) {
+            logger.info("🔧 Table des boîtes de réception vide : reconstruction depuis les conversations");
+            logger.info("✅ {} ligne(s) de boîte de réception créée(s)", rebuildAll());
+        }
+    }
+
+    private int scan(boolean write) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int changed = 0;
+        String afterId = null;
+
+        while (true) {
+            final String batchStart = afterId;
+            int[] batchChanged = new int[1];
+            Set<String> outOfSync = new LinkedHashSet<>();
+            // Comparaison sans verrou : le recalcul est annulé, on ne garde que les conversations en écart
+            String lastId = transaction.execute(status -> {
+                List<Conversation> batch = conversationRepository.findBatchAfterId(batchStart, PageRequest.of(0, REBUILD_BATCH_SIZE));
+                if (batch.isEmpty()) {
+                    return null;
+                }
+                batchChanged[0] = refresh(batch.stream().map(Conversation::getId).collect(Collectors.toList()), outOfSync);
+                status.setRollbackOnly();
+                return batch.get(batch.size() - 1).getId();
+            });
+            if (lastId == null) {
+                break;
+            }
+            if (write && !outOfSync.isEmpty()) {
+                // Correction sous le verrou des seules conversations en écart, recalculées à jour
+                batchChanged[0] = transaction.execute(status -> {
+                    conversationRepository.findAllByIdForUpdate(outOfSync);
+                    return refresh(outOfSync);
+                });
+            }
+            changed += batchChanged[0];
+            afterId = lastId;
+        }
+        return changed;
+    }
+
+    private int project(Conversation conversation, Persons participant, ChatParticipantRole role, Persons counterpart,
+                        Map<String, Integer> unreadCounts, Map<String, ConversationInboxEntry> entries) {
+        String entryKey = key(conversation.getId(), participant.getId());
+        ConversationInboxEntry entry = entries.remove(entryKey);
+        boolean created = entry == null;
+        if (created) {
+            entry = new ConversationInboxEntry(conversation, participant.getId());
+        }
+
+        boolean changed = created;
+        changed |= update(entry.getParticipantRole(), role, entry::setParticipantRole);
+        changed |= update(entry.getParticipantName(), fullName(participant), entry::setParticipantName);
+        changed |= update(entry.getCounterpartId(), counterpart.getId(), entry::setCounterpartId);
+        changed |= update(entry.getCounterpartName(), fullName(counterpart), entry::setCounterpartName);
+        changed |= update(entry.getEntrepriseId(), conversation.getEntreprise().getId(), entry::setEntrepriseId);
+        changed |= update(entry.getEntrepriseNom(), conversation.getEntreprise().getNom(), entry::setEntrepriseNom);
+        changed |= update(entry.getSubject(), conversation.getSubject(), entry::setSubject);
+        changed |= update(entry.getStatus(), conversation.getStatus(), entry::setStatus);
+        changed |= update(entry.getPriority(), conversation.getPriority(), entry::setPriority);
+        changed |= update(entry.getLastMessagePreview(), conversation.getLastMessagePreview(), entry::setLastMessagePreview);
+        changed |= update(entry.getLastMessageAt(), conversation.getLastMessageAt(), entry::setLastMessageAt);
+        changed |= update(entry.getLastMessageSenderId(), conversation.getLastMessageSenderId(), entry::setLastMessageSenderId);
+        changed |= update(entry.getUnreadCount(), unreadCounts.getOrDefault(entryKey, 0), entry::setUnreadCount);
+        changed |= update(entry.getPriorityRank(), priorityRank(conversation.getPriority()), entry::setPriorityRank);
+        changed |= update(entry.getWaitingSince(), conversation.getWaitingSince(), entry::setWaitingSince);
+        changed |= update(entry.getConversationCreatedAt(), conversation.getCreation(), entry::setConversationCreatedAt);
+        changed |= update(entry.getConversationUpdatedAt(), conversation.getModification(), entry::setConversationUpdatedAt);
+
+        if (created) {
+            entryRepository.save(entry);
+        }
+        return changed ? 1 : 0;
+    }
+
+    private static <T> boolean update(T current, T expected, Consumer<T> setter) {
+        if (Objects.equals(current, expected)) {
+            return false;
+        }
+        setter.accept(expected);
+        return true;
+    }
+
+    private static int priorityRank(ConversationPriority priority) {
+        return (priority != null ? priority : ConversationPriority.NORMAL).ordinal();
+    }
+
+    private static String fullName(Persons person) {
+        String prenom = person.getPrenom() != null ? person.getPrenom() : "";
+        String nom = person.getNom() != null ? person.getNom() : "";
+        return (prenom + " " + nom).trim();
+    }
+
+    private static String key(String conversationId, String participantId) {
+        return conversationId + ":" + participantId;
+    }
+
+    /**
+     * Conversations à recalculer dans la transaction d'écriture en cours (null hors transaction
+     * ou en lecture seule). Enregistrée comme synchronisation, pour la retrouver (suspendue et reprise
+     * avec sa transaction), et comme processus de fin de transaction de la session, qui fait le calcul.
+     */
+    private PendingProjection pendingProjection() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return null;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingProjection pending) {
+                return pending;
+            }
+        }
+        PendingProjection pending = new PendingProjection();
+        TransactionSynchronizationManager.registerSynchronization(pending);
+        entityManager.unwrap(SessionImplementor.class).getActionQueue().registerProcess(pending);
+        return pending;
+    }
+
+    private final class PendingProjection implements TransactionSynchronization, BeforeTransactionCompletionProcess {
+        private final Set<String> conversationIds = new LinkedHashSet<>();
+
+        @Override
+        public void doBeforeTransactionCompletion(SessionImplementor session) {
+            // Appelé après le flush du commit : les modifications écrites à ce flush ont déjà été signalées
+            if (!conversationIds.isEmpty()) {
+                refresh(new ArrayList<>(conversationIds));
+                conversationIds.clear();
+                session.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,520 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Journal append-only des conversations en mémoire du chat (ancien stockage de ChatController).
+ *
+ * Chaque modification ajoute une ligne au segment courant : le coût d'écriture dépend de la
+ * modification, pas de la taille de l'historique. Format d'une ligne : {@code <crc32 hex>\t<json>}.
+ *
+ * Un snapshot compacté est écrit périodiquement (fichier temporaire puis renommage atomique) ;
+ * les segments qu'il couvre sont alors supprimés. Au démarrage, l'état est reconstruit à partir du
+ * dernier snapshot puis des segments suivants. Une dernière ligne incomplète ou corrompue (arrêt
+ * brutal pendant une écriture) est ignorée et retirée du segment.
+ *
+ * Politiques de synchronisation disque :
+ * - ALWAYS : fsync après chaque entrée (aucune perte, écriture la plus lente) ;
+ * - BATCH : fsync groupé toutes les {@code fsyncIntervalMs} (perte possible de cet intervalle en cas de coupure courant) ;
+ * - NONE : le système décide ; un arrêt du processus ne perd rien, une coupure courant peut perdre les dernières entrées.
+ */
+public class ChatJournal implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatJournal.class);
+
+    public enum FsyncPolicy { ALWAYS, BATCH, NONE }
+
+    static final String CONVERSATION_CREATED = "CONVERSATION_CREATED";
+    static final String CONVERSATION_UPDATED = "CONVERSATION_UPDATED";
+    static final String MESSAGE_APPENDED = "MESSAGE_APPENDED";
+    static final String CLEARED = "CLEARED";
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d+)\\.log");
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d+)\\.json");
+
+    private static final TypeReference<Map<String, Object>> ENTRY_TYPE = new TypeReference<Map<String, Object>>() {};
+    private static final TypeReference<Map<String, Map<String, Object>>> CONVERSATIONS_TYPE =
+        new TypeReference<Map<String, Map<String, Object>>>() {};
+    private static final TypeReference<Map<String, List<Map<String, Object>>>> MESSAGES_TYPE =
+        new TypeReference<Map<String, List<Map<String, Object>>>>() {};
+
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final long segmentMaxBytes;
+    private final int snapshotThreshold;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ScheduledExecutorService flusher;
+
+    private FileChannel segment;
+    private long segmentNumber;
+    private long segmentSize;
+    private boolean dirty;
+    private int entriesSinceSnapshot;
+
+    public ChatJournal(Path directory, FsyncPolicy fsyncPolicy, long fsyncIntervalMs,
+                       long segmentMaxBytes, int snapshotThreshold) {
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.segmentMaxBytes = segmentMaxBytes;
+        this.snapshotThreshold = snapshotThreshold;
+
+        if (fsyncPolicy == FsyncPolicy.BATCH) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "chat-journal-fsync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    // ==================== REPRISE AU DÉMARRAGE ====================
+
+    /**
+     * Reconstruit l'état depuis le dernier snapshot et les segments suivants, puis ouvre un nouveau
+     * segment pour les prochaines écritures. Sans journal existant, importe les anciens fichiers
+     * {@code conversations.json} / {@code messages.json} du répertoire parent.
+     */
+    public synchronized void recover(ChatConversationStore store) throws IOException {
+        Files.createDirectories(directory);
+        deleteTemporaryFiles();
+
+        TreeMap<Long, Path> snapshots = listFiles(SNAPSHOT_NAME);
+        TreeMap<Long, Path> segments = listFiles(SEGMENT_NAME);
+
+        long replayFrom = 0;
+        boolean imported = false;
+        if (!snapshots.isEmpty()) {
+            replayFrom = snapshots.lastKey();
+            loadSnapshot(snapshots.lastEntry().getValue(), store);
+        } else if (segments.isEmpty()) {
+            imported = importLegacyFiles(store);
+        }
+
+        int replayed = 0;
+        Map<Long, Path> toReplay = segments.tailMap(replayFrom, true);
+        for (Map.Entry<Long, Path> entry : toReplay.entrySet()) {
+            boolean last = entry.getKey().equals(segments.lastKey());
+            replayed += replaySegment(entry.getValue(), last, store);
+        }
+
+        segmentNumber = segments.isEmpty() ? replayFrom : segments.lastKey();
+        openNextSegment();
+        entriesSinceSnapshot = replayed;
+
+        logger.info("📥 Journal du chat rejoué : {} conversations, {} entrée(s) après le snapshot",
+                    store.size(), replayed);
+
+        if (imported) {
+            // Premier démarrage avec le journal : les anciens fichiers deviennent le snapshot de départ
+            snapshot(store);
+        }
+    }
+
+    // ==================== ÉCRITURE ====================
+
+    /**
+     * Nouvelle conversation avec ses messages initiaux
+     */
+    public void appendConversation(Map<String, Object> conversation, List<Map<String, Object>> messages) {
+        Map<String, Object> entry = entry(CONVERSATION_CREATED, (String) conversation.get("id"));
+        entry.put("conversation", conversation);
+        entry.put("messages", messages);
+        append(entry);
+    }
+
+    /**
+     * Champs modifiés d'une conversation (seuls ces champs sont journalisés)
+     */
+    public void appendConversationUpdate(String conversationId, Map<String, Object> fields) {
+        Map<String, Object> entry = entry(CONVERSATION_UPDATED, conversationId);
+        entry.put("fields", fields);
+        append(entry);
+    }
+
+    /**
+     * Message ajouté à une conversation
+     */
+    public void appendMessage(String conversationId, Map<String, Object> message) {
+        Map<String, Object> entry = entry(MESSAGE_APPENDED, conversationId);
+        entry.put("message", message);
+        append(entry);
+    }
+
+    /**
+     * Suppression de toutes les conversations
+     */
+    public void appendClear() {
+        append(entry(CLEARED, null));
+    }
+
+    /**
+     * Force l'écriture sur disque des entrées en attente (politique BATCH)
+     */
+    public synchronized void flush() {
+        if (!dirty || segment == null) {
+            return;
+        }
+        try {
+            segment.force(false);
+            dirty = false;
+        } catch (IOException e) {
+            logger.error("❌ Erreur lors de la synchronisation du journal du chat: {}", e.getMessage());
+        }
+    }
+
+    // ==================== SNAPSHOTS ====================
+
+    /**
+     * Écrit un snapshot si assez d'entrées ont été ajoutées depuis le précédent
+     */
+    public boolean snapshotIfDue(ChatConversationStore store) {
+        synchronized (this) {
+            if (entriesSinceSnapshot < snapshotThreshold) {
+                return false;
+            }
+        }
+        return snapshot(store);
+    }
+
+    /**
+     * Écrit un snapshot compacté de l'état et supprime les segments qu'il couvre.
+     *
+     * Le segment courant est d'abord clos : le snapshot couvre tout ce qui le précède. L'état est
+     * lu sans bloquer les écritures ; une modification qui y figure déjà et qui est aussi journalisée
+     * dans le nouveau segment est rejouée sans effet (ajout de message dédoublonné par id).
+     * Seules les conversations en mémoire y figurent : les conversations évincées sont déjà sur disque.
+     */
+    public boolean snapshot(ChatConversationStore store) {
+        long coveredUpTo;
+        int entries;
+        synchronized (this) {
+            try {
+                openNextSegment();
+            } catch (IOException e) {
+                logger.error("❌ Impossible d'ouvrir un nouveau segment du journal du chat: {}", e.getMessage());
+                return false;
+            }
+            coveredUpTo = segmentNumber;
+            entries = entriesSinceSnapshot;
+            entriesSinceSnapshot = 0;
+        }
+
+        try {
+            Map<String, Map<String, Object>> conversations = store.copyHotConversations();
+            Map<String, Object> content = new LinkedHashMap<>();
+            content.put("segment", coveredUpTo);
+            content.put("conversations", conversations);
+            content.put("messages", store.copyHotMessages());
+            byte[] bytes = objectMapper.writeValueAsBytes(content);
+
+            Path target = directory.resolve(String.format("snapshot-%010d.json", coveredUpTo));
+            Path temporary = directory.resolve(target.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                write(channel, ByteBuffer.wrap(bytes));
+                channel.force(true);
+            }
+            move(temporary, target);
+            syncDirectory();
+
+            deleteCoveredFiles(coveredUpTo);
+            logger.info("💾 Snapshot du journal du chat: {} conversations, {} entrée(s) compactée(s)",
+                        conversations.size(), entries);
+            return true;
+        } catch (Exception e) {
+            // Segments conservés : la reprise reste possible depuis le snapshot précédent
+            synchronized (this) {
+                entriesSinceSnapshot += entries;
+            }
+            logger.error("❌ Erreur lors du snapshot du journal du chat: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Synchronise et ferme le segment courant
+     */
+    @Override
+    public synchronized void close() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        closeSegment();
+    }
+
+    public synchronized int getEntriesSinceSnapshot() {
+        return entriesSinceSnapshot;
+    }
+
+    // ==================== INTERNE ====================
+
+    private Map<String, Object> entry(String type, String conversationId) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("type", type);
+        entry.put("conversationId", conversationId);
+        entry.put("at", System.currentTimeMillis());
+        return entry;
+    }
+
+    private synchronized void append(Map<String, Object> entry) {
+        if (segment == null) {
+            logger.warn("⚠️ Journal du chat non ouvert, entrée {} ignorée", entry.get("type"));
+            return;
+        }
+        try {
+            byte[] line = encodeLine(objectMapper.writeValueAsBytes(entry));
+            if (segmentSize > 0 && segmentSize + line.length > segmentMaxBytes) {
+                openNextSegment();
+            }
+            write(segment, ByteBuffer.wrap(line));
+            segmentSize += line.length;
+            entriesSinceSnapshot++;
+
+            if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+                segment.force(false);
+            } else {
+                dirty = true;
+            }
+        } catch (IOException e) {
+            logger.error("❌ Erreur lors de l'écriture dans le journal du chat: {}", e.getMessage());
+        }
+    }
+
+    private byte[] encodeLine(byte[] json) {
+        CRC32 crc = new CRC32();
+        crc.update(json);
+        byte[] prefix = (String.format("%08x", crc.getValue()) + "\t").getBytes(StandardCharsets.US_ASCII);
+        byte[] line = new byte[prefix.length + json.length + 1];
+        System.arraycopy(prefix, 0, line, 0, prefix.length);
+        System.arraycopy(json, 0, line, prefix.length, json.length);
+        line[line.length - 1] = '\n';
+        return line;
+    }
+
+    /**
+     * Décode une ligne ; null si elle est tronquée ou si son CRC ne correspond pas
+     */
+    private Map<String, Object> decodeLine(byte[] data, int start, int end) {
+        int tab = -1;
+        for (int i = start; i < end; i++) {
+            if (data[i] == '\t') {
+                tab = i;
+                break;
+            }
+        }
+        if (tab - start != 8) {
+            return null;
+        }
+        try {
+            long expected = Long.parseLong(new String(data, start, 8, StandardCharsets.US_ASCII), 16);
+            CRC32 crc = new CRC32();
+            crc.update(data, tab + 1, end - tab - 1);
+            if (crc.getValue() != expected) {
+                return null;
+            }
+            return objectMapper.readValue(data, tab + 1, end - tab - 1, ENTRY_TYPE);
+        } catch (NumberFormatException | IOException e) {
+            return null;
+        }
+    }
+
+    private int replaySegment(Path file, boolean lastSegment, ChatConversationStore store) throws IOException {
+        byte[] data = Files.readAllBytes(file);
+        int replayed = 0;
+        int position = 0;
+
+        while (position < data.length) {
+            int end = position;
+            while (end < data.length && data[end] != '\n') {
+                end++;
+            }
+            Map<String, Object> entry = end < data.length ? decodeLine(data, position, end) : null;
+            if (entry == null) {
+                if (lastSegment) {
+                    // Écriture interrompue par un arrêt brutal : on retire la fin du segment
+                    logger.warn("⚠️ Fin du journal {} incomplète ({} octet(s) ignoré(s))",
+                                file.getFileName(), data.length - position);
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                        channel.truncate(position);
+                        channel.force(true);
+                    }
+                } else {
+                    logger.error("❌ Entrée corrompue dans {} à l'octet {}, reste du segment ignoré",
+                                 file.getFileName(), position);
+                }
+                break;
+            }
+            apply(entry, store);
+            replayed++;
+            position = end + 1;
+        }
+        return replayed;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void apply(Map<String, Object> entry, ChatConversationStore store) {
+        String conversationId = (String) entry.get("conversationId");
+
+        switch ((String) entry.get("type")) {
+            case CONVERSATION_CREATED -> {
+                List<Map<String, Object>> messages = (List<Map<String, Object>>) entry.get("messages");
+                store.put(conversationId, (Map<String, Object>) entry.get("conversation"),
+                          messages != null ? new ArrayList<>(messages) : new ArrayList<>());
+            }
+            case CONVERSATION_UPDATED -> store.updateConversation(conversationId, (Map<String, Object>) entry.get("fields"));
+            // Dédoublonné par id : le message peut déjà figurer dans le snapshot
+            case MESSAGE_APPENDED -> store.appendMessage(conversationId, (Map<String, Object>) entry.get("message"));
+            case CLEARED -> store.clear();
+            default -> logger.warn("⚠️ Type d'entrée de journal inconnu: {}", entry.get("type"));
+        }
+    }
+
+    private void loadSnapshot(Path file, ChatConversationStore store) throws IOException {
+        Map<String, Object> content = objectMapper.readValue(file.toFile(), ENTRY_TYPE);
+        Map<String, Map<String, Object>> conversations = objectMapper.convertValue(content.get("conversations"), CONVERSATIONS_TYPE);
+        Map<String, List<Map<String, Object>>> messages = objectMapper.convertValue(content.get("messages"), MESSAGES_TYPE);
+        putAll(store, conversations, messages);
+    }
+
+    private boolean importLegacyFiles(ChatConversationStore store) {
+        Path parent = directory.toAbsolutePath().getParent();
+        File conversationsFile = parent.resolve("conversations.json").toFile();
+        File messagesFile = parent.resolve("messages.json").toFile();
+        try {
+            if (!conversationsFile.exists()) {
+                return false;
+            }
+            Map<String, Map<String, Object>> conversations = objectMapper.readValue(conversationsFile, CONVERSATIONS_TYPE);
+            Map<String, List<Map<String, Object>>> messages = messagesFile.exists()
+                ? objectMapper.readValue(messagesFile, MESSAGES_TYPE) : Map.of();
+            if (conversations.isEmpty()) {
+                return false;
+            }
+            putAll(store, conversations, messages);
+            logger.info("📥 Import des anciens fichiers JSON : {} conversations", conversations.size());
+            return true;
+        } catch (IOException e) {
+            logger.warn("⚠️ Impossible d'importer les anciens fichiers JSON: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void putAll(ChatConversationStore store, Map<String, Map<String, Object>> conversations,
+                        Map<String, List<Map<String, Object>>> messages) {
+        conversations.forEach((id, conversation) ->
+            store.put(id, conversation, new ArrayList<>(messages.getOrDefault(id, List.of()))));
+    }
+
+    private void openNextSegment() throws IOException {
+        closeSegment();
+        segmentNumber++;
+        Path file = directory.resolve(String.format("journal-%010d.log", segmentNumber));
+        segment = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentSize = segment.size();
+        syncDirectory();
+    }
+
+    private void closeSegment() {
+        if (segment == null) {
+            return;
+        }
+        try {
+            segment.force(false);
+            segment.close();
+        } catch (IOException e) {
+            logger.error("❌ Erreur lors de la fermeture du segment du journal du chat: {}", e.getMessage());
+        }
+        segment = null;
+        dirty = false;
+    }
+
+    private void deleteCoveredFiles(long coveredUpTo) throws IOException {
+        for (Map.Entry<Long, Path> entry : listFiles(SEGMENT_NAME).entrySet()) {
+            if (entry.getKey() < coveredUpTo) {
+                Files.deleteIfExists(entry.getValue());
+            }
+        }
+        for (Map.Entry<Long, Path> entry : listFiles(SNAPSHOT_NAME).entrySet()) {
+            if (entry.getKey() < coveredUpTo) {
+                Files.deleteIfExists(entry.getValue());
+            }
+        }
+    }
+
+    private void deleteTemporaryFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private TreeMap<Long, Path> listFiles(Pattern pattern) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (Stream<Path> stream = Files.list(directory)) {
+            stream.forEach(file -> {
+                Matcher matcher = pattern.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    files.put(Long.parseLong(matcher.group(1)), file);
+                }
+            });
+        }
+        return files;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void syncDirectory() {
+        // Rend durables les créations/renommages de fichiers (non supporté sous Windows)
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.debug("Synchronisation du répertoire du journal impossible: {}", e.getMessage());
+        }
+    }
+}
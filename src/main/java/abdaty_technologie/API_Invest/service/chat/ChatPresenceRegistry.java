@@ -0,0 +1,180 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Présence (en ligne / hors ligne) et indicateurs « en train d'écrire » du chat, en mémoire uniquement.
+ *
+ * Un participant est en ligne tant que son dernier battement (heartbeat) date de moins de
+ * chat.presence.ttl-ms ; un indicateur de saisie expire seul après chat.presence.typing-ttl-ms si le
+ * client ne le renouvelle pas. Rien n'est écrit en base : au redémarrage, chacun redevient en ligne à
+ * son prochain battement.
+ *
+ * Les états sont dans des ConcurrentHashMap (lectures sans verrou) : les pages de boîte de réception
+ * les lisent en lot (onlineAmong, typingIn). Les entrées expirées sont ignorées à la lecture et
+ * purgées périodiquement.
+ */
+@Component
+public class ChatPresenceRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatPresenceRegistry.class);
+
+    private final long presenceTtlMs;
+    private final long typingTtlMs;
+    private final LongSupplier clock;
+
+    // participantId -> date du dernier battement (ms)
+    private final ConcurrentHashMap<String, Long> lastSeen = new ConcurrentHashMap<>();
+    // conversationId -> (participantId -> expiration de l'indicateur de saisie, ms)
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Long>> typing = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ChatPresenceRegistry(@Value("${chat.presence.ttl-ms:45000}") long presenceTtlMs,
+                                @Value("${chat.presence.typing-ttl-ms:6000}") long typingTtlMs) {
+        this(presenceTtlMs, typingTtlMs, System::currentTimeMillis);
+    }
+
+    ChatPresenceRegistry(long presenceTtlMs, long typingTtlMs, LongSupplier clock) {
+        this.presenceTtlMs = presenceTtlMs;
+        this.typingTtlMs = typingTtlMs;
+        this.clock = clock;
+    }
+
+    /**
+     * Battement d'un client : le participant est en ligne pour presenceTtlMs.
+     * Renvoie le délai (ms) avant lequel le client doit renvoyer un battement.
+     */
+    public long heartbeat(String participantId) {
+        lastSeen.merge(participantId, clock.getAsLong(), Math::max);
+        return presenceTtlMs / 2;
+    }
+
+    /**
+     * Déconnexion explicite (fermeture de l'onglet, déconnexion) : hors ligne sans attendre l'expiration
+     */
+    public void disconnect(String participantId) {
+        lastSeen.remove(participantId);
+    }
+
+    /**
+     * Active ou retire l'indicateur de saisie d'un participant dans une conversation ; écrire compte
+     * aussi comme un battement
+     */
+    public void setTyping(String conversationId, String participantId, boolean isTyping) {
+        long now = clock.getAsLong();
+        lastSeen.merge(participantId, now, Math::max);
+        if (isTyping) {
+            typing.compute(conversationId, (id, typists) -> {
+                ConcurrentHashMap<String, Long> current = typists != null ? typists : new ConcurrentHashMap<>();
+                current.put(participantId, now + typingTtlMs);
+                return current;
+            });
+        } else {
+            typing.computeIfPresent(conversationId, (id, typists) -> {
+                typists.remove(participantId);
+                return typists.isEmpty() ? null : typists;
+            });
+        }
+    }
+
+    public boolean isOnline(String participantId) {
+        Long seen = lastSeen.get(participantId);
+        return seen != null && clock.getAsLong() - seen < presenceTtlMs;
+    }
+
+    /**
+     * Participants en ligne parmi ceux demandés (lecture en lot, pour une page de boîte de réception)
+     */
+    public Set<String> onlineAmong(Collection<String> participantIds) {
+        long now = clock.getAsLong();
+        Set<String> online = new LinkedHashSet<>();
+        for (String participantId : participantIds) {
+            Long seen = participantId != null ? lastSeen.get(participantId) : null;
+            if (seen != null && now - seen < presenceTtlMs) {
+                online.add(participantId);
+            }
+        }
+        return online;
+    }
+
+    /**
+     * Dernier battement connu (ms) des participants demandés, absents s'ils n'en ont jamais envoyé
+     */
+    public Map<String, Long> lastSeenOf(Collection<String> participantIds) {
+        Map<String, Long> result = new HashMap<>();
+        for (String participantId : participantIds) {
+            Long seen = participantId != null ? lastSeen.get(participantId) : null;
+            if (seen != null) {
+                result.put(participantId, seen);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Participants en train d'écrire, par conversation, pour les conversations demandées
+     * (seules les conversations où quelqu'un écrit figurent dans le résultat)
+     */
+    public Map<String, Set<String>> typingIn(Collection<String> conversationIds) {
+        long now = clock.getAsLong();
+        Map<String, Set<String>> result = new HashMap<>();
+        for (String conversationId : conversationIds) {
+            ConcurrentHashMap<String, Long> typists = conversationId != null ? typing.get(conversationId) : null;
+            if (typists == null) {
+                continue;
+            }
+            typists.forEach((participantId, expiresAt) -> {
+                if (expiresAt > now) {
+                    result.computeIfAbsent(conversationId, id -> new LinkedHashSet<>()).add(participantId);
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Purge des battements et indicateurs de saisie expirés (la lecture les ignore déjà)
+     */
+    @Scheduled(fixedDelayString = "${chat.presence.cleanup-interval-ms:60000}")
+    public void purgeExpired() {
+        long now = clock.getAsLong();
+        int before = lastSeen.size();
+        lastSeen.entrySet().removeIf(entry -> now - entry.getValue() >= presenceTtlMs);
+        for (String conversationId : typing.keySet()) {
+            typing.computeIfPresent(conversationId, (id, typists) -> {
+                typists.values().removeIf(expiresAt -> expiresAt <= now);
+                return typists.isEmpty() ? null : typists;
+            });
+        }
+        int purged = before - lastSeen.size();
+        if (purged > 0) {
+            logger.debug("🧹 Présence : {} participants passés hors ligne", purged);
+        }
+    }
+
+    /**
+     * Nombre de participants en ligne et de conversations avec une saisie en cours
+     */
+    public Map<String, Object> getStats() {
+        long now = clock.getAsLong();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("online", lastSeen.values().stream().filter(seen -> now - seen < presenceTtlMs).count());
+        stats.put("typingConversations", typing.size());
+        stats.put("presenceTtlMs", presenceTtlMs);
+        stats.put("typingTtlMs", typingTtlMs);
+        return stats;
+    }
+}
@@ -0,0 +1,40 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.Message;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Tient l'index de recherche à jour à chaque création, modification ou suppression de message ou de
+ * conversation, quel que soit le chemin d'enregistrement (service, contrôleurs). Instancié par Hibernate
+ * via le conteneur Spring.
+ */
+public class ChatSearchIndexListener {
+
+    @Autowired
+    private MessageSearchIndex searchIndex;
+
+    @PostPersist
+    @PostUpdate
+    public void onWrite(Object entity) {
+        // Le document de même clé est remplacé : contenu ou sujet modifié réindexé
+        if (entity instanceof Message message) {
+            searchIndex.indexMessage(message);
+        } else if (entity instanceof Conversation conversation) {
+            searchIndex.indexConversation(conversation);
+        }
+    }
+
+    @PostRemove
+    public void onRemove(Object entity) {
+        if (entity instanceof Message message) {
+            searchIndex.removeMessage(message.getId());
+        } else if (entity instanceof Conversation conversation) {
+            searchIndex.removeConversation(conversation.getId());
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.dto.chat.TranscriptMessage;
+import abdaty_technologie.API_Invest.exception.BadRequestException;
+import abdaty_technologie.API_Invest.exception.NotFoundException;
+import abdaty_technologie.API_Invest.repository.ConversationRepository;
+import abdaty_technologie.API_Invest.repository.MessageRepository;
+
+/**
+ * Export de la transcription complète d'une conversation (CSV, JSON Lines ou texte), écrit au fil de l'eau
+ * dans le flux de la réponse.
+ *
+ * Les messages archivés sont décodés un par un depuis leur bloc compressé, puis la table messages est
+ * parcourue par pages avec un curseur (creation, id) vers l'avant, en projection sans entité : la mémoire
+ * utilisée ne dépend pas de la longueur de la conversation. Chaque page est envoyée au client avant
+ * la lecture de la suivante.
+ */
+@Service
+public class ChatTranscriptExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatTranscriptExporter.class);
+
+    private static final int PAGE_SIZE = 500;
+
+    /**
+     * Formats d'export : type MIME et extension du fichier proposé au téléchargement
+     */
+    public enum Format {
+        CSV("text/csv", "csv"),
+        JSONL("application/x-ndjson", "jsonl"),
+        TXT("text/plain", "txt");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format parse(String value) {
+            try {
+                return Format.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (RuntimeException e) {
+                throw new BadRequestException("Format d'export inconnu: " + value + " (csv, jsonl ou txt)");
+            }
+        }
+    }
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private MessageArchiveService messageArchiveService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Participants de la conversation, lus avant de commencer à écrire (une conversation absente
+     * donne une erreur propre, pas une réponse tronquée)
+     */
+    public Transcript open(String conversationId) {
+        List<Conversation> found = conversationRepository.findAllWithParticipantsByIdIn(List.of(conversationId));
+        if (found.isEmpty()) {
+            throw new NotFoundException("Conversation non trouvée");
+        }
+        return new Transcript(found.get(0));
+    }
+
+    /**
+     * Écrit la transcription dans le flux. Renvoie le nombre de messages exportés.
+     */
+    public int export(Transcript transcript, Format format, OutputStream out) throws IOException {
+        long start = System.currentTimeMillis();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        LineWriter lines = switch (format) {
+            case CSV -> new CsvLines(writer, transcript);
+            case JSONL -> new JsonLines(writer, transcript);
+            case TXT -> new TextLines(writer, transcript);
+        };
+        lines.header();
+
+        int[] count = new int[1];
+        // Messages archivés (les plus anciens), puis la table messages
+        try {
+            messageArchiveService.forEachArchivedMessage(transcript.conversationId, message -> {
+                lines.write(message);
+                count[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        Instant cursorCreation = null;
+        String cursorId = null;
+        while (true) {
+            List<TranscriptMessage> page = messageRepository.findTranscriptPage(
+                transcript.conversationId, cursorCreation, cursorId, PageRequest.of(0, PAGE_SIZE));
+            for (TranscriptMessage message : page) {
+                lines.write(message);
+            }
+            count[0] += page.size();
+            writer.flush();
+            if (page.size() < PAGE_SIZE) {
+                break;
+            }
+            TranscriptMessage last = page.get(page.size() - 1);
+            cursorCreation = last.getCreation();
+            cursorId = last.getId();
+        }
+        writer.flush();
+
+        logger.info("📤 Conversation {} exportée ({}) : {} message(s) en {} ms",
+                    transcript.conversationId, format, count[0], System.currentTimeMillis() - start);
+        return count[0];
+    }
+
+    /**
+     * En-tête de l'export : identité de la conversation et noms des participants
+     */
+    public static final class Transcript {
+        private final String conversationId;
+        private final String subject;
+        private final String agentId;
+        private final String userId;
+        private final Map<String, String> names = new LinkedHashMap<>();
+
+        private Transcript(Conversation conversation) {
+            this.conversationId = conversation.getId();
+            this.subject = conversation.getSubject();
+            this.agentId = conversation.getAgent().getId();
+            this.userId = conversation.getUser().getId();
+            names.put(agentId, fullName(conversation.getAgent()));
+            names.put(userId, fullName(conversation.getUser()));
+        }
+
+        public String getConversationId() {
+            return conversationId;
+        }
+
+        private String nameOf(String senderId) {
+            return senderId != null ? names.getOrDefault(senderId, senderId) : "";
+        }
+
+        private String roleOf(String senderId) {
+            if (senderId == null) {
+                return "";
+            }
+            return senderId.equals(agentId) ? "AGENT" : senderId.equals(userId) ? "USER" : "";
+        }
+
+        private static String fullName(Persons person) {
+            String prenom = person.getPrenom() != null ? person.getPrenom() : "";
+            String nom = person.getNom() != null ? person.getNom() : "";
+            return (prenom + " " + nom).trim();
+        }
+    }
+
+    private abstract static class LineWriter {
+        protected final Writer writer;
+        protected final Transcript transcript;
+
+        LineWriter(Writer writer, Transcript transcript) {
+            this.writer = writer;
+            this.transcript = transcript;
+        }
+
+        void header() throws IOException {
+        }
+
+        final void write(TranscriptMessage message) {
+            try {
+                line(message);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        abstract void line(TranscriptMessage message) throws IOException;
+    }
+
+    private static final class CsvLines extends LineWriter {
+        CsvLines(Writer writer, Transcript transcript) {
+            super(writer, transcript);
+        }
+
+        @Override
+        void header() throws IOException {
+            writer.write("date,expediteur_id,expediteur,role,type,contenu,document\r\n");
+        }
+
+        @Override
+        void line(TranscriptMessage message) throws IOException {
+            writer.write(String.join(",",
+                csv(String.valueOf(message.getCreation())),
+                csv(message.getSenderId()),
+                csv(transcript.nameOf(message.getSenderId())),
+                csv(transcript.roleOf(message.getSenderId())),
+                csv(message.getMessageType().name()),
+                csv(message.getContent()),
+                csv(message.getDocumentName())));
+            writer.write("\r\n");
+        }
+
+        private static String csv(String value) {
+            if (value == null) {
+                return "";
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+
+    private final class JsonLines extends LineWriter {
+        private final JsonGenerator generator;
+
+        JsonLines(Writer writer, Transcript transcript) throws IOException {
+            super(writer, transcript);
+            this.generator = objectMapper.getFactory().createGenerator(writer)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        }
+
+        @Override
+        void line(TranscriptMessage message) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("id", message.getId());
+            generator.writeStringField("date", String.valueOf(message.getCreation()));
+            generator.writeStringField("senderId", message.getSenderId());
+            generator.writeStringField("senderName", transcript.nameOf(message.getSenderId()));
+            generator.writeStringField("senderRole", transcript.roleOf(message.getSenderId()));
+            generator.writeStringField("type", message.getMessageType().name());
+            generator.writeStringField("content", message.getContent());
+            if (message.getDocumentName() != null) {
+                generator.writeStringField("documentName", message.getDocumentName());
+            }
+            generator.writeEndObject();
+            generator.flush();
+            writer.write('\n');
+        }
+    }
+
+    private static final class TextLines extends LineWriter {
+        TextLines(Writer writer, Transcript transcript) {
+            super(writer, transcript);
+        }
+
+        @Override
+        void header() throws IOException {
+            writer.write("Conversation : " + transcript.subject + " (" + transcript.conversationId + ")\n\n");
+        }
+
+        @Override
+        void line(TranscriptMessage message) throws IOException {
+            String role = transcript.roleOf(message.getSenderId());
+            writer.write("[" + message.getCreation() + "] " + transcript.nameOf(message.getSenderId())
+                + (role.isEmpty() ? "" : " (" + role + ")") + " : " + message.getContent());
+            if (message.getDocumentName() != null) {
+                writer.write(" [document : " + message.getDocumentName() + "]");
+            }
+            writer.write('\n');
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.Message;
+import abdaty_technologie.API_Invest.Entity.Enum.ConversationStatus;
+import abdaty_technologie.API_Invest.Entity.Enum.MessageType;
+import abdaty_technologie.API_Invest.dto.chat.ChatEvent;
+import abdaty_technologie.API_Invest.repository.ConversationRepository;
+import abdaty_technologie.API_Invest.repository.MessageRepository;
+import abdaty_technologie.API_Invest.repository.PersonsRepository;
+
+/**
+ * Fermeture automatique des conversations actives sans message depuis N jours (chat.auto-close.idle-days).
+ *
+ * Chaque nuit, les conversations inactives sont fermées par lots bornés (chat.auto-close.batch-size), un lot
+ * par transaction : sélection verrouillée du lot, fermeture par un seul UPDATE, un message système par
+ * conversation (au nom de l'agent, compté comme non lu pour l'utilisateur), compteurs de non-lus mis à
+ * jour en masse. Les participants connectés reçoivent l'événement de fermeture après le commit du lot.
+ *
+ * Le job planifié ne tourne que si chat.auto-close.enabled=true.
+ */
+@Service
+public class ConversationAutoCloseService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationAutoCloseService.class);
+
+    // Désactivée par défaut : à activer explicitement (chat.auto-close.enabled=true) par chaque déploiement
+    @Value("${chat.auto-close.enabled:false}")
+    private boolean enabled;
+
+    @Value("${chat.auto-close.idle-days:30}")
+    private int idleDays;
+
+    @Value("${chat.auto-close.batch-size:200}")
+    private int batchSize;
+
+    // Plafond par exécution : le rattrapage d'un gros historique s'étale sur plusieurs nuits
+    @Value("${chat.auto-close.max-conversations-per-run:10000}")
+    private int maxConversationsPerRun;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private PersonsRepository personsRepository;
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Autowired
+    private ChatInboxProjector inboxProjector;
+
+    @Autowired
+    private AgentResponseMetrics agentResponseMetrics;
+
+    @Autowired
+    private ChatEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Métriques depuis le démarrage
+    private final AtomicLong closedConversations = new AtomicLong();
+    private final AtomicLong runs = new AtomicLong();
+    private volatile Instant lastRunAt;
+    private volatile long lastRunMillis;
+    private volatile int lastRunConversations;
+    private volatile int lastRunBatches;
+
+    /**
+     * Fermeture périodique (par défaut chaque nuit à 3h15)
+     */
+    @Scheduled(cron = "${chat.auto-close.cron:0 15 3 * * *}")
+    public void scheduledAutoClose() {
+        if (!enabled) {
+            return;
+        }
+        int closed = closeIdleConversations();
+        if (closed > 0) {
+            logger.info("🔒 Fermeture automatique du chat : {} conversation(s) inactive(s) depuis {} jours fermée(s) en {} lot(s), {} ms",
+                        closed, idleDays, lastRunBatches, lastRunMillis);
+        }
+    }
+
+    /**
+     * Ferme les conversations inactives, un lot par transaction. Retourne le nombre de conversations fermées.
+     */
+    public int closeIdleConversations() {
+        long start = System.currentTimeMillis();
+        Instant idleBefore = Instant.now().minus(Duration.ofDays(idleDays));
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int closed = 0;
+        int batches = 0;
+
+        while (closed < maxConversationsPerRun) {
+            int limit = Math.min(batchSize, maxConversationsPerRun - closed);
+            Integer batch = transaction.execute(status -> closeBatch(idleBefore, limit));
+            if (batch == null || batch == 0) {
+                break;
+            }
+            closed += batch;
+            batches++;
+        }
+
+        runs.incrementAndGet();
+        closedConversations.addAndGet(closed);
+        lastRunAt = Instant.now();
+        lastRunMillis = System.currentTimeMillis() - start;
+        lastRunConversations = closed;
+        lastRunBatches = batches;
+        return closed;
+    }
+
+    /**
+     * Métriques de la fermeture automatique : réglage, dernière exécution, cumul depuis le démarrage
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("idleDays", idleDays);
+        stats.put("batchSize", batchSize);
+        stats.put("runsSinceStartup", runs.get());
+        stats.put("conversationsClosedSinceStartup", closedConversations.get());
+        stats.put("lastRunAt", lastRunAt != null ? lastRunAt.toString() : null);
+        stats.put("lastRunMillis", lastRunMillis);
+        stats.put("lastRunConversations", lastRunConversations);
+        stats.put("lastRunBatches", lastRunBatches);
+        return stats;
+    }
+
+    // ==================== INTERNE ====================
+
+    private int closeBatch(Instant idleBefore, int limit) {
+        // Verrou identique à celui de l'envoi : un message qui arrive pendant le lot attend sa fin
+        List<Conversation> conversations = conversationRepository.findIdleBatchForUpdate(
+            ConversationStatus.ACTIVE, idleBefore, PageRequest.of(0, limit));
+        if (conversations.isEmpty()) {
+            return 0;
+        }
+
+        // Participants relevés avant l'UPDATE, qui vide la session
+        List<String> ids = new ArrayList<>(conversations.size());
+        Map<String, String> agentIdByConversationId = new LinkedHashMap<>();
+        Map<String, String> userIdByConversationId = new LinkedHashMap<>();
+        for (Conversation conversation : conversations) {
+            ids.add(conversation.getId());
+            String agentId = conversation.getAgent().getId();
+            String userId = conversation.getUser().getId();
+            agentIdByConversationId.put(conversation.getId(), agentId);
+            if (!userId.equals(agentId)) {
+                userIdByConversationId.put(conversation.getId(), userId);
+            }
+        }
+
+        Instant now = Instant.now();
+        String content = "Conversation fermée automatiquement après " + idleDays + " jours sans message";
+        conversationRepository.closeAll(ids, ConversationStatus.CLOSED, ConversationStatus.ACTIVE,
+                                        now, Conversation.previewOf(content));
+
+        List<Message> messages = new ArrayList<>(ids.size());
+        agentIdByConversationId.forEach((conversationId, agentId) -> {
+            Message message = new Message(conversationRepository.getReferenceById(conversationId),
+                                          personsRepository.getReferenceById(agentId), content, MessageType.SYSTEM);
+            message.setCreation(now);
+            messages.add(message);
+        });
+        messageRepository.saveAll(messages);
+        unreadCounterService.onAgentMessagesSaved(userIdByConversationId);
+
+        // L'UPDATE en masse ne déclenche pas les listeners de Conversation : on ajuste et signale nous-mêmes
+        Map<String, Integer> closedByAgent = new TreeMap<>();
+        agentIdByConversationId.values().forEach(agentId -> closedByAgent.merge(agentId, 1, Integer::sum));
+        closedByAgent.forEach((agentId, closed) -> agentResponseMetrics.onOpenConversationsChanged(agentId, -closed));
+        for (String conversationId : ids) {
+            inboxProjector.markDirty(conversationId);
+            String agentId = agentIdByConversationId.get(conversationId);
+            eventPublisher.publish(ChatEvent.conversationClosed(conversationId, null), agentId,
+                                   userIdByConversationId.getOrDefault(conversationId, agentId));
+        }
+        return ids.size();
+    }
+}
@@ -0,0 +1,72 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import abdaty_technologie.API_Invest.dto.chat.ConversationSummary;
+
+/**
+ * Format des lignes de boîte de réception attendu par les frontends, commun aux contrôleurs du chat :
+ * résumé de la conversation, dernier message (valeurs vides pour une conversation sans message),
+ * présence des participants et saisie en cours.
+ */
+@Component
+public class ConversationSummaryMapper {
+
+    @Autowired
+    private ChatPresenceRegistry presenceRegistry;
+
+    public List<Map<String, Object>> toMaps(List<ConversationSummary> summaries) {
+        List<Map<String, Object>> conversationList = new ArrayList<>(summaries.size());
+
+        // Présence et saisie en cours lues en lot pour toute la page (mémoire, sans requête)
+        List<String> participantIds = new ArrayList<>();
+        List<String> conversationIds = new ArrayList<>();
+        for (ConversationSummary summary : summaries) {
+            participantIds.add(summary.getAgentId());
+            participantIds.add(summary.getUserId());
+            conversationIds.add(summary.getId());
+        }
+        Set<String> online = presenceRegistry.onlineAmong(participantIds);
+        Map<String, Set<String>> typing = presenceRegistry.typingIn(conversationIds);
+
+        for (ConversationSummary summary : summaries) {
+            Map<String, Object> conversationSummary = new HashMap<>();
+            conversationSummary.put("id", summary.getId());
+            conversationSummary.put("subject", summary.getSubject());
+            conversationSummary.put("agentId", summary.getAgentId());
+            conversationSummary.put("agentName", summary.getAgentName());
+            conversationSummary.put("userId", summary.getUserId());
+            conversationSummary.put("userName", summary.getUserName());
+            conversationSummary.put("createdAt", summary.getCreation().toEpochMilli());
+            conversationSummary.put("status", summary.getStatus().toString());
+            conversationSummary.put("entrepriseId", summary.getEntrepriseId());
+            conversationSummary.put("entrepriseNom", summary.getEntrepriseNom());
+            conversationSummary.put("unreadCount", summary.getUnreadCount());
+
+            if (summary.getLastMessageTime() != null) {
+                conversationSummary.put("lastMessage", summary.getLastMessageContent());
+                conversationSummary.put("lastMessageTime", summary.getLastMessageTime().toEpochMilli());
+                conversationSummary.put("lastMessageSender", summary.getLastMessageSenderRole());
+            } else {
+                conversationSummary.put("lastMessage", "");
+                conversationSummary.put("lastMessageTime", 0);
+                conversationSummary.put("lastMessageSender", "");
+            }
+
+            conversationSummary.put("agentOnline", online.contains(summary.getAgentId()));
+            conversationSummary.put("userOnline", online.contains(summary.getUserId()));
+            conversationSummary.put("typing", typing.getOrDefault(summary.getId(), Set.of()));
+
+            conversationList.add(conversationSummary);
+        }
+
+        return conversationList;
+    }
+}
@@ -0,0 +1,36 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.StopFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.fr.FrenchAnalyzer;
+import org.apache.lucene.analysis.fr.FrenchLightStemFilter;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.util.ElisionFilter;
+
+/**
+ * Analyse du texte des messages pour la recherche : minuscules, élisions (l', d', qu'...), mots vides
+ * français, suppression des accents puis racinisation légère. "Équipes" et "equipe" donnent le même terme.
+ *
+ * Utilisé à l'indexation comme à la recherche, pour que les deux côtés produisent les mêmes termes.
+ */
+public class FrenchSearchAnalyzer extends Analyzer {
+
+    @Override
+    protected TokenStreamComponents createComponents(String fieldName) {
+        StandardTokenizer tokenizer = new StandardTokenizer();
+        TokenStream stream = new LowerCaseFilter(tokenizer);
+        stream = new ElisionFilter(stream, FrenchAnalyzer.DEFAULT_ARTICLES);
+        stream = new StopFilter(stream, FrenchAnalyzer.getDefaultStopSet());
+        stream = new ASCIIFoldingFilter(stream);
+        stream = new FrenchLightStemFilter(stream);
+        return new TokenStreamComponents(tokenizer, stream);
+    }
+
+    @Override
+    protected TokenStream normalize(String fieldName, TokenStream in) {
+        return new ASCIIFoldingFilter(new LowerCaseFilter(in));
+    }
+}
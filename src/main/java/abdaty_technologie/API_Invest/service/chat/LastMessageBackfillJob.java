@@ -0,0 +1,104 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.Message;
+import abdaty_technologie.API_Invest.repository.ConversationRepository;
+import abdaty_technologie.API_Invest.repository.MessageRepository;
+
+/**
+ * Remplissage unique du résumé du dernier message (lastMessageAt, lastMessagePreview,
+ * lastMessageSenderId, messageCount) pour les conversations créées avant sa dénormalisation.
+ *
+ * Lancé au démarrage : seules les conversations qui ont des messages mais un messageCount à 0 sont
+ * traitées, donc une fois les données existantes remplies le job ne trouve plus rien à faire.
+ */
+@Component
+public class LastMessageBackfillJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(LastMessageBackfillJob.class);
+
+    private static final int BATCH_SIZE = 200;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        int updated = backfill();
+        if (updated > 0) {
+            logger.info("🔧 Résumé du dernier message rempli pour {} conversation(s)", updated);
+        }
+    }
+
+    /**
+     * Remplit les conversations concernées, un lot par transaction. Retourne le nombre de conversations mises à jour.
+     */
+    public int backfill() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int updated = 0;
+        String afterId = null;
+
+        while (true) {
+            final String batchStart = afterId;
+            List<String> batch = transaction.execute(status -> backfillBatch(batchStart));
+            if (batch == null || batch.isEmpty()) {
+                break;
+            }
+            updated += batch.size();
+            afterId = batch.get(batch.size() - 1);
+        }
+        return updated;
+    }
+
+    private List<String> backfillBatch(String afterId) {
+        // Même verrou que l'envoi de message : un envoi concurrent attend la fin du lot
+        List<Conversation> conversations = conversationRepository.findBatchWithoutLastMessageForUpdate(
+            afterId, PageRequest.of(0, BATCH_SIZE));
+        if (conversations.isEmpty()) {
+            return List.of();
+        }
+
+        List<String> conversationIds = conversations.stream().map(Conversation::getId).collect(Collectors.toList());
+
+        Map<String, Message> lastMessages = new HashMap<>();
+        for (Message message : messageRepository.findLastMessagesOfConversations(conversationIds)) {
+            lastMessages.put(message.getConversation().getId(), message);
+        }
+        Map<String, Long> counts = new HashMap<>();
+        for (Object[] row : messageRepository.countByConversationIds(conversationIds)) {
+            counts.put((String) row[0], (Long) row[1]);
+        }
+
+        for (Conversation conversation : conversations) {
+            Message last = lastMessages.get(conversation.getId());
+            conversation.setMessageCount(counts.getOrDefault(conversation.getId(), 0L).intValue());
+            if (last != null) {
+                conversation.setLastMessageAt(last.getCreation());
+                conversation.setLastMessagePreview(Conversation.previewOf(last.getContent()));
+                conversation.setLastMessageSenderId(last.getSender().getId());
+            }
+        }
+        return conversationIds;
+    }
+}
@@ -0,0 +1,108 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import java.util.Arrays;
+
+/**
+ * Histogramme de délais en secondes à précision relative constante (à la manière de HdrHistogram) :
+ * valeurs exactes jusqu'à 7 s, puis 8 sous-intervalles par puissance de deux (erreur relative ≤ 12,5 %).
+ * Taille fixe (184 compteurs, jusqu'à ~2^24 s, au-delà dans le dernier), addition et percentiles
+ * en temps constant. Sérialisé en liste de compteurs séparés par des virgules (zéros finaux omis).
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 24;
+    static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+
+    public void record(long seconds) {
+        counts[bucketOf(seconds)]++;
+        total++;
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return total == 0;
+    }
+
+    /**
+     * Plus grande valeur (s) de l'intervalle contenant le percentile demandé (0-100), null si vide
+     */
+    public Long percentile(double percentile) {
+        if (total == 0) {
+            return null;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return highestValueOf(i);
+            }
+        }
+        return highestValueOf(BUCKETS - 1);
+    }
+
+    public String encode() {
+        int last = BUCKETS - 1;
+        while (last >= 0 && counts[last] == 0) {
+            last--;
+        }
+        StringBuilder encoded = new StringBuilder();
+        for (int i = 0; i <= last; i++) {
+            if (i > 0) {
+                encoded.append(',');
+            }
+            encoded.append(counts[i]);
+        }
+        return encoded.toString();
+    }
+
+    public static LatencyHistogram decode(String encoded) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        if (encoded == null || encoded.isBlank()) {
+            return histogram;
+        }
+        String[] parts = encoded.split(",");
+        for (int i = 0; i < parts.length && i < BUCKETS; i++) {
+            histogram.counts[i] = Long.parseLong(parts[i].trim());
+        }
+        histogram.total = Arrays.stream(histogram.counts).sum();
+        return histogram;
+    }
+
+    static int bucketOf(long seconds) {
+        if (seconds < SUB_BUCKETS) {
+            return (int) Math.max(0, seconds);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(seconds);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (seconds >> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (subBucket + 1) * width - 1;
+    }
+}
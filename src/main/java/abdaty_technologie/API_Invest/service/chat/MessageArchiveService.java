@@ -0,0 +1,383 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.ConversationArchive;
+import abdaty_technologie.API_Invest.Entity.Message;
+import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.Entity.Enum.ConversationStatus;
+import abdaty_technologie.API_Invest.Entity.Enum.MessageType;
+import abdaty_technologie.API_Invest.dto.chat.TranscriptMessage;
+import abdaty_technologie.API_Invest.repository.ConversationArchiveRepository;
+import abdaty_technologie.API_Invest.repository.ConversationRepository;
+import abdaty_technologie.API_Invest.repository.MessageRepository;
+import abdaty_technologie.API_Invest.repository.PersonsRepository;
+
+/**
+ * Archivage des messages des conversations fermées depuis plus de N jours (chat.archive.closed-for-days).
+ *
+ * Chaque nuit, les messages de ces conversations quittent la table messages pour un bloc JSON compressé
+ * par conversation (table conversation_archives), par lots de conversations verrouillées : un envoi
+ * concurrent (conversation réactivée) attend la fin du lot. Si une conversation archivée est rouverte
+ * puis refermée, ses nouveaux messages rejoignent le même bloc.
+ *
+ * Les messages archivés restent lisibles : les lectures de conversation fusionnent archive et table
+ * messages (messages reconstruits, non persistés).
+ */
+@Service
+public class MessageArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageArchiveService.class);
+
+    private static final TypeReference<List<ArchivedMessage>> ARCHIVE_TYPE = new TypeReference<>() {};
+
+    @Value("${chat.archive.closed-for-days:90}")
+    private int closedForDays;
+
+    @Value("${chat.archive.batch-size:50}")
+    private int batchSize;
+
+    // Plafond par exécution : le rattrapage d'un gros historique s'étale sur plusieurs nuits
+    @Value("${chat.archive.max-conversations-per-run:5000}")
+    private int maxConversationsPerRun;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private ConversationArchiveRepository archiveRepository;
+
+    @Autowired
+    private PersonsRepository personsRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+        .registerModule(new JavaTimeModule())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    // Métriques depuis le démarrage
+    private final AtomicLong archivedConversations = new AtomicLong();
+    private final AtomicLong movedMessages = new AtomicLong();
+    private volatile Instant lastRunAt;
+    private volatile long lastRunMillis;
+    private volatile int lastRunConversations;
+    private volatile int lastRunMessages;
+
+    /**
+     * Archivage périodique (par défaut chaque nuit à 4h)
+     */
+    @Scheduled(cron = "${chat.archive.cron:0 0 4 * * *}")
+    public void scheduledArchive() {
+        int moved = archiveClosedConversations();
+        if (moved > 0) {
+            logger.info("📦 Archivage du chat : {} message(s) de {} conversation(s) archivé(s) en {} ms",
+                        moved, lastRunConversations, lastRunMillis);
+        }
+    }
+
+    /**
+     * Archive les conversations éligibles, un lot par transaction. Retourne le nombre de messages déplacés.
+     */
+    public int archiveClosedConversations() {
+        long start = System.currentTimeMillis();
+        Instant closedBefore = Instant.now().minus(Duration.ofDays(closedForDays));
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int conversations = 0;
+        int moved = 0;
+        String afterId = null;
+
+        while (conversations < maxConversationsPerRun) {
+            final String batchStart = afterId;
+            ArchiveBatch batch = transaction.execute(status -> archiveBatch(closedBefore, batchStart));
+            if (batch == null || batch.lastConversationId == null) {
+                break;
+            }
+            conversations += batch.conversations;
+            moved += batch.messages;
+            afterId = batch.lastConversationId;
+        }
+
+        archivedConversations.addAndGet(conversations);
+        movedMessages.addAndGet(moved);
+        lastRunAt = Instant.now();
+        lastRunMillis = System.currentTimeMillis() - start;
+        lastRunConversations = conversations;
+        lastRunMessages = moved;
+        return moved;
+    }
+
+    /**
+     * Messages archivés d'une conversation, du plus ancien au plus récent (liste vide sans archive)
+     */
+    @Transactional(readOnly = true)
+    public List<Message> findArchivedMessages(Conversation conversation) {
+        return archiveRepository.findByConversationId(conversation.getId())
+            .map(archive -> toMessages(conversation, read(archive.getPayload())))
+            .orElse(List.of());
+    }
+
+    /**
+     * Parcourt les messages archivés d'une conversation un par un, sans construire la liste
+     * (export) : seul le bloc compressé est en mémoire. Renvoie le nombre de messages parcourus.
+     */
+    @Transactional(readOnly = true)
+    public int forEachArchivedMessage(String conversationId, Consumer<TranscriptMessage> action) {
+        ConversationArchive archive = archiveRepository.findByConversationId(conversationId).orElse(null);
+        if (archive == null) {
+            return 0;
+        }
+        int count = 0;
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(archive.getPayload()));
+             JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Archive invalide pour la conversation " + conversationId);
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                ArchivedMessage entry = objectMapper.readValue(parser, ArchivedMessage.class);
+                action.accept(new TranscriptMessage(entry.id, entry.creation, entry.senderId,
+                                                    MessageType.valueOf(entry.messageType),
+                                                    entry.content, entry.documentName));
+                count++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return count;
+    }
+
+    /**
+     * Messages archivés suivis des messages de la table messages, dans l'ordre chronologique
+     */
+    @Transactional(readOnly = true)
+    public List<Message> withArchivedMessages(Conversation conversation, List<Message> messages) {
+        List<Message> archived = findArchivedMessages(conversation);
+        if (archived.isEmpty()) {
+            return messages;
+        }
+        List<Message> all = new ArrayList<>(archived);
+        all.addAll(messages);
+        all.sort(CHRONOLOGICAL);
+        return all;
+    }
+
+    /**
+     * Nombre de messages archivés d'une conversation
+     */
+    @Transactional(readOnly = true)
+    public int countArchivedMessages(String conversationId) {
+        return archiveRepository.findMessageCount(conversationId);
+    }
+
+    /**
+     * Métriques : taille de la table messages, volume archivé, dernière exécution
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getStats() {
+        Object[] totals = archiveRepository.sumTotals().get(0);
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hotMessages", messageRepository.count());
+        stats.put("archivedConversations", archiveRepository.count());
+        stats.put("archivedMessages", ((Number) totals[0]).longValue());
+        stats.put("archiveRawBytes", ((Number) totals[1]).longValue());
+        stats.put("archiveCompressedBytes", ((Number) totals[2]).longValue());
+        stats.put("conversationsArchivedSinceStartup", archivedConversations.get());
+        stats.put("messagesMovedSinceStartup", movedMessages.get());
+        stats.put("lastRunAt", lastRunAt != null ? lastRunAt.toString() : null);
+        stats.put("lastRunMillis", lastRunMillis);
+        stats.put("lastRunConversations", lastRunConversations);
+        stats.put("lastRunMessages", lastRunMessages);
+        stats.put("closedForDays", closedForDays);
+        return stats;
+    }
+
+    // ==================== INTERNE ====================
+
+    private static final Comparator<Message> CHRONOLOGICAL =
+        Comparator.comparing(Message::getCreation).thenComparing(Message::getId);
+
+    private ArchiveBatch archiveBatch(Instant closedBefore, String afterId) {
+        List<String> ids = conversationRepository.findArchivableIds(
+            ConversationStatus.CLOSED, closedBefore, afterId, PageRequest.of(0, batchSize));
+        if (ids.isEmpty()) {
+            return new ArchiveBatch(null, 0, 0);
+        }
+
+        int conversations = 0;
+        int messages = 0;
+        for (String id : ids) {
+            // Même verrou que l'envoi : la conversation ne peut pas être réactivée pendant l'archivage
+            Conversation conversation = conversationRepository.findByIdForUpdate(id).orElse(null);
+            if (conversation == null || conversation.getStatus() != ConversationStatus.CLOSED
+                || conversation.getClosedAt() == null || !conversation.getClosedAt().isBefore(closedBefore)) {
+                continue;
+            }
+            int moved = archiveConversation(conversation);
+            if (moved > 0) {
+                conversations++;
+                messages += moved;
+            }
+        }
+        return new ArchiveBatch(ids.get(ids.size() - 1), conversations, messages);
+    }
+
+    private int archiveConversation(Conversation conversation) {
+        List<Message> messages = messageRepository.findByConversationIdOrderByCreationAsc(conversation.getId());
+        if (messages.isEmpty()) {
+            return 0;
+        }
+
+        ConversationArchive archive = archiveRepository.findByConversationId(conversation.getId())
+            .orElseGet(() -> new ConversationArchive(conversation));
+        List<ArchivedMessage> archived = archive.getPayload() != null ? read(archive.getPayload()) : new ArrayList<>();
+        Set<String> known = new HashSet<>();
+        archived.forEach(message -> known.add(message.id));
+        for (Message message : messages) {
+            if (known.add(message.getId())) {
+                archived.add(ArchivedMessage.of(message));
+            }
+        }
+        archived.sort(Comparator.comparing((ArchivedMessage message) -> message.creation).thenComparing(message -> message.id));
+
+        byte[] json = write(archived);
+        byte[] payload = gzip(json);
+        archive.setPayload(payload);
+        archive.setRawBytes(json.length);
+        archive.setCompressedBytes(payload.length);
+        archive.setMessageCount(archived.size());
+        archive.setFirstMessageAt(archived.get(0).creation);
+        archive.setLastMessageAt(archived.get(archived.size() - 1).creation);
+        archiveRepository.save(archive);
+
+        return messageRepository.deleteAllInConversation(conversation.getId());
+    }
+
+    private List<Message> toMessages(Conversation conversation, List<ArchivedMessage> archived) {
+        Set<String> senderIds = new HashSet<>();
+        archived.forEach(message -> {
+            if (message.senderId != null) {
+                senderIds.add(message.senderId);
+            }
+        });
+        Map<String, Persons> senders = new HashMap<>();
+        personsRepository.findAllById(senderIds).forEach(person -> senders.put(person.getId(), person));
+
+        List<Message> messages = new ArrayList<>(archived.size());
+        for (ArchivedMessage entry : archived) {
+            Message message = new Message(conversation, entry.senderId != null ? senders.get(entry.senderId) : null,
+                                          entry.content, MessageType.valueOf(entry.messageType));
+            message.setId(entry.id);
+            message.setCreation(entry.creation);
+            message.setModification(entry.creation);
+            message.setDocumentName(entry.documentName);
+            message.setDocumentUrl(entry.documentUrl);
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private byte[] write(List<ArchivedMessage> messages) {
+        try {
+            return objectMapper.writeValueAsBytes(messages);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<ArchivedMessage> read(byte[] payload) {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+            return objectMapper.readValue(in, ARCHIVE_TYPE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (OutputStream out = new GZIPOutputStream(buffer)) {
+            out.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Forme archivée d'un message (champs publics pour Jackson, dates en texte ISO-8601)
+     */
+    static final class ArchivedMessage {
+        public String id;
+        public String senderId;
+        public String content;
+        public String messageType;
+        public String documentName;
+        public String documentUrl;
+        public Instant creation;
+
+        static ArchivedMessage of(Message message) {
+            ArchivedMessage archived = new ArchivedMessage();
+            archived.id = message.getId();
+            archived.senderId = message.getSender() != null ? message.getSender().getId() : null;
+            archived.content = message.getContent();
+            archived.messageType = message.getMessageType().name();
+            archived.documentName = message.getDocumentName();
+            archived.documentUrl = message.getDocumentUrl();
+            archived.creation = message.getCreation();
+            return archived;
+        }
+    }
+
+    private static final class ArchiveBatch {
+        private final String lastConversationId;
+        private final int conversations;
+        private final int messages;
+
+        private ArchiveBatch(String lastConversationId, int conversations, int messages) {
+            this.lastConversationId = lastConversationId;
+            this.conversations = conversations;
+            this.messages = messages;
+        }
+    }
+}
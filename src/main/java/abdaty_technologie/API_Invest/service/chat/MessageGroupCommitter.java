@@ -0,0 +1,213 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import abdaty_technologie.API_Invest.dto.chat.MessageRequest;
+import abdaty_technologie.API_Invest.dto.chat.MessageResponse;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Envoi groupé des messages (group commit), désactivé par défaut (chat.group-commit.enabled).
+ *
+ * Les envois concurrents sont mis en file ; un thread unique les regroupe et les enregistre dans une
+ * seule transaction (inserts JDBC en lot, une mise à jour par conversation). Un lot part dès qu'il est
+ * plein ou que son premier envoi a attendu chat.group-commit.max-wait-ms : la latence ajoutée est bornée.
+ * Chaque appelant attend son propre résultat (message avec son identifiant ou erreur).
+ *
+ * Le traitement d'un lot est fourni par le ChatService (registerFlusher).
+ */
+@Component
+public class MessageGroupCommitter {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageGroupCommitter.class);
+
+    @Value("${chat.group-commit.enabled:false}")
+    private boolean enabled;
+
+    @Value("${chat.group-commit.max-wait-ms:5}")
+    private long maxWaitMs;
+
+    @Value("${chat.group-commit.max-batch-size:64}")
+    private int maxBatchSize;
+
+    @Value("${chat.group-commit.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong largestBatch = new AtomicLong();
+
+    private volatile BlockingQueue<PendingSend> queue;
+    private volatile Consumer<List<PendingSend>> flusher;
+    private Thread worker;
+    // Arrêt du contexte commencé : plus aucun envoi mis en file ni worker démarré (verrou : this)
+    private boolean stopped;
+
+    /**
+     * Envoi en attente dans la file ; le lot le termine avec complete ou fail
+     */
+    public static final class PendingSend {
+        private final String conversationId;
+        private final MessageRequest request;
+        private final String senderId;
+        private final CompletableFuture<MessageResponse> result = new CompletableFuture<>();
+
+        PendingSend(String conversationId, MessageRequest request, String senderId) {
+            this.conversationId = conversationId;
+            this.request = request;
+            this.senderId = senderId;
+        }
+
+        public String getConversationId() {
+            return conversationId;
+        }
+
+        public MessageRequest getRequest() {
+            return request;
+        }
+
+        public String getSenderId() {
+            return senderId;
+        }
+
+        public void complete(MessageResponse response) {
+            result.complete(response);
+        }
+
+        public void fail(Throwable error) {
+            result.completeExceptionally(error);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Active ou désactive l'envoi groupé à chaud ; les envois déjà en file sont tout de même traités
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Traitement d'un lot, dans une transaction ouverte par le flusher lui-même
+     */
+    public void registerFlusher(Consumer<List<PendingSend>> flusher) {
+        this.flusher = flusher;
+    }
+
+    /**
+     * Met un envoi en file. Renvoie null si l'envoi groupé est désactivé ou arrêté, ou la file pleine :
+     * l'appelant envoie alors le message directement.
+     */
+    public CompletableFuture<MessageResponse> submit(String conversationId, MessageRequest request, String senderId) {
+        if (!enabled || flusher == null) {
+            return null;
+        }
+        PendingSend pending = new PendingSend(conversationId, request, senderId);
+        return enqueue(pending) ? pending.result : null;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long batchCount = batches.get();
+        stats.put("enabled", enabled);
+        stats.put("batches", batchCount);
+        stats.put("messages", messages.get());
+        stats.put("largestBatch", largestBatch.get());
+        stats.put("averageBatchSize", batchCount == 0 ? 0.0 : (double) messages.get() / batchCount);
+        stats.put("queued", queue != null ? queue.size() : 0);
+        return stats;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        stopped = true;
+        if (worker != null) {
+            worker.interrupt();
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            worker = null;
+        }
+    }
+
+    /**
+     * Sous le même verrou que shutdown() : un envoi accepté est toujours vidé par le worker à l'arrêt
+     */
+    private synchronized boolean enqueue(PendingSend pending) {
+        if (stopped) {
+            return false;
+        }
+        return ensureStarted().offer(pending);
+    }
+
+    private BlockingQueue<PendingSend> ensureStarted() {
+        if (worker == null) {
+            queue = new ArrayBlockingQueue<>(queueCapacity);
+            worker = new Thread(this::run, "chat-group-commit");
+            worker.setDaemon(true);
+            worker.start();
+            logger.info("📦 Envoi groupé des messages actif (attente max {} ms, lots de {} au plus)", maxWaitMs, maxBatchSize);
+        }
+        return queue;
+    }
+
+    private void run() {
+        BlockingQueue<PendingSend> pendingQueue = queue;
+        List<PendingSend> batch = new ArrayList<>(maxBatchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(pendingQueue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingSend next = remaining > 0 ? pendingQueue.poll(remaining, TimeUnit.NANOSECONDS) : pendingQueue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // Arrêt : on vide aussi ce qui reste en file
+            if (Thread.currentThread().isInterrupted()) {
+                pendingQueue.drainTo(batch);
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch = new ArrayList<>(maxBatchSize);
+            }
+        }
+    }
+
+    private void flush(List<PendingSend> batch) {
+        try {
+            flusher.accept(batch);
+        } catch (RuntimeException e) {
+            logger.error("❌ Erreur lors de l'envoi groupé de {} message(s): {}", batch.size(), e.getMessage(), e);
+            batch.forEach(pending -> pending.fail(e));
+        }
+        batches.incrementAndGet();
+        messages.addAndGet(batch.size());
+        largestBatch.accumulateAndGet(batch.size(), Math::max);
+    }
+}
@@ -0,0 +1,374 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.Message;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Index plein texte embarqué (Lucene) des messages et des sujets de conversation.
+ *
+ * Alimenté au fil de l'eau par {@link ChatSearchIndexListener} après le commit de chaque création,
+ * modification ou suppression ;
+ * les recherches sont classées par pertinence (BM25) puis par date, et filtrées sur les conversations
+ * de l'appelant. Les écritures sont visibles immédiatement (lecteur temps réel du writer) et rendues
+ * durables par un commit périodique ; {@link MessageSearchReindexJob} complète l'index au démarrage
+ * si des écritures non commitées ont été perdues.
+ *
+ * Répertoire vide ({@code chat.search.index-directory=}) : index en mémoire (tests).
+ */
+@Component
+public class MessageSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageSearchIndex.class);
+
+    public static final String TYPE_MESSAGE = "MESSAGE";
+    public static final String TYPE_CONVERSATION = "CONVERSATION";
+
+    // Au-delà, la pagination par page profonde n'a plus de sens pour une recherche
+    public static final int MAX_RESULT_WINDOW = 1000;
+
+    private static final String FIELD_KEY = "key";
+    private static final String FIELD_TYPE = "type";
+    private static final String FIELD_ID = "id";
+    private static final String FIELD_CONVERSATION_ID = "conversationId";
+    private static final String FIELD_TEXT = "text";
+    private static final String FIELD_CREATION = "creation";
+
+    @Value("${chat.search.index-directory:./data/search-index}")
+    private String indexDirectory;
+
+    private final Analyzer analyzer = new FrenchSearchAnalyzer();
+    private final AtomicBoolean uncommitted = new AtomicBoolean();
+    private final AtomicBoolean stale = new AtomicBoolean();
+
+    private Directory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+
+    @PostConstruct
+    public void open() throws IOException {
+        directory = indexDirectory == null || indexDirectory.isBlank()
+            ? new ByteBuffersDirectory()
+            : FSDirectory.open(Paths.get(indexDirectory));
+        IndexWriterConfig config = new IndexWriterConfig(analyzer);
+        config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        writer = new IndexWriter(directory, config);
+        searcherManager = new SearcherManager(writer, null);
+        logger.info("🔎 Index de recherche du chat ouvert ({} documents)", writer.getDocStats().numDocs);
+    }
+
+    // ==================== INDEXATION ====================
+
+    /**
+     * Indexe (ou réindexe) un message après le commit de la transaction en cours (immédiatement sans transaction)
+     */
+    public void indexMessage(Message message) {
+        Document document = document(TYPE_MESSAGE, message.getId(), message.getConversation().getId(),
+                                     message.getContent(), message.getCreation() != null ? message.getCreation().toEpochMilli() : 0);
+        afterCommit(() -> write(document));
+    }
+
+    /**
+     * Retire un message de l'index après le commit de la transaction en cours
+     */
+    public void removeMessage(String messageId) {
+        Term key = new Term(FIELD_KEY, TYPE_MESSAGE + ":" + messageId);
+        afterCommit(() -> delete(key));
+    }
+
+    /**
+     * Indexe (ou réindexe) le sujet d'une conversation après le commit de la transaction en cours
+     */
+    public void indexConversation(Conversation conversation) {
+        Document document = document(TYPE_CONVERSATION, conversation.getId(), conversation.getId(),
+                                     conversation.getSubject(), conversation.getCreation() != null ? conversation.getCreation().toEpochMilli() : 0);
+        afterCommit(() -> write(document));
+    }
+
+    /**
+     * Retire une conversation et tous ses messages de l'index après le commit de la transaction en cours
+     * (les messages supprimés en cascade par la base ne passent pas par le listener)
+     */
+    public void removeConversation(String conversationId) {
+        Term conversation = new Term(FIELD_CONVERSATION_ID, conversationId);
+        afterCommit(() -> delete(conversation));
+    }
+
+    /**
+     * Écrit (ou remplace) directement des documents : utilisé par la réindexation
+     */
+    public void indexNow(List<Message> messages, List<Conversation> conversations) {
+        for (Message message : messages) {
+            write(document(TYPE_MESSAGE, message.getId(), message.getConversation().getId(), message.getContent(),
+                           message.getCreation().toEpochMilli()));
+        }
+        for (Conversation conversation : conversations) {
+            write(document(TYPE_CONVERSATION, conversation.getId(), conversation.getId(), conversation.getSubject(),
+                           conversation.getCreation().toEpochMilli()));
+        }
+    }
+
+    /**
+     * Vide l'index (réindexation complète)
+     */
+    public void clear() {
+        try {
+            writer.deleteAll();
+            changed();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Nombre de documents indexés d'un type
+     */
+    public int count(String type) {
+        return withSearcher(searcher -> searcher.count(new TermQuery(new Term(FIELD_TYPE, type))));
+    }
+
+    /**
+     * Rend durables les écritures en attente (par défaut toutes les 5 secondes)
+     */
+    @Scheduled(fixedDelayString = "${chat.search.commit-interval-ms:5000}")
+    public void commit() {
+        if (!uncommitted.getAndSet(false)) {
+            return;
+        }
+        try {
+            writer.commit();
+        } catch (IOException e) {
+            uncommitted.set(true);
+            logger.error("❌ Erreur lors du commit de l'index de recherche: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        commit();
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    // ==================== RECHERCHE ====================
+
+    /**
+     * Recherche les documents d'un type contenant tous les termes du texte, dans les conversations données.
+     * Résultats classés par pertinence puis du plus récent au plus ancien.
+     */
+    public SearchHits search(String text, String type, Collection<String> conversationIds, int offset, int limit) {
+        List<String> terms = analyze(text);
+        if (terms.isEmpty() || conversationIds.isEmpty() || offset >= MAX_RESULT_WINDOW) {
+            return new SearchHits(List.of(), 0);
+        }
+
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (String term : terms) {
+            query.add(new TermQuery(new Term(FIELD_TEXT, term)), BooleanClause.Occur.MUST);
+        }
+        query.add(new TermQuery(new Term(FIELD_TYPE, type)), BooleanClause.Occur.FILTER);
+        List<BytesRef> ids = new ArrayList<>(conversationIds.size());
+        conversationIds.forEach(id -> ids.add(new BytesRef(id)));
+        query.add(new TermInSetQuery(FIELD_CONVERSATION_ID, ids), BooleanClause.Occur.FILTER);
+
+        Sort sort = new Sort(SortField.FIELD_SCORE, new SortField(FIELD_CREATION, SortField.Type.LONG, true));
+        int window = Math.min(offset + limit, MAX_RESULT_WINDOW);
+
+        return withSearcher(searcher -> {
+            TopFieldDocs top = searcher.search(query.build(), window, sort, true);
+            StoredFields storedFields = searcher.storedFields();
+            List<Hit> hits = new ArrayList<>();
+            for (int i = offset; i < top.scoreDocs.length; i++) {
+                ScoreDoc scoreDoc = top.scoreDocs[i];
+                Document document = storedFields.document(scoreDoc.doc);
+                hits.add(new Hit(document.get(FIELD_ID), document.get(FIELD_CONVERSATION_ID), scoreDoc.score));
+            }
+            return new SearchHits(hits, top.totalHits.value);
+        });
+    }
+
+    // ==================== INTERNE ====================
+
+    private Document document(String type, String id, String conversationId, String text, long creation) {
+        Document document = new Document();
+        document.add(new StringField(FIELD_KEY, type + ":" + id, Field.Store.YES));
+        document.add(new StringField(FIELD_TYPE, type, Field.Store.NO));
+        document.add(new StringField(FIELD_ID, id, Field.Store.YES));
+        document.add(new StringField(FIELD_CONVERSATION_ID, conversationId, Field.Store.YES));
+        document.add(new TextField(FIELD_TEXT, text != null ? text : "", Field.Store.NO));
+        document.add(new NumericDocValuesField(FIELD_CREATION, creation));
+        return document;
+    }
+
+    private void afterCommit(Runnable change) {
+        // Jamais de document pour une écriture annulée par un rollback
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+
+    private void write(Document document) {
+        try {
+            // Remplace le document de même clé : réindexer un message ne crée pas de doublon
+            writer.updateDocument(new Term(FIELD_KEY, document.get(FIELD_KEY)), document);
+            changed();
+        } catch (IOException e) {
+            logger.error("❌ Erreur lors de l'indexation: {}", e.getMessage());
+        }
+    }
+
+    private void delete(Term term) {
+        try {
+            writer.deleteDocuments(term);
+            changed();
+        } catch (IOException e) {
+            logger.error("❌ Erreur lors de la suppression dans l'index: {}", e.getMessage());
+        }
+    }
+
+    private void changed() {
+        uncommitted.set(true);
+        stale.set(true);
+    }
+
+    private List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return terms;
+        }
+        try (TokenStream stream = analyzer.tokenStream(FIELD_TEXT, text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                if (!terms.contains(term.toString())) {
+                    terms.add(term.toString());
+                }
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return terms;
+    }
+
+    private <T> T withSearcher(SearcherFunction<T> function) {
+        try {
+            // Les écritures récentes deviennent visibles à la première recherche qui suit
+            if (stale.getAndSet(false)) {
+                searcherManager.maybeRefreshBlocking();
+            }
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                return function.apply(searcher);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface SearcherFunction<T> {
+        T apply(IndexSearcher searcher) throws IOException;
+    }
+
+    /**
+     * Un résultat : id du document (message ou conversation), conversation et score de pertinence
+     */
+    public static final class Hit {
+        private final String id;
+        private final String conversationId;
+        private final float score;
+
+        public Hit(String id, String conversationId, float score) {
+            this.id = id;
+            this.conversationId = conversationId;
+            this.score = score;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getConversationId() {
+            return conversationId;
+        }
+
+        public float getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * Une page de résultats et le nombre total de documents trouvés
+     */
+    public static final class SearchHits {
+        private final List<Hit> hits;
+        private final long totalHits;
+
+        public SearchHits(List<Hit> hits, long totalHits) {
+            this.hits = hits;
+            this.totalHits = totalHits;
+        }
+
+        public List<Hit> getHits() {
+            return hits;
+        }
+
+        public long getTotalHits() {
+            return totalHits;
+        }
+    }
+}
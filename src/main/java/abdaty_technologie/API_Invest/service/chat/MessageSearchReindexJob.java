@@ -0,0 +1,107 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.Message;
+import abdaty_technologie.API_Invest.repository.ConversationRepository;
+import abdaty_technologie.API_Invest.repository.MessageRepository;
+
+/**
+ * Remet l'index de recherche en phase avec la base au démarrage.
+ *
+ * Rien à faire si l'index contient autant de messages et de conversations que la base. Sinon
+ * (premier démarrage, écritures non commitées perdues lors d'un arrêt brutal), tout est réindexé
+ * par lots ; l'indexation remplace les documents existants, donc sans doublon. Un index plus gros
+ * que la base (base restaurée ou remplacée) est vidé d'abord.
+ */
+@Component
+public class MessageSearchReindexJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageSearchReindexJob.class);
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Autowired
+    private MessageSearchIndex searchIndex;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reindexIfNeeded() {
+        long messages = messageRepository.count();
+        long conversations = conversationRepository.count();
+        int indexedMessages = searchIndex.count(MessageSearchIndex.TYPE_MESSAGE);
+        int indexedConversations = searchIndex.count(MessageSearchIndex.TYPE_CONVERSATION);
+
+        if (indexedMessages == messages && indexedConversations == conversations) {
+            return;
+        }
+        logger.info("🔎 Index de recherche désynchronisé ({} / {} messages, {} / {} conversations) : réindexation",
+                    indexedMessages, messages, indexedConversations, conversations);
+        if (indexedMessages > messages || indexedConversations > conversations) {
+            searchIndex.clear();
+        }
+        int reindexed = reindexAll();
+        logger.info("🔎 Réindexation terminée : {} document(s)", reindexed);
+    }
+
+    /**
+     * Réindexe tous les messages puis toutes les conversations, un lot par transaction en lecture seule
+     */
+    public int reindexAll() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        int reindexed = 0;
+
+        String afterId = null;
+        while (true) {
+            final String batchStart = afterId;
+            List<Message> batch = transaction.execute(status -> {
+                List<Message> messages = messageRepository.findBatchAfterId(batchStart, PageRequest.of(0, BATCH_SIZE));
+                searchIndex.indexNow(messages, List.of());
+                return messages;
+            });
+            if (batch == null || batch.isEmpty()) {
+                break;
+            }
+            reindexed += batch.size();
+            afterId = batch.get(batch.size() - 1).getId();
+        }
+
+        afterId = null;
+        while (true) {
+            final String batchStart = afterId;
+            List<Conversation> batch = transaction.execute(status -> {
+                List<Conversation> conversations = conversationRepository.findBatchAfterId(batchStart, PageRequest.of(0, BATCH_SIZE));
+                searchIndex.indexNow(List.of(), conversations);
+                return conversations;
+            });
+            if (batch == null || batch.isEmpty()) {
+                break;
+            }
+            reindexed += batch.size();
+            afterId = batch.get(batch.size() - 1).getId();
+        }
+
+        searchIndex.commit();
+        return reindexed;
+    }
+}
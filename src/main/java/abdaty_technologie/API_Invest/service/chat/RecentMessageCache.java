@@ -0,0 +1,431 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import abdaty_technologie.API_Invest.dto.chat.MessageCursor;
+import abdaty_technologie.API_Invest.dto.chat.MessageResponse;
+import abdaty_technologie.API_Invest.dto.chat.MessageWindow;
+
+/**
+ * Derniers messages des conversations chaudes, en mémoire : un tampon circulaire borné par conversation
+ * (chat.recent-cache.messages-per-conversation) de MessageResponse déjà calculés.
+ *
+ * Le tampon est rempli à la première lecture de la fenêtre la plus récente, puis complété à chaque envoi ;
+ * la fenêtre récente et la synchronisation depuis un curseur couvert par le tampon sont alors servies sans
+ * lire la table messages ni les états de lecture. Un changement d'état de lecture, ou un message écrit
+ * sans passer par l'envoi (création de conversation, fermeture automatique, suppression), retire la
+ * conversation du cache. Les écritures ne sont appliquées qu'après le commit de leur transaction.
+ *
+ * Cache propre à l'instance : un message envoyé par une autre instance n'y est jamais ajouté. Chaque
+ * tampon retient donc le nombre de messages de la conversation qu'il reflète (Conversation.messageCount,
+ * déjà chargée par l'appelant) ; un nombre différent à la lecture, ou un tampon rempli depuis plus de
+ * chat.recent-cache.max-age-ms (états de lecture changés ailleurs), est un échec et retire le tampon.
+ *
+ * Mémoire totale bornée par chat.recent-cache.max-bytes (taille estimée) : au-delà, les conversations
+ * les moins récemment lues sont évincées.
+ */
+@Component
+public class RecentMessageCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecentMessageCache.class);
+
+    private static final int STRIPES = 1024;
+    private static final long RING_OVERHEAD_BYTES = 256;
+    private static final long MESSAGE_OVERHEAD_BYTES = 384;
+
+    private static final Comparator<MessageResponse> CHRONOLOGICAL =
+        Comparator.comparing(MessageResponse::getCreation).thenComparing(MessageResponse::getId);
+
+    private final int capacity;
+    private final long maxBytes;
+    private final long maxAgeMs;
+    private final LongSupplier clock;
+
+    // Ordre d'accès : la première entrée est la moins récemment lue (verrou unique : this)
+    private final LinkedHashMap<String, Ring> rings = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    // Générations par groupe de conversations : un remplissage lu en base avant une écriture est ignoré
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong staleRings = new AtomicLong();
+
+    @Autowired
+    public RecentMessageCache(@Value("${chat.recent-cache.messages-per-conversation:50}") int capacity,
+                              @Value("${chat.recent-cache.max-bytes:33554432}") long maxBytes,
+                              @Value("${chat.recent-cache.max-age-ms:60000}") long maxAgeMs) {
+        this(capacity, maxBytes, maxAgeMs, System::currentTimeMillis);
+    }
+
+    RecentMessageCache(int capacity, long maxBytes, long maxAgeMs, LongSupplier clock) {
+        this.capacity = capacity;
+        this.maxBytes = maxBytes;
+        this.maxAgeMs = maxAgeMs;
+        this.clock = clock;
+    }
+
+    /**
+     * Relevé à prendre avant la première lecture en base de la transaction, puis à passer à fill()
+     */
+    public long stamp(String conversationId) {
+        return generations.get(stripe(conversationId));
+    }
+
+    /**
+     * Les limit messages les plus récents (comme une lecture sans curseur), ou null si le tampon ne suffit pas
+     * ou ne correspond plus à la conversation (messageCount : Conversation.messageCount lu par l'appelant)
+     */
+    public synchronized MessageWindow latest(String conversationId, int messageCount, int limit) {
+        Ring ring = current(conversationId, messageCount);
+        if (ring == null || (ring.size <= limit && !ring.complete)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        boolean hasOlder = ring.size > limit;
+        List<MessageResponse> window = ring.slice(hasOlder ? ring.size - limit : 0, ring.size);
+        String olderCursor = hasOlder ? MessageCursor.of(window.get(0)).encode() : null;
+        String syncCursor = !window.isEmpty() ? MessageCursor.of(window.get(window.size() - 1)).encode() : null;
+        return new MessageWindow(window, olderCursor, syncCursor, false);
+    }
+
+    /**
+     * Messages postérieurs au curseur (synchronisation), ou null si le curseur précède le tampon
+     * ou si le tampon ne correspond plus à la conversation (messageCount : Conversation.messageCount)
+     */
+    public synchronized MessageWindow since(String conversationId, int messageCount, MessageCursor after, int limit) {
+        Ring ring = after != null ? current(conversationId, messageCount) : null;
+        if (ring == null || (!ring.complete && (ring.size == 0 || compare(ring.get(0), after) > 0))) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        int from = 0;
+        while (from < ring.size && compare(ring.get(from), after) <= 0) {
+            from++;
+        }
+        boolean hasMore = ring.size - from > limit;
+        List<MessageResponse> window = ring.slice(from, hasMore ? from + limit : ring.size);
+        String syncCursor = !window.isEmpty() ? MessageCursor.of(window.get(window.size() - 1)).encode() : after.encode();
+        return new MessageWindow(window, null, syncCursor, hasMore);
+    }
+
+    /**
+     * Met en cache les derniers messages lus en base (ordre chronologique). complete : ce sont tous les
+     * messages de la conversation ; messageCount : Conversation.messageCount lu avant les messages.
+     * Ignoré si la conversation a été écrite depuis le relevé stamp.
+     */
+    public synchronized void fill(String conversationId, long stamp, int messageCount,
+                                  List<MessageResponse> messages, boolean complete) {
+        if (generations.get(stripe(conversationId)) != stamp) {
+            return;
+        }
+        Ring current = rings.get(conversationId);
+        if (current != null && (current.complete || current.size >= messages.size())) {
+            return;
+        }
+        Ring ring = new Ring(capacity, messageCount, clock.getAsLong());
+        int from = Math.max(0, messages.size() - capacity);
+        for (MessageResponse message : messages.subList(from, messages.size())) {
+            ring.push(message);
+        }
+        ring.complete = complete && from == 0;
+        replace(conversationId, ring);
+    }
+
+    /**
+     * Message tout juste envoyé (réponse de l'envoi) : ajouté au tampon de sa conversation après le commit
+     */
+    public void append(String conversationId, MessageResponse message) {
+        PendingWrites pending = pendingWrites();
+        if (pending != null) {
+            pending.sent.computeIfAbsent(conversationId, id -> new ArrayList<>()).add(message);
+        } else {
+            applySent(conversationId, List.of(message));
+        }
+    }
+
+    /**
+     * Message écrit ou supprimé en base (écouteur JPA) : sans réponse d'envoi correspondante dans la
+     * même transaction, la conversation sort du cache après le commit
+     */
+    public void onMessageWritten(String conversationId, String messageId) {
+        PendingWrites pending = pendingWrites();
+        if (pending != null) {
+            pending.written.computeIfAbsent(conversationId, id -> new LinkedHashSet<>()).add(messageId);
+        } else {
+            invalidateNow(conversationId);
+        }
+    }
+
+    /**
+     * Les réponses en cache de la conversation ne sont plus exactes (lecture, fermeture...) : retrait après le commit
+     */
+    public void invalidate(String conversationId) {
+        PendingWrites pending = pendingWrites();
+        if (pending != null) {
+            pending.invalidated.add(conversationId);
+        } else {
+            invalidateNow(conversationId);
+        }
+    }
+
+    /**
+     * Taux de succès, occupation et évictions depuis le démarrage
+     */
+    public synchronized Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("conversations", rings.size());
+        stats.put("messages", rings.values().stream().mapToInt(ring -> ring.size).sum());
+        stats.put("estimatedBytes", bytes);
+        stats.put("maxBytes", maxBytes);
+        stats.put("messagesPerConversation", capacity);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total > 0 ? (double) hitCount / total : 0.0);
+        stats.put("evictions", evictions.get());
+        stats.put("invalidations", invalidations.get());
+        stats.put("staleRings", staleRings.get());
+        stats.put("maxAgeMs", maxAgeMs);
+        return stats;
+    }
+
+    // ==================== INTERNE ====================
+
+    /**
+     * Tampon de la conversation s'il reflète encore ses messageCount messages et n'a pas dépassé son âge
+     * maximal ; sinon il est retiré (message écrit par une autre instance, lecture ailleurs...)
+     */
+    private Ring current(String conversationId, int messageCount) {
+        Ring ring = rings.get(conversationId);
+        if (ring == null) {
+            return null;
+        }
+        if (ring.messageCount != messageCount || clock.getAsLong() - ring.filledAt > maxAgeMs) {
+            rings.remove(conversationId);
+            bytes -= ring.accountedBytes;
+            staleRings.incrementAndGet();
+            return null;
+        }
+        return ring;
+    }
+
+    private synchronized void applySent(String conversationId, List<MessageResponse> messages) {
+        generations.incrementAndGet(stripe(conversationId));
+        Ring ring = rings.get(conversationId);
+        if (ring == null) {
+            return;
+        }
+        for (MessageResponse message : messages) {
+            if (ring.insert(message)) {
+                ring.messageCount++;
+            }
+        }
+        bytes += ring.bytes - ring.accountedBytes;
+        ring.accountedBytes = ring.bytes;
+        evictOverBudget();
+    }
+
+    private synchronized void invalidateNow(String conversationId) {
+        generations.incrementAndGet(stripe(conversationId));
+        Ring removed = rings.remove(conversationId);
+        if (removed != null) {
+            bytes -= removed.accountedBytes;
+            invalidations.incrementAndGet();
+        }
+    }
+
+    private void replace(String conversationId, Ring ring) {
+        Ring previous = rings.put(conversationId, ring);
+        if (previous != null) {
+            bytes -= previous.accountedBytes;
+        }
+        ring.accountedBytes = ring.bytes;
+        bytes += ring.bytes;
+        evictOverBudget();
+    }
+
+    private void evictOverBudget() {
+        Iterator<Map.Entry<String, Ring>> eldest = rings.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().getValue().accountedBytes;
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private PendingWrites pendingWrites() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || !TransactionSynchronizationManager.isActualTransactionActive()) {
+            return null;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingWrites pending) {
+                return pending;
+            }
+        }
+        PendingWrites pending = new PendingWrites();
+        TransactionSynchronizationManager.registerSynchronization(pending);
+        return pending;
+    }
+
+    private static int stripe(String conversationId) {
+        return (conversationId.hashCode() & Integer.MAX_VALUE) % STRIPES;
+    }
+
+    private static int compare(MessageResponse message, MessageCursor cursor) {
+        int byCreation = message.getCreation().compareTo(cursor.getCreation());
+        return byCreation != 0 ? byCreation : message.getId().compareTo(cursor.getId());
+    }
+
+    private static long estimate(MessageResponse message) {
+        return MESSAGE_OVERHEAD_BYTES + 2L * (length(message.getContent()) + length(message.getSenderNom())
+            + length(message.getSenderEmail()) + length(message.getDocumentName()) + length(message.getDocumentUrl())
+            + length(message.getClientMessageId()));
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    /**
+     * Écritures d'une transaction, appliquées au cache après son commit (rien en cas de rollback)
+     */
+    private final class PendingWrites implements TransactionSynchronization {
+        private final Map<String, List<MessageResponse>> sent = new LinkedHashMap<>();
+        private final Map<String, Set<String>> written = new LinkedHashMap<>();
+        private final Set<String> invalidated = new LinkedHashSet<>();
+
+        @Override
+        public void afterCommit() {
+            for (String conversationId : invalidated) {
+                invalidateNow(conversationId);
+            }
+            written.forEach((conversationId, messageIds) -> {
+                if (invalidated.contains(conversationId)) {
+                    return;
+                }
+                List<MessageResponse> messages = sent.getOrDefault(conversationId, List.of());
+                Set<String> sentIds = new LinkedHashSet<>();
+                messages.forEach(message -> sentIds.add(message.getId()));
+                if (!sentIds.containsAll(messageIds)) {
+                    logger.debug("🗑️ Cache des messages récents : conversation {} écrite hors envoi, retirée", conversationId);
+                    invalidateNow(conversationId);
+                }
+            });
+            sent.forEach((conversationId, messages) -> {
+                if (!invalidated.contains(conversationId)) {
+                    applySent(conversationId, messages);
+                }
+            });
+        }
+    }
+
+    /**
+     * Tampon circulaire des derniers messages d'une conversation, du plus ancien au plus récent
+     */
+    private static final class Ring {
+        private final MessageResponse[] slots;
+        private int head;
+        private int size;
+        // Tous les messages de la conversation sont dans le tampon (aucun plus ancien)
+        private boolean complete;
+        // Conversation.messageCount correspondant au tampon, et date de remplissage (ms)
+        private int messageCount;
+        private final long filledAt;
+        private long bytes = RING_OVERHEAD_BYTES;
+        private long accountedBytes;
+
+        private Ring(int capacity, int messageCount, long filledAt) {
+            this.slots = new MessageResponse[capacity];
+            this.messageCount = messageCount;
+            this.filledAt = filledAt;
+        }
+
+        private MessageResponse get(int index) {
+            return slots[(head + index) % slots.length];
+        }
+
+        private List<MessageResponse> slice(int from, int to) {
+            List<MessageResponse> messages = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                messages.add(get(i));
+            }
+            return messages;
+        }
+
+        /**
+         * Ajout en fin de tampon : le plus ancien message sort quand le tampon est plein
+         */
+        private void push(MessageResponse message) {
+            if (size == slots.length) {
+                bytes -= estimate(slots[head]);
+                slots[head] = null;
+                head = (head + 1) % slots.length;
+                size--;
+                complete = false;
+            }
+            slots[(head + size) % slots.length] = message;
+            size++;
+            bytes += estimate(message);
+        }
+
+        /**
+         * Ajout à sa place chronologique (deux envois validés presque en même temps peuvent arriver
+         * dans le désordre) ; un message plus ancien que le tampon plein n'est pas gardé. Retourne
+         * false si le message était déjà présent.
+         */
+        private boolean insert(MessageResponse message) {
+            if (size == 0 || CHRONOLOGICAL.compare(message, get(size - 1)) > 0) {
+                push(message);
+                return true;
+            }
+            List<MessageResponse> messages = slice(0, size);
+            if (messages.stream().anyMatch(existing -> existing.getId().equals(message.getId()))) {
+                return false;
+            }
+            if (size == slots.length && !complete && CHRONOLOGICAL.compare(message, messages.get(0)) < 0) {
+                return true;
+            }
+            messages.add(message);
+            messages.sort(CHRONOLOGICAL);
+            boolean wasComplete = complete;
+            head = 0;
+            size = 0;
+            bytes = RING_OVERHEAD_BYTES;
+            Arrays.fill(slots, null);
+            for (MessageResponse each : messages) {
+                push(each);
+            }
+            complete = wasComplete && messages.size() <= slots.length;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+import abdaty_technologie.API_Invest.Entity.Message;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Signale à RecentMessageCache chaque message écrit ou supprimé, quel que soit le chemin
+ * d'enregistrement (service, contrôleurs, jobs). Instancié par Hibernate via le conteneur Spring.
+ */
+public class RecentMessageListener {
+
+    @Autowired
+    private RecentMessageCache recentMessageCache;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onWrite(Message message) {
+        recentMessageCache.onMessageWritten(message.getConversation().getId(), message.getId());
+    }
+}
@@ -0,0 +1,119 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import abdaty_technologie.API_Invest.dto.chat.MessageResponse;
+
+/**
+ * Réponses des derniers envois portant un identifiant client, en mémoire pendant chat.send.dedupe-ttl-ms.
+ *
+ * Un client qui renvoie un message après l'expiration de son délai d'attente reçoit la réponse d'origine
+ * sans requête en base. Le cache n'est qu'un raccourci : un renvoi plus tardif, ou traité par une autre
+ * instance, est retrouvé par la contrainte unique (conversation, client_message_id) de la table messages.
+ * Au-delà de chat.send.dedupe-max-entries, les nouveaux envois ne sont plus mis en cache jusqu'à la purge.
+ */
+@Component
+public class SentMessageCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SentMessageCache.class);
+
+    private final long ttlMs;
+    private final int maxEntries;
+    private final LongSupplier clock;
+
+    // conversationId|senderId|clientMessageId -> réponse d'origine et date d'expiration (ms)
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Autowired
+    public SentMessageCache(@Value("${chat.send.dedupe-ttl-ms:120000}") long ttlMs,
+                            @Value("${chat.send.dedupe-max-entries:20000}") int maxEntries) {
+        this(ttlMs, maxEntries, System::currentTimeMillis);
+    }
+
+    SentMessageCache(long ttlMs, int maxEntries, LongSupplier clock) {
+        this.ttlMs = ttlMs;
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    /**
+     * Réponse d'un envoi récent du même expéditeur avec le même identifiant client, ou null
+     */
+    public MessageResponse get(String conversationId, String senderId, String clientMessageId) {
+        Entry entry = entries.get(key(conversationId, senderId, clientMessageId));
+        if (entry == null || entry.expiresAt <= clock.getAsLong()) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.response;
+    }
+
+    /**
+     * Retient la réponse d'un envoi validé (après le commit)
+     */
+    public void put(String conversationId, String senderId, String clientMessageId, MessageResponse response) {
+        if (entries.size() >= maxEntries) {
+            purgeExpired();
+            if (entries.size() >= maxEntries) {
+                return;
+            }
+        }
+        entries.put(key(conversationId, senderId, clientMessageId), new Entry(response, clock.getAsLong() + ttlMs));
+    }
+
+    /**
+     * Purge des réponses expirées (la lecture les ignore déjà)
+     */
+    @Scheduled(fixedDelayString = "${chat.send.dedupe-cleanup-interval-ms:60000}")
+    public void purgeExpired() {
+        long now = clock.getAsLong();
+        int before = entries.size();
+        entries.values().removeIf(entry -> entry.expiresAt <= now);
+        int purged = before - entries.size();
+        if (purged > 0) {
+            logger.debug("🧹 Envois récents : {} réponse(s) expirée(s) retirée(s)", purged);
+        }
+    }
+
+    /**
+     * Taille du cache et renvois servis depuis la mémoire
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("ttlMs", ttlMs);
+        stats.put("maxEntries", maxEntries);
+        return stats;
+    }
+
+    private static String key(String conversationId, String senderId, String clientMessageId) {
+        return conversationId + "|" + senderId + "|" + clientMessageId;
+    }
+
+    private static final class Entry {
+        private final MessageResponse response;
+        private final long expiresAt;
+
+        private Entry(MessageResponse response, long expiresAt) {
+            this.response = response;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.ConversationUnreadCounter;
+import abdaty_technologie.API_Invest.Entity.Message;
+import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.Entity.Enum.ChatParticipantRole;
+import abdaty_technologie.API_Invest.repository.ConversationRepository;
+import abdaty_technologie.API_Invest.repository.ConversationUnreadCounterRepository;
+import abdaty_technologie.API_Invest.repository.MessageRepository;
+import abdaty_technologie.API_Invest.repository.PersonsRepository;
+
+/**
+ * État de lecture par (conversation, participant) : compteur de non-lus et filigrane de lecture.
+ *
+ * Chaque enregistrement de message incrémente le compteur du ou des destinataires. La lecture d'une
+ * conversation avance le filigrane du lecteur jusqu'au dernier message et remet son compteur à zéro :
+ * une seule ligne écrite, quel que soit le nombre de messages lus. Un message est lu par son
+ * destinataire s'il est couvert par le filigrane de celui-ci. Les badges lisent les compteurs.
+ *
+ * Le job de réparation recalcule les compteurs depuis les messages et les filigranes, par lots de
+ * conversations verrouillées, pour corriger toute dérive (écriture directe en base, ancienne version).
+ */
+@Service
+public class UnreadCounterService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UnreadCounterService.class);
+
+    private static final int REPAIR_BATCH_SIZE = 200;
+
+    @Autowired
+    private ConversationUnreadCounterRepository counterRepository;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private PersonsRepository personsRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ChatInboxProjector inboxProjector;
+
+    /**
+     * Un message vient d'être enregistré : +1 pour chaque participant qui n'en est pas l'expéditeur
+     */
+    @Transactional
+    public void onMessageSaved(Conversation conversation, String senderId) {
+        incrementIfRecipient(conversation, conversation.getAgent(), ChatParticipantRole.AGENT, senderId, 1);
+        incrementIfRecipient(conversation, conversation.getUser(), ChatParticipantRole.USER, senderId, 1);
+    }
+
+    /**
+     * Plusieurs messages enregistrés d'un coup dans la conversation (envoi groupé) : une mise à jour
+     * par destinataire au lieu d'une par message. senderIds : l'expéditeur de chaque message.
+     */
+    @Transactional
+    public void onMessagesSaved(Conversation conversation, List<String> senderIds) {
+        String agentId = conversation.getAgent() != null ? conversation.getAgent().getId() : null;
+        String userId = conversation.getUser() != null ? conversation.getUser().getId() : null;
+        int toAgent = (int) senderIds.stream().filter(senderId -> !senderId.equals(agentId)).count();
+        int toUser = (int) senderIds.stream().filter(senderId -> !senderId.equals(userId)).count();
+        if (toAgent > 0) {
+            incrementIfRecipient(conversation, conversation.getAgent(), ChatParticipantRole.AGENT, null, toAgent);
+        }
+        if (toUser > 0) {
+            incrementIfRecipient(conversation, conversation.getUser(), ChatParticipantRole.USER, null, toUser);
+        }
+    }
+
+    /**
+     * Un message de l'agent vient d'être ajouté à chacune des conversations données (fermeture
+     * automatique) : +1 pour l'utilisateur, en une mise à jour pour tout le lot puis une insertion
+     * par compteur encore absent. userIdByConversationId : l'utilisateur de chaque conversation.
+     */
+    @Transactional
+    public void onAgentMessagesSaved(Map<String, String> userIdByConversationId) {
+        if (userIdByConversationId.isEmpty()) {
+            return;
+        }
+        Set<String> withCounter = new HashSet<>(counterRepository.findConversationIdsWithCounter(
+            userIdByConversationId.keySet(), ChatParticipantRole.USER));
+        counterRepository.incrementAll(userIdByConversationId.keySet(), ChatParticipantRole.USER);
+
+        List<ConversationUnreadCounter> created = new ArrayList<>();
+        userIdByConversationId.forEach((conversationId, userId) -> {
+            if (!withCounter.contains(conversationId)) {
+                created.add(new ConversationUnreadCounter(conversationRepository.getReferenceById(conversationId),
+                    personsRepository.getReferenceById(userId), ChatParticipantRole.USER, 1));
+            }
+        });
+        counterRepository.saveAll(created);
+        // L'UPDATE en masse ne déclenche pas ChatInboxListener : on signale les conversations nous-mêmes
+        userIdByConversationId.keySet().forEach(inboxProjector::markDirty);
+    }
+
+    /**
+     * Le participant a lu la conversation : son filigrane avance jusqu'au dernier message et son
+     * compteur repasse à zéro. Renvoie true si l'état de lecture a changé.
+     * L'appelant tient le verrou de la conversation.
+     */
+    @Transactional
+    public boolean onConversationRead(Conversation conversation, String readerId) {
+        Message lastMessage = messageRepository.findMessagesBeforeCursor(
+            conversation.getId(), null, null, PageRequest.of(0, 1)).stream().findFirst().orElse(null);
+        if (lastMessage == null) {
+            return false;
+        }
+
+        ConversationUnreadCounter counter = counterRepository
+            .findByConversationIdAndParticipantId(conversation.getId(), readerId).orElse(null);
+        if (counter == null) {
+            // Rien reçu jusqu'ici : on garde tout de même le filigrane pour les messages suivants
+            ChatParticipantRole role = conversation.getAgent() != null && conversation.getAgent().getId().equals(readerId)
+                ? ChatParticipantRole.AGENT : ChatParticipantRole.USER;
+            Persons reader = role == ChatParticipantRole.AGENT ? conversation.getAgent() : conversation.getUser();
+            counter = new ConversationUnreadCounter(conversation, reader, role, 0);
+            counter.markReadUpTo(lastMessage, Instant.now());
+            counterRepository.save(counter);
+            return true;
+        }
+        return counter.markReadUpTo(lastMessage, Instant.now());
+    }
+
+    /**
+     * États de lecture des participants des conversations données, par clé "conversationId:participantId"
+     * (calcul de isRead / readAt des messages)
+     */
+    @Transactional(readOnly = true)
+    public Map<String, ConversationUnreadCounter> getReadStates(Collection<String> conversationIds) {
+        Map<String, ConversationUnreadCounter> states = new HashMap<>();
+        if (conversationIds.isEmpty()) {
+            return states;
+        }
+        for (ConversationUnreadCounter counter : counterRepository.findByConversationIdIn(new ArrayList<>(conversationIds))) {
+            states.put(key(counter.getConversation().getId(), counter.getParticipant().getId()), counter);
+        }
+        return states;
+    }
+
+    /**
+     * Le message est-il lu par son destinataire ? Renvoie la date de lecture, ou null s'il ne l'est pas.
+     * Message système (sans expéditeur) : lu quand les deux participants l'ont lu.
+     */
+    public static Instant readAtOf(Message message, String agentId, String userId,
+                                   Map<String, ConversationUnreadCounter> readStates) {
+        String conversationId = message.getConversation().getId();
+        String senderId = message.getSender() != null ? message.getSender().getId() : null;
+        Instant readAt = null;
+        for (String participantId : new String[] { agentId, userId }) {
+            if (participantId == null || participantId.equals(senderId)) {
+                continue;
+            }
+            ConversationUnreadCounter state = readStates.get(key(conversationId, participantId));
+            if (state == null || !state.hasRead(message)) {
+                return null;
+            }
+            // Filigrane repris de l'ancien is_read sans date de lecture : on retient la date du message
+            Instant participantReadAt = state.getReadAt() != null ? state.getReadAt() : state.getLastReadMessageAt();
+            if (readAt == null || participantReadAt.isAfter(readAt)) {
+                readAt = participantReadAt;
+            }
+        }
+        return readAt;
+    }
+
+    /**
+     * Messages non lus d'un participant dans une conversation
+     */
+    @Transactional(readOnly = true)
+    public int getUnreadCount(String conversationId, String participantId) {
+        return counterRepository.findUnreadCount(conversationId, participantId);
+    }
+
+    /**
+     * Total des messages non lus d'un participant, dans les conversations où il a ce rôle
+     */
+    @Transactional(readOnly = true)
+    public long getTotalUnreadCount(String participantId, ChatParticipantRole role) {
+        return counterRepository.sumUnreadCount(participantId, role);
+    }
+
+    /**
+     * Réparation périodique des compteurs (par défaut chaque nuit à 3h30)
+     */
+    @Scheduled(cron = "${chat.unread.repair-cron:0 30 3 * * *}")
+    public void scheduledRepair() {
+        int corrected = rebuildAll();
+        logger.info("🔧 Réparation des compteurs de non-lus terminée : {} compteur(s) corrigé(s)", corrected);
+    }
+
+    /**
+     * Premier démarrage avec la table des compteurs : on la remplit depuis l'historique des messages
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        if (counterRepository.count() == 0 && messageRepository.count() > 0) {
+            logger.info("🔧 Table des compteurs de non-lus vide : reconstruction depuis les messages");
+            scheduledRepair();
+        }
+    }
+
+    /**
+     * Recalcule tous les compteurs depuis la table messages, un lot de conversations par transaction.
+     * Retourne le nombre de compteurs créés ou corrigés.
+     */
+    public int rebuildAll() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int corrected = 0;
+        String afterId = null;
+
+        while (true) {
+            final String batchStart = afterId;
+            RepairBatch batch = transaction.execute(status -> repairBatch(batchStart));
+            if (batch == null || batch.lastConversationId == null) {
+                break;
+            }
+            corrected += batch.corrected;
+            afterId = batch.lastConversationId;
+        }
+        return corrected;
+    }
+
+    private void incrementIfRecipient(Conversation conversation, Persons participant,
+                                      ChatParticipantRole role, String senderId, int delta) {
+        if (participant == null || participant.getId().equals(senderId)) {
+            return;
+        }
+        // Mise à jour atomique ; la ligne est créée au premier message reçu dans la conversation
+        if (counterRepository.increment(conversation.getId(), participant.getId(), delta) == 0) {
+            counterRepository.save(new ConversationUnreadCounter(conversation, participant, role, delta));
+        }
+        // L'UPDATE en masse ne déclenche pas ChatInboxListener : on signale la conversation nous-mêmes
+        inboxProjector.markDirty(conversation.getId());
+    }
+
+    private RepairBatch repairBatch(String afterId) {
+        // Verrou identique à celui de l'envoi et de la lecture : pas de message qui arrive pendant le recalcul
+        List<Conversation> conversations = conversationRepository.findBatchAfterIdForUpdate(
+            afterId, PageRequest.of(0, REPAIR_BATCH_SIZE));
+        if (conversations.isEmpty()) {
+            return new RepairBatch(null, 0);
+        }
+
+        List<String> conversationIds = conversations.stream().map(Conversation::getId).collect(Collectors.toList());
+
+        // Participant sans état de lecture : tous les messages de l'interlocuteur sont non lus
+        Map<String, Map<String, Long>> messagesBySender = new HashMap<>();
+        for (Object[] row : messageRepository.countBySender(conversationIds)) {
+            messagesBySender.computeIfAbsent((String) row[0], k -> new HashMap<>())
+                .put((String) row[1], (Long) row[2]);
+        }
+        // Sinon : ceux qui dépassent son filigrane
+        Map<String, Long> unreadAfterWatermark = new HashMap<>();
+        for (Object[] row : messageRepository.countUnreadAfterWatermark(conversationIds)) {
+            unreadAfterWatermark.put(key((String) row[0], (String) row[1]), (Long) row[2]);
+        }
+
+        Map<String, ConversationUnreadCounter> counters = new HashMap<>();
+        for (ConversationUnreadCounter counter : counterRepository.findByConversationIdIn(conversationIds)) {
+            counters.put(key(counter.getConversation().getId(), counter.getParticipant().getId()), counter);
+        }
+
+        int corrected = 0;
+        for (Conversation conversation : conversations) {
+            Map<String, Long> senders = messagesBySender.getOrDefault(conversation.getId(), Map.of());
+            corrected += repairCounter(conversation, conversation.getAgent(), ChatParticipantRole.AGENT,
+                                       senders, unreadAfterWatermark, counters);
+            corrected += repairCounter(conversation, conversation.getUser(), ChatParticipantRole.USER,
+                                       senders, unreadAfterWatermark, counters);
+        }
+
+        return new RepairBatch(conversationIds.get(conversationIds.size() - 1), corrected);
+    }
+
+    private int repairCounter(Conversation conversation, Persons participant, ChatParticipantRole role,
+                              Map<String, Long> messagesBySender, Map<String, Long> unreadAfterWatermark,
+                              Map<String, ConversationUnreadCounter> counters) {
+        if (participant == null) {
+            return 0;
+        }
+        String counterKey = key(conversation.getId(), participant.getId());
+        ConversationUnreadCounter counter = counters.get(counterKey);
+        // Messages envoyés par quelqu'un d'autre et non couverts par le filigrane du participant
+        int expected = counter != null
+            ? unreadAfterWatermark.getOrDefault(counterKey, 0L).intValue()
+            : messagesBySender.entrySet().stream()
+                .filter(entry -> !entry.getKey().equals(participant.getId()))
+                .mapToInt(entry -> entry.getValue().intValue())
+                .sum();
+
+        if (counter == null) {
+            if (expected == 0) {
+                return 0;
+            }
+            counterRepository.save(new ConversationUnreadCounter(conversation, participant, role, expected));
+            return 1;
+        }
+        if (counter.getUnreadCount() != expected || counter.getParticipantRole() != role) {
+            counter.setUnreadCount(expected);
+            counter.setParticipantRole(role);
+            return 1;
+        }
+        return 0;
+    }
+
+    private static String key(String conversationId, String participantId) {
+        return conversationId + ":" + participantId;
+    }
+
+    private static final class RepairBatch {
+        private final String lastConversationId;
+        private final int corrected;
+
+        private RepairBatch(String lastConversationId, int corrected) {
+            this.lastConversationId = lastConversationId;
+            this.corrected = corrected;
+        }
+    }
+}
@@ -1,11 +1,17 @@
 package abdaty_technologie.API_Invest.service.impl;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,12 +20,36 @@ import abdaty_technologie.API_Invest.Entity.*;
 import abdaty_technologie.API_Invest.Entity.Enum.*;
 import abdaty_technologie.API_Invest.repository.*;
 import abdaty_technologie.API_Invest.service.ChatService;
+import abdaty_technologie.API_Invest.service.chat.AgentResponseMetrics;
+import abdaty_technologie.API_Invest.service.chat.ActiveConversationService;
+import abdaty_technologie.API_Invest.service.chat.ChatEventPublisher;
+import abdaty_technologie.API_Invest.service.chat.MessageArchiveService;
+import abdaty_technologie.API_Invest.service.chat.MessageGroupCommitter;
+import abdaty_technologie.API_Invest.service.chat.MessageSearchIndex;
+import abdaty_technologie.API_Invest.service.chat.RecentMessageCache;
+import abdaty_technologie.API_Invest.service.chat.SentMessageCache;
+import abdaty_technologie.API_Invest.service.chat.UnreadCounterService;
 import abdaty_technologie.API_Invest.exception.BadRequestException;
 import abdaty_technologie.API_Invest.exception.NotFoundException;
+import jakarta.annotation.PostConstruct;
 
 import java.time.Instant;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -34,12 +64,27 @@ public class ChatServiceImpl implements ChatService {
 
     private static final Logger logger = LoggerFactory.getLogger(ChatServiceImpl.class);
 
+    // Taille des pages des listes de conversations paginées par curseur
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_SEARCH_PAGE_SIZE = 50;
+
+    // Taille des fenêtres de messages (détail de conversation, historique, synchronisation)
+    private static final int DEFAULT_MESSAGE_WINDOW = 50;
+    private static final int MAX_MESSAGE_WINDOW = 200;
+
+    // Attente maximale d'un appelant dont le message est parti dans un envoi groupé
+    private static final long GROUP_COMMIT_TIMEOUT_SECONDS = 30;
+
     @Autowired
     private ConversationRepository conversationRepository;
 
     @Autowired
     private MessageRepository messageRepository;
 
+    @Autowired
+    private ConversationInboxEntryRepository inboxEntryRepository;
+
     @Autowired
     private EntrepriseRepository entrepriseRepository;
 
@@ -52,6 +97,44 @@ public class ChatServiceImpl implements ChatService {
     @Autowired
     private EntrepriseMembreRepository entrepriseMembreRepository;
 
+    @Autowired
+    private ChatEventPublisher chatEventPublisher;
+
+    @Autowired
+    private MessageSearchIndex searchIndex;
+
+    @Autowired
+    private MessageArchiveService messageArchiveService;
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Autowired
+    private MessageGroupCommitter groupCommitter;
+
+    @Autowired
+    private SentMessageCache sentMessageCache;
+
+    @Autowired
+    private RecentMessageCache recentMessageCache;
+
+    @Autowired
+    private AgentResponseMetrics agentResponseMetrics;
+
+    @Autowired
+    private ActiveConversationService activeConversationService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate sendTransaction;
+
+    @PostConstruct
+    void initGroupCommit() {
+        sendTransaction = new TransactionTemplate(transactionManager);
+        groupCommitter.registerFlusher(this::sendMessageBatch);
+    }
+
     /**
      * Crée une nouvelle conversation initiée par un agent
      * Logique métier : Seuls les agents peuvent initier des conversations
@@ -78,32 +161,30 @@ public class ChatServiceImpl implements ChatService {
         Persons user = personsRepository.findById(request.getUserId())
             .orElseThrow(() -> new NotFoundException("Utilisateur non trouvé: " + request.getUserId()));
 
-        // Vérifier qu'il n'existe pas déjà une conversation active entre cet agent et cet utilisateur pour cette entreprise
-        List<Conversation> existingConversations = conversationRepository.findActiveConversationBetweenParticipants(
-            request.getEntrepriseId(), agentId, request.getUserId());
-        
-        if (!existingConversations.isEmpty()) {
-            logger.info("✅ Conversation existante trouvée, retour de la conversation active");
-            return mapToConversationResponse(existingConversations.get(0));
-        }
-
-        // Créer la nouvelle conversation
-        Conversation conversation = new Conversation(entreprise, agent, user, request.getSubject());
+        // Créer la conversation, sauf s'il existe déjà une conversation active entre cet agent et cet utilisateur pour cette entreprise
+        Conversation candidate = new Conversation(entreprise, agent, user, request.getSubject());
         
         if (request.getPriority() != null) {
             try {
-                conversation.setPriority(ConversationPriority.valueOf(request.getPriority()));
+                candidate.setPriority(ConversationPriority.valueOf(request.getPriority()));
             } catch (IllegalArgumentException e) {
-                conversation.setPriority(ConversationPriority.NORMAL);
+                candidate.setPriority(ConversationPriority.NORMAL);
             }
         }
 
-        conversation = conversationRepository.save(conversation);
+        ActiveConversationService.Result active = activeConversationService.getOrCreate(candidate);
+        Conversation conversation = active.getConversation();
+        if (!active.isCreated()) {
+            logger.info("✅ Conversation existante trouvée, retour de la conversation active");
+            return mapToConversationResponse(conversation);
+        }
         logger.info("✅ Conversation créée avec ID: {}", conversation.getId());
 
         // Créer le message initial de l'agent
         Message initialMessage = new Message(conversation, agent, request.getInitialMessage());
         messageRepository.save(initialMessage);
+        conversation.recordMessage(initialMessage);
+        unreadCounterService.onMessageSaved(conversation, agent.getId());
         logger.info("✅ Message initial créé par l'agent");
 
         return mapToConversationResponse(conversation);
@@ -144,14 +225,26 @@ public class ChatServiceImpl implements ChatService {
             }
         }
 
-        // Vérifier s'il existe déjà une conversation active
-        List<Conversation> existingConversations = conversationRepository.findActiveConversationBetweenParticipants(
-            entrepriseId, agentId, user.getId());
+        // Conversation active existante, ou nouvelle conversation
+        String subject = request.getSubject() != null ? request.getSubject() : 
+                        "Demande concernant " + entreprise.getNom();
+        
+        Conversation candidate = new Conversation(entreprise, agent, user, subject);
+        if (request.getPriority() != null) {
+            try {
+                candidate.setPriority(ConversationPriority.valueOf(request.getPriority()));
+            } catch (IllegalArgumentException e) {
+                candidate.setPriority(ConversationPriority.NORMAL);
+            }
+        }
 
-        if (!existingConversations.isEmpty()) {
-            Conversation existingConversation = existingConversations.get(0);
+        ActiveConversationService.Result active = activeConversationService.getOrCreate(candidate);
+        if (!active.isCreated()) {
+            Conversation existingConversation = active.getConversation();
             Message newMessage = new Message(existingConversation, agent, request.getMessage());
             messageRepository.save(newMessage);
+            existingConversation.recordMessage(newMessage);
+            unreadCounterService.onMessageSaved(existingConversation, agent.getId());
             
             // Mettre à jour le timestamp de modification
             existingConversation.setModification(Instant.now());
@@ -161,25 +254,14 @@ public class ChatServiceImpl implements ChatService {
             return mapToConversationResponse(existingConversation);
         }
         
-        // Créer une nouvelle conversation
-        String subject = request.getSubject() != null ? request.getSubject() : 
-                        "Demande concernant " + entreprise.getNom();
-        
-        Conversation conversation = new Conversation(entreprise, agent, user, subject);
-        if (request.getPriority() != null) {
-            try {
-                conversation.setPriority(ConversationPriority.valueOf(request.getPriority()));
-            } catch (IllegalArgumentException e) {
-                conversation.setPriority(ConversationPriority.NORMAL);
-            }
-        }
-
-        conversation = conversationRepository.save(conversation);
+        Conversation conversation = active.getConversation();
         logger.info("✅ Nouvelle conversation créée: {}", conversation.getId());
 
         // Créer le message initial de l'agent
         Message initialMessage = new Message(conversation, agent, request.getMessage());
         messageRepository.save(initialMessage);
+        conversation.recordMessage(initialMessage);
+        unreadCounterService.onMessageSaved(conversation, agent.getId());
         logger.info("✅ Message initial créé par l'agent");
 
         return mapToConversationResponse(conversation);
@@ -257,21 +339,17 @@ public class ChatServiceImpl implements ChatService {
             throw new NotFoundException("Aucun propriétaire trouvé pour l'entreprise: " + entrepriseId);
         }
 
-        // Vérifier s'il existe déjà une conversation active
-        List<Conversation> existingConversations = conversationRepository.findActiveConversationBetweenParticipants(
-            entrepriseId, agentId, user.getId());
-
-        if (!existingConversations.isEmpty()) {
-            logger.info("✅ Conversation existante trouvée: {}", existingConversations.get(0).getId());
-            return mapToConversationResponse(existingConversations.get(0));
-        }
-
-        // Créer une nouvelle conversation
+        // Conversation active existante, ou nouvelle conversation
         String subject = "Demande concernant " + entreprise.getNom();
-        Conversation conversation = new Conversation(entreprise, agent, user, subject);
-        conversation.setPriority(ConversationPriority.NORMAL);
-
-        conversation = conversationRepository.save(conversation);
+        Conversation candidate = new Conversation(entreprise, agent, user, subject);
+        candidate.setPriority(ConversationPriority.NORMAL);
+
+        ActiveConversationService.Result active = activeConversationService.getOrCreate(candidate);
+        Conversation conversation = active.getConversation();
+        if (!active.isCreated()) {
+            logger.info("✅ Conversation existante trouvée: {}", conversation.getId());
+            return mapToConversationResponse(conversation);
+        }
         logger.info("✅ Nouvelle conversation créée: {}", conversation.getId());
 
         // AUTO-CORRECTION : S'assurer que l'utilisateur est membre de l'entreprise
@@ -280,84 +358,49 @@ public class ChatServiceImpl implements ChatService {
         // Créer le message initial de l'agent
         Message initialMsg = new Message(conversation, agent, initialMessage);
         messageRepository.save(initialMsg);
+        conversation.recordMessage(initialMsg);
+        unreadCounterService.onMessageSaved(conversation, agent.getId());
         logger.info("✅ Message initial créé par l'agent");
 
         return mapToConversationResponse(conversation);
     }
 
     /**
-     * Récupère les conversations d'un agent pour ses entreprises assignées
+     * Récupère les conversations actives d'un agent pour ses entreprises assignées, paginées par curseur
      */
     @Transactional(readOnly = true)
-    public List<ConversationResponse> getAgentConversationsForAssignedEntreprises(String agentId) {
+    public CursorPage<ConversationSummary> getAgentConversationsForAssignedEntreprises(String agentId, String cursor, int size) {
         logger.info("🔍 [ChatService] Récupération conversations agent {} pour entreprises assignées", agentId);
 
-        List<Conversation> conversations = conversationRepository.findActiveConversationsByAgent(
-            agentId, ConversationStatus.ACTIVE);
+        ConversationCursor after = ConversationCursor.decode(cursor);
+        int pageSize = normalizePageSize(size);
+        List<ConversationSummary> rows = inboxEntryRepository.findInbox(
+            ChatParticipantRole.AGENT, ConversationStatus.ACTIVE, null, agentId,
+            after != null ? after.getModification() : null, after != null ? after.getId() : null,
+            PageRequest.of(0, pageSize + 1))
+            .stream().map(this::toSummary).collect(Collectors.toList());
 
-        return conversations.stream()
-            .map(this::mapToConversationResponse)
-            .collect(Collectors.toList());
+        return toCursorPage(rows, pageSize, ConversationSummary::getModification, ConversationSummary::getId);
     }
 
     /**
-     * Récupère les conversations d'un utilisateur pour ses entreprises
-     * CORRIGÉ : Vérifie que l'utilisateur est bien propriétaire via EntrepriseMembre
+     * Récupère les conversations d'un utilisateur pour les entreprises dont il est membre, paginées par curseur.
+     * Une seule requête (résumés déjà triés), quel que soit le nombre d'entreprises de l'utilisateur.
      */
     @Transactional(readOnly = true)
-    public List<ConversationResponse> getUserConversationsForOwnedEntreprises(String userId) {
+    public CursorPage<ConversationSummary> getUserConversationsForOwnedEntreprises(String userId, String cursor, int size) {
         logger.info("🔍 [ChatService] Récupération conversations utilisateur {} pour ses entreprises", userId);
 
-        // Étape 1 : Trouver toutes les entreprises où cet utilisateur est membre
-        List<EntrepriseMembre> memberships = entrepriseMembreRepository.findByPersonne_Id(userId);
-        logger.info("📋 Utilisateur {} est membre de {} entreprises", userId, memberships.size());
-        
-        if (memberships.isEmpty()) {
-            logger.warn("⚠️ Aucune entreprise trouvée pour l'utilisateur {}", userId);
-            return new ArrayList<>();
-        }
+        ConversationCursor after = ConversationCursor.decode(cursor);
+        int pageSize = normalizePageSize(size);
+        List<ConversationSummary> rows = inboxEntryRepository.findInboxForMemberEntreprises(
+            userId, after != null ? after.getModification() : null, after != null ? after.getId() : null,
+            PageRequest.of(0, pageSize + 1))
+            .stream().map(this::toSummary).collect(Collectors.toList());
 
-        // Étape 2 : Récupérer les IDs des entreprises
-        List<String> entrepriseIds = memberships.stream()
-            .map(membre -> membre.getEntreprise().getId())
-            .collect(Collectors.toList());
-        
-        logger.info("🏢 Entreprises de l'utilisateur : {}", entrepriseIds);
-
-        // Étape 3 : Trouver toutes les conversations pour ces entreprises où l'utilisateur est participant
-        List<Conversation> allConversations = new ArrayList<>();
-        
-        for (String entrepriseId : entrepriseIds) {
-            // Conversations où l'utilisateur est dans user_id pour cette entreprise
-            List<Conversation> userConversations = conversationRepository.findByUserIdOrAgentIdAndEntrepriseIdOrderByModificationDesc(
-                userId, userId, entrepriseId);
-            allConversations.addAll(userConversations);
-            
-            logger.info("💬 Entreprise {} : {} conversations trouvées", entrepriseId, userConversations.size());
-        }
-        
-        // Étape 4 : Supprimer les doublons et trier par modification
-        List<Conversation> uniqueConversations = allConversations.stream()
-            .distinct()
-            .sorted((c1, c2) -> c2.getModification().compareTo(c1.getModification()))
-            .collect(Collectors.toList());
-        
-        logger.info("✅ Total {} conversations uniques trouvées pour l'utilisateur {}", uniqueConversations.size(), userId);
-        
-        // DEBUG : Afficher les détails des conversations trouvées
-        for (int i = 0; i < uniqueConversations.size(); i++) {
-            Conversation conv = uniqueConversations.get(i);
-            logger.info("🔍 DEBUG Conversation {}: ID={}, Agent={}, User={}, Entreprise={}, Subject={}", 
-                i+1, conv.getId(), 
-                conv.getAgent() != null ? conv.getAgent().getId() : "null",
-                conv.getUser() != null ? conv.getUser().getId() : "null",
-                conv.getEntreprise() != null ? conv.getEntreprise().getNom() : "null",
-                conv.getSubject());
-        }
-
-        return uniqueConversations.stream()
-            .map(this::mapToConversationResponse)
-            .collect(Collectors.toList());
+        CursorPage<ConversationSummary> page = toCursorPage(rows, pageSize, ConversationSummary::getModification, ConversationSummary::getId);
+        logger.info("✅ {} conversations renvoyées pour l'utilisateur {}", page.getContent().size(), userId);
+        return page;
     }
 
     @Override
@@ -374,6 +417,73 @@ public class ChatServiceImpl implements ChatService {
         return mapToConversationResponse(conversation);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public ConversationResponse getConversation(String conversationId, String userId, int messageLimit) {
+        long cacheStamp = recentMessageCache.stamp(conversationId);
+        Conversation conversation = conversationRepository.findById(conversationId)
+            .orElseThrow(() -> new NotFoundException("Conversation non trouvée"));
+
+        if (!conversation.getAgent().getId().equals(userId) && !conversation.getUser().getId().equals(userId)) {
+            throw new BadRequestException("Accès non autorisé à cette conversation");
+        }
+
+        MessageWindow window = readLatestMessages(conversation, messageLimit, cacheStamp);
+        ConversationResponse response = mapConversationHeader(conversation);
+        response.setMessages(window.getMessages());
+        response.setOlderCursor(window.getOlderCursor());
+        response.setSyncCursor(window.getSyncCursor());
+        // Messages archivés compris : le nombre dénormalisé n'est pas diminué par l'archivage
+        response.setTotalMessages(conversation.getMessageCount());
+        response.setUnreadMessages(unreadCounterService.getUnreadCount(conversationId, conversation.getAgent().getId()));
+        return response;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public MessageWindow getLatestMessages(String conversationId, int limit) {
+        long cacheStamp = recentMessageCache.stamp(conversationId);
+        return readLatestMessages(findConversation(conversationId), limit, cacheStamp);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public MessageWindow getMessagesBefore(String conversationId, String cursor, int limit) {
+        MessageCursor before = MessageCursor.decode(cursor);
+        if (before == null) {
+            throw new BadRequestException("Le curseur est requis pour charger l'historique");
+        }
+        return readMessagesBefore(findConversation(conversationId), before, limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public MessageWindow getMessagesSince(String conversationId, String cursor, int limit) {
+        Conversation conversation = findConversation(conversationId);
+        MessageCursor after = MessageCursor.decode(cursor);
+        int windowSize = normalizeMessageWindow(limit);
+
+        // Curseur couvert par les derniers messages en cache : pas de lecture de la table messages
+        MessageWindow cached = recentMessageCache.since(conversation.getId(), conversation.getMessageCount(), after, windowSize);
+        if (cached != null) {
+            return cached;
+        }
+
+        List<Message> rows = messageRepository.findMessagesAfterCursor(conversation.getId(),
+            after != null ? after.getCreation() : null, after != null ? after.getId() : null,
+            PageRequest.of(0, windowSize + 1));
+
+        boolean hasMore = rows.size() > windowSize;
+        List<Message> window = hasMore ? rows.subList(0, windowSize) : rows;
+
+        // Sans nouveau message, le client garde le même curseur
+        String syncCursor = !window.isEmpty()
+            ? MessageCursor.of(window.get(window.size() - 1)).encode()
+            : (after != null ? after.encode() : null);
+
+        return new MessageWindow(mapToMessageResponses(window), null, syncCursor, hasMore);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public Page<ConversationResponse> getAgentConversations(String agentId, Pageable pageable) {
@@ -397,58 +507,312 @@ public class ChatServiceImpl implements ChatService {
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public MessageResponse sendMessage(String conversationId, MessageRequest request, String senderId) {
         logger.info("📤 [ChatService] Envoi message dans conversation {} par {}", conversationId, senderId);
 
-        Conversation conversation = conversationRepository.findById(conversationId)
+        // Renvoi récent du même message (délai dépassé côté client) : réponse d'origine sans requête
+        String clientMessageId = clientMessageIdOf(request);
+        if (clientMessageId != null) {
+            MessageResponse sent = sentMessageCache.get(conversationId, senderId, clientMessageId);
+            if (sent != null) {
+                logger.info("♻️ Renvoi du message client {} : réponse d'origine", clientMessageId);
+                return sent;
+            }
+        }
+
+        // Envoi groupé seulement hors transaction appelante : sinon le message ne suivrait plus son rollback
+        boolean ownTransaction = !TransactionSynchronizationManager.isActualTransactionActive();
+        MessageResponse response = null;
+        try {
+            if (ownTransaction) {
+                CompletableFuture<MessageResponse> queued = groupCommitter.submit(conversationId, request, senderId);
+                if (queued != null) {
+                    response = awaitGroupCommit(queued);
+                }
+            }
+            if (response == null) {
+                response = sendTransaction.execute(status -> sendMessageNow(conversationId, request, senderId));
+            }
+        } catch (DataIntegrityViolationException e) {
+            // Contrainte unique (conversation, identifiant client) : le même message a été enregistré entre-temps
+            if (clientMessageId == null) {
+                throw e;
+            }
+            response = sendTransaction.execute(status -> findAlreadySent(conversationId, clientMessageId, senderId));
+        }
+
+        // Réponse retenue seulement une fois validée (pas de transaction appelante qui pourrait l'annuler)
+        if (clientMessageId != null && ownTransaction) {
+            sentMessageCache.put(conversationId, senderId, clientMessageId, response);
+        }
+        return response;
+    }
+
+    private MessageResponse sendMessageNow(String conversationId, MessageRequest request, String senderId) {
+        // Verrou sur la conversation : les compteurs de non-lus restent cohérents avec les envois concurrents
+        Conversation conversation = conversationRepository.findByIdForUpdate(conversationId)
             .orElseThrow(() -> new NotFoundException("Conversation non trouvée: " + conversationId));
 
         Persons sender = personsRepository.findById(senderId)
             .orElseThrow(() -> new NotFoundException("Expéditeur non trouvé: " + senderId));
 
-        // Vérifier que l'expéditeur a accès à cette conversation (agent OU utilisateur)
+        checkSender(conversation, senderId);
+
+        // Renvoi d'un message déjà enregistré : rien n'est écrit ni notifié une seconde fois
+        String clientMessageId = clientMessageIdOf(request);
+        if (clientMessageId != null) {
+            Message existing = messageRepository.findByConversationIdAndClientMessageId(conversationId, clientMessageId)
+                .orElse(null);
+            if (existing != null) {
+                return replay(existing, senderId);
+            }
+        }
+
+        Message message = messageRepository.save(buildMessage(conversation, sender, request));
+        logger.info("✅ Message sauvegardé avec ID: {}", message.getId());
+
+        unreadCounterService.onMessageSaved(conversation, senderId);
+
+        // Mettre à jour le résumé du dernier message et le timestamp de modification de la conversation
+        Instant waitingSince = conversation.getWaitingSince();
+        conversation.recordMessage(message);
+        agentResponseMetrics.onMessageRecorded(conversation, message, waitingSince);
+        conversation.setModification(Instant.now());
+        conversationRepository.save(conversation);
+
+        return publishSent(conversation, message);
+    }
+
+    /**
+     * Traite un lot de l'envoi groupé en une transaction : conversations verrouillées et expéditeurs chargés
+     * en deux requêtes, inserts des messages en lot JDBC, une mise à jour de compteur par destinataire et
+     * par conversation. Les appelants ne reçoivent leur résultat qu'après le commit.
+     */
+    private void sendMessageBatch(List<MessageGroupCommitter.PendingSend> batch) {
+        List<Runnable> outcomes = new ArrayList<>();
+        try {
+            sendTransaction.executeWithoutResult(status -> sendMessageBatchNow(batch, outcomes));
+        } catch (RuntimeException e) {
+            // Lot annulé en bloc (erreur base) : chaque envoi est rejoué seul pour isoler le fautif
+            logger.warn("⚠️ Lot de {} message(s) annulé ({}), envoi un par un", batch.size(), e.getMessage());
+            for (MessageGroupCommitter.PendingSend pending : batch) {
+                try {
+                    pending.complete(sendTransaction.execute(status -> sendMessageNow(
+                        pending.getConversationId(), pending.getRequest(), pending.getSenderId())));
+                } catch (RuntimeException ex) {
+                    pending.fail(ex);
+                }
+            }
+            return;
+        }
+        outcomes.forEach(Runnable::run);
+    }
+
+    private void sendMessageBatchNow(List<MessageGroupCommitter.PendingSend> batch, List<Runnable> outcomes) {
+        outcomes.clear();
+        Set<String> conversationIds = batch.stream()
+            .map(MessageGroupCommitter.PendingSend::getConversationId)
+            .collect(Collectors.toCollection(TreeSet::new));
+        Map<String, Conversation> conversations = conversationRepository.findAllByIdForUpdate(conversationIds).stream()
+            .collect(Collectors.toMap(Conversation::getId, Function.identity()));
+        Set<String> senderIds = batch.stream()
+            .map(MessageGroupCommitter.PendingSend::getSenderId)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toSet());
+        Map<String, Persons> senders = personsRepository.findAllById(senderIds).stream()
+            .collect(Collectors.toMap(Persons::getId, Function.identity()));
+        Map<String, Message> alreadySent = findAlreadySent(batch);
+
+        List<Message> messages = new ArrayList<>();
+        List<MessageGroupCommitter.PendingSend> accepted = new ArrayList<>();
+        Map<String, Integer> acceptedByClientKey = new HashMap<>();
+        Map<MessageGroupCommitter.PendingSend, Integer> retries = new LinkedHashMap<>();
+        Map<Conversation, List<String>> sendersByConversation = new LinkedHashMap<>();
+        for (MessageGroupCommitter.PendingSend pending : batch) {
+            try {
+                Conversation conversation = conversations.get(pending.getConversationId());
+                if (conversation == null) {
+                    throw new NotFoundException("Conversation non trouvée: " + pending.getConversationId());
+                }
+                Persons sender = senders.get(pending.getSenderId());
+                if (sender == null) {
+                    throw new NotFoundException("Expéditeur non trouvé: " + pending.getSenderId());
+                }
+                checkSender(conversation, pending.getSenderId());
+
+                // Renvoi d'un message déjà enregistré, ou présent deux fois dans le lot : un seul insert
+                String clientKey = clientKeyOf(pending.getConversationId(), clientMessageIdOf(pending.getRequest()));
+                if (clientKey != null && alreadySent.containsKey(clientKey)) {
+                    MessageResponse response = replay(alreadySent.get(clientKey), pending.getSenderId());
+                    outcomes.add(() -> pending.complete(response));
+                    continue;
+                }
+                if (clientKey != null && acceptedByClientKey.containsKey(clientKey)) {
+                    int first = acceptedByClientKey.get(clientKey);
+                    checkSameSender(messages.get(first), pending.getSenderId());
+                    retries.put(pending, first);
+                    continue;
+                }
+
+                messages.add(buildMessage(conversation, sender, pending.getRequest()));
+                accepted.add(pending);
+                if (clientKey != null) {
+                    acceptedByClientKey.put(clientKey, messages.size() - 1);
+                }
+                sendersByConversation.computeIfAbsent(conversation, c -> new ArrayList<>()).add(pending.getSenderId());
+            } catch (NotFoundException | BadRequestException e) {
+                // Envoi refusé : les autres messages du lot partent quand même
+                outcomes.add(() -> pending.fail(e));
+            }
+        }
+
+        messageRepository.saveAll(messages);
+        sendersByConversation.forEach(unreadCounterService::onMessagesSaved);
+
+        Instant now = Instant.now();
+        List<MessageResponse> responses = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            Instant waitingSince = message.getConversation().getWaitingSince();
+            message.getConversation().recordMessage(message);
+            agentResponseMetrics.onMessageRecorded(message.getConversation(), message, waitingSince);
+            message.getConversation().setModification(now);
+            MessageResponse response = publishSent(message.getConversation(), message);
+            responses.add(response);
+            MessageGroupCommitter.PendingSend pending = accepted.get(i);
+            outcomes.add(() -> pending.complete(response));
+        }
+        retries.forEach((pending, first) -> outcomes.add(() -> pending.complete(responses.get(first))));
+        logger.info("📦 Lot de {} message(s) enregistré dans {} conversation(s)", messages.size(), sendersByConversation.size());
+    }
+
+    /**
+     * Messages déjà enregistrés pour les identifiants client du lot, par clé "conversationId|clientMessageId"
+     */
+    private Map<String, Message> findAlreadySent(List<MessageGroupCommitter.PendingSend> batch) {
+        Set<String> conversationIds = new HashSet<>();
+        Set<String> clientMessageIds = new HashSet<>();
+        for (MessageGroupCommitter.PendingSend pending : batch) {
+            String clientMessageId = clientMessageIdOf(pending.getRequest());
+            if (clientMessageId != null) {
+                conversationIds.add(pending.getConversationId());
+                clientMessageIds.add(clientMessageId);
+            }
+        }
+        Map<String, Message> alreadySent = new HashMap<>();
+        if (clientMessageIds.isEmpty()) {
+            return alreadySent;
+        }
+        for (Message message : messageRepository.findByConversationIdInAndClientMessageIdIn(conversationIds, clientMessageIds)) {
+            alreadySent.put(clientKeyOf(message.getConversation().getId(), message.getClientMessageId()), message);
+        }
+        return alreadySent;
+    }
+
+    private MessageResponse findAlreadySent(String conversationId, String clientMessageId, String senderId) {
+        Message existing = messageRepository.findByConversationIdAndClientMessageId(conversationId, clientMessageId)
+            .orElseThrow(() -> new IllegalStateException("Envoi du message impossible"));
+        return replay(existing, senderId);
+    }
+
+    /**
+     * Réponse d'origine d'un message renvoyé par son expéditeur
+     */
+    private MessageResponse replay(Message existing, String senderId) {
+        checkSameSender(existing, senderId);
+        logger.info("♻️ Message client {} déjà enregistré ({}) : pas de doublon", existing.getClientMessageId(), existing.getId());
+        return mapToMessageResponse(existing, unreadCounterService.getReadStates(List.of(existing.getConversation().getId())));
+    }
+
+    private void checkSameSender(Message existing, String senderId) {
+        if (!existing.getSender().getId().equals(senderId)) {
+            throw new BadRequestException("Identifiant client déjà utilisé dans cette conversation");
+        }
+    }
+
+    /**
+     * Identifiant client de l'envoi, null s'il est absent (anciens clients : pas de déduplication)
+     */
+    private static String clientMessageIdOf(MessageRequest request) {
+        String clientMessageId = request.getClientMessageId();
+        if (clientMessageId == null || clientMessageId.isBlank()) {
+            return null;
+        }
+        clientMessageId = clientMessageId.trim();
+        if (clientMessageId.length() > Message.CLIENT_MESSAGE_ID_LENGTH) {
+            throw new BadRequestException("L'identifiant client du message ne peut pas dépasser "
+                                          + Message.CLIENT_MESSAGE_ID_LENGTH + " caractères");
+        }
+        return clientMessageId;
+    }
+
+    private static String clientKeyOf(String conversationId, String clientMessageId) {
+        return clientMessageId != null ? conversationId + "|" + clientMessageId : null;
+    }
+
+    private MessageResponse awaitGroupCommit(CompletableFuture<MessageResponse> queued) {
+        try {
+            return queued.get(GROUP_COMMIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Envoi du message impossible", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Envoi du message non confirmé après " + GROUP_COMMIT_TIMEOUT_SECONDS + " s", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Envoi du message interrompu", e);
+        }
+    }
+
+    // Vérifier que l'expéditeur a accès à cette conversation (agent OU utilisateur)
+    private void checkSender(Conversation conversation, String senderId) {
         boolean isAgent = conversation.getAgent().getId().equals(senderId);
         boolean isUser = conversation.getUser().getId().equals(senderId);
-        
         if (!isAgent && !isUser) {
             throw new BadRequestException("Accès non autorisé à cette conversation");
         }
-
         logger.info("✅ Expéditeur autorisé - Type: {}", isAgent ? "AGENT" : "USER");
+    }
 
-        // Créer le message
-        Message message;
+    private Message buildMessage(Conversation conversation, Persons sender, MessageRequest request) {
         MessageType messageType;
-        
         try {
             messageType = MessageType.valueOf(request.getMessageType());
         } catch (IllegalArgumentException e) {
             messageType = MessageType.TEXT;
         }
 
+        Message message;
         if (messageType == MessageType.DOCUMENT_REQUEST && request.getDocumentName() != null) {
             message = Message.createDocumentRequest(conversation, sender, request.getContent(), request.getDocumentName());
         } else if (messageType == MessageType.DOCUMENT_UPLOAD && request.getDocumentName() != null) {
             message = Message.createDocumentUpload(conversation, sender, request.getContent(), 
-                                                 request.getDocumentName(), request.getDocumentUrl());
+                                                   request.getDocumentName(), request.getDocumentUrl());
         } else {
             message = new Message(conversation, sender, request.getContent(), messageType);
         }
+        message.setClientMessageId(clientMessageIdOf(request));
+        return message;
+    }
 
-        message = messageRepository.save(message);
-        logger.info("✅ Message sauvegardé avec ID: {}", message.getId());
-
-        // Mettre à jour le timestamp de modification de la conversation
-        conversation.setModification(Instant.now());
-        conversationRepository.save(conversation);
+    private MessageResponse publishSent(Conversation conversation, Message message) {
+        // Message tout juste envoyé : pas encore lu par son destinataire
+        MessageResponse response = mapToMessageResponse(message, Map.of());
+        recentMessageCache.append(conversation.getId(), response);
 
-        return mapToMessageResponse(message);
+        // Notifier les clients abonnés (après commit)
+        chatEventPublisher.publish(ChatEvent.messageCreated(conversation.getId(), response),
+            conversation.getAgent().getId(), conversation.getUser().getId());
+        return response;
     }
 
     @Override
     @Transactional
     public void markConversationAsRead(String conversationId, String userId) {
-        Conversation conversation = conversationRepository.findById(conversationId)
+        Conversation conversation = conversationRepository.findByIdForUpdate(conversationId)
             .orElseThrow(() -> new NotFoundException("Conversation non trouvée"));
 
         // Vérifier que l'utilisateur a accès à cette conversation
@@ -456,8 +820,16 @@ public class ChatServiceImpl implements ChatService {
             throw new BadRequestException("Accès non autorisé à cette conversation");
         }
 
-        // Marquer tous les messages non lus comme lus
-        messageRepository.markAllMessagesAsReadInConversation(conversationId, userId);
+        // Avancer le filigrane de lecture : une seule ligne écrite, quel que soit le nombre de messages lus
+        boolean changed = unreadCounterService.onConversationRead(conversation, userId);
+
+        // Notifier l'autre participant (accusé de lecture) seulement si quelque chose a changé
+        if (changed) {
+            // isRead / readAt des réponses en cache ne sont plus exacts
+            recentMessageCache.invalidate(conversationId);
+            chatEventPublisher.publish(ChatEvent.messageRead(conversationId, userId),
+                conversation.getAgent().getId(), conversation.getUser().getId());
+        }
     }
 
     @Override
@@ -473,33 +845,96 @@ public class ChatServiceImpl implements ChatService {
         conversation.close();
         conversation = conversationRepository.save(conversation);
 
+        chatEventPublisher.publish(ChatEvent.conversationClosed(conversationId, userId),
+            conversation.getAgent().getId(), conversation.getUser().getId());
+
         return mapToConversationResponse(conversation);
     }
 
     @Override
     @Transactional(readOnly = true)
     public long getUnreadCountForAgent(String agentId) {
-        return conversationRepository.countUnreadMessagesForAgent(agentId);
+        return unreadCounterService.getTotalUnreadCount(agentId, ChatParticipantRole.AGENT);
     }
 
     @Override
     @Transactional(readOnly = true)
     public long getUnreadCountForUser(String userId) {
-        return conversationRepository.countUnreadMessagesForUser(userId);
+        return unreadCounterService.getTotalUnreadCount(userId, ChatParticipantRole.USER);
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<ConversationResponse> searchConversations(String keyword, String userId) {
-        List<Conversation> conversations = conversationRepository.searchBySubject(keyword);
+        // Index plein texte des sujets, limité aux conversations de l'utilisateur
+        List<String> conversationIds = conversationRepository.findIdsByParticipant(userId);
+        MessageSearchIndex.SearchHits hits = searchIndex.search(
+            keyword, MessageSearchIndex.TYPE_CONVERSATION, conversationIds, 0, MAX_PAGE_SIZE);
         
-        // Filtrer pour ne retourner que les conversations auxquelles l'utilisateur a accès
-        return conversations.stream()
-            .filter(c -> c.getAgent().getId().equals(userId) || c.getUser().getId().equals(userId))
+        List<String> ids = hits.getHits().stream().map(MessageSearchIndex.Hit::getId).collect(Collectors.toList());
+        Map<String, Conversation> byId = conversationRepository.findAllById(ids).stream()
+            .collect(Collectors.toMap(Conversation::getId, Function.identity()));
+        return ids.stream()
+            .map(byId::get)
+            .filter(Objects::nonNull)
             .map(this::mapToConversationResponse)
             .collect(Collectors.toList());
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public MessageSearchResult searchMessages(String participantId, String query, String conversationId, int page, int size) {
+        if (query == null || query.isBlank()) {
+            throw new BadRequestException("Le texte à rechercher est obligatoire");
+        }
+        int pageSize = normalizeSearchPageSize(size);
+        int pageIndex = Math.max(page, 0);
+
+        List<String> conversationIds = conversationRepository.findIdsByParticipant(participantId);
+        if (conversationId != null && !conversationId.isBlank()) {
+            if (!conversationIds.contains(conversationId)) {
+                throw new NotFoundException("Conversation non trouvée: " + conversationId);
+            }
+            conversationIds = List.of(conversationId);
+        }
+
+        MessageSearchIndex.SearchHits hits = searchIndex.search(
+            query, MessageSearchIndex.TYPE_MESSAGE, conversationIds, pageIndex * pageSize, pageSize);
+        if (hits.getHits().isEmpty()) {
+            return new MessageSearchResult(List.of(), pageIndex, pageSize, hits.getTotalHits());
+        }
+
+        // Contenu et expéditeur relus en base, dans l'ordre de pertinence de l'index
+        Map<String, Message> messages = messageRepository.findWithSenderByIdIn(
+                hits.getHits().stream().map(MessageSearchIndex.Hit::getId).collect(Collectors.toList()))
+            .stream().collect(Collectors.toMap(Message::getId, Function.identity()));
+        Map<String, Conversation> conversations = conversationRepository.findAllById(
+                hits.getHits().stream().map(MessageSearchIndex.Hit::getConversationId).distinct().collect(Collectors.toList()))
+            .stream().collect(Collectors.toMap(Conversation::getId, Function.identity()));
+        Map<String, String> subjects = conversations.values().stream()
+            .collect(Collectors.toMap(Conversation::getId, Conversation::getSubject));
+
+        // Messages qui ne sont plus dans la table messages : lus dans l'archive de leur conversation
+        hits.getHits().stream()
+            .filter(hit -> !messages.containsKey(hit.getId()) && conversations.containsKey(hit.getConversationId()))
+            .map(MessageSearchIndex.Hit::getConversationId)
+            .distinct()
+            .forEach(id -> messageArchiveService.findArchivedMessages(conversations.get(id))
+                .forEach(archived -> messages.putIfAbsent(archived.getId(), archived)));
+
+        Map<String, ConversationUnreadCounter> readStates = unreadCounterService.getReadStates(subjects.keySet());
+
+        List<MessageSearchHit> results = new ArrayList<>();
+        for (MessageSearchIndex.Hit hit : hits.getHits()) {
+            Message message = messages.get(hit.getId());
+            if (message != null) {
+                results.add(new MessageSearchHit(mapToMessageResponse(message, readStates), hit.getConversationId(),
+                                                 subjects.get(hit.getConversationId()), hit.getScore()));
+            }
+        }
+        return new MessageSearchResult(results, pageIndex, pageSize, hits.getTotalHits());
+    }
+
     @Override
     @Transactional(readOnly = true)
     public List<ConversationResponse> getConversationsWithUnreadMessagesForAgent(String agentId) {
@@ -509,8 +944,244 @@ public class ChatServiceImpl implements ChatService {
             .collect(Collectors.toList());
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<ConversationSummary> getConversationInbox(String participantId, String entrepriseId, String cursor, int size) {
+        ConversationCursor after = ConversationCursor.decode(cursor);
+        int pageSize = normalizePageSize(size);
+        List<ConversationSummary> rows = inboxEntryRepository.findInboxForParticipant(
+            participantId, emptyToNull(entrepriseId),
+            after != null ? after.getModification() : null, after != null ? after.getId() : null,
+            PageRequest.of(0, pageSize + 1))
+            .stream().map(this::toSummary).collect(Collectors.toList());
+        return toCursorPage(rows, pageSize, ConversationSummary::getModification, ConversationSummary::getId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<ConversationSummary> getActiveConversationInbox(String entrepriseId, String agentId, String cursor, int size) {
+        ConversationCursor after = ConversationCursor.decode(cursor);
+        int pageSize = normalizePageSize(size);
+        String entrepriseFilter = emptyToNull(entrepriseId);
+        String agentFilter = emptyToNull(agentId);
+        // Même règle que les anciens endpoints : une entreprise seule renvoie toutes ses conversations,
+        // sinon seules les conversations ACTIVE
+        ConversationStatus status = (entrepriseFilter != null && agentFilter == null) ? null : ConversationStatus.ACTIVE;
+        List<ConversationSummary> rows = inboxEntryRepository.findInbox(
+            ChatParticipantRole.AGENT, status, entrepriseFilter, agentFilter,
+            after != null ? after.getModification() : null, after != null ? after.getId() : null,
+            PageRequest.of(0, pageSize + 1))
+            .stream().map(this::toSummary).collect(Collectors.toList());
+        return toCursorPage(rows, pageSize, ConversationSummary::getModification, ConversationSummary::getId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<ConversationSummary> getAgentTriageQueue(String agentId, String cursor, int size) {
+        TriageCursor after = TriageCursor.decode(cursor);
+        int pageSize = normalizePageSize(size);
+        List<ConversationInboxEntry> rows = inboxEntryRepository.findTriageQueue(
+            agentId, ChatParticipantRole.AGENT, ConversationStatus.ACTIVE,
+            after != null ? after.getPriorityRank() : null,
+            after != null ? after.getWaitingSince() : null,
+            after != null ? after.getId() : null,
+            PageRequest.of(0, pageSize + 1));
+
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            ConversationInboxEntry last = rows.get(pageSize - 1);
+            nextCursor = new TriageCursor(last.getPriorityRank(), last.getWaitingSince(), last.getConversation().getId()).encode();
+        }
+        return new CursorPage<>(rows.stream().map(this::toSummary).collect(Collectors.toList()), nextCursor);
+    }
+
+    /**
+     * Résumé d'une ligne de boîte de réception : agent et utilisateur selon le rôle du participant
+     */
+    private ConversationSummary toSummary(ConversationInboxEntry entry) {
+        ConversationSummary summary = new ConversationSummary();
+        summary.setId(entry.getConversation().getId());
+        summary.setSubject(entry.getSubject());
+        summary.setStatus(entry.getStatus());
+        summary.setPriority(entry.getPriority());
+        summary.setCreation(entry.getConversationCreatedAt());
+        summary.setModification(entry.getConversationUpdatedAt());
+        summary.setEntrepriseId(entry.getEntrepriseId());
+        summary.setEntrepriseNom(entry.getEntrepriseNom());
+        boolean agentRow = entry.getParticipantRole() == ChatParticipantRole.AGENT;
+        summary.setAgentId(agentRow ? entry.getParticipantId() : entry.getCounterpartId());
+        summary.setAgentName(agentRow ? entry.getParticipantName() : entry.getCounterpartName());
+        summary.setUserId(agentRow ? entry.getCounterpartId() : entry.getParticipantId());
+        summary.setUserName(agentRow ? entry.getCounterpartName() : entry.getParticipantName());
+        summary.setLastMessageContent(entry.getLastMessagePreview());
+        summary.setLastMessageTime(entry.getLastMessageAt());
+        summary.setLastMessageSenderId(entry.getLastMessageSenderId());
+        summary.setUnreadCount(entry.getUnreadCount());
+        summary.setWaitingSince(entry.getWaitingSince());
+        return summary;
+    }
+
+    /**
+     * Borne la taille de page demandée par le client
+     */
+    private int normalizePageSize(int size) {
+        if (size <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(size, MAX_PAGE_SIZE);
+    }
+
+    private int normalizeSearchPageSize(int size) {
+        if (size <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(size, MAX_SEARCH_PAGE_SIZE);
+    }
+
+    private int normalizeMessageWindow(int limit) {
+        if (limit <= 0) {
+            return DEFAULT_MESSAGE_WINDOW;
+        }
+        return Math.min(limit, MAX_MESSAGE_WINDOW);
+    }
+
+    private Conversation findConversation(String conversationId) {
+        return conversationRepository.findById(conversationId)
+            .orElseThrow(() -> new NotFoundException("Conversation non trouvée"));
+    }
+
+    /**
+     * Lit la fenêtre de messages précédant le curseur (curseur null = les plus récents),
+     * renvoyée dans l'ordre chronologique. Une ligne de plus est lue pour savoir s'il reste un historique.
+     */
+    private MessageWindow readMessagesBefore(Conversation conversation, MessageCursor before, int limit) {
+        int windowSize = normalizeMessageWindow(limit);
+        List<Message> rows = readRowsBefore(conversation, before, windowSize);
+
+        boolean hasOlder = rows.size() > windowSize;
+        List<Message> window = new ArrayList<>(hasOlder ? rows.subList(0, windowSize) : rows);
+        Collections.reverse(window);
+
+        String olderCursor = hasOlder ? MessageCursor.of(window.get(0)).encode() : null;
+        // Seule la fenêtre la plus récente fournit le point de départ de la synchronisation
+        String syncCursor = (before == null && !window.isEmpty())
+            ? MessageCursor.of(window.get(window.size() - 1)).encode()
+            : null;
+
+        return new MessageWindow(mapToMessageResponses(window), olderCursor, syncCursor, false);
+    }
+
+    /**
+     * Fenêtre la plus récente : servie par le cache des conversations chaudes, sinon lue en base puis
+     * mise en cache (avec la ligne en trop, qui indique s'il reste un historique).
+     * cacheStamp : relevé avant la première lecture en base de la transaction.
+     */
+    private MessageWindow readLatestMessages(Conversation conversation, int limit, long cacheStamp) {
+        int windowSize = normalizeMessageWindow(limit);
+        MessageWindow cached = recentMessageCache.latest(conversation.getId(), conversation.getMessageCount(), windowSize);
+        if (cached != null) {
+            return cached;
+        }
+
+        List<Message> rows = new ArrayList<>(readRowsBefore(conversation, null, windowSize));
+        Collections.reverse(rows);
+        List<MessageResponse> messages = mapToMessageResponses(rows);
+        boolean hasOlder = messages.size() > windowSize;
+        recentMessageCache.fill(conversation.getId(), cacheStamp, conversation.getMessageCount(), messages, !hasOlder);
+
+        List<MessageResponse> window = hasOlder ? messages.subList(1, messages.size()) : messages;
+        String olderCursor = hasOlder ? MessageCursor.of(window.get(0)).encode() : null;
+        String syncCursor = !window.isEmpty() ? MessageCursor.of(window.get(window.size() - 1)).encode() : null;
+        return new MessageWindow(new ArrayList<>(window), olderCursor, syncCursor, false);
+    }
+
+    /**
+     * Les windowSize + 1 messages précédant le curseur (curseur null = les plus récents), du plus récent
+     * au plus ancien, messages archivés compris
+     */
+    private List<Message> readRowsBefore(Conversation conversation, MessageCursor before, int windowSize) {
+        List<Message> rows = messageRepository.findMessagesBeforeCursor(conversation.getId(),
+            before != null ? before.getCreation() : null, before != null ? before.getId() : null,
+            PageRequest.of(0, windowSize + 1));
+        if (rows.size() <= windowSize) {
+            rows = withArchivedMessagesBefore(conversation, before, rows, windowSize + 1);
+        }
+        return rows;
+    }
+
+    /**
+     * Table messages épuisée avant la fin de la fenêtre : on complète avec les messages archivés
+     * précédant le curseur (du plus récent au plus ancien, comme la requête)
+     */
+    private List<Message> withArchivedMessagesBefore(Conversation conversation, MessageCursor before,
+                                                     List<Message> rows, int max) {
+        List<Message> archived = messageArchiveService.findArchivedMessages(conversation);
+        if (archived.isEmpty()) {
+            return rows;
+        }
+        List<Message> merged = new ArrayList<>(rows);
+        for (Message message : archived) {
+            if (before == null || isBefore(message, before)) {
+                merged.add(message);
+            }
+        }
+        merged.sort(Comparator.comparing(Message::getCreation).thenComparing(Message::getId).reversed());
+        return merged.size() > max ? merged.subList(0, max) : merged;
+    }
+
+    private static boolean isBefore(Message message, MessageCursor cursor) {
+        int byCreation = message.getCreation().compareTo(cursor.getCreation());
+        return byCreation < 0 || (byCreation == 0 && message.getId().compareTo(cursor.getId()) < 0);
+    }
+
+    private List<MessageResponse> mapToMessageResponses(List<Message> messages) {
+        // États de lecture chargés une fois pour toute la liste
+        Map<String, ConversationUnreadCounter> readStates = unreadCounterService.getReadStates(
+            messages.stream().map(message -> message.getConversation().getId()).collect(Collectors.toSet()));
+        return messages.stream()
+            .map(message -> mapToMessageResponse(message, readStates))
+            .collect(Collectors.toList());
+    }
+
+    private String emptyToNull(String value) {
+        return (value == null || value.isEmpty()) ? null : value;
+    }
+
+    /**
+     * Les requêtes keyset lisent pageSize + 1 lignes : la ligne en trop indique qu'une page suivante existe,
+     * et le curseur est construit sur la dernière ligne renvoyée.
+     */
+    private <T> CursorPage<T> toCursorPage(List<T> rows, int pageSize,
+                                           Function<T, Instant> modification, Function<T, String> id) {
+        if (rows.size() <= pageSize) {
+            return new CursorPage<>(rows, null);
+        }
+        List<T> content = new ArrayList<>(rows.subList(0, pageSize));
+        T last = content.get(content.size() - 1);
+        return new CursorPage<>(content, new ConversationCursor(modification.apply(last), id.apply(last)).encode());
+    }
+
     // Méthodes de mapping privées
     private ConversationResponse mapToConversationResponse(Conversation conversation) {
+        ConversationResponse response = mapConversationHeader(conversation);
+
+        // Messages (archivés compris)
+        List<Message> messages = messageArchiveService.withArchivedMessages(conversation,
+            messageRepository.findByConversationIdOrderByCreationAsc(conversation.getId()));
+        response.setMessages(mapToMessageResponses(messages));
+
+        // Statistiques
+        response.setTotalMessages(messages.size());
+        response.setUnreadMessages(unreadCounterService.getUnreadCount(conversation.getId(), conversation.getAgent().getId()));
+
+        return response;
+    }
+
+    /**
+     * Informations de la conversation, de l'entreprise et des participants (sans les messages)
+     */
+    private ConversationResponse mapConversationHeader(Conversation conversation) {
         ConversationResponse response = new ConversationResponse();
         
         response.setId(conversation.getId());
@@ -535,29 +1206,25 @@ public class ChatServiceImpl implements ChatService {
         response.setUserNom(getFullName(conversation.getUser()));
         response.setUserEmail(conversation.getUser().getEmail());
 
-        // Messages
-        List<Message> messages = messageRepository.findByConversationIdOrderByCreationAsc(conversation.getId());
-        response.setMessages(messages.stream()
-            .map(this::mapToMessageResponse)
-            .collect(Collectors.toList()));
-
-        // Statistiques
-        response.setTotalMessages(messages.size());
-        response.setUnreadMessages((int) messageRepository.countUnreadMessagesInConversationForUser(
-            conversation.getId(), conversation.getAgent().getId()));
-
         return response;
     }
 
-    private MessageResponse mapToMessageResponse(Message message) {
+    private MessageResponse mapToMessageResponse(Message message, Map<String, ConversationUnreadCounter> readStates) {
         MessageResponse response = new MessageResponse();
         
         response.setId(message.getId());
         response.setContent(message.getContent());
         response.setMessageType(message.getMessageType().name());
-        response.setIsRead(message.getIsRead());
         response.setCreation(message.getCreation());
-        response.setReadAt(message.getReadAt());
+
+        // Lu / date de lecture déduits du filigrane de lecture du destinataire
+        Conversation conversation = message.getConversation();
+        Instant readAt = UnreadCounterService.readAtOf(message,
+            conversation.getAgent() != null ? conversation.getAgent().getId() : null,
+            conversation.getUser() != null ? conversation.getUser().getId() : null,
+            readStates);
+        response.setIsRead(readAt != null);
+        response.setReadAt(readAt);
 
         // Informations expéditeur
         if (message.getSender() != null) {
@@ -572,6 +1239,7 @@ public class ChatServiceImpl implements ChatService {
         // Données documents
         response.setDocumentName(message.getDocumentName());
         response.setDocumentUrl(message.getDocumentUrl());
+        response.setClientMessageId(message.getClientMessageId());
 
         return response;
     }
@@ -670,12 +1338,12 @@ public class ChatServiceImpl implements ChatService {
         logger.info("💬 Conversations directes de l'utilisateur: {}", userConversations.size());
         
         // 5. Tester la méthode getUserConversationsForOwnedEntreprises
-        List<ConversationResponse> foundConversations = getUserConversationsForOwnedEntreprises(userId);
+        List<ConversationSummary> foundConversations = getUserConversationsForOwnedEntreprises(userId, null, MAX_PAGE_SIZE).getContent();
         logger.info("💬 Méthode getUserConversationsForOwnedEntreprises retourne: {} conversations", 
                    foundConversations.size());
         
         boolean conversationFound = false;
-        for (ConversationResponse conv : foundConversations) {
+        for (ConversationSummary conv : foundConversations) {
             if (conv.getId().equals(conversationId)) {
                 conversationFound = true;
                 logger.info("✅ TROUVÉ: La conversation est dans les résultats");
@@ -0,0 +1,141 @@
+package abdaty_technologie.API_Invest;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.Divisions;
+import abdaty_technologie.API_Invest.Entity.Entreprise;
+import abdaty_technologie.API_Invest.Entity.EntrepriseMembre;
+import abdaty_technologie.API_Invest.Entity.Message;
+import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.Entity.Utilisateurs;
+import abdaty_technologie.API_Invest.Entity.Enum.DivisionType;
+import abdaty_technologie.API_Invest.Entity.Enum.DomaineActivites;
+import abdaty_technologie.API_Invest.Entity.Enum.EntrepriseRole;
+import abdaty_technologie.API_Invest.Entity.Enum.EtapeValidation;
+import abdaty_technologie.API_Invest.Entity.Enum.FormeJuridique;
+import abdaty_technologie.API_Invest.Entity.Enum.Roles;
+import abdaty_technologie.API_Invest.Entity.Enum.StatutCreation;
+import abdaty_technologie.API_Invest.Entity.Enum.TypeEntreprise;
+import abdaty_technologie.API_Invest.repository.ConversationRepository;
+import abdaty_technologie.API_Invest.repository.DivisionsRepository;
+import abdaty_technologie.API_Invest.repository.EntrepriseMembreRepository;
+import abdaty_technologie.API_Invest.repository.EntrepriseRepository;
+import abdaty_technologie.API_Invest.repository.MessageRepository;
+import abdaty_technologie.API_Invest.repository.PersonsRepository;
+import abdaty_technologie.API_Invest.repository.UtilisateursRepository;
+
+/**
+ * Jeu de données minimal pour les tests du chat (profil "test", base H2).
+ * Chaque appel génère des valeurs uniques pour ne pas entrer en conflit avec les contraintes d'unicité.
+ */
+@Component
+public class ChatTestData {
+
+    @Autowired
+    private PersonsRepository personsRepository;
+
+    @Autowired
+    private DivisionsRepository divisionsRepository;
+
+    @Autowired
+    private EntrepriseRepository entrepriseRepository;
+
+    @Autowired
+    private EntrepriseMembreRepository entrepriseMembreRepository;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private UtilisateursRepository utilisateursRepository;
+
+    public Persons person(String prenom, Roles role) {
+        Persons person = new Persons();
+        person.setPrenom(prenom);
+        person.setNom("Test");
+        person.setTelephone1(unique("+223"));
+        person.setRole(role);
+        return personsRepository.save(person);
+    }
+
+    public Utilisateurs account(Persons person) {
+        Utilisateurs account = new Utilisateurs();
+        account.setUtilisateur(unique("compte") + "@test.ml");
+        account.setMotdepasse("secret");
+        account.setPersonne(person);
+        return utilisateursRepository.save(account);
+    }
+
+    public Entreprise entreprise() {
+        Divisions division = new Divisions();
+        division.setCode(unique("DIV"));
+        division.setNom("Bamako");
+        division.setDivisionType(DivisionType.REGION);
+        division = divisionsRepository.save(division);
+
+        Entreprise entreprise = new Entreprise();
+        entreprise.setReference(unique("REF"));
+        entreprise.setNom(unique("Entreprise "));
+        entreprise.setCapitale(BigDecimal.valueOf(1_000_000));
+        entreprise.setActiviteSecondaire("Commerce");
+        entreprise.setAdresseDifferentIdentite(false);
+        entreprise.setExtraitJudiciaire(false);
+        entreprise.setAutorisationGerant(false);
+        entreprise.setAutorisationExercice(false);
+        entreprise.setImportExport(false);
+        entreprise.setStatutSociete(false);
+        entreprise.setTypeEntreprise(TypeEntreprise.SOCIETE);
+        entreprise.setStatutCreation(StatutCreation.EN_COURS);
+        entreprise.setEtapeValidation(EtapeValidation.ACCUEIL);
+        entreprise.setFormeJuridique(FormeJuridique.SARL);
+        entreprise.setDomaineActivite(DomaineActivites.BTP);
+        entreprise.setDivision(division);
+        return entrepriseRepository.save(entreprise);
+    }
+
+    public EntrepriseMembre member(Entreprise entreprise, Persons person) {
+        EntrepriseMembre membre = new EntrepriseMembre();
+        membre.setEntreprise(entreprise);
+        membre.setPersonne(person);
+        membre.setRole(EntrepriseRole.DIRIGEANT);
+        membre.setPourcentageParts(BigDecimal.valueOf(100));
+        membre.setDateDebut(LocalDate.of(2025, 1, 1));
+        membre.setDateFin(LocalDate.of(2030, 1, 1));
+        return entrepriseMembreRepository.save(membre);
+    }
+
+    public Conversation conversation(Entreprise entreprise, Persons agent, Persons user) {
+        return conversationRepository.save(new Conversation(entreprise, agent, user, "Dossier " + entreprise.getNom()));
+    }
+
+    public Conversation conversation(Entreprise entreprise, Persons agent, Persons user, Instant modification) {
+        Conversation conversation = new Conversation(entreprise, agent, user, "Dossier " + entreprise.getNom());
+        conversation.setModification(modification);
+        return conversationRepository.save(conversation);
+    }
+
+    public Message message(Conversation conversation, Persons sender, String content, Instant at) {
+        Message message = new Message(conversation, sender, content);
+        message.setCreation(at);
+        message.setModification(at);
+        Message saved = messageRepository.save(message);
+        // Comme l'application : la conversation porte le résumé de son dernier message
+        conversation.recordMessage(saved);
+        conversationRepository.save(conversation);
+        return saved;
+    }
+
+    private static String unique(String prefix) {
+        return prefix + UUID.randomUUID().toString().replace("-", "").substring(0, 10);
+    }
+}
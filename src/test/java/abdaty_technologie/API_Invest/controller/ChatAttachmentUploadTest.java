@@ -0,0 +1,178 @@
+package abdaty_technologie.API_Invest.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import abdaty_technologie.API_Invest.ChatTestData;
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.Message;
+import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.Entity.Enum.MessageType;
+import abdaty_technologie.API_Invest.Entity.Enum.Roles;
+import abdaty_technologie.API_Invest.repository.MessageRepository;
+
+/**
+ * Vérifie le téléversement par morceaux : reprise à l'offset reçu, rejet des morceaux corrompus,
+ * message DOCUMENT_UPLOAD à la fin et téléchargement réservé aux participants.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ChatAttachmentUploadTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ChatTestData data;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Persons agent;
+    private Persons user;
+    private Conversation conversation;
+    private byte[] file;
+
+    @BeforeEach
+    void setUp() {
+        agent = data.person("Agent", Roles.AGENT_ACCEUIL);
+        user = data.person("Client", Roles.USER);
+        conversation = data.conversation(data.entreprise(), agent, user);
+        file = new byte[10_000];
+        for (int i = 0; i < file.length; i++) {
+            file[i] = (byte) (i * 31);
+        }
+    }
+
+    @Test
+    void chunkedUploadResumesAndBecomesDocumentMessage() throws Exception {
+        String uploadId = start(sha256(file)).get("uploadId").asText();
+        byte[] first = Arrays.copyOfRange(file, 0, 4_000);
+        byte[] second = Arrays.copyOfRange(file, 4_000, file.length);
+
+        chunk(uploadId, 0, first, sha256(first)).andExpect(status().isOk());
+
+        // Coupure : le client renvoie depuis 0, le serveur indique où reprendre
+        String conflict = chunk(uploadId, 0, first, null).andExpect(status().isConflict())
+            .andReturn().getResponse().getContentAsString();
+        assertThat(objectMapper.readTree(conflict).get("offset").asLong()).isEqualTo(4_000);
+
+        // Morceau corrompu en route : rejeté sans avancer l'offset
+        byte[] corrupted = second.clone();
+        corrupted[0] ^= 1;
+        chunk(uploadId, 4_000, corrupted, sha256(second)).andExpect(status().isBadRequest());
+        assertThat(uploadStatus(uploadId).get("offset").asLong()).isEqualTo(4_000);
+
+        chunk(uploadId, 4_000, second, sha256(second)).andExpect(status().isOk());
+        assertThat(uploadStatus(uploadId).get("complete").asBoolean()).isTrue();
+
+        String completed = mockMvc.perform(post("/chat/attachments/uploads/" + uploadId + "/complete"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        JsonNode message = objectMapper.readTree(completed).get("data");
+        assertThat(message.get("messageType").asText()).isEqualTo("DOCUMENT_UPLOAD");
+        assertThat(message.get("documentName").asText()).isEqualTo("statuts.pdf");
+
+        Message stored = messageRepository.findById(message.get("id").asText()).orElseThrow();
+        assertThat(stored.getMessageType()).isEqualTo(MessageType.DOCUMENT_UPLOAD);
+        assertThat(stored.getDocumentUrl()).isEqualTo("/chat/attachments/" + uploadId);
+
+        byte[] downloaded = mockMvc.perform(get(stored.getDocumentUrl()).param("participantId", agent.getId()))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsByteArray();
+        assertThat(downloaded).isEqualTo(file);
+
+        Persons stranger = data.person("Intrus", Roles.USER);
+        mockMvc.perform(get(stored.getDocumentUrl()).param("participantId", stranger.getId()))
+            .andExpect(status().isForbidden());
+        mockMvc.perform(get("/chat/attachments/uploads/" + uploadId)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void corruptedFileIsRejectedAtCompletion() throws Exception {
+        String uploadId = start(sha256(new byte[] {1, 2, 3})).get("uploadId").asText();
+        chunk(uploadId, 0, file, null).andExpect(status().isOk());
+
+        mockMvc.perform(post("/chat/attachments/uploads/" + uploadId + "/complete"))
+            .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/chat/attachments/uploads/" + uploadId)).andExpect(status().isNotFound());
+        assertThat(messageRepository.countByConversationId(conversation.getId())).isZero();
+    }
+
+    @Test
+    void invalidContentTypeIsRejectedAtStart() throws Exception {
+        Map<String, Object> request = Map.of(
+            "conversationId", conversation.getId(),
+            "senderId", user.getId(),
+            "fileName", "statuts.pdf",
+            "contentType", "pdf",
+            "size", file.length);
+        mockMvc.perform(post("/chat/attachments/uploads")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+            .andExpect(status().isBadRequest());
+    }
+
+    private JsonNode start(String sha256) throws Exception {
+        Map<String, Object> request = Map.of(
+            "conversationId", conversation.getId(),
+            "senderId", user.getId(),
+            "fileName", "statuts.pdf",
+            "contentType", "application/pdf",
+            "size", file.length,
+            "sha256", sha256);
+        String body = mockMvc.perform(post("/chat/attachments/uploads")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    private ResultActions chunk(String uploadId, long offset, byte[] bytes, String sha256) throws Exception {
+        var request = put("/chat/attachments/uploads/" + uploadId)
+            .param("offset", String.valueOf(offset))
+            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+            .content(bytes);
+        if (sha256 != null) {
+            request.header("X-Chunk-SHA256", sha256);
+        }
+        return mockMvc.perform(request);
+    }
+
+    private JsonNode uploadStatus(String uploadId) throws Exception {
+        String body = mockMvc.perform(get("/chat/attachments/uploads/" + uploadId))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    private static String sha256(byte[] bytes) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+}
@@ -0,0 +1,234 @@
+package abdaty_technologie.API_Invest.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import abdaty_technologie.API_Invest.ChatTestData;
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.Entreprise;
+import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.Entity.Enum.ConversationPriority;
+import abdaty_technologie.API_Invest.Entity.Enum.Roles;
+import abdaty_technologie.API_Invest.repository.ConversationRepository;
+import abdaty_technologie.API_Invest.service.chat.ChatPresenceRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Vérifie que la boîte de réception du chat est servie en un nombre constant de requêtes SQL,
+ * quel que soit le nombre de conversations, et qu'elle se parcourt page par page via nextCursor.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ChatControllerInboxTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ChatTestData data;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ChatPresenceRegistry presenceRegistry;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    private Statistics statistics;
+    private Persons agent;
+    private Persons user;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        agent = data.person("Agent", Roles.AGENT_ACCEUIL);
+        user = data.person("Client", Roles.USER);
+    }
+
+    @Test
+    void agentInboxUsesConstantNumberOfQueries() throws Exception {
+        seedConversations(2);
+        long fewConversations = countQueries("/api/v1/chat/conversations/agent?size=100&agentId=" + agent.getId(), 2);
+
+        seedConversations(30);
+        long manyConversations = countQueries("/api/v1/chat/conversations/agent?size=100&agentId=" + agent.getId(), 32);
+
+        assertThat(manyConversations).isEqualTo(fewConversations);
+        assertThat(manyConversations).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void userInboxReturnsLastMessageAndParticipants() throws Exception {
+        Entreprise entreprise = data.entreprise();
+        Conversation conversation = data.conversation(entreprise, agent, user);
+        data.message(conversation, agent, "Bonjour", Instant.parse("2025-01-01T10:00:00Z"));
+        data.message(conversation, user, "Merci, voici mon dossier", Instant.parse("2025-01-01T10:05:00Z"));
+        presenceRegistry.heartbeat(agent.getId());
+
+        mockMvc.perform(get("/api/v1/chat/conversations/user/" + user.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.conversations.length()").value(1))
+            .andExpect(jsonPath("$.conversations[0].id").value(conversation.getId()))
+            .andExpect(jsonPath("$.conversations[0].agentName").value("Agent Test"))
+            .andExpect(jsonPath("$.conversations[0].entrepriseNom").value(entreprise.getNom()))
+            .andExpect(jsonPath("$.conversations[0].lastMessage").value("Merci, voici mon dossier"))
+            .andExpect(jsonPath("$.conversations[0].lastMessageSender").value("USER"))
+            .andExpect(jsonPath("$.conversations[0].agentOnline").value(true))
+            .andExpect(jsonPath("$.conversations[0].userOnline").value(false));
+    }
+
+    @Test
+    void memberInboxIsOneQueryWhateverTheNumberOfEntreprises() throws Exception {
+        seedMemberConversations(2);
+        long fewEntreprises = countMemberQueries(2);
+
+        seedMemberConversations(20);
+        long manyEntreprises = countMemberQueries(22);
+
+        // Une conversation dans une entreprise dont l'utilisateur n'est pas membre n'apparaît pas
+        data.conversation(data.entreprise(), agent, user);
+        assertThat(countMemberQueries(22)).isEqualTo(manyEntreprises);
+
+        assertThat(manyEntreprises).isEqualTo(fewEntreprises);
+        assertThat(manyEntreprises).isLessThanOrEqualTo(1);
+    }
+
+    @Test
+    void agentInboxIsPaginatedWithOpaqueCursor() throws Exception {
+        Instant sameInstant = Instant.parse("2025-02-01T08:00:00Z");
+        Set<String> expected = new HashSet<>();
+        // Trois conversations partagent la même date de modification : le départage se fait sur l'id
+        // (une entreprise chacune : une seule conversation active par paire et par entreprise)
+        for (int i = 0; i < 5; i++) {
+            Instant modification = i < 3 ? sameInstant : sameInstant.minusSeconds(i * 60L);
+            expected.add(data.conversation(data.entreprise(), agent, user, modification).getId());
+        }
+
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            String url = "/api/v1/chat/conversations/agent?size=2&agentId=" + agent.getId()
+                + (cursor != null ? "&cursor=" + cursor : "");
+            MvcResult result = mockMvc.perform(get(url)).andExpect(status().isOk()).andReturn();
+            JsonNode body = objectMapper.readTree(result.getResponse().getContentAsString());
+            body.get("conversations").forEach(conversation -> seen.add(conversation.get("id").asText()));
+            cursor = body.get("nextCursor").isNull() ? null : body.get("nextCursor").asText();
+            pages++;
+        } while (cursor != null);
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(seen).hasSize(5).doesNotHaveDuplicates();
+        assertThat(new HashSet<>(seen)).isEqualTo(expected);
+    }
+
+    @Test
+    void triageQueueOrdersByPriorityThenWaitingTime() throws Exception {
+        Instant base = Instant.parse("2025-03-01T09:00:00Z");
+        Conversation normalLate = triageConversation(ConversationPriority.NORMAL);
+        data.message(normalLate, user, "Question", base.plusSeconds(3600));
+
+        // L'attente court depuis le premier message qui suit la dernière réponse de l'agent
+        Conversation normalEarly = triageConversation(ConversationPriority.NORMAL);
+        data.message(normalEarly, user, "Question", base);
+        data.message(normalEarly, agent, "Réponse", base.plusSeconds(600));
+        data.message(normalEarly, user, "Relance", base.plusSeconds(1200));
+        data.message(normalEarly, user, "Seconde relance", base.plusSeconds(1500));
+
+        Conversation urgent = triageConversation(ConversationPriority.URGENT);
+        data.message(urgent, user, "Blocage", base.plusSeconds(5400));
+
+        Conversation answered = triageConversation(ConversationPriority.HIGH);
+        data.message(answered, user, "Question", base.minusSeconds(3600));
+        data.message(answered, agent, "Réponse", base.minusSeconds(3000));
+
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            String url = "/api/v1/business-chat/conversations/agent/triage?size=2" + (cursor != null ? "&cursor=" + cursor : "");
+            MvcResult result = mockMvc.perform(get(url).with(user(agent.getId()))).andExpect(status().isOk()).andReturn();
+            JsonNode body = objectMapper.readTree(result.getResponse().getContentAsString());
+            body.get("conversations").forEach(conversation -> seen.add(conversation.get("id").asText()));
+            cursor = body.get("nextCursor").isNull() ? null : body.get("nextCursor").asText();
+        } while (cursor != null);
+
+        assertThat(seen).containsExactly(urgent.getId(), normalEarly.getId(), normalLate.getId());
+        assertThat(conversationRepository.findById(normalEarly.getId()).orElseThrow().getWaitingSince())
+            .isEqualTo(base.plusSeconds(1200));
+    }
+
+    @Test
+    void invalidCursorIsRejected() throws Exception {
+        mockMvc.perform(get("/api/v1/chat/conversations/agent?agentId=" + agent.getId() + "&cursor=pas-un-curseur"))
+            .andExpect(status().isBadRequest());
+    }
+
+    private Conversation triageConversation(ConversationPriority priority) {
+        Conversation conversation = data.conversation(data.entreprise(), agent, user);
+        conversation.setPriority(priority);
+        return conversationRepository.save(conversation);
+    }
+
+    private void seedConversations(int count) {
+        Instant base = Instant.parse("2025-01-01T00:00:00Z");
+        for (int i = 0; i < count; i++) {
+            Conversation conversation = data.conversation(data.entreprise(), agent, user);
+            data.message(conversation, user, "Question " + i, base.plusSeconds(i));
+            data.message(conversation, agent, "Réponse " + i, base.plusSeconds(i + 1));
+        }
+    }
+
+    private void seedMemberConversations(int count) {
+        for (int i = 0; i < count; i++) {
+            Entreprise entreprise = data.entreprise();
+            data.member(entreprise, user);
+            Conversation conversation = data.conversation(entreprise, agent, user);
+            data.message(conversation, agent, "Bonjour " + i, Instant.parse("2025-01-01T00:00:00Z").plusSeconds(i));
+        }
+    }
+
+    private long countMemberQueries(int expectedConversations) throws Exception {
+        statistics.clear();
+        mockMvc.perform(get("/api/v1/business-chat/conversations/user?size=100").with(user(user.getId())))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.conversations.length()").value(expectedConversations));
+        return statistics.getPrepareStatementCount();
+    }
+
+    private long countQueries(String url, int expectedConversations) throws Exception {
+        statistics.clear();
+        mockMvc.perform(get(url))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.conversations.length()").value(expectedConversations));
+        return statistics.getPrepareStatementCount();
+    }
+}
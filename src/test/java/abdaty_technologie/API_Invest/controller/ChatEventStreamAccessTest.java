@@ -0,0 +1,77 @@
+package abdaty_technologie.API_Invest.controller;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import abdaty_technologie.API_Invest.ChatTestData;
+import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.Entity.Utilisateurs;
+import abdaty_technologie.API_Invest.Entity.Enum.Roles;
+import abdaty_technologie.API_Invest.util.JwtUtil;
+
+/**
+ * Vérifie que le flux SSE d'un participant n'est ouvert qu'à ce participant : token exigé (en-tête ou
+ * paramètre access_token pour EventSource) et rattaché au compte du participant demandé.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ChatEventStreamAccessTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ChatTestData data;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    private Persons user;
+    private Utilisateurs account;
+    private Utilisateurs otherAccount;
+
+    @BeforeEach
+    void setUp() {
+        user = data.person("Client", Roles.USER);
+        account = data.account(user);
+        otherAccount = data.account(data.person("Autre", Roles.USER));
+    }
+
+    @Test
+    void streamRequiresToken() throws Exception {
+        mockMvc.perform(get("/chat/events").param("participantId", user.getId())
+                .accept(MediaType.TEXT_EVENT_STREAM))
+            .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void streamIsRefusedToAnotherAccount() throws Exception {
+        mockMvc.perform(get("/chat/events").param("participantId", user.getId())
+                .param("access_token", tokenOf(otherAccount))
+                .accept(MediaType.TEXT_EVENT_STREAM))
+            .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void participantOpensOwnStreamWithQueryToken() throws Exception {
+        mockMvc.perform(get("/chat/events").param("participantId", user.getId())
+                .param("access_token", tokenOf(account))
+                .accept(MediaType.TEXT_EVENT_STREAM))
+            .andExpect(request().asyncStarted());
+    }
+
+    private String tokenOf(Utilisateurs utilisateur) {
+        return jwtUtil.generateToken(utilisateur.getUtilisateur(), "USER");
+    }
+}
@@ -0,0 +1,135 @@
+package abdaty_technologie.API_Invest.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import abdaty_technologie.API_Invest.ChatTestData;
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.Message;
+import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.Entity.Enum.Roles;
+import abdaty_technologie.API_Invest.repository.MessageRepository;
+
+/**
+ * Vérifie la recherche plein texte des messages : insensible aux accents, limitée aux conversations
+ * du participant, classée par pertinence et paginée, à jour des messages modifiés ou supprimés.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ChatMessageSearchTest {
+
+    private static final Instant BASE = Instant.parse("2025-04-01T09:00:00Z");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ChatTestData data;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    private Persons agent;
+    private Persons user;
+    private Persons otherUser;
+    private Conversation conversation;
+    private Conversation otherConversation;
+
+    @BeforeEach
+    void setUp() {
+        agent = data.person("Agent", Roles.AGENT_ACCEUIL);
+        user = data.person("Client", Roles.USER);
+        otherUser = data.person("Autre", Roles.USER);
+        conversation = data.conversation(data.entreprise(), agent, user);
+        otherConversation = data.conversation(data.entreprise(), agent, otherUser);
+
+        data.message(conversation, user, "Les statuts de la société sont prêts", BASE);
+        data.message(conversation, agent, "Merci, nos équipes vérifient le dossier", BASE.plusSeconds(1));
+        data.message(conversation, user, "Quel délai pour l'immatriculation ?", BASE.plusSeconds(2));
+        data.message(otherConversation, otherUser, "Les équipes du guichet sont absentes", BASE.plusSeconds(3));
+    }
+
+    @Test
+    void searchIgnoresAccentsAndCase() throws Exception {
+        JsonNode result = search(user, "EQUIPE", "");
+        assertThat(result.get("messages")).hasSize(1);
+        assertThat(result.get("messages").get(0).get("content").asText()).contains("nos équipes");
+        assertThat(result.get("messages").get(0).get("conversationId").asText()).isEqualTo(conversation.getId());
+
+        assertThat(search(user, "delai immatriculation", "").get("totalHits").asLong()).isEqualTo(1);
+    }
+
+    @Test
+    void searchIsLimitedToParticipantConversations() throws Exception {
+        assertThat(search(otherUser, "équipes", "").get("messages")).hasSize(1);
+        assertThat(search(agent, "équipes", "").get("totalHits").asLong()).isEqualTo(2);
+
+        mockMvc.perform(get("/chat/search?participantId=" + otherUser.getId() + "&q=statuts&conversationId=" + conversation.getId()))
+            .andExpect(status().isNotFound());
+        mockMvc.perform(get("/chat/search").param("participantId", user.getId()).param("q", " "))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void resultsArePagedByRelevanceThenRecency() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            data.message(conversation, user, "Dossier numéro " + i, BASE.plusSeconds(10 + i));
+        }
+        data.message(conversation, agent, "Dossier, dossier, toujours le dossier", BASE.plusSeconds(5));
+
+        List<String> contents = new ArrayList<>();
+        JsonNode first = search(user, "dossier", "&size=4");
+        assertThat(first.get("totalHits").asLong()).isEqualTo(7);
+        assertThat(first.get("hasMore").asBoolean()).isTrue();
+        first.get("messages").forEach(message -> contents.add(message.get("content").asText()));
+
+        JsonNode second = search(user, "dossier", "&size=4&page=1");
+        assertThat(second.get("hasMore").asBoolean()).isFalse();
+        second.get("messages").forEach(message -> contents.add(message.get("content").asText()));
+
+        assertThat(contents).hasSize(7).doesNotHaveDuplicates();
+        assertThat(contents.get(0)).isEqualTo("Dossier, dossier, toujours le dossier");
+    }
+
+    @Test
+    void editedAndDeletedMessagesAreReindexed() throws Exception {
+        Message message = data.message(conversation, user, "Le capital social est versé", BASE.plusSeconds(4));
+        assertThat(search(user, "capital", "").get("totalHits").asLong()).isEqualTo(1);
+
+        // Contenu modifié : l'ancien texte n'est plus trouvé, le nouveau l'est
+        message.setContent("Le bilan annuel est déposé");
+        messageRepository.save(message);
+        assertThat(search(user, "capital", "").get("totalHits").asLong()).isZero();
+        assertThat(search(user, "bilan", "").get("totalHits").asLong()).isEqualTo(1);
+
+        messageRepository.delete(message);
+        assertThat(search(user, "bilan", "").get("totalHits").asLong()).isZero();
+    }
+
+    private JsonNode search(Persons participant, String query, String extra) throws Exception {
+        String body = mockMvc.perform(get("/chat/search?participantId=" + participant.getId() + "&q=" + query + extra))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+}
@@ -0,0 +1,163 @@
+package abdaty_technologie.API_Invest.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import abdaty_technologie.API_Invest.ChatTestData;
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.Entity.Enum.Roles;
+import abdaty_technologie.API_Invest.dto.chat.MessageRequest;
+import abdaty_technologie.API_Invest.dto.chat.MessageWindow;
+import abdaty_technologie.API_Invest.service.ChatService;
+import abdaty_technologie.API_Invest.service.chat.RecentMessageCache;
+
+/**
+ * Vérifie le détail de conversation limité aux derniers messages, le chargement de l'historique
+ * par curseur et la synchronisation incrémentale (seuls les nouveaux messages sont renvoyés),
+ * y compris lorsque la fenêtre récente est servie par le cache des derniers messages.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ChatMessageWindowTest {
+
+    private static final Instant BASE = Instant.parse("2025-03-01T09:00:00Z");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ChatTestData data;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private RecentMessageCache recentMessageCache;
+
+    private Persons agent;
+    private Persons user;
+    private Conversation conversation;
+
+    @BeforeEach
+    void setUp() {
+        agent = data.person("Agent", Roles.AGENT_ACCEUIL);
+        user = data.person("Client", Roles.USER);
+        conversation = data.conversation(data.entreprise(), agent, user);
+        // Les messages 3 et 4 ont le même instant : le départage se fait sur l'id
+        for (int i = 0; i < 7; i++) {
+            Instant at = i == 4 ? BASE.plusSeconds(3) : BASE.plusSeconds(i);
+            data.message(conversation, i % 2 == 0 ? user : agent, "Message " + i, at);
+        }
+    }
+
+    @Test
+    void detailReturnsNewestWindowAndOlderPagesWalkWholeHistory() throws Exception {
+        JsonNode detail = getJson("/chat/conversations/" + conversation.getId() + "?limit=3");
+        assertThat(detail.get("messages")).hasSize(3);
+        assertThat(detail.get("messages").get(2).get("content").asText()).isEqualTo("Message 6");
+
+        List<String> seen = new ArrayList<>();
+        detail.get("messages").forEach(message -> seen.add(0, message.get("id").asText()));
+
+        String olderCursor = detail.get("olderCursor").asText();
+        int pages = 1;
+        while (olderCursor != null) {
+            JsonNode page = getJson("/chat/conversations/" + conversation.getId() + "/messages/before?limit=3"
+                + "&participantId=" + user.getId() + "&cursor=" + olderCursor);
+            List<String> ids = new ArrayList<>();
+            page.get("messages").forEach(message -> ids.add(message.get("id").asText()));
+            for (int i = ids.size() - 1; i >= 0; i--) {
+                seen.add(ids.get(i));
+            }
+            olderCursor = page.get("olderCursor").isNull() ? null : page.get("olderCursor").asText();
+            pages++;
+        }
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(seen).hasSize(7).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void sinceReturnsOnlyNewMessages() throws Exception {
+        JsonNode detail = getJson("/chat/conversations/" + conversation.getId() + "?limit=5");
+        String syncCursor = detail.get("syncCursor").asText();
+        String sinceUrl = "/chat/conversations/" + conversation.getId() + "/messages/since?participantId=" + agent.getId();
+
+        JsonNode nothingNew = getJson(sinceUrl + "&cursor=" + syncCursor);
+        assertThat(nothingNew.get("messages")).isEmpty();
+        assertThat(nothingNew.get("syncCursor").asText()).isEqualTo(syncCursor);
+
+        data.message(conversation, user, "Nouveau message", BASE.plusSeconds(60));
+
+        JsonNode delta = getJson(sinceUrl + "&cursor=" + syncCursor);
+        assertThat(delta.get("messages")).hasSize(1);
+        assertThat(delta.get("messages").get(0).get("content").asText()).isEqualTo("Nouveau message");
+        assertThat(delta.get("messages").get(0).get("senderType").asText()).isEqualTo("USER");
+        assertThat(delta.get("syncCursor").asText()).isNotEqualTo(syncCursor);
+        assertThat(delta.get("hasMore").asBoolean()).isFalse();
+    }
+
+    @Test
+    void recentWindowIsServedFromCacheAndFollowsSendsAndReads() throws Exception {
+        String detailUrl = "/chat/conversations/" + conversation.getId() + "?limit=3";
+        JsonNode first = getJson(detailUrl);
+        long hitsBefore = (Long) recentMessageCache.getStats().get("hits");
+
+        // Deuxième lecture : même fenêtre, servie par le cache
+        JsonNode second = getJson(detailUrl);
+        assertThat(second.get("messages")).isEqualTo(first.get("messages"));
+        assertThat(second.get("olderCursor")).isEqualTo(first.get("olderCursor"));
+        assertThat((Long) recentMessageCache.getStats().get("hits")).isGreaterThan(hitsBefore);
+
+        // Un envoi complète le tampon : la synchronisation le voit sans relire la base
+        MessageRequest request = new MessageRequest("Réponse de l'agent");
+        chatService.sendMessage(conversation.getId(), request, agent.getId());
+        JsonNode delta = getJson("/chat/conversations/" + conversation.getId() + "/messages/since?participantId="
+            + user.getId() + "&cursor=" + first.get("syncCursor").asText());
+        assertThat(delta.get("messages")).hasSize(1);
+        assertThat(delta.get("messages").get(0).get("content").asText()).isEqualTo("Réponse de l'agent");
+
+        MessageWindow latest = chatService.getLatestMessages(conversation.getId(), 3);
+        assertThat(latest.getMessages().get(2).getContent()).isEqualTo("Réponse de l'agent");
+        assertThat(latest.getMessages().get(2).getIsRead()).isFalse();
+
+        // La lecture change isRead : la conversation sort du cache et la fenêtre suivante est à jour
+        chatService.markConversationAsRead(conversation.getId(), user.getId());
+        assertThat(chatService.getLatestMessages(conversation.getId(), 3).getMessages().get(2).getIsRead()).isTrue();
+    }
+
+    @Test
+    void nonParticipantIsRejected() throws Exception {
+        Persons stranger = data.person("Inconnu", Roles.USER);
+        mockMvc.perform(get("/chat/conversations/" + conversation.getId() + "/messages/since?participantId=" + stranger.getId()))
+            .andExpect(status().isForbidden());
+    }
+
+    private JsonNode getJson(String url) throws Exception {
+        String body = mockMvc.perform(get(url))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+}
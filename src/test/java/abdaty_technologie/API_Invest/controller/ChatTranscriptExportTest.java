@@ -0,0 +1,153 @@
+package abdaty_technologie.API_Invest.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import abdaty_technologie.API_Invest.ChatTestData;
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.Message;
+import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.Entity.Enum.Roles;
+import abdaty_technologie.API_Invest.repository.ConversationRepository;
+import abdaty_technologie.API_Invest.repository.MessageRepository;
+import abdaty_technologie.API_Invest.service.chat.MessageArchiveService;
+
+/**
+ * Vérifie l'export en flux d'une conversation : messages archivés puis table messages sur plusieurs
+ * pages, dans l'ordre chronologique, et l'échappement CSV.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ChatTranscriptExportTest {
+
+    private static final Instant BASE = Instant.parse("2025-01-10T09:00:00Z");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ChatTestData data;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private MessageArchiveService archiveService;
+
+    private Persons agent;
+    private Persons user;
+    private Conversation conversation;
+
+    @BeforeEach
+    void setUp() {
+        agent = data.person("Agent", Roles.AGENT_ACCEUIL);
+        user = data.person("Client", Roles.USER);
+        conversation = data.conversation(data.entreprise(), agent, user);
+    }
+
+    @Test
+    void jsonLinesExportWalksArchiveThenAllPages() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            data.message(conversation, user, "Archivé " + i, BASE.plusSeconds(i));
+        }
+        Conversation managed = conversationRepository.findById(conversation.getId()).orElseThrow();
+        managed.close();
+        managed.setClosedAt(Instant.now().minus(Duration.ofDays(100)));
+        conversationRepository.save(managed);
+        archiveService.archiveClosedConversations();
+        assertThat(archiveService.countArchivedMessages(conversation.getId())).isEqualTo(3);
+
+        // Plus de deux pages d'export dans la table messages
+        List<Message> live = new ArrayList<>();
+        for (int i = 0; i < 1_102; i++) {
+            Message message = new Message(conversation, i % 2 == 0 ? agent : user, "Message " + i);
+            message.setCreation(BASE.plusSeconds(3_600 + i));
+            message.setModification(message.getCreation());
+            live.add(message);
+        }
+        messageRepository.saveAll(live);
+
+        String body = export("jsonl", agent.getId());
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(1_105);
+
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertThat(first.get("content").asText()).isEqualTo("Archivé 0");
+        assertThat(first.get("senderRole").asText()).isEqualTo("USER");
+        assertThat(first.get("senderName").asText()).isEqualTo("Client Test");
+        assertThat(objectMapper.readTree(lines[3]).get("content").asText()).isEqualTo("Message 0");
+        assertThat(objectMapper.readTree(lines[3]).get("senderRole").asText()).isEqualTo("AGENT");
+        assertThat(objectMapper.readTree(lines[1_104]).get("content").asText()).isEqualTo("Message 1101");
+
+        Instant previous = Instant.MIN;
+        for (String line : lines) {
+            Instant at = Instant.parse(objectMapper.readTree(line).get("date").asText());
+            assertThat(at).isAfter(previous);
+            previous = at;
+        }
+    }
+
+    @Test
+    void csvExportEscapesContent() throws Exception {
+        data.message(conversation, user, "Bonjour, voici \"mon\" dossier\nà compléter", BASE);
+        data.message(conversation, agent, "Bien reçu", BASE.plusSeconds(1));
+
+        String body = export("csv", user.getId());
+
+        assertThat(body).startsWith("date,expediteur_id,expediteur,role,type,contenu,document\r\n");
+        assertThat(body).contains(",Client Test,USER,TEXT,\"Bonjour, voici \"\"mon\"\" dossier\nà compléter\",\r\n");
+        assertThat(body).endsWith(",Agent Test,AGENT,TEXT,Bien reçu,\r\n");
+    }
+
+    @Test
+    void exportIsRestrictedToParticipantsAndKnownFormats() throws Exception {
+        Persons other = data.person("Autre", Roles.USER);
+        mockMvc.perform(get(exportUrl("csv", other.getId()))).andExpect(status().isForbidden());
+        mockMvc.perform(get(exportUrl("pdf", user.getId()))).andExpect(status().isBadRequest());
+    }
+
+    private String export(String format, String participantId) throws Exception {
+        MvcResult started = mockMvc.perform(get(exportUrl(format, participantId)))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(started))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Disposition",
+                "attachment; filename=\"conversation-" + conversation.getId() + "." + format + "\""))
+            .andReturn();
+        return result.getResponse().getContentAsString(StandardCharsets.UTF_8);
+    }
+
+    private String exportUrl(String format, String participantId) {
+        return "/chat/conversations/" + conversation.getId() + "/export?format=" + format + "&participantId=" + participantId;
+    }
+}
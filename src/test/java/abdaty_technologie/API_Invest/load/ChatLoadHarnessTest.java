@@ -0,0 +1,239 @@
+package abdaty_technologie.API_Invest.load;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import abdaty_technologie.API_Invest.ChatTestData;
+import abdaty_technologie.API_Invest.Entity.Entreprise;
+import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.Entity.Enum.Roles;
+
+/**
+ * Banc de charge du chat sur le profil test (H2), à travers les vrais contrôleurs (MockMvc, filtres compris).
+ *
+ * N agents et M utilisateurs : chaque utilisateur est contacté par un agent (start-agent), puis à chaque
+ * tour il écrit, l'agent consulte sa boîte, ouvre la conversation, la marque lue et répond, et
+ * l'utilisateur consulte sa boîte. Rapport par opération : débit, latences p50/p95/p99 et nombre moyen
+ * de requêtes SQL (comptées par SqlStatementCounter dans le thread de la requête).
+ *
+ * Désactivé par défaut :
+ *   mvn test -Dtest=ChatLoadHarnessTest -Dchat.load=true
+ *     [-Dchat.load.agents=5] [-Dchat.load.users=50] [-Dchat.load.rounds=20] [-Dchat.load.threads=16]
+ *
+ * Les journaux applicatifs sont réduits à WARN : sinon la console mesure plus que le chat.
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:transmali_load;DB_CLOSE_DELAY=-1;MODE=MySQL;NON_KEYWORDS=YEAR,VALUE",
+    "spring.jpa.properties.hibernate.session_factory.statement_inspector=abdaty_technologie.API_Invest.load.SqlStatementCounter",
+    "app.rate-limit.capacity=1000000000",
+    "app.rate-limit.refill-tokens=1000000000",
+    "logging.level.abdaty_technologie=WARN",
+    "logging.level.org.springframework.security=WARN"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "chat.load", matches = "true")
+class ChatLoadHarnessTest {
+
+    private static final String[] OPERATIONS = {
+        "startConversation", "userSend", "agentInbox", "agentOpen", "agentMarkRead", "agentReply", "userInbox"
+    };
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ChatTestData data;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Map<String, OperationStats> stats = new ConcurrentHashMap<>();
+
+    @Test
+    void runChatLoad() throws Exception {
+        int agentCount = Integer.getInteger("chat.load.agents", 5);
+        int userCount = Integer.getInteger("chat.load.users", 50);
+        int rounds = Integer.getInteger("chat.load.rounds", 20);
+        int threads = Integer.getInteger("chat.load.threads", Math.min(userCount, 16));
+
+        List<Persons> agents = new ArrayList<>();
+        for (int i = 0; i < agentCount; i++) {
+            agents.add(data.person("Agent" + i, Roles.AGENT_ACCEUIL));
+        }
+        List<Persons> users = new ArrayList<>();
+        List<Entreprise> entreprises = new ArrayList<>();
+        for (int i = 0; i < userCount; i++) {
+            users.add(data.person("Client" + i, Roles.USER));
+            entreprises.add(data.entreprise());
+        }
+        for (String operation : OPERATIONS) {
+            stats.put(operation, new OperationStats());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        long startedAt;
+        long elapsedNanos;
+        try {
+            List<Future<?>> sessions = new ArrayList<>();
+            for (int i = 0; i < userCount; i++) {
+                Persons agent = agents.get(i % agentCount);
+                Persons user = users.get(i);
+                Entreprise entreprise = entreprises.get(i);
+                sessions.add(executor.submit(() -> {
+                    start.await();
+                    runSession(agent, user, entreprise, rounds);
+                    return null;
+                }));
+            }
+            startedAt = System.nanoTime();
+            start.countDown();
+            for (Future<?> session : sessions) {
+                session.get();
+            }
+            elapsedNanos = System.nanoTime() - startedAt;
+        } finally {
+            executor.shutdown();
+        }
+
+        report(agentCount, userCount, rounds, threads, elapsedNanos);
+        long errors = stats.values().stream().mapToLong(operation -> operation.errors).sum();
+        assertThat(errors).as("opérations en erreur").isZero();
+    }
+
+    private void runSession(Persons agent, Persons user, Entreprise entreprise, int rounds) throws Exception {
+        MvcResult started = call("startConversation", post("/chat/conversations/start-agent")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(json(Map.of("agentId", agent.getId(), "userId", user.getId(), "entrepriseId", entreprise.getId(),
+                                 "subject", "Charge", "message", "Bonjour, votre dossier est en cours"))));
+        if (started == null) {
+            return;
+        }
+        String conversationId = objectMapper.readTree(started.getResponse().getContentAsString()).get("conversationId").asText();
+
+        for (int round = 0; round < rounds; round++) {
+            call("userSend", post("/chat/conversations/" + conversationId + "/messages")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json(Map.of("senderId", user.getId(), "content", "Question " + round))));
+            call("agentInbox", get("/api/v1/chat/conversations/agent").param("agentId", agent.getId()).param("size", "20"));
+            call("agentOpen", get("/chat/conversations/" + conversationId).param("limit", "20"));
+            call("agentMarkRead", patch("/api/v1/business-chat/conversations/" + conversationId + "/mark-as-read")
+                .with(user(agent.getId())));
+            call("agentReply", post("/chat/conversations/" + conversationId + "/messages")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json(Map.of("senderId", agent.getId(), "content", "Réponse " + round))));
+            call("userInbox", get("/chat/conversations/user/" + user.getId()));
+        }
+    }
+
+    /**
+     * Exécute une requête et enregistre sa latence et ses requêtes SQL ; null si elle a échoué
+     */
+    private MvcResult call(String operation, RequestBuilder request) {
+        OperationStats operationStats = stats.get(operation);
+        SqlStatementCounter.reset();
+        long start = System.nanoTime();
+        try {
+            MvcResult result = mockMvc.perform(request).andReturn();
+            long latency = System.nanoTime() - start;
+            boolean success = result.getResponse().getStatus() < 400;
+            operationStats.record(latency, SqlStatementCounter.get(), success);
+            return success ? result : null;
+        } catch (Exception e) {
+            operationStats.record(System.nanoTime() - start, SqlStatementCounter.get(), false);
+            return null;
+        }
+    }
+
+    private String json(Map<String, String> body) throws Exception {
+        return objectMapper.writeValueAsString(body);
+    }
+
+    private void report(int agentCount, int userCount, int rounds, int threads, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long total = stats.values().stream().mapToLong(operation -> operation.count()).sum();
+        System.out.printf("%n📊 Charge chat : %d agents, %d utilisateurs, %d tours, %d threads — %d opérations en %.1f s (%.0f op/s)%n",
+                          agentCount, userCount, rounds, threads, total, seconds, total / seconds);
+        System.out.printf("   %-18s %8s %7s %9s %9s %9s %9s %8s%n",
+                          "opération", "nombre", "erreurs", "op/s", "p50 ms", "p95 ms", "p99 ms", "SQL/op");
+        for (String operation : OPERATIONS) {
+            OperationStats operationStats = stats.get(operation);
+            long[] latencies = operationStats.sortedLatencies();
+            System.out.printf("   %-18s %8d %7d %9.0f %9.2f %9.2f %9.2f %8.1f%n",
+                              operation, latencies.length, operationStats.errors, latencies.length / seconds,
+                              percentile(latencies, 0.50), percentile(latencies, 0.95), percentile(latencies, 0.99),
+                              operationStats.sqlPerOperation());
+        }
+        System.out.println();
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    /**
+     * Latences et requêtes SQL d'une opération, alimentées par tous les threads
+     */
+    private static final class OperationStats {
+        private long[] latencies = new long[1024];
+        private int size;
+        private long sqlStatements;
+        private long errors;
+
+        synchronized void record(long latencyNanos, int statements, boolean success) {
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = latencyNanos;
+            sqlStatements += statements;
+            if (!success) {
+                errors++;
+            }
+        }
+
+        synchronized int count() {
+            return size;
+        }
+
+        synchronized long[] sortedLatencies() {
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        synchronized double sqlPerOperation() {
+            return size == 0 ? 0 : (double) sqlStatements / size;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package abdaty_technologie.API_Invest.load;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Compte les requêtes SQL préparées par Hibernate dans le thread courant.
+ *
+ * MockMvc traite la requête dans le thread de l'appelant : remettre le compteur à zéro avant l'appel
+ * et le lire après donne le nombre de requêtes de l'opération, même sous charge concurrente.
+ * Activé par hibernate.session_factory.statement_inspector.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+
+    public static void reset() {
+        COUNT.get()[0] = 0;
+    }
+
+    public static int get() {
+        return COUNT.get()[0];
+    }
+}
@@ -0,0 +1,142 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import abdaty_technologie.API_Invest.ChatTestData;
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.Entreprise;
+import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.Entity.Enum.Roles;
+import abdaty_technologie.API_Invest.controller.ChatConversationController;
+import abdaty_technologie.API_Invest.dto.chat.ConversationRequest;
+import abdaty_technologie.API_Invest.repository.ConversationRepository;
+import abdaty_technologie.API_Invest.service.ChatService;
+
+/**
+ * Vérifie le dédoublonnage des conversations actives par clé de paire : démarrages concurrents,
+ * ordre agent/utilisateur indifférent, nouvelle conversation possible une fois la précédente fermée,
+ * messages de démarrage envoyés comme tout autre message.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ActiveConversationServiceTest {
+
+    @Autowired
+    private ChatTestData data;
+
+    @Autowired
+    private ActiveConversationService activeConversationService;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ChatConversationController conversationController;
+
+    private Persons agent;
+    private Persons user;
+    private Entreprise entreprise;
+
+    @BeforeEach
+    void setUp() {
+        agent = data.person("Agent", Roles.AGENT_ACCEUIL);
+        user = data.person("Client", Roles.USER);
+        entreprise = data.entreprise();
+    }
+
+    @Test
+    void concurrentStartsShareOneActiveConversation() throws Exception {
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<ActiveConversationService.Result>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return activeConversationService.getOrCreate(new Conversation(entreprise, agent, user, "Démarrage"));
+                }));
+            }
+            start.countDown();
+
+            Set<String> ids = new HashSet<>();
+            int created = 0;
+            for (Future<ActiveConversationService.Result> result : results) {
+                ids.add(result.get().getConversation().getId());
+                created += result.get().isCreated() ? 1 : 0;
+            }
+            assertThat(ids).hasSize(1);
+            assertThat(created).isEqualTo(1);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM conversations WHERE entreprise_id = ? AND status = 'ACTIVE'", Long.class, entreprise.getId()))
+            .isEqualTo(1);
+    }
+
+    @Test
+    void pairKeyIgnoresRolesAndIsReleasedOnClose() {
+        ConversationRequest request = new ConversationRequest();
+        request.setEntrepriseId(entreprise.getId());
+        request.setUserId(user.getId());
+        request.setSubject("Statuts");
+        request.setInitialMessage("Bonjour");
+        String first = chatService.createConversation(request, agent.getId()).getId();
+        assertThat(chatService.createConversation(request, agent.getId()).getId()).isEqualTo(first);
+
+        // Même paire, rôles inversés : même clé
+        String key = Conversation.activePairKey(entreprise.getId(), user.getId(), agent.getId());
+        assertThat(conversationRepository.findByActivePairKey(key)).get()
+            .extracting(Conversation::getId).isEqualTo(first);
+
+        chatService.closeConversation(first, agent.getId());
+        assertThat(conversationRepository.findByActivePairKey(key)).isEmpty();
+
+        String second = chatService.createConversation(request, agent.getId()).getId();
+        assertThat(second).isNotEqualTo(first);
+        assertThat(conversationRepository.findByActivePairKey(key)).get()
+            .extracting(Conversation::getId).isEqualTo(second);
+    }
+
+    @Test
+    void agentStartMessagesKeepConversationSummaryInStep() {
+        Map<String, String> request = Map.of("agentId", agent.getId(), "userId", user.getId(),
+                                             "entrepriseId", entreprise.getId(), "message", "Bonjour");
+        String conversationId = (String) conversationController.startAgentConversation(request).getBody().get("conversationId");
+
+        // Reprise de la conversation active : le second message passe lui aussi par l'envoi verrouillé
+        Map<String, String> followUp = Map.of("agentId", agent.getId(), "userId", user.getId(),
+                                              "entrepriseId", entreprise.getId(), "message", "Vos statuts sont prêts");
+        assertThat(conversationController.startAgentConversation(followUp).getBody().get("conversationId"))
+            .isEqualTo(conversationId);
+
+        Conversation conversation = conversationRepository.findById(conversationId).orElseThrow();
+        assertThat(conversation.getMessageCount()).isEqualTo(2);
+        assertThat(conversation.getLastMessagePreview()).isEqualTo("Vos statuts sont prêts");
+    }
+}
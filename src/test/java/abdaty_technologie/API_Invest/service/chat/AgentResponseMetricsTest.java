@@ -0,0 +1,126 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import abdaty_technologie.API_Invest.ChatTestData;
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.Entity.Enum.Roles;
+import abdaty_technologie.API_Invest.dto.chat.AgentWorkload;
+import abdaty_technologie.API_Invest.dto.chat.MessageRequest;
+import abdaty_technologie.API_Invest.repository.ConversationRepository;
+import abdaty_technologie.API_Invest.service.ChatService;
+
+/**
+ * Vérifie les délais de réponse des agents tenus à jour à l'envoi : première réponse, réponses
+ * suivantes, conversations ouvertes, avant et après l'écriture des agrégats en base.
+ * Le nombre de conversations ouvertes suit création, fermeture et réactivation, et se recalcule.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class AgentResponseMetricsTest {
+
+    @Autowired
+    private ChatTestData data;
+
+    @Autowired
+    private AgentResponseMetrics metrics;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void agentRepliesUpdateResponseTimesAndWorkload() {
+        Persons agent = data.person("Agent", Roles.AGENT_ACCEUIL);
+        Persons user = data.person("Client", Roles.USER);
+        Conversation conversation = data.conversation(data.entreprise(), agent, user);
+
+        // L'utilisateur attend depuis 10 minutes, l'agent répond : première réponse
+        data.message(conversation, user, "Bonjour", Instant.now().minus(Duration.ofMinutes(10)));
+        send(conversation, agent, "Bonjour, que puis-je faire ?");
+        assertThat(conversationRepository.findById(conversation.getId()).orElseThrow().getFirstResponseAt()).isNotNull();
+
+        // Seconde réponse immédiate ; un second message de l'agent sans attente n'est pas une réponse
+        Conversation reloaded = conversationRepository.findById(conversation.getId()).orElseThrow();
+        data.message(reloaded, user, "Merci", Instant.now());
+        send(reloaded, agent, "Avec plaisir");
+        send(reloaded, agent, "Autre chose ?");
+
+        AgentWorkload beforeFlush = workloadOf(agent);
+        assertThat(beforeFlush.getOpenConversations()).isEqualTo(1);
+        assertThat(beforeFlush.getFirstResponseCount()).isEqualTo(1);
+        assertThat(beforeFlush.getAverageFirstResponseSeconds()).isBetween(590.0, 700.0);
+        assertThat(beforeFlush.getFirstResponseP50Seconds()).isBetween(576L, 639L);
+        assertThat(beforeFlush.getReplyCount()).isEqualTo(2);
+        assertThat(beforeFlush.getReplyP99Seconds()).isBetween(576L, 639L);
+        assertThat(beforeFlush.getMaxReplySeconds()).isBetween(590L, 700L);
+
+        // Après écriture en base les valeurs sont identiques, et une réponse suivante s'y ajoute
+        assertThat(metrics.flush()).isPositive();
+        AgentWorkload afterFlush = workloadOf(agent);
+        assertThat(afterFlush.getReplyCount()).isEqualTo(2);
+        assertThat(afterFlush.getFirstResponseP50Seconds()).isEqualTo(beforeFlush.getFirstResponseP50Seconds());
+        assertThat(afterFlush.getAverageReplySeconds()).isEqualTo(beforeFlush.getAverageReplySeconds());
+
+        reloaded = conversationRepository.findById(conversation.getId()).orElseThrow();
+        data.message(reloaded, user, "Encore une question", Instant.now());
+        send(reloaded, agent, "Je vous écoute");
+        assertThat(workloadOf(agent).getReplyCount()).isEqualTo(3);
+        metrics.flush();
+        assertThat(workloadOf(agent).getReplyCount()).isEqualTo(3);
+        assertThat(workloadOf(agent).getFirstResponseCount()).isEqualTo(1);
+    }
+
+    @Test
+    void openConversationCountFollowsConversationLifecycle() {
+        Persons agent = data.person("Agent", Roles.AGENT_ACCEUIL);
+        Persons user = data.person("Client", Roles.USER);
+        Conversation conversation = data.conversation(data.entreprise(), agent, user);
+        assertThat(workloadOf(agent).getOpenConversations()).isEqualTo(1);
+
+        // Sans conversation ouverte ni réponse, l'agent ne figure plus au tableau de bord
+        chatService.closeConversation(conversation.getId(), agent.getId());
+        assertThat(metrics.getAgentWorkloads()).noneMatch(workload -> workload.getAgentId().equals(agent.getId()));
+
+        Conversation closed = conversationRepository.findById(conversation.getId()).orElseThrow();
+        closed.reactivate();
+        conversationRepository.save(closed);
+        assertThat(workloadOf(agent).getOpenConversations()).isEqualTo(1);
+
+        // Un compteur faussé en base est corrigé par la réconciliation
+        jdbcTemplate.update("UPDATE chat_agent_response_stats SET open_conversations = 5 WHERE agent_id = ?",
+                            agent.getId());
+        assertThat(workloadOf(agent).getOpenConversations()).isEqualTo(5);
+        assertThat(metrics.reconcileOpenConversations()).isPositive();
+        assertThat(workloadOf(agent).getOpenConversations()).isEqualTo(1);
+    }
+
+    private AgentWorkload workloadOf(Persons agent) {
+        return metrics.getAgentWorkloads().stream()
+            .filter(workload -> workload.getAgentId().equals(agent.getId()))
+            .findFirst()
+            .orElseThrow();
+    }
+
+    private void send(Conversation conversation, Persons sender, String content) {
+        MessageRequest request = new MessageRequest();
+        request.setContent(content);
+        request.setMessageType("TEXT");
+        chatService.sendMessage(conversation.getId(), request, sender.getId());
+    }
+}
@@ -0,0 +1,116 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Vérifie le budget du stockage des conversations en mémoire : éviction (fermées d'abord, puis LRU),
+ * rechargement à la demande depuis le disque et métriques.
+ */
+class ChatConversationStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void evictsClosedThenLeastRecentlyUsedAndReloadsOnAccess() throws IOException {
+        ChatConversationStore store = open(3, 1_000_000);
+        store.put("conv-1", conversation("conv-1", "ACTIVE"), messages("conv-1", 2));
+        store.put("conv-2", conversation("conv-2", "CLOSED"), messages("conv-2", 1));
+        store.put("conv-3", conversation("conv-3", "ACTIVE"), messages("conv-3", 1));
+
+        // Budget dépassé : la conversation fermée part d'abord, bien que conv-1 soit plus ancienne
+        store.put("conv-4", conversation("conv-4", "ACTIVE"), messages("conv-4", 1));
+        assertThat(Files.exists(directory.resolve("conv-2.json"))).isTrue();
+
+        // Puis la moins récemment utilisée (conv-3, conv-1 vient d'être consultée)
+        store.getConversation("conv-1");
+        store.put("conv-5", conversation("conv-5", "ACTIVE"), messages("conv-5", 1));
+        assertThat(Files.exists(directory.resolve("conv-3.json"))).isTrue();
+        assertThat(store.size()).isEqualTo(5);
+
+        // Rechargement transparent, modifications comprises
+        assertThat(store.appendMessage("conv-2", message("conv-2", "msg-extra"))).isTrue();
+        assertThat(store.getConversation("conv-2").get("status")).isEqualTo("CLOSED");
+        assertThat(store.getMessages("conv-2")).hasSize(2);
+
+        Map<String, Object> stats = store.getStats();
+        assertThat(stats.get("reloads")).isEqualTo(1L);
+        assertThat((Long) stats.get("evictions")).isGreaterThanOrEqualTo(3L);
+        assertThat((Long) stats.get("hits")).isPositive();
+        assertThat((Integer) stats.get("hotConversations")).isLessThanOrEqualTo(3);
+        assertThat(store.getConversation("inconnue")).isNull();
+
+        // Les lectures sont des copies : les modifier ne touche pas le stockage
+        store.getMessages("conv-2").clear();
+        store.getConversation("conv-2").put("status", "ACTIVE");
+        assertThat(store.getMessages("conv-2")).hasSize(2);
+        assertThat(store.getConversation("conv-2").get("status")).isEqualTo("CLOSED");
+
+        // Résumés de toutes les conversations, évincées comprises, sans relecture du disque
+        assertThat(store.getSummaries()).hasSize(5);
+        assertThat(store.getSummaries().stream().mapToInt(ChatConversationStore.Summary::getMessageCount).sum())
+            .isEqualTo(7);
+
+        // Un redémarrage retrouve les conversations évincées et leurs résumés
+        ChatConversationStore restarted = open(3, 1_000_000);
+        assertThat(restarted.getMessages("conv-3")).hasSize(1);
+        assertThat(restarted.getSummaries()).extracting(ChatConversationStore.Summary::getStatus)
+            .contains("CLOSED");
+    }
+
+    @Test
+    void respectsByteBudgetAndIdleTimeout() throws IOException {
+        ChatConversationStore store = open(100, 5_000);
+        store.put("conv-1", conversation("conv-1", "ACTIVE"), messages("conv-1", 10));
+        store.put("conv-2", conversation("conv-2", "ACTIVE"), messages("conv-2", 10));
+        assertThat((Long) store.getStats().get("estimatedBytes")).isLessThanOrEqualTo(5_000L);
+        assertThat(store.getStats().get("hotConversations")).isEqualTo(1);
+
+        ChatConversationStore idle = new ChatConversationStore(directory.resolve("idle"), 100, 1_000_000, 0);
+        idle.open();
+        idle.put("conv-1", conversation("conv-1", "ACTIVE"), messages("conv-1", 1));
+        assertThat(idle.evictIdle()).isEqualTo(1);
+        assertThat(idle.getStats().get("hotConversations")).isEqualTo(0);
+        assertThat(idle.size()).isEqualTo(1);
+    }
+
+    private ChatConversationStore open(int maxConversations, long maxBytes) throws IOException {
+        ChatConversationStore store = new ChatConversationStore(directory, maxConversations, maxBytes, 60_000);
+        store.open();
+        return store;
+    }
+
+    private Map<String, Object> conversation(String id, String status) {
+        Map<String, Object> conversation = new HashMap<>();
+        conversation.put("id", id);
+        conversation.put("status", status);
+        return conversation;
+    }
+
+    private List<Map<String, Object>> messages(String conversationId, int count) {
+        List<Map<String, Object>> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            messages.add(message(conversationId, "msg-" + i));
+        }
+        return messages;
+    }
+
+    private Map<String, Object> message(String conversationId, String id) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("id", id);
+        message.put("conversationId", conversationId);
+        message.put("content", "Contenu du message " + id);
+        return message;
+    }
+}
@@ -0,0 +1,130 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.test.context.ActiveProfiles;
+
+import abdaty_technologie.API_Invest.ChatTestData;
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.Entity.Enum.Roles;
+import abdaty_technologie.API_Invest.repository.PersonsRepository;
+import abdaty_technologie.API_Invest.service.EmailService;
+
+/**
+ * Vérifie la sélection des destinataires des récapitulatifs (âge des non-lus, présence)
+ * et qu'une nouvelle exécution ne renvoie pas les mêmes messages.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ChatDigestServiceTest {
+
+    @Autowired
+    private ChatTestData data;
+
+    @Autowired
+    private ChatDigestService digestService;
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Autowired
+    private ChatPresenceRegistry presenceRegistry;
+
+    @Autowired
+    private PersonsRepository personsRepository;
+
+    @Autowired
+    private RecordingEmailService emailService;
+
+    private Persons agent;
+    private Persons user;
+    private Conversation conversation;
+
+    @BeforeEach
+    void setUp() {
+        agent = withEmail(data.person("Agent", Roles.AGENT_ACCEUIL));
+        user = withEmail(data.person("Client", Roles.USER));
+        conversation = data.conversation(data.entreprise(), agent, user);
+    }
+
+    @Test
+    void oneDigestPerRecipientAndNoResend() {
+        Instant old = Instant.now().minus(Duration.ofHours(2));
+        data.message(conversation, agent, "Votre dossier est complet", old);
+        data.message(conversation, agent, "Merci de passer au guichet", old.plusSeconds(1));
+        // Message récent de l'utilisateur : l'agent n'a encore rien à recevoir
+        data.message(conversation, user, "Merci", Instant.now());
+        unreadCounterService.rebuildAll();
+
+        digestService.sendDigests();
+
+        assertThat(emailService.sentTo(user.getEmail())).hasSize(1);
+        assertThat(emailService.sentTo(user.getEmail()).get(0)).contains("2 message(s) non lu(s) dans 1 conversation(s)");
+        assertThat(emailService.sentTo(agent.getEmail())).isEmpty();
+
+        // Nouvelle exécution : messages déjà signalés, destinataire récemment notifié
+        digestService.sendDigests();
+        assertThat(emailService.sentTo(user.getEmail())).hasSize(1);
+    }
+
+    @Test
+    void onlineRecipientIsSkipped() {
+        data.message(conversation, agent, "Votre dossier est complet", Instant.now().minus(Duration.ofHours(2)));
+        unreadCounterService.rebuildAll();
+
+        presenceRegistry.heartbeat(user.getId());
+        digestService.sendDigests();
+        assertThat(emailService.sentTo(user.getEmail())).isEmpty();
+
+        presenceRegistry.disconnect(user.getId());
+        digestService.sendDigests();
+        assertThat(emailService.sentTo(user.getEmail())).hasSize(1);
+    }
+
+    private Persons withEmail(Persons person) {
+        person.setEmail(UUID.randomUUID() + "@example.test");
+        return personsRepository.save(person);
+    }
+
+    @TestConfiguration
+    static class EmailConfig {
+        @Bean
+        @Primary
+        RecordingEmailService recordingEmailService() {
+            return new RecordingEmailService();
+        }
+    }
+
+    static class RecordingEmailService implements EmailService {
+        private final List<String[]> sent = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void sendTo(String to, String subject, String text) {
+            sent.add(new String[] {to, subject + "\n" + text});
+        }
+
+        @Override
+        public void sendToMany(Collection<String> tos, String subject, String text) {
+            tos.forEach(to -> sendTo(to, subject, text));
+        }
+
+        List<String> sentTo(String to) {
+            return sent.stream().filter(mail -> mail[0].equals(to)).map(mail -> mail[1]).toList();
+        }
+    }
+}
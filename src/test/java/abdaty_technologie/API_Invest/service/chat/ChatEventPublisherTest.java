@@ -0,0 +1,139 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import abdaty_technologie.API_Invest.ChatTestData;
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.Entity.Enum.Roles;
+import abdaty_technologie.API_Invest.dto.chat.MessageRequest;
+import abdaty_technologie.API_Invest.service.ChatService;
+import abdaty_technologie.API_Invest.util.JwtUtil;
+
+/**
+ * Vérifie la diffusion SSE vers de nombreux abonnés simultanés (par conversation et par participant).
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class ChatEventPublisherTest {
+
+    private static final int SUBSCRIBERS_PER_STREAM = 30;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ChatTestData data;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final ExecutorService readers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @AfterEach
+    void tearDown() {
+        readers.shutdownNow();
+    }
+
+    @Test
+    void everySubscriberReceivesMessageAndCloseEvents() throws Exception {
+        Persons agent = data.person("Agent", Roles.AGENT_ACCEUIL);
+        Persons user = data.person("Client", Roles.USER);
+        Conversation conversation = data.conversation(data.entreprise(), agent, user);
+        // Flux par participant : token du compte du participant (paramètre access_token, comme EventSource)
+        String agentToken = jwtUtil.generateToken(data.account(agent).getUtilisateur(), "AGENT_ACCEUIL");
+        String userToken = jwtUtil.generateToken(data.account(user).getUtilisateur(), "USER");
+
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < SUBSCRIBERS_PER_STREAM; i++) {
+            urls.add("/chat/conversations/" + conversation.getId() + "/events?participantId=" + (i % 2 == 0 ? agent.getId() : user.getId()));
+            urls.add("/chat/events?participantId=" + (i % 2 == 0 ? agent.getId() + "&access_token=" + agentToken
+                                                                 : user.getId() + "&access_token=" + userToken));
+        }
+
+        CountDownLatch connected = new CountDownLatch(urls.size());
+        CountDownLatch messageReceived = new CountDownLatch(urls.size());
+        CountDownLatch closeReceived = new CountDownLatch(urls.size());
+        for (String url : urls) {
+            readers.execute(() -> listen(url, connected, messageReceived, closeReceived));
+        }
+        assertThat(connected.await(15, TimeUnit.SECONDS)).as("tous les abonnés sont connectés").isTrue();
+
+        MessageRequest request = new MessageRequest();
+        request.setContent("Bonjour, votre dossier est complet");
+        chatService.sendMessage(conversation.getId(), request, agent.getId());
+        assertThat(messageReceived.await(15, TimeUnit.SECONDS)).as("MESSAGE_CREATED reçu par tous").isTrue();
+
+        chatService.closeConversation(conversation.getId(), agent.getId());
+        assertThat(closeReceived.await(15, TimeUnit.SECONDS)).as("CONVERSATION_CLOSED reçu par tous").isTrue();
+    }
+
+    @Test
+    void strangerCannotSubscribeToConversation() throws Exception {
+        Persons agent = data.person("Agent", Roles.AGENT_ACCEUIL);
+        Persons user = data.person("Client", Roles.USER);
+        Persons stranger = data.person("Autre", Roles.USER);
+        Conversation conversation = data.conversation(data.entreprise(), agent, user);
+
+        HttpResponse<Void> response = client.send(
+            HttpRequest.newBuilder(uri("/chat/conversations/" + conversation.getId() + "/events?participantId=" + stranger.getId())).build(),
+            HttpResponse.BodyHandlers.discarding());
+
+        assertThat(response.statusCode()).isEqualTo(403);
+    }
+
+    private void listen(String url, CountDownLatch connected, CountDownLatch messageReceived, CountDownLatch closeReceived) {
+        HttpRequest request = HttpRequest.newBuilder(uri(url)).header("Accept", "text/event-stream").build();
+        try {
+            HttpResponse<Stream<String>> response = client.send(request, HttpResponse.BodyHandlers.ofLines());
+            try (Stream<String> lines = response.body()) {
+                lines.map(String::trim)
+                    .filter(line -> line.startsWith("event:"))
+                    .map(line -> line.substring("event:".length()).trim())
+                    .takeWhile(event -> {
+                        switch (event) {
+                            case "CONNECTED" -> connected.countDown();
+                            case "MESSAGE_CREATED" -> messageReceived.countDown();
+                            case "CONVERSATION_CLOSED" -> closeReceived.countDown();
+                            default -> { }
+                        }
+                        return !"CONVERSATION_CLOSED".equals(event);
+                    })
+                    .forEach(event -> { });
+            }
+        } catch (Exception e) {
+            // Le test échouera sur le latch correspondant
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + "/api/v1" + path);
+    }
+}
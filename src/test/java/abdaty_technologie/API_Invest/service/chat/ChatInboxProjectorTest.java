@@ -0,0 +1,146 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import abdaty_technologie.API_Invest.ChatTestData;
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.Entity.Enum.ConversationStatus;
+import abdaty_technologie.API_Invest.Entity.Enum.Roles;
+import abdaty_technologie.API_Invest.dto.chat.ConversationSummary;
+import abdaty_technologie.API_Invest.dto.chat.MessageRequest;
+import abdaty_technologie.API_Invest.repository.ConversationRepository;
+import abdaty_technologie.API_Invest.service.ChatService;
+
+/**
+ * Vérifie la tenue des boîtes de réception par l'envoi, la lecture et la fermeture,
+ * une modification écrite au commit, l'absence de recalcul pour une simple lecture,
+ * puis la détection et la correction des écarts avec les conversations.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ChatInboxProjectorTest {
+
+    @Autowired
+    private ChatTestData data;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private ChatInboxProjector inboxProjector;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Persons agent;
+    private Persons user;
+    private Conversation conversation;
+
+    @BeforeEach
+    void setUp() {
+        agent = data.person("Agent", Roles.AGENT_ACCEUIL);
+        user = data.person("Client", Roles.USER);
+        conversation = data.conversation(data.entreprise(), agent, user);
+    }
+
+    @Test
+    void entriesFollowSendReadAndClose() {
+        ConversationSummary created = inboxOf(user);
+        assertThat(created.getAgentName()).isEqualTo("Agent Test");
+        assertThat(created.getUserName()).isEqualTo("Client Test");
+        assertThat(created.getLastMessageTime()).isNull();
+
+        send(user, "Bonjour");
+        send(user, "Voici mon dossier");
+
+        ConversationSummary agentRow = inboxOf(agent);
+        assertThat(agentRow.getUnreadCount()).isEqualTo(2);
+        assertThat(agentRow.getLastMessageContent()).isEqualTo("Voici mon dossier");
+        assertThat(agentRow.getLastMessageSenderRole()).isEqualTo("USER");
+        assertThat(inboxOf(user).getUnreadCount()).isZero();
+
+        chatService.markConversationAsRead(conversation.getId(), agent.getId());
+        assertThat(inboxOf(agent).getUnreadCount()).isZero();
+
+        chatService.closeConversation(conversation.getId(), agent.getId());
+        assertThat(inboxOf(user).getStatus()).isEqualTo(ConversationStatus.CLOSED);
+        assertThat(inboxOf(agent).getStatus()).isEqualTo(ConversationStatus.CLOSED);
+    }
+
+    @Test
+    void onlyWritingTransactionsRefreshEntries() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        // Lire une conversation dans une transaction d'écriture n'engage aucun recalcul
+        transaction.executeWithoutResult(status -> {
+            conversationRepository.findById(conversation.getId()).orElseThrow();
+            assertThat(TransactionSynchronizationManager.getSynchronizations())
+                .noneMatch(synchronization -> synchronization.getClass().getEnclosingClass() == ChatInboxProjector.class);
+        });
+
+        // Une modification écrite seulement par le flush du commit est tout de même projetée
+        transaction.executeWithoutResult(status ->
+            conversationRepository.findById(conversation.getId()).orElseThrow().setSubject("Nouveau sujet"));
+        assertThat(inboxOf(user).getSubject()).isEqualTo("Nouveau sujet");
+        assertThat(inboxOf(agent).getSubject()).isEqualTo("Nouveau sujet");
+    }
+
+    @Test
+    void checkDetectsDriftAndRebuildRepairsIt() {
+        send(user, "Bonjour");
+        assertThat(inboxProjector.rebuildAll()).isZero();
+
+        // Écarts introduits directement en base : ligne périmée, ligne manquante
+        jdbcTemplate.update("UPDATE conversation_inbox_entries SET unread_count = 7, subject = 'Périmé' " +
+                            "WHERE conversation_id = ? AND participant_id = ?", conversation.getId(), agent.getId());
+        jdbcTemplate.update("DELETE FROM conversation_inbox_entries WHERE conversation_id = ? AND participant_id = ?",
+                            conversation.getId(), user.getId());
+
+        Map<String, Object> report = inboxProjector.checkConsistency();
+        assertThat(report).containsEntry("consistent", false);
+        assertThat((int) report.get("inconsistentEntries")).isGreaterThanOrEqualTo(2);
+        // La vérification n'écrit rien
+        assertThat(chatService.getConversationInbox(user.getId(), null, null, 20).getContent()).isEmpty();
+
+        assertThat(inboxProjector.rebuildAll()).isGreaterThanOrEqualTo(2);
+
+        ConversationSummary agentRow = inboxOf(agent);
+        assertThat(agentRow.getUnreadCount()).isEqualTo(1);
+        assertThat(agentRow.getSubject()).isEqualTo(conversation.getSubject());
+        assertThat(inboxOf(user).getId()).isEqualTo(conversation.getId());
+        assertThat(inboxProjector.checkConsistency()).containsEntry("consistent", true);
+    }
+
+    private ConversationSummary inboxOf(Persons participant) {
+        List<ConversationSummary> rows = chatService.getConversationInbox(participant.getId(), null, null, 20).getContent();
+        assertThat(rows).hasSize(1);
+        return rows.get(0);
+    }
+
+    private void send(Persons sender, String content) {
+        MessageRequest request = new MessageRequest();
+        request.setContent(content);
+        request.setMessageType("TEXT");
+        chatService.sendMessage(conversation.getId(), request, sender.getId());
+    }
+}
@@ -0,0 +1,177 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Vérifie la reprise du journal du chat : après un arrêt brutal (ligne à moitié écrite), après
+ * compaction en snapshot, et l'import des anciens fichiers JSON.
+ */
+class ChatJournalTest {
+
+    @TempDir
+    Path dataDirectory;
+
+    private ChatConversationStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = store();
+    }
+
+    @Test
+    void recoversAfterCrashWithTornLastEntry() throws IOException {
+        ChatJournal journal = open(ChatJournal.FsyncPolicy.ALWAYS, 1_000_000);
+        journal.recover(store);
+        createConversation(journal, "conv-1");
+        addMessage(store, journal, "conv-1", "msg-2", "Deuxième message");
+        updateStatus(journal, "conv-1", "CLOSED");
+        // Arrêt brutal : pas de close(), et une entrée interrompue au milieu de son écriture
+        Path segment = lastSegment();
+        Files.write(segment, "1234abcd\t{\"type\":\"MESSAGE_APP".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        long tornSize = Files.size(segment);
+
+        ChatConversationStore recoveredStore = store();
+        ChatJournal recovered = open(ChatJournal.FsyncPolicy.ALWAYS, 1_000_000);
+        recovered.recover(recoveredStore);
+
+        assertThat(recoveredStore.getConversation("conv-1").get("status")).isEqualTo("CLOSED");
+        assertThat(recoveredStore.getMessages("conv-1")).extracting(message -> message.get("id"))
+            .containsExactly("msg-1", "msg-2");
+        assertThat(Files.size(segment)).isLessThan(tornSize);
+
+        // Le journal reste utilisable après la reprise
+        addMessage(recoveredStore, recovered, "conv-1", "msg-3", "Après reprise");
+        recovered.close();
+
+        ChatConversationStore reloadedStore = store();
+        ChatJournal reloaded = open(ChatJournal.FsyncPolicy.NONE, 1_000_000);
+        reloaded.recover(reloadedStore);
+        reloaded.close();
+        assertThat(reloadedStore.getMessages("conv-1")).hasSize(3);
+    }
+
+    @Test
+    void snapshotCompactsSegmentsAndKeepsState() throws IOException {
+        // Segments minuscules : chaque entrée ouvre un nouveau segment
+        ChatJournal journal = open(ChatJournal.FsyncPolicy.BATCH, 64);
+        journal.recover(store);
+        createConversation(journal, "conv-1");
+        createConversation(journal, "conv-2");
+        addMessage(store, journal, "conv-2", "msg-2", "Bonjour");
+        assertThat(segments()).hasSizeGreaterThan(2);
+
+        assertThat(journal.snapshot(store)).isTrue();
+        assertThat(segments()).hasSize(1);
+        assertThat(journal.getEntriesSinceSnapshot()).isZero();
+
+        // Entrée postérieure au snapshot, puis arrêt brutal
+        updateStatus(journal, "conv-1", "CLOSED");
+        journal.flush();
+
+        ChatConversationStore recoveredStore = store();
+        ChatJournal recovered = open(ChatJournal.FsyncPolicy.BATCH, 64);
+        recovered.recover(recoveredStore);
+        recovered.close();
+
+        assertThat(recoveredStore.size()).isEqualTo(2);
+        assertThat(recoveredStore.getConversation("conv-1").get("status")).isEqualTo("CLOSED");
+        assertThat(recoveredStore.getMessages("conv-2")).hasSize(2);
+        assertThat(recovered.getEntriesSinceSnapshot()).isEqualTo(1);
+    }
+
+    @Test
+    void importsLegacyJsonFilesOnFirstStart() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, Object> conversation = new HashMap<>();
+        conversation.put("id", "conv-legacy");
+        conversation.put("status", "ACTIVE");
+        objectMapper.writeValue(dataDirectory.resolve("conversations.json").toFile(), Map.of("conv-legacy", conversation));
+        objectMapper.writeValue(dataDirectory.resolve("messages.json").toFile(),
+            Map.of("conv-legacy", List.of(message("conv-legacy", "msg-1", "Ancien message"))));
+
+        ChatJournal journal = open(ChatJournal.FsyncPolicy.NONE, 1_000_000);
+        journal.recover(store);
+        journal.close();
+
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.getMessages("conv-legacy")).hasSize(1);
+        try (Stream<Path> files = Files.list(dataDirectory.resolve("journal"))) {
+            assertThat(files.map(file -> file.getFileName().toString())).anyMatch(name -> name.startsWith("snapshot-"));
+        }
+    }
+
+    private ChatJournal open(ChatJournal.FsyncPolicy fsyncPolicy, long segmentMaxBytes) {
+        return new ChatJournal(dataDirectory.resolve("journal"), fsyncPolicy, 50, segmentMaxBytes, 1000);
+    }
+
+    private ChatConversationStore store() {
+        ChatConversationStore conversationStore = new ChatConversationStore(dataDirectory.resolve("conversations"),
+                                                                            100, 1_000_000, 60_000);
+        try {
+            conversationStore.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return conversationStore;
+    }
+
+    private void createConversation(ChatJournal journal, String conversationId) {
+        Map<String, Object> conversation = new HashMap<>();
+        conversation.put("id", conversationId);
+        conversation.put("status", "ACTIVE");
+        List<Map<String, Object>> initial = new ArrayList<>();
+        initial.add(message(conversationId, "msg-1", "Bonjour"));
+        store.put(conversationId, conversation, initial);
+        journal.appendConversation(conversation, initial);
+    }
+
+    private void addMessage(ChatConversationStore target, ChatJournal journal, String conversationId,
+                            String messageId, String content) {
+        Map<String, Object> message = message(conversationId, messageId, content);
+        target.appendMessage(conversationId, message);
+        journal.appendMessage(conversationId, message);
+    }
+
+    private void updateStatus(ChatJournal journal, String conversationId, String status) {
+        Map<String, Object> changes = Map.of("status", status);
+        store.updateConversation(conversationId, changes);
+        journal.appendConversationUpdate(conversationId, changes);
+    }
+
+    private Map<String, Object> message(String conversationId, String messageId, String content) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("id", messageId);
+        message.put("conversationId", conversationId);
+        message.put("content", content);
+        return message;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dataDirectory.resolve("journal"))) {
+            return files.filter(file -> file.getFileName().toString().startsWith("journal-")).sorted().toList();
+        }
+    }
+
+    private Path lastSegment() throws IOException {
+        List<Path> segments = segments();
+        return segments.get(segments.size() - 1);
+    }
+}
@@ -0,0 +1,58 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Vérifie la présence en mémoire : expiration des battements et des indicateurs de saisie,
+ * lecture en lot pour une page de boîte de réception, purge des entrées expirées.
+ */
+class ChatPresenceRegistryTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final ChatPresenceRegistry registry = new ChatPresenceRegistry(30_000, 5_000, now::get);
+
+    @Test
+    void heartbeatExpiresAfterTtl() {
+        assertThat(registry.heartbeat("agent")).isEqualTo(15_000);
+        registry.heartbeat("client");
+        assertThat(registry.onlineAmong(List.of("agent", "client", "inconnu"))).containsExactly("agent", "client");
+
+        now.addAndGet(20_000);
+        registry.heartbeat("client");
+        now.addAndGet(15_000);
+        assertThat(registry.isOnline("agent")).isFalse();
+        assertThat(registry.onlineAmong(List.of("agent", "client"))).containsExactly("client");
+
+        registry.disconnect("client");
+        assertThat(registry.isOnline("client")).isFalse();
+    }
+
+    @Test
+    void typingIsReadInBulkAndExpires() {
+        registry.setTyping("conv-1", "client", true);
+        registry.setTyping("conv-2", "agent", true);
+        registry.setTyping("conv-2", "client", true);
+        assertThat(registry.isOnline("client")).isTrue();
+
+        Map<String, Set<String>> typing = registry.typingIn(List.of("conv-1", "conv-2", "conv-3"));
+        assertThat(typing).containsOnlyKeys("conv-1", "conv-2");
+        assertThat(typing.get("conv-2")).containsExactlyInAnyOrder("agent", "client");
+
+        registry.setTyping("conv-2", "agent", false);
+        assertThat(registry.typingIn(List.of("conv-2")).get("conv-2")).containsExactly("client");
+
+        // Non renouvelés, les indicateurs expirent seuls, puis la purge libère la mémoire
+        now.addAndGet(5_000);
+        assertThat(registry.typingIn(List.of("conv-1", "conv-2"))).isEmpty();
+        registry.purgeExpired();
+        assertThat(registry.getStats()).containsEntry("typingConversations", 0);
+        assertThat(registry.getStats()).containsEntry("online", 2L);
+    }
+}
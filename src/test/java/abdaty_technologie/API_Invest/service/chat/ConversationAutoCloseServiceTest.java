@@ -0,0 +1,112 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import abdaty_technologie.API_Invest.ChatTestData;
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.Message;
+import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.Entity.Enum.ConversationStatus;
+import abdaty_technologie.API_Invest.Entity.Enum.MessageType;
+import abdaty_technologie.API_Invest.Entity.Enum.Roles;
+import abdaty_technologie.API_Invest.dto.chat.AgentWorkload;
+import abdaty_technologie.API_Invest.dto.chat.ConversationSummary;
+import abdaty_technologie.API_Invest.repository.ConversationRepository;
+import abdaty_technologie.API_Invest.repository.MessageRepository;
+import abdaty_technologie.API_Invest.service.ChatService;
+
+/**
+ * Vérifie la fermeture automatique des conversations inactives : conversations sélectionnées,
+ * message système, compteurs de non-lus et boîtes de réception cohérents.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ConversationAutoCloseServiceTest {
+
+    @Autowired
+    private ChatTestData data;
+
+    @Autowired
+    private ConversationAutoCloseService autoCloseService;
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private AgentResponseMetrics agentResponseMetrics;
+
+    private Persons agent;
+    private Persons user;
+
+    @BeforeEach
+    void setUp() {
+        agent = data.person("Agent", Roles.AGENT_ACCEUIL);
+        user = data.person("Client", Roles.USER);
+    }
+
+    @Test
+    void idleConversationsAreClosedWithSystemMessage() {
+        Conversation idle = data.conversation(data.entreprise(), agent, user);
+        data.message(idle, user, "Bonjour", Instant.now().minus(Duration.ofDays(40)));
+        Conversation recent = data.conversation(data.entreprise(), agent, user);
+        data.message(recent, user, "Bonjour", Instant.now().minus(Duration.ofDays(2)));
+        Conversation empty = data.conversation(data.entreprise(), agent, user);
+        // Compteurs alignés sur les messages avant la fermeture
+        unreadCounterService.rebuildAll();
+
+        assertThat(autoCloseService.closeIdleConversations()).isGreaterThanOrEqualTo(1);
+
+        Conversation closed = conversationRepository.findById(idle.getId()).orElseThrow();
+        assertThat(closed.getStatus()).isEqualTo(ConversationStatus.CLOSED);
+        assertThat(closed.getClosedAt()).isNotNull();
+        assertThat(closed.getActivePairKey()).isNull();
+        assertThat(closed.getWaitingSince()).isNull();
+        assertThat(closed.getMessageCount()).isEqualTo(2);
+        assertThat(closed.getLastMessageSenderId()).isEqualTo(agent.getId());
+
+        List<Message> last = messageRepository.findMessagesBeforeCursor(idle.getId(), null, null, PageRequest.of(0, 1));
+        assertThat(last.get(0).getMessageType()).isEqualTo(MessageType.SYSTEM);
+        assertThat(last.get(0).getContent()).startsWith("Conversation fermée automatiquement");
+        assertThat(unreadCounterService.getUnreadCount(idle.getId(), user.getId())).isEqualTo(1);
+
+        // Les conversations récentes ou créées récemment restent ouvertes
+        assertThat(conversationRepository.findById(recent.getId()).orElseThrow().getStatus()).isEqualTo(ConversationStatus.ACTIVE);
+        assertThat(conversationRepository.findById(empty.getId()).orElseThrow().getStatus()).isEqualTo(ConversationStatus.ACTIVE);
+
+        // Boîte de réception et compteurs suivent les mises à jour en masse
+        ConversationSummary row = chatService.getConversationInbox(user.getId(), null, null, 20).getContent().stream()
+            .filter(summary -> summary.getId().equals(idle.getId())).findFirst().orElseThrow();
+        assertThat(row.getStatus()).isEqualTo(ConversationStatus.CLOSED);
+        assertThat(row.getUnreadCount()).isEqualTo(1);
+        assertThat(row.getLastMessageContent()).startsWith("Conversation fermée automatiquement");
+        assertThat(unreadCounterService.rebuildAll()).isZero();
+
+        // L'agent garde ses deux conversations encore ouvertes au tableau de bord
+        assertThat(agentResponseMetrics.getAgentWorkloads()).filteredOn(workload -> workload.getAgentId().equals(agent.getId()))
+            .singleElement().extracting(AgentWorkload::getOpenConversations).isEqualTo(2L);
+
+        // Plus rien à fermer
+        assertThat(autoCloseService.closeIdleConversations()).isZero();
+        assertThat((Long) autoCloseService.getStats().get("conversationsClosedSinceStartup")).isGreaterThanOrEqualTo(1);
+    }
+}
@@ -0,0 +1,89 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import abdaty_technologie.API_Invest.ChatTestData;
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.Entity.Enum.Roles;
+import abdaty_technologie.API_Invest.dto.chat.MessageRequest;
+import abdaty_technologie.API_Invest.repository.ConversationRepository;
+import abdaty_technologie.API_Invest.service.ChatService;
+
+/**
+ * Vérifie la tenue du résumé du dernier message par l'envoi, et son remplissage pour les données existantes.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class LastMessageBackfillJobTest {
+
+    @Autowired
+    private ChatTestData data;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private LastMessageBackfillJob backfillJob;
+
+    @Test
+    void sendMessageUpdatesLastMessageSummary() {
+        Persons agent = data.person("Agent", Roles.AGENT_ACCEUIL);
+        Persons user = data.person("Client", Roles.USER);
+        Conversation conversation = data.conversation(data.entreprise(), agent, user);
+
+        send(conversation, user, "Bonjour");
+        send(conversation, agent, "x".repeat(400));
+
+        Conversation reloaded = conversationRepository.findById(conversation.getId()).orElseThrow();
+        assertThat(reloaded.getMessageCount()).isEqualTo(2);
+        assertThat(reloaded.getLastMessageSenderId()).isEqualTo(agent.getId());
+        assertThat(reloaded.getLastMessagePreview()).hasSize(Conversation.LAST_MESSAGE_PREVIEW_LENGTH).endsWith("…");
+        assertThat(reloaded.getLastMessageAt()).isNotNull();
+    }
+
+    @Test
+    void backfillFillsConversationsCreatedBeforeDenormalization() {
+        Persons agent = data.person("Agent", Roles.AGENT_ACCEUIL);
+        Persons user = data.person("Client", Roles.USER);
+        Conversation conversation = data.conversation(data.entreprise(), agent, user);
+        Instant base = Instant.parse("2025-05-01T10:00:00Z");
+        data.message(conversation, agent, "Bonjour", base);
+        data.message(conversation, user, "Dernier message", base.plusSeconds(30));
+
+        // Données d'avant la migration : colonnes vides
+        Conversation legacy = conversationRepository.findById(conversation.getId()).orElseThrow();
+        legacy.setMessageCount(0);
+        legacy.setLastMessageAt(null);
+        legacy.setLastMessagePreview(null);
+        legacy.setLastMessageSenderId(null);
+        conversationRepository.save(legacy);
+
+        assertThat(backfillJob.backfill()).isPositive();
+
+        Conversation reloaded = conversationRepository.findById(conversation.getId()).orElseThrow();
+        assertThat(reloaded.getMessageCount()).isEqualTo(2);
+        assertThat(reloaded.getLastMessagePreview()).isEqualTo("Dernier message");
+        assertThat(reloaded.getLastMessageSenderId()).isEqualTo(user.getId());
+        assertThat(reloaded.getLastMessageAt()).isEqualTo(base.plusSeconds(30));
+        // Un second passage n'a plus rien à remplir
+        assertThat(backfillJob.backfill()).isZero();
+    }
+
+    private void send(Conversation conversation, Persons sender, String content) {
+        MessageRequest request = new MessageRequest();
+        request.setContent(content);
+        request.setMessageType("TEXT");
+        chatService.sendMessage(conversation.getId(), request, sender.getId());
+    }
+}
@@ -0,0 +1,129 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import abdaty_technologie.API_Invest.ChatTestData;
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.Entity.Enum.Roles;
+import abdaty_technologie.API_Invest.dto.chat.ConversationResponse;
+import abdaty_technologie.API_Invest.dto.chat.MessageResponse;
+import abdaty_technologie.API_Invest.dto.chat.MessageWindow;
+import abdaty_technologie.API_Invest.repository.ConversationRepository;
+import abdaty_technologie.API_Invest.repository.MessageRepository;
+import abdaty_technologie.API_Invest.service.ChatService;
+
+/**
+ * Vérifie l'archivage des conversations fermées depuis longtemps et leur relecture transparente.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class MessageArchiveServiceTest {
+
+    private static final Instant BASE = Instant.parse("2025-01-10T09:00:00Z");
+
+    @Autowired
+    private ChatTestData data;
+
+    @Autowired
+    private MessageArchiveService archiveService;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    private Persons agent;
+    private Persons user;
+
+    @BeforeEach
+    void setUp() {
+        agent = data.person("Agent", Roles.AGENT_ACCEUIL);
+        user = data.person("Client", Roles.USER);
+    }
+
+    @Test
+    void oldClosedConversationsAreArchivedAndStillReadable() {
+        Conversation old = conversationWithMessages(5);
+        close(old, Instant.now().minus(Duration.ofDays(120)));
+        Conversation recent = conversationWithMessages(3);
+        close(recent, Instant.now().minus(Duration.ofDays(2)));
+
+        assertThat(archiveService.archiveClosedConversations()).isEqualTo(5);
+
+        assertThat(messageRepository.countByConversationId(old.getId())).isZero();
+        assertThat(messageRepository.countByConversationId(recent.getId())).isEqualTo(3);
+
+        ConversationResponse full = chatService.getConversation(old.getId(), user.getId());
+        assertThat(full.getMessages()).extracting(MessageResponse::getContent)
+            .containsExactly("Message 0", "Message 1", "Message 2", "Message 3", "Message 4");
+        assertThat(full.getMessages().get(0).getSenderId()).isEqualTo(user.getId());
+
+        // Fenêtres par curseur : l'historique archivé se parcourt comme la table messages
+        ConversationResponse latest = chatService.getConversation(old.getId(), user.getId(), 3);
+        assertThat(latest.getTotalMessages()).isEqualTo(5);
+        assertThat(latest.getMessages()).extracting(MessageResponse::getContent)
+            .containsExactly("Message 2", "Message 3", "Message 4");
+        MessageWindow older = chatService.getMessagesBefore(old.getId(), latest.getOlderCursor(), 3);
+        assertThat(older.getMessages()).extracting(MessageResponse::getContent).containsExactly("Message 0", "Message 1");
+        assertThat(older.getOlderCursor()).isNull();
+
+        // Plus rien à archiver
+        assertThat(archiveService.archiveClosedConversations()).isZero();
+        Map<String, Object> stats = archiveService.getStats();
+        assertThat((Long) stats.get("archivedMessages")).isGreaterThanOrEqualTo(5);
+        assertThat((Long) stats.get("messagesMovedSinceStartup")).isGreaterThanOrEqualTo(5);
+    }
+
+    @Test
+    void reopenedConversationIsMergedIntoExistingArchive() {
+        Conversation conversation = conversationWithMessages(2);
+        close(conversation, Instant.now().minus(Duration.ofDays(100)));
+        archiveService.archiveClosedConversations();
+
+        conversation = conversationRepository.findById(conversation.getId()).orElseThrow();
+        conversation.reactivate();
+        conversationRepository.save(conversation);
+        data.message(conversation, agent, "Après réouverture", BASE.plusSeconds(60));
+
+        // Encore active : les deux sources sont lues ensemble
+        List<MessageResponse> messages = chatService.getConversation(conversation.getId(), agent.getId()).getMessages();
+        assertThat(messages).extracting(MessageResponse::getContent)
+            .containsExactly("Message 0", "Message 1", "Après réouverture");
+
+        close(conversation, Instant.now().minus(Duration.ofDays(100)));
+        assertThat(archiveService.archiveClosedConversations()).isEqualTo(1);
+        assertThat(archiveService.countArchivedMessages(conversation.getId())).isEqualTo(3);
+        assertThat(chatService.getConversation(conversation.getId(), agent.getId()).getMessages()).hasSize(3);
+    }
+
+    private Conversation conversationWithMessages(int count) {
+        Conversation conversation = data.conversation(data.entreprise(), agent, user);
+        for (int i = 0; i < count; i++) {
+            data.message(conversation, i % 2 == 0 ? user : agent, "Message " + i, BASE.plusSeconds(i));
+        }
+        return conversation;
+    }
+
+    private void close(Conversation conversation, Instant closedAt) {
+        Conversation managed = conversationRepository.findById(conversation.getId()).orElseThrow();
+        managed.close();
+        managed.setClosedAt(closedAt);
+        conversationRepository.save(managed);
+    }
+}
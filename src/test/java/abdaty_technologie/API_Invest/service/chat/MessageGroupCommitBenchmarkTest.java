@@ -0,0 +1,109 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import abdaty_technologie.API_Invest.ChatTestData;
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.Entreprise;
+import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.Entity.Enum.Roles;
+import abdaty_technologie.API_Invest.dto.chat.MessageRequest;
+import abdaty_technologie.API_Invest.repository.MessageRepository;
+import abdaty_technologie.API_Invest.service.ChatService;
+
+/**
+ * Compare le débit d'envoi des messages, une transaction par message puis envoi groupé.
+ *
+ * Désactivé par défaut :
+ *   mvn test -Dtest=MessageGroupCommitBenchmarkTest -Dchat.benchmark=true [-Dchat.benchmark.sends=20000]
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:transmali_group_commit;DB_CLOSE_DELAY=-1;MODE=MySQL;"
+    + "NON_KEYWORDS=YEAR,VALUE")
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "chat.benchmark", matches = "true")
+class MessageGroupCommitBenchmarkTest {
+
+    private static final int CONVERSATIONS = 200;
+    private static final int THREADS = 32;
+
+    @Autowired
+    private ChatTestData data;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private MessageGroupCommitter groupCommitter;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Test
+    void compareDirectAndGroupedSends() throws Exception {
+        int sends = Integer.getInteger("chat.benchmark.sends", 20_000);
+
+        Persons agent = data.person("Agent", Roles.AGENT_ACCEUIL);
+        Persons user = data.person("Client", Roles.USER);
+        Entreprise entreprise = data.entreprise();
+        List<Conversation> conversations = new ArrayList<>();
+        for (int i = 0; i < CONVERSATIONS; i++) {
+            conversations.add(data.conversation(entreprise, agent, user));
+        }
+
+        // Échauffement (JIT, pool de connexions) puis mesure des deux modes
+        run(conversations, user, 1000);
+        groupCommitter.setEnabled(true);
+        run(conversations, user, 1000);
+        groupCommitter.setEnabled(false);
+
+        long directMs = run(conversations, user, sends);
+        groupCommitter.setEnabled(true);
+        long groupedMs;
+        Map<String, Object> stats;
+        try {
+            groupedMs = run(conversations, user, sends);
+            stats = groupCommitter.getStats();
+        } finally {
+            groupCommitter.setEnabled(false);
+        }
+
+        assertThat(messageRepository.count()).isEqualTo(2L * sends + 2000);
+
+        System.out.printf("%n📊 Benchmark envoi de messages (%d envois, %d threads, %d conversations)%n", sends, THREADS, CONVERSATIONS);
+        System.out.printf("   Une transaction par message : %d ms (%.0f messages/s)%n", directMs, sends * 1000.0 / directMs);
+        System.out.printf("   Envoi groupé                : %d ms (%.0f messages/s), lot moyen %.1f, plus gros lot %s%n%n",
+                          groupedMs, sends * 1000.0 / groupedMs, stats.get("averageBatchSize"), stats.get("largestBatch"));
+    }
+
+    private long run(List<Conversation> conversations, Persons user, int sends) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>(sends);
+            for (int i = 0; i < sends; i++) {
+                String conversationId = conversations.get(i % conversations.size()).getId();
+                String content = "Message " + i;
+                futures.add(executor.submit(() -> chatService.sendMessage(conversationId, new MessageRequest(content), user.getId())));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return (System.nanoTime() - start) / 1_000_000;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
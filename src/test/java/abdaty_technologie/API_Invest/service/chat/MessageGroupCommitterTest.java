@@ -0,0 +1,147 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import abdaty_technologie.API_Invest.ChatTestData;
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.Entity.Enum.Roles;
+import abdaty_technologie.API_Invest.dto.chat.MessageRequest;
+import abdaty_technologie.API_Invest.dto.chat.MessageResponse;
+import abdaty_technologie.API_Invest.exception.BadRequestException;
+import abdaty_technologie.API_Invest.repository.ConversationRepository;
+import abdaty_technologie.API_Invest.repository.MessageRepository;
+import abdaty_technologie.API_Invest.service.ChatService;
+
+/**
+ * Vérifie l'envoi groupé : chaque appelant reçoit son message enregistré, les compteurs et le résumé
+ * de conversation restent exacts, et un envoi refusé n'emporte pas le reste du lot.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class MessageGroupCommitterTest {
+
+    @Autowired
+    private ChatTestData data;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private MessageGroupCommitter groupCommitter;
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    private Persons agent;
+    private Persons user;
+    private Conversation conversation;
+
+    @BeforeEach
+    void setUp() {
+        agent = data.person("Agent", Roles.AGENT_ACCEUIL);
+        user = data.person("Client", Roles.USER);
+        conversation = data.conversation(data.entreprise(), agent, user);
+        groupCommitter.setEnabled(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        groupCommitter.setEnabled(false);
+    }
+
+    @Test
+    void concurrentSendsAreCommittedTogether() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<MessageResponse>> sends = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                Persons sender = i % 4 == 0 ? agent : user;
+                String content = "Message " + i;
+                sends.add(executor.submit(() -> chatService.sendMessage(
+                    conversation.getId(), new MessageRequest(content), sender.getId())));
+            }
+            for (Future<MessageResponse> send : sends) {
+                MessageResponse response = send.get();
+                assertThat(response.getId()).isNotNull();
+                assertThat(messageRepository.existsById(response.getId())).isTrue();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(messageRepository.countByConversationId(conversation.getId())).isEqualTo(40);
+        assertThat(unreadCounterService.getUnreadCount(conversation.getId(), agent.getId())).isEqualTo(30);
+        assertThat(unreadCounterService.getUnreadCount(conversation.getId(), user.getId())).isEqualTo(10);
+        assertThat(conversationRepository.findById(conversation.getId()).orElseThrow().getMessageCount()).isEqualTo(40);
+    }
+
+    @Test
+    void rejectedSendFailsAloneAndCallerSeesTheError() {
+        Persons stranger = data.person("Intrus", Roles.USER);
+
+        assertThatThrownBy(() -> chatService.sendMessage(conversation.getId(), new MessageRequest("Intrusion"), stranger.getId()))
+            .isInstanceOf(BadRequestException.class);
+        MessageResponse sent = chatService.sendMessage(conversation.getId(), new MessageRequest("Bonjour"), user.getId());
+
+        assertThat(sent.getContent()).isEqualTo("Bonjour");
+        assertThat(messageRepository.countByConversationId(conversation.getId())).isEqualTo(1);
+        assertThat(unreadCounterService.getUnreadCount(conversation.getId(), agent.getId())).isEqualTo(1);
+    }
+
+    @Test
+    void retriedSendsWithSameClientIdCreateOneMessage() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<MessageResponse> responses = new ArrayList<>();
+        try {
+            List<Future<MessageResponse>> sends = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                sends.add(executor.submit(() -> chatService.sendMessage(
+                    conversation.getId(), withClientId("Bonjour", "client-1"), user.getId())));
+            }
+            for (Future<MessageResponse> send : sends) {
+                responses.add(send.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        // Renvoi plus tardif : réponse d'origine
+        responses.add(chatService.sendMessage(conversation.getId(), withClientId("Bonjour", "client-1"), user.getId()));
+
+        assertThat(responses).extracting(MessageResponse::getId).containsOnly(responses.get(0).getId());
+        assertThat(responses.get(0).getClientMessageId()).isEqualTo("client-1");
+        assertThat(messageRepository.countByConversationId(conversation.getId())).isEqualTo(1);
+        assertThat(unreadCounterService.getUnreadCount(conversation.getId(), agent.getId())).isEqualTo(1);
+        assertThat(conversationRepository.findById(conversation.getId()).orElseThrow().getMessageCount()).isEqualTo(1);
+
+        // Le même identifiant ne peut pas désigner un message d'un autre participant
+        assertThatThrownBy(() -> chatService.sendMessage(conversation.getId(), withClientId("Réponse", "client-1"), agent.getId()))
+            .isInstanceOf(BadRequestException.class);
+    }
+
+    private static MessageRequest withClientId(String content, String clientMessageId) {
+        MessageRequest request = new MessageRequest(content);
+        request.setClientMessageId(clientMessageId);
+        return request;
+    }
+}
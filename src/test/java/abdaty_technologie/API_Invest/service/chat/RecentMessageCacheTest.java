@@ -0,0 +1,64 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import abdaty_technologie.API_Invest.dto.chat.MessageCursor;
+import abdaty_technologie.API_Invest.dto.chat.MessageResponse;
+import abdaty_technologie.API_Invest.dto.chat.MessageWindow;
+
+/**
+ * Vérifie qu'un tampon du cache des messages récents n'est servi que s'il reflète encore la conversation :
+ * nombre de messages attendu (envois d'une autre instance) et âge maximal.
+ */
+class RecentMessageCacheTest {
+
+    private static final Instant BASE = Instant.parse("2026-01-01T10:00:00Z");
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final RecentMessageCache cache = new RecentMessageCache(10, 1_000_000, 60_000, now::get);
+
+    @Test
+    void messageSentByAnotherInstanceTurnsCacheIntoMiss() {
+        cache.fill("conv", cache.stamp("conv"), 2, List.of(message("m1", 0), message("m2", 1)), true);
+        MessageCursor cursor = MessageCursor.of(message("m2", 1));
+        assertThat(cache.since("conv", 2, cursor, 10).getMessages()).isEmpty();
+
+        // Un message validé ailleurs : la conversation en compte 3, le tampon 2
+        assertThat(cache.since("conv", 3, cursor, 10)).isNull();
+        assertThat(cache.latest("conv", 3, 10)).isNull();
+        assertThat(cache.getStats().get("staleRings")).isEqualTo(1L);
+    }
+
+    @Test
+    void localSendKeepsCacheInStepWithConversation() {
+        cache.fill("conv", cache.stamp("conv"), 1, List.of(message("m1", 0)), true);
+        cache.append("conv", message("m2", 1));
+
+        MessageWindow window = cache.latest("conv", 2, 10);
+        assertThat(window).isNotNull();
+        assertThat(window.getMessages()).extracting(MessageResponse::getId).containsExactly("m1", "m2");
+    }
+
+    @Test
+    void ringExpiresAfterMaxAge() {
+        cache.fill("conv", cache.stamp("conv"), 1, List.of(message("m1", 0)), true);
+        assertThat(cache.latest("conv", 1, 10)).isNotNull();
+
+        now.addAndGet(61_000);
+        assertThat(cache.latest("conv", 1, 10)).isNull();
+    }
+
+    private static MessageResponse message(String id, int second) {
+        MessageResponse message = new MessageResponse();
+        message.setId(id);
+        message.setContent("Message " + id);
+        message.setCreation(BASE.plusSeconds(second));
+        return message;
+    }
+}
@@ -0,0 +1,138 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import abdaty_technologie.API_Invest.ChatTestData;
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.Entreprise;
+import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.Entity.Enum.ChatParticipantRole;
+import abdaty_technologie.API_Invest.Entity.Enum.Roles;
+import abdaty_technologie.API_Invest.repository.ConversationRepository;
+import abdaty_technologie.API_Invest.repository.MessageRepository;
+
+/**
+ * Compare l'ancien comptage des non-lus (COUNT sur la table messages) et les compteurs dénormalisés.
+ *
+ * Désactivé par défaut (plusieurs dizaines de secondes) :
+ *   mvn test -Dtest=UnreadCounterBenchmarkTest -Dchat.benchmark=true [-Dchat.benchmark.messages=1000000]
+ *
+ * H2 réutilise par défaut le résultat d'une requête identique sur des tables inchangées :
+ * cette optimisation est désactivée pour mesurer réellement chaque comptage.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:transmali_benchmark;DB_CLOSE_DELAY=-1;MODE=MySQL;"
+    + "NON_KEYWORDS=YEAR,VALUE;OPTIMIZE_REUSE_RESULTS=FALSE")
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "chat.benchmark", matches = "true")
+class UnreadCounterBenchmarkTest {
+
+    private static final int CONVERSATIONS = 2000;
+    private static final int AGENTS = 10;
+    private static final int ITERATIONS = 50;
+
+    @Autowired
+    private ChatTestData data;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Test
+    void compareOldAndNewUnreadCounts() {
+        int messageCount = Integer.getInteger("chat.benchmark.messages", 1_000_000);
+
+        // Jeu de données : CONVERSATIONS conversations réparties entre AGENTS agents, aucun filigrane
+        // de lecture : tous les messages de l'interlocuteur sont non lus
+        List<Persons> agents = new ArrayList<>();
+        for (int i = 0; i < AGENTS; i++) {
+            agents.add(data.person("Agent" + i, Roles.AGENT_ACCEUIL));
+        }
+        Persons user = data.person("Client", Roles.USER);
+        Entreprise entreprise = data.entreprise();
+
+        List<Conversation> conversations = new ArrayList<>();
+        for (int i = 0; i < CONVERSATIONS; i++) {
+            conversations.add(new Conversation(entreprise, agents.get(i % AGENTS), user, "Benchmark " + i));
+        }
+        conversations = conversationRepository.saveAll(conversations);
+
+        long seedStart = System.nanoTime();
+        insertMessages(conversations, user, messageCount);
+        long seedMs = (System.nanoTime() - seedStart) / 1_000_000;
+
+        long rebuildStart = System.nanoTime();
+        unreadCounterService.rebuildAll();
+        long rebuildMs = (System.nanoTime() - rebuildStart) / 1_000_000;
+
+        String agentId = agents.get(0).getId();
+        String conversationId = conversations.get(0).getId();
+
+        // Les deux chemins doivent donner le même résultat
+        assertThat(unreadCounterService.getTotalUnreadCount(agentId, ChatParticipantRole.AGENT))
+            .isEqualTo(conversationRepository.countUnreadMessagesForAgent(agentId));
+        assertThat((long) unreadCounterService.getUnreadCount(conversationId, agentId))
+            .isEqualTo(messageRepository.countUnreadMessagesInConversationForUser(conversationId, agentId));
+
+        double oldBadge = measure(() -> conversationRepository.countUnreadMessagesForAgent(agentId));
+        double newBadge = measure(() -> unreadCounterService.getTotalUnreadCount(agentId, ChatParticipantRole.AGENT));
+        double oldConversation = measure(() -> messageRepository.countUnreadMessagesInConversationForUser(conversationId, agentId));
+        double newConversation = measure(() -> unreadCounterService.getUnreadCount(conversationId, agentId));
+
+        System.out.printf("%n📊 Benchmark compteurs de non-lus (%d messages, %d conversations)%n", messageCount, CONVERSATIONS);
+        System.out.printf("   Insertion des messages : %d ms, reconstruction des compteurs : %d ms%n", seedMs, rebuildMs);
+        System.out.printf("   Badge agent        : COUNT messages %.3f ms/appel, compteurs %.3f ms/appel%n", oldBadge, newBadge);
+        System.out.printf("   Conversation agent : COUNT messages %.3f ms/appel, compteur %.3f ms/appel%n%n", oldConversation, newConversation);
+    }
+
+    private void insertMessages(List<Conversation> conversations, Persons user, int messageCount) {
+        String sql = "INSERT INTO messages (id, conversation_id, sender_id, content, message_type, is_read, created_at, updated_at) " +
+                     "VALUES (?, ?, ?, ?, 'TEXT', ?, ?, ?)";
+        Instant base = Instant.parse("2025-01-01T00:00:00Z");
+        int batchSize = 10_000;
+
+        for (int start = 0; start < messageCount; start += batchSize) {
+            List<Object[]> batch = new ArrayList<>(batchSize);
+            for (int i = start; i < Math.min(start + batchSize, messageCount); i++) {
+                Conversation conversation = conversations.get(i % conversations.size());
+                String senderId = i % 2 == 0 ? user.getId() : conversation.getAgent().getId();
+                Timestamp at = Timestamp.from(base.plusSeconds(i));
+                batch.add(new Object[] { UUID.randomUUID().toString(), conversation.getId(), senderId,
+                                         "Message " + i, false, at, at });
+            }
+            jdbcTemplate.batchUpdate(sql, batch);
+        }
+    }
+
+    private double measure(LongSupplier query) {
+        for (int i = 0; i < 5; i++) {
+            query.getAsLong();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            query.getAsLong();
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / ITERATIONS;
+    }
+}
@@ -0,0 +1,126 @@
+package abdaty_technologie.API_Invest.service.chat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import abdaty_technologie.API_Invest.ChatTestData;
+import abdaty_technologie.API_Invest.Entity.Conversation;
+import abdaty_technologie.API_Invest.Entity.Persons;
+import abdaty_technologie.API_Invest.Entity.Enum.ChatParticipantRole;
+import abdaty_technologie.API_Invest.Entity.Enum.Roles;
+import abdaty_technologie.API_Invest.dto.chat.MessageRequest;
+import abdaty_technologie.API_Invest.dto.chat.MessageResponse;
+import abdaty_technologie.API_Invest.repository.ConversationRepository;
+import abdaty_technologie.API_Invest.service.ChatService;
+
+/**
+ * Vérifie la tenue des compteurs de non-lus par l'envoi et la lecture, et leur réparation depuis les messages.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class UnreadCounterServiceTest {
+
+    @Autowired
+    private ChatTestData data;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Persons agent;
+    private Persons user;
+    private Conversation conversation;
+
+    @BeforeEach
+    void setUp() {
+        agent = data.person("Agent", Roles.AGENT_ACCEUIL);
+        user = data.person("Client", Roles.USER);
+        conversation = data.conversation(data.entreprise(), agent, user);
+    }
+
+    @Test
+    void countersFollowSendAndRead() {
+        send(user, "Bonjour");
+        send(user, "Voici mon dossier");
+        send(user, "Merci d'avance");
+        send(agent, "Bien reçu");
+
+        assertThat(unreadCounterService.getUnreadCount(conversation.getId(), agent.getId())).isEqualTo(3);
+        assertThat(unreadCounterService.getUnreadCount(conversation.getId(), user.getId())).isEqualTo(1);
+        assertThat(chatService.getUnreadCountForAgent(agent.getId())).isEqualTo(3);
+        assertThat(chatService.getUnreadCountForUser(user.getId())).isEqualTo(1);
+
+        chatService.markConversationAsRead(conversation.getId(), agent.getId());
+
+        assertThat(chatService.getUnreadCountForAgent(agent.getId())).isZero();
+        assertThat(chatService.getUnreadCountForUser(user.getId())).isEqualTo(1);
+        // Même résultat que le comptage sur la table messages
+        assertThat(conversationRepository.countUnreadMessagesForUser(user.getId())).isEqualTo(1);
+        assertThat(conversationRepository.countUnreadMessagesForAgent(agent.getId())).isZero();
+    }
+
+    @Test
+    void readAdvancesWatermarkWithoutUpdatingMessages() {
+        Instant base = Instant.parse("2025-04-01T08:00:00Z");
+        data.message(conversation, user, "Question 1", base);
+        data.message(conversation, user, "Question 2", base.plusSeconds(1));
+        unreadCounterService.rebuildAll();
+
+        chatService.markConversationAsRead(conversation.getId(), agent.getId());
+        send(user, "Question 3");
+
+        List<MessageResponse> messages = chatService.getLatestMessages(conversation.getId(), 10).getMessages();
+        assertThat(messages).extracting(MessageResponse::getIsRead).containsExactly(true, true, false);
+        assertThat(messages.get(0).getReadAt()).isNotNull();
+        assertThat(unreadCounterService.getUnreadCount(conversation.getId(), agent.getId())).isEqualTo(1);
+        // Les lignes de messages ne sont plus réécrites à la lecture
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM messages WHERE conversation_id = ? AND is_read = TRUE", Long.class, conversation.getId()))
+            .isZero();
+
+        // Relire sans nouveau message ne change rien ; la reconstruction respecte le filigrane
+        chatService.markConversationAsRead(conversation.getId(), agent.getId());
+        assertThat(unreadCounterService.rebuildAll()).isZero();
+    }
+
+    @Test
+    void rebuildRepairsCountersFromMessages() {
+        // Messages écrits directement en base : les compteurs ne sont pas tenus à jour
+        Instant base = Instant.parse("2025-04-01T08:00:00Z");
+        data.message(conversation, user, "Question 1", base);
+        data.message(conversation, user, "Question 2", base.plusSeconds(1));
+        data.message(conversation, agent, "Réponse", base.plusSeconds(2));
+        assertThat(unreadCounterService.getUnreadCount(conversation.getId(), agent.getId())).isZero();
+
+        assertThat(unreadCounterService.rebuildAll()).isPositive();
+
+        assertThat(unreadCounterService.getUnreadCount(conversation.getId(), agent.getId())).isEqualTo(2);
+        assertThat(unreadCounterService.getTotalUnreadCount(user.getId(), ChatParticipantRole.USER)).isEqualTo(1);
+        // Une seconde passe ne trouve plus rien à corriger
+        assertThat(unreadCounterService.rebuildAll()).isZero();
+    }
+
+    private void send(Persons sender, String content) {
+        MessageRequest request = new MessageRequest();
+        request.setContent(content);
+        request.setMessageType("TEXT");
+        chatService.sendMessage(conversation.getId(), request, sender.getId());
+    }
+}